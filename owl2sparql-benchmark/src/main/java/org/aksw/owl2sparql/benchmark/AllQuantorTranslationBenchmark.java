@@ -0,0 +1,114 @@
+/*
+ * #%L
+ * owl2sparql-core
+ * %%
+ * Copyright (C) 2015 AKSW
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package org.aksw.owl2sparql.benchmark;
+
+import com.hp.hpl.jena.query.DatasetFactory;
+import com.hp.hpl.jena.rdf.model.Model;
+import com.hp.hpl.jena.rdf.model.ModelFactory;
+import com.hp.hpl.jena.rdf.model.Property;
+import com.hp.hpl.jena.rdf.model.Resource;
+import com.hp.hpl.jena.vocabulary.RDF;
+import org.aksw.owl2sparql.OWLClassExpressionQueryEngine;
+import org.aksw.owl2sparql.OWLClassExpressionToSPARQLConverter;
+import org.aksw.owl2sparql.selectivity.DatasetStatistics;
+import org.aksw.owl2sparql.style.AllQuantorTranslation;
+import org.openjdk.jmh.annotations.*;
+import org.semanticweb.owlapi.model.*;
+import org.semanticweb.owlapi.util.DefaultPrefixManager;
+import uk.ac.manchester.cs.owl.owlapi.OWLDataFactoryImpl;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the evaluation of a universal restriction on a local in-memory
+ * dataset for each encoding and a growing number of successors per subject.
+ * The number of triples of the property is the same for all fan-outs, i.e.
+ * the number of subjects shrinks while the fan-out grows. Each successor
+ * belongs to the filler with a probability of 99%.
+ *
+ * @author Lorenz Buehmann
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class AllQuantorTranslationBenchmark {
+
+	private static final String NS = "http://example.org/ontology/";
+
+	/**
+	 * The number of triples of the property.
+	 */
+	@Param({"20000"})
+	public int triples;
+
+	/**
+	 * The number of successors of each subject.
+	 */
+	@Param({"1", "4", "16", "64"})
+	public int fanOut;
+
+	@Param({"DOUBLE_NEGATION", "SUBSELECT_COUNT_EQUALS", "ADAPTIVE"})
+	public AllQuantorTranslation allQuantorTranslation;
+
+	private OWLClassExpressionQueryEngine engine;
+	private OWLClassExpression ce;
+
+	@Setup
+	public void setUp() {
+		Model model = ModelFactory.createDefaultModel();
+		Resource clsA = model.createResource(NS + "A");
+		Resource clsB = model.createResource(NS + "B");
+		Property r = model.createProperty(NS + "r");
+		Random random = new Random(42);
+		int objects = triples / 4;
+		for (int i = 0; i < objects; i++) {
+			if(random.nextInt(100) > 0) {
+				model.createResource(NS + "o" + i).addProperty(RDF.type, clsB);
+			}
+		}
+		for (int i = 0; i < triples / fanOut; i++) {
+			Resource ind = model.createResource(NS + "s" + i);
+			ind.addProperty(RDF.type, clsA);
+			for (int j = 0; j < fanOut; j++) {
+				ind.addProperty(r, model.createResource(NS + "o" + random.nextInt(objects)));
+			}
+		}
+
+		OWLClassExpressionToSPARQLConverter converter = new OWLClassExpressionToSPARQLConverter();
+		converter.setAllQuantorTranslation(allQuantorTranslation);
+		converter.setSelectivityEstimator(DatasetStatistics.compute(model));
+		engine = new OWLClassExpressionQueryEngine(DatasetFactory.create(model), converter);
+
+		OWLDataFactory df = new OWLDataFactoryImpl();
+		PrefixManager pm = new DefaultPrefixManager(NS);
+		ce = df.getOWLObjectIntersectionOf(
+				df.getOWLClass("A", pm),
+				df.getOWLObjectAllValuesFrom(df.getOWLObjectProperty("r", pm), df.getOWLClass("B", pm)));
+	}
+
+	@Benchmark
+	public long allValuesFrom() {
+		return engine.getInstanceCount(ce);
+	}
+}
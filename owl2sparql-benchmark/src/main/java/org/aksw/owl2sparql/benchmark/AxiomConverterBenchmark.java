@@ -0,0 +1,109 @@
+/*
+ * #%L
+ * owl2sparql-core
+ * %%
+ * Copyright (C) 2015 AKSW
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package org.aksw.owl2sparql.benchmark;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Sets;
+import com.hp.hpl.jena.query.Query;
+import org.aksw.owl2sparql.OWLAxiomToSPARQLConverter;
+import org.openjdk.jmh.annotations.*;
+import org.semanticweb.owlapi.model.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the conversion of the different types of OWL axioms. Class axioms
+ * contain generated class expressions of the given size and depth.
+ *
+ * @author Lorenz Buehmann
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class AxiomConverterBenchmark {
+
+	public enum AxiomKind {
+		SUBCLASS_OF,
+		EQUIVALENT_CLASSES,
+		DISJOINT_CLASSES,
+		DISJOINT_UNION,
+		OBJECT_PROPERTY_DOMAIN,
+		OBJECT_PROPERTY_RANGE,
+		FUNCTIONAL_OBJECT_PROPERTY,
+		DISJOINT_OBJECT_PROPERTIES,
+		SUB_PROPERTY_CHAIN
+	}
+
+	@Param
+	public AxiomKind axiomKind;
+
+	@Param({"1", "4"})
+	public int size;
+
+	@Param({"1", "3"})
+	public int depth;
+
+	private OWLAxiomToSPARQLConverter converter;
+	private OWLAxiom axiom;
+
+	@Setup
+	public void setUp() {
+		converter = new OWLAxiomToSPARQLConverter("?s", "?o");
+
+		ClassExpressionGenerator generator = new ClassExpressionGenerator();
+		OWLDataFactory df = generator.getDataFactory();
+		PrefixManager pm = generator.getPrefixManager();
+
+		OWLClass cls = df.getOWLClass("C", pm);
+		OWLClassExpression ce = generator.generate(size, depth);
+		OWLObjectProperty propR = df.getOWLObjectProperty("p", pm);
+		OWLObjectProperty propS = df.getOWLObjectProperty("q", pm);
+
+		switch (axiomKind) {
+			case SUBCLASS_OF: axiom = df.getOWLSubClassOfAxiom(cls, ce);
+				break;
+			case EQUIVALENT_CLASSES: axiom = df.getOWLEquivalentClassesAxiom(cls, ce);
+				break;
+			case DISJOINT_CLASSES: axiom = df.getOWLDisjointClassesAxiom(cls, ce, df.getOWLClass("D", pm));
+				break;
+			case DISJOINT_UNION: axiom = df.getOWLDisjointUnionAxiom(cls, Sets.newHashSet(ce, df.getOWLClass("D", pm)));
+				break;
+			case OBJECT_PROPERTY_DOMAIN: axiom = df.getOWLObjectPropertyDomainAxiom(propR, ce);
+				break;
+			case OBJECT_PROPERTY_RANGE: axiom = df.getOWLObjectPropertyRangeAxiom(propR, ce);
+				break;
+			case FUNCTIONAL_OBJECT_PROPERTY: axiom = df.getOWLFunctionalObjectPropertyAxiom(propR);
+				break;
+			case DISJOINT_OBJECT_PROPERTIES: axiom = df.getOWLDisjointObjectPropertiesAxiom(propR, propS);
+				break;
+			case SUB_PROPERTY_CHAIN: axiom = df.getOWLSubPropertyChainOfAxiom(Lists.newArrayList(propR, propS), propR);
+				break;
+			default: throw new IllegalStateException("unsupported axiom kind " + axiomKind);
+		}
+	}
+
+	@Benchmark
+	public Query asQuery() {
+		return converter.asQuery(axiom);
+	}
+}
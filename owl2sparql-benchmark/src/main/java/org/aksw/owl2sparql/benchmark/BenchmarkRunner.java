@@ -0,0 +1,48 @@
+/*
+ * #%L
+ * owl2sparql-core
+ * %%
+ * Copyright (C) 2015 AKSW
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package org.aksw.owl2sparql.benchmark;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Runs the benchmarks with the GC profiler enabled, such that besides the
+ * throughput also the allocation rate (<code>gc.alloc.rate.norm</code>, i.e.
+ * bytes per operation) is reported. All JMH command line options are
+ * supported, e.g.
+ * <pre>
+ * java -jar target/benchmarks.jar ClassExpressionConverterBenchmark -p size=16
+ * </pre>
+ *
+ * @author Lorenz Buehmann
+ */
+public class BenchmarkRunner {
+
+	public static void main(String[] args) throws Exception {
+		Options options = new OptionsBuilder()
+				.parent(new CommandLineOptions(args))
+				.addProfiler(GCProfiler.class)
+				.build();
+		new Runner(options).run();
+	}
+}
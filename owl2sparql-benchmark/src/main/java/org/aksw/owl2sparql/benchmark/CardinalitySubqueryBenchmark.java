@@ -0,0 +1,118 @@
+/*
+ * #%L
+ * owl2sparql-core
+ * %%
+ * Copyright (C) 2015 AKSW
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package org.aksw.owl2sparql.benchmark;
+
+import com.hp.hpl.jena.query.DatasetFactory;
+import com.hp.hpl.jena.rdf.model.Model;
+import com.hp.hpl.jena.rdf.model.ModelFactory;
+import com.hp.hpl.jena.rdf.model.Property;
+import com.hp.hpl.jena.rdf.model.Resource;
+import com.hp.hpl.jena.vocabulary.RDF;
+import org.aksw.owl2sparql.OWLClassExpressionQueryEngine;
+import org.aksw.owl2sparql.OWLClassExpressionToSPARQLConverter;
+import org.aksw.owl2sparql.selectivity.DatasetStatistics;
+import org.aksw.owl2sparql.style.CardinalitySubqueryTranslation;
+import org.openjdk.jmh.annotations.*;
+import org.semanticweb.owlapi.model.*;
+import org.semanticweb.owlapi.util.DefaultPrefixManager;
+import uk.ac.manchester.cs.owl.owlapi.OWLDataFactoryImpl;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the evaluation of a cardinality restriction nested in an
+ * existential restriction, i.e. <code>r some (s min 5 C)</code>, on a local
+ * in-memory dataset for each cardinality sub-query translation. Each
+ * individual has 8 successors of <code>s</code>, but only a few of them are
+ * successors of <code>r</code>.
+ *
+ * @author Lorenz Buehmann
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class CardinalitySubqueryBenchmark {
+
+	private static final String NS = "http://example.org/ontology/";
+
+	/**
+	 * The number of individuals with successors of <code>s</code>.
+	 */
+	@Param({"50000"})
+	public int individuals;
+
+	/**
+	 * The number of distinct successors of <code>r</code>.
+	 */
+	@Param({"20", "200", "2000"})
+	public int targets;
+
+	@Param({"UNRESTRICTED", "OUTER_CANDIDATES"})
+	public CardinalitySubqueryTranslation cardinalitySubqueryTranslation;
+
+	@Param({"false", "true"})
+	public boolean statistics;
+
+	private OWLClassExpressionQueryEngine engine;
+	private OWLClassExpression ce;
+
+	@Setup
+	public void setUp() {
+		Model model = ModelFactory.createDefaultModel();
+		Resource clsC = model.createResource(NS + "C");
+		Property r = model.createProperty(NS + "r");
+		Property s = model.createProperty(NS + "s");
+		Random random = new Random(42);
+		for (int i = 0; i < individuals; i++) {
+			Resource ind = model.createResource(NS + "i" + i);
+			if(random.nextBoolean()) {
+				ind.addProperty(RDF.type, clsC);
+			}
+			for (int j = 0; j < 8; j++) {
+				ind.addProperty(s, model.createResource(NS + "i" + random.nextInt(individuals)));
+			}
+		}
+		for (int i = 0; i < individuals / 2; i++) {
+			model.createResource(NS + "a" + i).addProperty(r, model.createResource(NS + "i" + random.nextInt(targets)));
+		}
+
+		OWLClassExpressionToSPARQLConverter converter = new OWLClassExpressionToSPARQLConverter();
+		converter.setCardinalitySubqueryTranslation(cardinalitySubqueryTranslation);
+		if(statistics) {
+			converter.setSelectivityEstimator(DatasetStatistics.compute(model));
+		}
+		engine = new OWLClassExpressionQueryEngine(DatasetFactory.create(model), converter);
+
+		OWLDataFactory df = new OWLDataFactoryImpl();
+		PrefixManager pm = new DefaultPrefixManager(NS);
+		ce = df.getOWLObjectSomeValuesFrom(
+				df.getOWLObjectProperty("r", pm),
+				df.getOWLObjectMinCardinality(5, df.getOWLObjectProperty("s", pm), df.getOWLClass("C", pm)));
+	}
+
+	@Benchmark
+	public long nestedMinCardinality() {
+		return engine.getInstanceCount(ce);
+	}
+}
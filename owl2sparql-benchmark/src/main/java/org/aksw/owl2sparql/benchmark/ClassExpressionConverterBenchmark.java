@@ -0,0 +1,80 @@
+/*
+ * #%L
+ * owl2sparql-core
+ * %%
+ * Copyright (C) 2015 AKSW
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package org.aksw.owl2sparql.benchmark;
+
+import com.hp.hpl.jena.query.Query;
+import org.aksw.owl2sparql.OWLClassExpressionToSPARQLConverter;
+import org.openjdk.jmh.annotations.*;
+import org.semanticweb.owlapi.model.OWLClassExpression;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the conversion of class expressions of different size and depth
+ * using the default translation settings.
+ *
+ * @author Lorenz Buehmann
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class ClassExpressionConverterBenchmark {
+
+	private static final String ROOT_VAR = "?x";
+
+	/**
+	 * The number of operands on each level of the expression.
+	 */
+	@Param({"1", "4", "16"})
+	public int size;
+
+	/**
+	 * The nesting depth of the expression.
+	 */
+	@Param({"1", "3", "6"})
+	public int depth;
+
+	private OWLClassExpressionToSPARQLConverter converter;
+	private OWLClassExpression ce;
+
+	@Setup
+	public void setUp() {
+		converter = new OWLClassExpressionToSPARQLConverter();
+		ce = new ClassExpressionGenerator().generate(size, depth);
+	}
+
+	@Benchmark
+	public Query asQuery() {
+		return converter.asQuery(ce, ROOT_VAR);
+	}
+
+	@Benchmark
+	public String convert() {
+		return converter.convert(ce, ROOT_VAR, false);
+	}
+
+	@Benchmark
+	public String asGroupGraphPattern() {
+		return converter.asGroupGraphPattern(ce, ROOT_VAR);
+	}
+}
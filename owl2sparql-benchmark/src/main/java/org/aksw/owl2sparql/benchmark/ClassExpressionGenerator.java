@@ -0,0 +1,116 @@
+/*
+ * #%L
+ * owl2sparql-core
+ * %%
+ * Copyright (C) 2015 AKSW
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package org.aksw.owl2sparql.benchmark;
+
+import org.semanticweb.owlapi.model.*;
+import org.semanticweb.owlapi.util.DefaultPrefixManager;
+import uk.ac.manchester.cs.owl.owlapi.OWLDataFactoryImpl;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+
+/**
+ * Generates deterministic class expressions of a given size and depth, such
+ * that each benchmark run converts exactly the same input.
+ * <p>
+ * An expression of size <code>n</code> and depth <code>d</code> is an
+ * intersection of <code>n</code> operands, which cycle through all kinds of
+ * class expressions supported by the converter. For <code>d &gt; 1</code> an
+ * additional operand <code>\exists r.C</code> is added, where <code>C</code>
+ * is an expression of size <code>n</code> and depth <code>d - 1</code>, i.e.
+ * the number of operands grows linearly with the depth.
+ *
+ * @author Lorenz Buehmann
+ */
+public class ClassExpressionGenerator {
+
+	public static final String NS = "http://example.org/ontology/";
+
+	private static final int NR_OF_OPERAND_TYPES = 10;
+
+	private final OWLDataFactory df;
+	private final PrefixManager pm = new DefaultPrefixManager(NS);
+
+	public ClassExpressionGenerator() {
+		this(new OWLDataFactoryImpl());
+	}
+
+	public ClassExpressionGenerator(OWLDataFactory df) {
+		this.df = df;
+	}
+
+	/**
+	 * @param size the number of operands on each level
+	 * @param depth the nesting depth of the expression
+	 * @return a class expression of the given size and depth
+	 */
+	public OWLClassExpression generate(int size, int depth) {
+		if(size < 1 || depth < 1) {
+			throw new IllegalArgumentException("size and depth must be positive");
+		}
+		return generate(size, depth, 0);
+	}
+
+	private OWLClassExpression generate(int size, int depth, int level) {
+		List<OWLClassExpression> operands = new ArrayList<>();
+		for (int i = 0; i < size; i++) {
+			operands.add(operand(i, level));
+		}
+		if(depth > 1) {
+			operands.add(df.getOWLObjectSomeValuesFrom(property("chain", level), generate(size, depth - 1, level + 1)));
+		}
+		return operands.size() == 1 ? operands.get(0) : df.getOWLObjectIntersectionOf(new HashSet<>(operands));
+	}
+
+	private OWLClassExpression operand(int i, int level) {
+		String suffix = level + "_" + i;
+		OWLClass cls = df.getOWLClass("A" + suffix, pm);
+		OWLObjectProperty property = property("r", level * NR_OF_OPERAND_TYPES + i);
+
+		switch (i % NR_OF_OPERAND_TYPES) {
+			case 0: return cls;
+			case 1: return df.getOWLObjectSomeValuesFrom(property, cls);
+			case 2: return df.getOWLObjectAllValuesFrom(property, cls);
+			case 3: return df.getOWLObjectComplementOf(cls);
+			case 4: return df.getOWLObjectMinCardinality(2, property, cls);
+			case 5: return df.getOWLObjectMaxCardinality(1, property, cls);
+			case 6: return df.getOWLObjectOneOf(
+					df.getOWLNamedIndividual("a" + suffix, pm),
+					df.getOWLNamedIndividual("b" + suffix, pm));
+			case 7: return df.getOWLObjectUnionOf(cls, df.getOWLClass("B" + suffix, pm));
+			case 8: return df.getOWLDataSomeValuesFrom(
+					df.getOWLDataProperty("t" + suffix, pm), df.getBooleanOWLDatatype());
+			default: return df.getOWLObjectHasValue(property, df.getOWLNamedIndividual("a" + suffix, pm));
+		}
+	}
+
+	private OWLObjectProperty property(String name, int index) {
+		return df.getOWLObjectProperty(name + index, pm);
+	}
+
+	public OWLDataFactory getDataFactory() {
+		return df;
+	}
+
+	public PrefixManager getPrefixManager() {
+		return pm;
+	}
+}
@@ -0,0 +1,89 @@
+/*
+ * #%L
+ * owl2sparql-core
+ * %%
+ * Copyright (C) 2015 AKSW
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package org.aksw.owl2sparql.benchmark;
+
+import org.aksw.owl2sparql.util.OWLClassExpressionMinimizer;
+import org.openjdk.jmh.annotations.*;
+import org.semanticweb.owlapi.model.OWLClassExpression;
+import org.semanticweb.owlapi.model.OWLDataFactory;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the minimization of a copy of the class expression, as formerly
+ * done by the converter, with the minimization that shares all unchanged
+ * parts of the expression. Run with the GC profiler to see the allocation per
+ * operation (<code>gc.alloc.rate.norm</code>).
+ *
+ * @author Lorenz Buehmann
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class MinimizerBenchmark {
+
+	/**
+	 * The number of operands on each level of the expression.
+	 */
+	@Param({"4", "16"})
+	public int size;
+
+	/**
+	 * The nesting depth of the expression.
+	 */
+	@Param({"3", "6", "12"})
+	public int depth;
+
+	/**
+	 * Whether the expression contains a redundant <code>owl:Thing</code>
+	 * operand on the top level, i.e. whether it has to be rewritten.
+	 */
+	@Param({"false", "true"})
+	public boolean redundant;
+
+	private OWLClassExpressionMinimizer minimizer;
+	private OWLClassExpression ce;
+
+	@Setup
+	public void setUp() {
+		ClassExpressionGenerator generator = new ClassExpressionGenerator();
+		OWLDataFactory df = generator.getDataFactory();
+		minimizer = new OWLClassExpressionMinimizer(df);
+
+		ce = generator.generate(size, depth);
+		if(redundant) {
+			ce = df.getOWLObjectIntersectionOf(ce, df.getOWLThing());
+		}
+	}
+
+	@Benchmark
+	@SuppressWarnings("deprecation")
+	public OWLClassExpression minimizeClone() {
+		return minimizer.minimizeClone(ce);
+	}
+
+	@Benchmark
+	public OWLClassExpression minimize() {
+		return minimizer.minimize(ce);
+	}
+}
@@ -0,0 +1,104 @@
+/*
+ * #%L
+ * owl2sparql-core
+ * %%
+ * Copyright (C) 2015 AKSW
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package org.aksw.owl2sparql.benchmark;
+
+import com.hp.hpl.jena.query.Query;
+import org.aksw.owl2sparql.OWLClassExpressionToSPARQLConverter;
+import org.aksw.owl2sparql.QueryTemplate;
+import org.openjdk.jmh.annotations.*;
+import org.semanticweb.owlapi.model.IRI;
+import org.semanticweb.owlapi.model.OWLClass;
+import org.semanticweb.owlapi.model.OWLClassExpression;
+import org.semanticweb.owlapi.model.OWLDataFactory;
+import org.semanticweb.owlapi.model.OWLEntity;
+import org.semanticweb.owlapi.util.OWLObjectDuplicator;
+
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the conversion of class expressions that differ only in a single
+ * class with the instantiation of a query template prepared once for all of
+ * them.
+ *
+ * @author Lorenz Buehmann
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class QueryTemplateBenchmark {
+
+	private static final String ROOT_VAR = "?x";
+	private static final int NR_OF_CLASSES = 16;
+
+	/**
+	 * The number of operands on each level of the expression.
+	 */
+	@Param({"4", "16"})
+	public int size;
+
+	/**
+	 * The nesting depth of the expression.
+	 */
+	@Param({"1", "3", "6"})
+	public int depth;
+
+	private OWLClassExpressionToSPARQLConverter converter;
+	private QueryTemplate template;
+	private OWLClass placeholder;
+	private OWLClass[] classes;
+	private OWLClassExpression[] expressions;
+	private int next;
+
+	@Setup
+	public void setUp() {
+		ClassExpressionGenerator generator = new ClassExpressionGenerator();
+		OWLDataFactory df = generator.getDataFactory();
+		converter = new OWLClassExpressionToSPARQLConverter();
+
+		// the generated class A0_0 is used as placeholder
+		OWLClassExpression ce = generator.generate(size, depth);
+		placeholder = df.getOWLClass("A0_0", generator.getPrefixManager());
+		template = converter.prepare(ce, ROOT_VAR, Collections.singleton(placeholder));
+
+		classes = new OWLClass[NR_OF_CLASSES];
+		expressions = new OWLClassExpression[NR_OF_CLASSES];
+		for (int i = 0; i < NR_OF_CLASSES; i++) {
+			classes[i] = df.getOWLClass("C" + i, generator.getPrefixManager());
+			expressions[i] = new OWLObjectDuplicator(Collections.<OWLEntity, IRI>singletonMap(placeholder, classes[i].getIRI()), df)
+					.duplicateObject(ce);
+		}
+	}
+
+	@Benchmark
+	public Query asQuery() {
+		next = (next + 1) % NR_OF_CLASSES;
+		return converter.asQuery(expressions[next], ROOT_VAR);
+	}
+
+	@Benchmark
+	public Query instantiate() {
+		next = (next + 1) % NR_OF_CLASSES;
+		return template.instantiate(placeholder, classes[next]);
+	}
+}
@@ -0,0 +1,135 @@
+/*
+ * #%L
+ * owl2sparql-core
+ * %%
+ * Copyright (C) 2015 AKSW
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package org.aksw.owl2sparql.benchmark;
+
+import com.hp.hpl.jena.query.DatasetFactory;
+import com.hp.hpl.jena.rdf.model.Model;
+import com.hp.hpl.jena.rdf.model.ModelFactory;
+import com.hp.hpl.jena.rdf.model.Property;
+import com.hp.hpl.jena.rdf.model.Resource;
+import com.hp.hpl.jena.vocabulary.RDF;
+import org.aksw.owl2sparql.OWLClassExpressionQueryEngine;
+import org.aksw.owl2sparql.OWLClassExpressionToSPARQLConverter;
+import org.aksw.owl2sparql.selectivity.DatasetStatistics;
+import org.openjdk.jmh.annotations.*;
+import org.semanticweb.owlapi.model.*;
+import org.semanticweb.owlapi.util.DefaultPrefixManager;
+import uk.ac.manchester.cs.owl.owlapi.OWLDataFactoryImpl;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the evaluation of class expressions on a local in-memory dataset
+ * with and without ordering the generated queries by the statistics of the
+ * dataset. The dataset contains a large class, to which all individuals
+ * belong, and a small class, i.e. the selectivity of the operands differs
+ * strongly while their order in the class expression is the worst one.
+ * <p>
+ * ARQ reorders the triple patterns of a basic graph pattern by fixed
+ * heuristics, thus, the effect is mainly visible when the patterns are
+ * separated by property paths (<code>reasoning</code>) or subqueries.
+ *
+ * @author Lorenz Buehmann
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class SelectivityOrderingBenchmark {
+
+	private static final String NS = "http://example.org/ontology/";
+
+	/**
+	 * The number of individuals in the dataset.
+	 */
+	@Param({"20000"})
+	public int individuals;
+
+	/**
+	 * Whether the queries are ordered by the statistics of the dataset.
+	 */
+	@Param({"false", "true"})
+	public boolean ordered;
+
+	/**
+	 * Whether the class hierarchy is taken into account by property paths.
+	 */
+	@Param({"false", "true"})
+	public boolean reasoning;
+
+	private OWLClassExpressionQueryEngine engine;
+	private OWLClassExpression intersection;
+	private OWLClassExpression existential;
+	private OWLClassExpression cardinality;
+
+	@Setup
+	public void setUp() {
+		Model model = ModelFactory.createDefaultModel();
+		Resource big = model.createResource(NS + "A_Big");
+		Resource small = model.createResource(NS + "Z_Small");
+		Property r = model.createProperty(NS + "r");
+		Random random = new Random(42);
+		for (int i = 0; i < individuals; i++) {
+			Resource ind = model.createResource(NS + "i" + i);
+			ind.addProperty(RDF.type, big);
+			if(i % 1000 == 0) {
+				ind.addProperty(RDF.type, small);
+			}
+			for (int j = 0; j < 3; j++) {
+				ind.addProperty(r, model.createResource(NS + "i" + random.nextInt(individuals)));
+			}
+		}
+
+		OWLClassExpressionToSPARQLConverter converter = new OWLClassExpressionToSPARQLConverter();
+		converter.setUseReasoning(reasoning);
+		if(ordered) {
+			converter.setSelectivityEstimator(DatasetStatistics.compute(model));
+		}
+		engine = new OWLClassExpressionQueryEngine(DatasetFactory.create(model), converter);
+
+		OWLDataFactory df = new OWLDataFactoryImpl();
+		PrefixManager pm = new DefaultPrefixManager(NS);
+		OWLClass clsBig = df.getOWLClass("A_Big", pm);
+		OWLClass clsSmall = df.getOWLClass("Z_Small", pm);
+		OWLObjectProperty propR = df.getOWLObjectProperty("r", pm);
+
+		intersection = df.getOWLObjectIntersectionOf(clsBig, clsSmall);
+		existential = df.getOWLObjectIntersectionOf(clsBig, df.getOWLObjectSomeValuesFrom(propR, clsSmall));
+		cardinality = df.getOWLObjectIntersectionOf(clsBig, clsSmall, df.getOWLObjectMinCardinality(2, propR, clsBig));
+	}
+
+	@Benchmark
+	public long intersection() {
+		return engine.getInstanceCount(intersection);
+	}
+
+	@Benchmark
+	public long existential() {
+		return engine.getInstanceCount(existential);
+	}
+
+	@Benchmark
+	public long cardinality() {
+		return engine.getInstanceCount(cardinality);
+	}
+}
@@ -0,0 +1,114 @@
+/*
+ * #%L
+ * owl2sparql-core
+ * %%
+ * Copyright (C) 2015 AKSW
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package org.aksw.owl2sparql.benchmark;
+
+import com.hp.hpl.jena.query.DatasetFactory;
+import com.hp.hpl.jena.rdf.model.Model;
+import com.hp.hpl.jena.rdf.model.ModelFactory;
+import com.hp.hpl.jena.rdf.model.Property;
+import com.hp.hpl.jena.rdf.model.Resource;
+import com.hp.hpl.jena.vocabulary.RDF;
+import org.aksw.owl2sparql.OWLClassExpressionQueryEngine;
+import org.aksw.owl2sparql.OWLClassExpressionToSPARQLConverter;
+import org.aksw.owl2sparql.style.AllQuantorTranslation;
+import org.openjdk.jmh.annotations.*;
+import org.semanticweb.owlapi.model.*;
+import org.semanticweb.owlapi.util.DefaultPrefixManager;
+import uk.ac.manchester.cs.owl.owlapi.OWLDataFactoryImpl;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the evaluation of a chain of nested universal restrictions, i.e.
+ * <code>\forall p0.\forall p1. ... A</code>, on a local in-memory dataset for
+ * a growing depth. Each individual has the same number of successors for each
+ * property, and belongs to <code>A</code> with a probability of 99%.
+ *
+ * @author Lorenz Buehmann
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class UniversalChainBenchmark {
+
+	private static final String NS = "http://example.org/ontology/";
+
+	private static final int MAX_DEPTH = 4;
+
+	@Param({"1000"})
+	public int individuals;
+
+	/**
+	 * The number of successors of each individual per property.
+	 */
+	@Param({"2"})
+	public int fanOut;
+
+	@Param({"1", "2", "3", "4"})
+	public int depth;
+
+	@Param({"DOUBLE_NEGATION", "DOUBLE_NEGATION_PATH"})
+	public AllQuantorTranslation allQuantorTranslation;
+
+	private OWLClassExpressionQueryEngine engine;
+	private OWLClassExpression ce;
+
+	@Setup
+	public void setUp() {
+		Model model = ModelFactory.createDefaultModel();
+		Resource clsA = model.createResource(NS + "A");
+		Property[] properties = new Property[MAX_DEPTH];
+		for (int i = 0; i < MAX_DEPTH; i++) {
+			properties[i] = model.createProperty(NS + "p" + i);
+		}
+		Random random = new Random(42);
+		for (int i = 0; i < individuals; i++) {
+			Resource ind = model.createResource(NS + "i" + i);
+			if(random.nextInt(100) > 0) {
+				ind.addProperty(RDF.type, clsA);
+			}
+			for (Property property : properties) {
+				for (int j = 0; j < fanOut; j++) {
+					ind.addProperty(property, model.createResource(NS + "i" + random.nextInt(individuals)));
+				}
+			}
+		}
+
+		OWLClassExpressionToSPARQLConverter converter = new OWLClassExpressionToSPARQLConverter();
+		converter.setAllQuantorTranslation(allQuantorTranslation);
+		engine = new OWLClassExpressionQueryEngine(DatasetFactory.create(model), converter);
+
+		OWLDataFactory df = new OWLDataFactoryImpl();
+		PrefixManager pm = new DefaultPrefixManager(NS);
+		ce = df.getOWLClass("A", pm);
+		for (int i = depth - 1; i >= 0; i--) {
+			ce = df.getOWLObjectAllValuesFrom(df.getOWLObjectProperty("p" + i, pm), ce);
+		}
+	}
+
+	@Benchmark
+	public long universalChain() {
+		return engine.getInstanceCount(ce);
+	}
+}
@@ -0,0 +1,59 @@
+/*
+ * #%L
+ * owl2sparql-core
+ * %%
+ * Copyright (C) 2015 AKSW
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package org.aksw.owl2sparql;
+
+import com.hp.hpl.jena.query.Query;
+import org.semanticweb.owlapi.model.OWLAxiom;
+
+/**
+ * An OWL axiom together with the SPARQL query it has been converted into.
+ *
+ * @author Lorenz Buehmann
+ *
+ */
+public class AxiomQuery {
+
+	private final OWLAxiom axiom;
+	private final Query query;
+
+	public AxiomQuery(OWLAxiom axiom, Query query) {
+		this.axiom = axiom;
+		this.query = query;
+	}
+
+	/**
+	 * @return the OWL axiom
+	 */
+	public OWLAxiom getAxiom() {
+		return axiom;
+	}
+
+	/**
+	 * @return the SPARQL query of the axiom
+	 */
+	public Query getQuery() {
+		return query;
+	}
+
+	@Override
+	public String toString() {
+		return axiom + "\n" + query;
+	}
+}
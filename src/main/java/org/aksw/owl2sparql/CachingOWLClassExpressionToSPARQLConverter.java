@@ -0,0 +1,233 @@
+/*
+ * #%L
+ * owl2sparql-core
+ * %%
+ * Copyright (C) 2015 AKSW
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package org.aksw.owl2sparql;
+
+import com.google.common.base.Throwables;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.util.concurrent.UncheckedExecutionException;
+import com.hp.hpl.jena.query.Query;
+import com.hp.hpl.jena.query.QueryFactory;
+import org.aksw.owl2sparql.OWLClassExpressionToSPARQLConverter.Settings;
+import org.semanticweb.owlapi.model.OWLClassExpression;
+import org.semanticweb.owlapi.model.OWLEntity;
+
+import java.util.Collections;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+
+/**
+ * A cache in front of an {@link OWLClassExpressionToSPARQLConverter}, such
+ * that the same class expression is converted only once.
+ * <p>
+ * The key of an entry consists of the class expression, the root variable,
+ * the entities replaced by variables, whether a COUNT query is requested and
+ * the settings of the converter at the time of the call. Thus, changing the
+ * settings of the underlying converter does not return outdated results.
+ * If the cache is full, the least recently used entries are evicted.
+ * <p>
+ * The cache can be used by several threads at the same time. The queries are
+ * cached in their serialized form, thus, each call returns a new
+ * {@link Query} object that can be modified by the caller.
+ *
+ * @author Lorenz Buehmann
+ *
+ */
+public class CachingOWLClassExpressionToSPARQLConverter {
+
+	public static final long DEFAULT_MAXIMUM_SIZE = 10000;
+
+	private enum Kind {QUERY, GROUP_GRAPH_PATTERN}
+
+	private final OWLClassExpressionToSPARQLConverter converter;
+
+	private final Cache<ConversionKey, Object> cache;
+
+	public CachingOWLClassExpressionToSPARQLConverter(OWLClassExpressionToSPARQLConverter converter) {
+		this(converter, DEFAULT_MAXIMUM_SIZE);
+	}
+
+	/**
+	 * @param converter the converter used for expressions that are not contained in the cache
+	 * @param maximumSize the maximum number of cached conversions
+	 */
+	public CachingOWLClassExpressionToSPARQLConverter(OWLClassExpressionToSPARQLConverter converter, long maximumSize) {
+		this.converter = converter;
+		this.cache = CacheBuilder.newBuilder()
+				.maximumSize(maximumSize)
+				.recordStats()
+				.build();
+	}
+
+	/**
+	 * @see OWLClassExpressionToSPARQLConverter#convert(OWLClassExpression, String, boolean)
+	 */
+	public String convert(OWLClassExpression ce, String rootVariable, boolean countQuery) {
+		return serializedQuery(converter.settings(), rootVariable, ce, Collections.<OWLEntity>emptySet(), countQuery);
+	}
+
+	/**
+	 * @see OWLClassExpressionToSPARQLConverter#asQuery(OWLClassExpression, String)
+	 */
+	public Query asQuery(OWLClassExpression ce, String rootVariable) {
+		return asQuery(rootVariable, ce, Collections.<OWLEntity>emptySet());
+	}
+
+	/**
+	 * @see OWLClassExpressionToSPARQLConverter#asQuery(String, OWLClassExpression, boolean)
+	 */
+	public Query asQuery(String rootVariable, OWLClassExpression ce, boolean countQuery) {
+		return asQuery(converter.settings(), rootVariable, ce, Collections.<OWLEntity>emptySet(), countQuery);
+	}
+
+	/**
+	 * @see OWLClassExpressionToSPARQLConverter#asQuery(String, OWLClassExpression, Set)
+	 */
+	public Query asQuery(String rootVariable, OWLClassExpression ce, Set<? extends OWLEntity> variableEntities) {
+		return asQuery(rootVariable, ce, variableEntities, false);
+	}
+
+	/**
+	 * @see OWLClassExpressionToSPARQLConverter#asQuery(String, OWLClassExpression, Set, boolean)
+	 */
+	public Query asQuery(String rootVariable, OWLClassExpression ce, Set<? extends OWLEntity> variableEntities, boolean countQuery) {
+		return asQuery(converter.settings(), rootVariable, ce, variableEntities, countQuery);
+	}
+
+	private Query asQuery(Settings settings, String rootVariable, OWLClassExpression ce,
+						  Set<? extends OWLEntity> variableEntities, boolean countQuery) {
+		// parse a new query for each caller, as a shared query could be modified
+		return QueryFactory.create(serializedQuery(settings, rootVariable, ce, variableEntities, countQuery));
+	}
+
+	private String serializedQuery(Settings settings, String rootVariable, OWLClassExpression ce,
+								   Set<? extends OWLEntity> variableEntities, boolean countQuery) {
+		return get(new ConversionKey(Kind.QUERY, settings, ce, rootVariable, variableEntities, countQuery),
+				   () -> converter.createQuery(settings, rootVariable, ce, variableEntities, countQuery).serialize());
+	}
+
+	/**
+	 * @see OWLClassExpressionToSPARQLConverter#asGroupGraphPattern(OWLClassExpression, String)
+	 */
+	public String asGroupGraphPattern(OWLClassExpression ce, String rootVariable) {
+		return asGroupGraphPattern(ce, rootVariable, false);
+	}
+
+	/**
+	 * @see OWLClassExpressionToSPARQLConverter#asGroupGraphPattern(OWLClassExpression, String, boolean)
+	 */
+	public String asGroupGraphPattern(OWLClassExpression ce, String rootVariable, boolean needOuterTriplePattern) {
+		Settings settings = converter.settings();
+		return get(new ConversionKey(Kind.GROUP_GRAPH_PATTERN, settings, ce, rootVariable,
+									 Collections.<OWLEntity>emptySet(), needOuterTriplePattern),
+				   () -> OWLClassExpressionToSPARQLConverter.asString(
+						   converter.asElementGroup(settings, ce, rootVariable, needOuterTriplePattern)));
+	}
+
+	/**
+	 * Returns the statistics of the cache, i.e. the number of hits, misses and evictions.
+	 *
+	 * @return the cache statistics
+	 */
+	public CacheStats getStats() {
+		return cache.stats();
+	}
+
+	/**
+	 * @return the number of cached conversions
+	 */
+	public long size() {
+		return cache.size();
+	}
+
+	/**
+	 * Removes all cached conversions.
+	 */
+	public void invalidateAll() {
+		cache.invalidateAll();
+	}
+
+	/**
+	 * @return the underlying converter
+	 */
+	public OWLClassExpressionToSPARQLConverter getConverter() {
+		return converter;
+	}
+
+	@SuppressWarnings("unchecked")
+	private <T> T get(ConversionKey key, Callable<T> conversion) {
+		try {
+			return (T) cache.get(key, conversion);
+		} catch (ExecutionException | UncheckedExecutionException e) {
+			throw Throwables.propagate(e.getCause());
+		}
+	}
+
+	private static final class ConversionKey {
+
+		private final Kind kind;
+		private final Settings settings;
+		private final OWLClassExpression ce;
+		private final String rootVariable;
+		private final Set<OWLEntity> variableEntities;
+		// COUNT query or the need for an outer triple pattern, depending on the kind
+		private final boolean flag;
+
+		private final int hashCode;
+
+		ConversionKey(Kind kind, Settings settings, OWLClassExpression ce, String rootVariable,
+					  Set<? extends OWLEntity> variableEntities, boolean flag) {
+			this.kind = kind;
+			this.settings = settings;
+			this.ce = ce;
+			this.rootVariable = rootVariable;
+			this.variableEntities = ImmutableSet.copyOf(variableEntities);
+			this.flag = flag;
+			this.hashCode = Objects.hash(kind, settings, ce, rootVariable, this.variableEntities, flag);
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if(this == obj) {
+				return true;
+			}
+			if(!(obj instanceof ConversionKey)) {
+				return false;
+			}
+			ConversionKey other = (ConversionKey) obj;
+			return hashCode == other.hashCode
+					&& kind == other.kind
+					&& flag == other.flag
+					&& rootVariable.equals(other.rootVariable)
+					&& settings.equals(other.settings)
+					&& variableEntities.equals(other.variableEntities)
+					&& ce.equals(other.ce);
+		}
+
+		@Override
+		public int hashCode() {
+			return hashCode;
+		}
+	}
+}
@@ -0,0 +1,290 @@
+/*
+ * #%L
+ * owl2sparql-core
+ * %%
+ * Copyright (C) 2015 AKSW
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package org.aksw.owl2sparql;
+
+import com.hp.hpl.jena.graph.Node;
+import com.hp.hpl.jena.query.Query;
+import com.hp.hpl.jena.sparql.core.TriplePath;
+import com.hp.hpl.jena.sparql.core.Var;
+import com.hp.hpl.jena.sparql.engine.binding.Binding;
+import com.hp.hpl.jena.sparql.engine.binding.BindingFactory;
+import com.hp.hpl.jena.sparql.syntax.*;
+import com.hp.hpl.jena.vocabulary.RDF;
+import org.aksw.owl2sparql.selectivity.SelectivityEstimator;
+import org.aksw.owl2sparql.util.NodeSubstitution;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Restricts the sub-queries of nested cardinality restrictions, i.e.
+ * <code>SELECT ?s WHERE {...} GROUP BY ?s HAVING(...)</code>, to the
+ * candidates of the enclosing pattern. Without the restriction, the
+ * sub-query counts the successors of all subjects of the property, although
+ * only the subjects bound by the enclosing pattern are joined with it.
+ * <p>
+ * The candidates are taken from the triple patterns and the inline data of
+ * the enclosing group, which bind a superset of the subjects that reach the
+ * sub-query. As the restricted sub-query doesn't depend on the bindings of
+ * the enclosing pattern anymore, it's moved to the front of the group, such
+ * that engines which evaluate a group from left to right, e.g. Jena ARQ,
+ * aggregate it once instead of once per solution of the preceding patterns.
+ * <p>
+ * Only the sub-queries of the top-level group are restricted. Nested groups,
+ * e.g. the branches of a union, and the patterns of sub-queries are usually
+ * evaluated once per solution of the enclosing pattern, where the candidate
+ * pattern would be evaluated again each time.
+ *
+ * @author Lorenz Buehmann
+ * @see org.aksw.owl2sparql.style.CardinalitySubqueryTranslation#OUTER_CANDIDATES
+ */
+final class CardinalityCandidates {
+
+	private CardinalityCandidates() {}
+
+	/**
+	 * @param pattern the pattern
+	 * @param estimator the estimator used to skip triple patterns that don't
+	 *            shrink the aggregation, or <code>null</code> to use all
+	 * @return the pattern with restricted sub-queries, the given pattern
+	 *         itself if there is nothing to restrict
+	 */
+	static ElementGroup restrict(ElementGroup pattern, SelectivityEstimator estimator) {
+		List<Element> candidates = new ArrayList<>();
+		for (Element element : pattern.getElements()) {
+			if(element instanceof ElementPathBlock || element instanceof ElementData) {
+				candidates.add(element);
+			}
+		}
+
+		List<Element> restricted = new ArrayList<>();
+		List<Element> elements = new ArrayList<>();
+		// whether the elements so far are joined, i.e. can be reordered
+		boolean joinsOnly = true;
+		for (Element element : pattern.getElements()) {
+			if(element instanceof ElementSubQuery) {
+				List<Element> restriction = restriction(((ElementSubQuery) element).getQuery(), candidates, estimator);
+				if(!restriction.isEmpty() && joinsOnly) {
+					restricted.add(restrict((ElementSubQuery) element, restriction));
+					continue;
+				}
+			} else {
+				joinsOnly &= element instanceof ElementPathBlock || element instanceof ElementData
+						|| element instanceof ElementFilter || element instanceof ElementGroup
+						|| element instanceof ElementUnion;
+			}
+			elements.add(element);
+		}
+		if(restricted.isEmpty()) {
+			return pattern;
+		}
+
+		// the elements are copied, as they might be shared with fragments of an incremental conversion
+		ElementGroup result = new ElementGroup();
+		restricted.forEach(result::addElement);
+		elements.forEach(result::addElement);
+		return result;
+	}
+
+	/**
+	 * @param restriction the elements that restrict the grouping variable
+	 */
+	private static Element restrict(ElementSubQuery element, List<Element> restriction) {
+		Query query = element.getQuery();
+		ElementGroup pattern = new ElementGroup();
+		restriction.forEach(pattern::addElement);
+		((ElementGroup) query.getQueryPattern()).getElements().forEach(pattern::addElement);
+		Query copy = NodeSubstitution.substitute(query, Collections.<Var, Node>emptyMap());
+		copy.setQueryPattern(pattern);
+		return new ElementSubQuery(copy);
+	}
+
+	/**
+	 * @return the single projection and grouping variable of a sub-query
+	 *         created for a cardinality restriction, otherwise
+	 *         <code>null</code>
+	 */
+	private static Var groupedVariable(Query query) {
+		if(!query.isSelectType() || query.isDistinct() || query.isReduced() || query.isQueryResultStar()
+				|| query.getProjectVars().size() != 1 || !query.getProject().getExprs().isEmpty()
+				|| query.getGroupBy().getVars().size() != 1 || !query.getGroupBy().getExprs().isEmpty()
+				|| !query.hasHaving() || query.hasOrderBy() || query.hasLimit() || query.hasOffset() || query.hasValues()) {
+			return null;
+		}
+		Var var = query.getProjectVars().get(0);
+		return var.equals(query.getGroupBy().getVars().get(0)) ? var : null;
+	}
+
+	/**
+	 * @return the inline data of the candidates if there is any, otherwise a
+	 *         <code>SELECT DISTINCT</code> sub-query over the triple patterns
+	 *         that bind the candidates, empty if the query is not the
+	 *         sub-query of a cardinality restriction
+	 */
+	private static List<Element> restriction(Query query, List<Element> candidates, SelectivityEstimator estimator) {
+		Var subject = groupedVariable(query);
+		if(subject == null || !(query.getQueryPattern() instanceof ElementGroup)) {
+			return Collections.emptyList();
+		}
+		ElementGroup pattern = (ElementGroup) query.getQueryPattern();
+
+		List<Element> values = new ArrayList<>();
+		for (Element candidate : candidates) {
+			if(candidate instanceof ElementData && ((ElementData) candidate).getVars().contains(subject)) {
+				ElementData data = values((ElementData) candidate, subject);
+				if(data != null) {
+					values.add(data);
+				}
+			}
+		}
+		if(!values.isEmpty()) {
+			return values;
+		}
+
+		long counted = estimator != null ? distinctValues(subject, pattern.getElements(), estimator) : Long.MAX_VALUE;
+		Set<Var> restrictedVariables = restrictedVariables(candidates);
+		ElementPathBlock block = new ElementPathBlock();
+		for (Element candidate : candidates) {
+			if(candidate instanceof ElementPathBlock) {
+				for (TriplePath path : ((ElementPathBlock) candidate).getPattern()) {
+					// generic triple patterns don't restrict anything
+					if(path.getPredicate() != null && path.getPredicate().isVariable()) {
+						continue;
+					}
+					if(binds(path, subject)
+							&& (estimator == null
+								|| distinctValues(path, subject, estimator) < counted
+								|| restrictedVariables.contains(other(path, subject)))) {
+						block.addTriplePath(path);
+					}
+				}
+			}
+		}
+		if(block.isEmpty()) {
+			return Collections.emptyList();
+		}
+
+		Query candidateQuery = new Query();
+		candidateQuery.setQuerySelectType();
+		candidateQuery.setDistinct(true);
+		candidateQuery.addResultVar(subject);
+		ElementGroup candidatePattern = new ElementGroup();
+		// the inline data of the other ends of the triple patterns
+		Set<Node> nodes = new HashSet<>();
+		for (TriplePath path : block.getPattern()) {
+			nodes.add(other(path, subject));
+		}
+		for (Element candidate : candidates) {
+			if(candidate instanceof ElementData && !Collections.disjoint(((ElementData) candidate).getVars(), nodes)) {
+				candidatePattern.addElement(candidate);
+			}
+		}
+		candidatePattern.addElement(block);
+		candidateQuery.setQueryPattern(candidatePattern);
+		return Collections.<Element>singletonList(new ElementSubQuery(candidateQuery));
+	}
+
+	/**
+	 * @return the distinct values of the variable in the inline data, or
+	 *         <code>null</code> if a row leaves it unbound, i.e. doesn't
+	 *         restrict it
+	 */
+	private static ElementData values(ElementData data, Var var) {
+		Set<Node> nodes = new LinkedHashSet<>();
+		for (Binding binding : data.getRows()) {
+			Node node = binding.get(var);
+			if(node == null) {
+				return null;
+			}
+			nodes.add(node);
+		}
+		ElementData values = new ElementData();
+		values.add(var);
+		for (Node node : nodes) {
+			values.add(BindingFactory.binding(var, node));
+		}
+		return values;
+	}
+
+	private static boolean binds(TriplePath path, Var var) {
+		return var.equals(path.getSubject()) || var.equals(path.getObject());
+	}
+
+	/**
+	 * @return the other end of the triple pattern that binds the variable
+	 */
+	private static Node other(TriplePath path, Var var) {
+		return var.equals(path.getSubject()) ? path.getObject() : path.getSubject();
+	}
+
+	/**
+	 * @return the variables of the inline data
+	 */
+	private static Set<Var> restrictedVariables(List<Element> candidates) {
+		Set<Var> vars = new HashSet<>();
+		for (Element candidate : candidates) {
+			if(candidate instanceof ElementData) {
+				vars.addAll(((ElementData) candidate).getVars());
+			}
+		}
+		return vars;
+	}
+
+	/**
+	 * @return the estimated number of distinct values of the variable in the
+	 *         triples blocks, i.e. the minimum over the triple patterns
+	 *         binding it
+	 */
+	private static long distinctValues(Var var, List<Element> elements, SelectivityEstimator estimator) {
+		long count = Long.MAX_VALUE;
+		for (Element element : elements) {
+			if(element instanceof ElementPathBlock) {
+				for (TriplePath path : ((ElementPathBlock) element).getPattern()) {
+					if(binds(path, var)) {
+						count = Math.min(count, distinctValues(path, var, estimator));
+					}
+				}
+			}
+		}
+		return count;
+	}
+
+	private static long distinctValues(TriplePath path, Var var, SelectivityEstimator estimator) {
+		Node predicate = path.getPredicate();
+		Node object = path.getObject();
+		if(!path.isTriple()) {
+			// the converter uses rdf:type/rdfs:subClassOf* and the sequence paths of universal restrictions
+			return var.equals(path.getSubject()) && object.isConcrete()
+					? estimator.getInstanceCount(object)
+					: estimator.getIndividualCount();
+		} else if(!predicate.isConcrete()) {
+			return estimator.getIndividualCount();
+		} else if(predicate.equals(RDF.type.asNode()) && object.isConcrete()) {
+			return estimator.getInstanceCount(object);
+		}
+		return var.equals(path.getSubject())
+				? estimator.getSubjectCount(predicate)
+				: estimator.getObjectCount(predicate);
+	}
+}
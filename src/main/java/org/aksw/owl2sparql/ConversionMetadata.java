@@ -0,0 +1,107 @@
+/*
+ * #%L
+ * owl2sparql-core
+ * %%
+ * Copyright (C) 2015 AKSW
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package org.aksw.owl2sparql;
+
+import org.aksw.owl2sparql.style.AllQuantorTranslation;
+import org.semanticweb.owlapi.model.OWLClassExpression;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Information about a single conversion of a class expression that is not
+ * part of the SPARQL query itself, e.g. the decisions made by adaptive
+ * translation styles.
+ *
+ * @author Lorenz Buehmann
+ */
+public class ConversionMetadata {
+
+	static final ConversionMetadata EMPTY = new ConversionMetadata(Collections.emptyList(), false, null, Collections.emptySet());
+
+	private final Map<OWLClassExpression, AllQuantorTranslation> allQuantorTranslations;
+	private final boolean distinct;
+	private final String distinctReason;
+	private final Set<QueryOptimizer.Rewrite> rewrites;
+
+	ConversionMetadata(Iterable<Map.Entry<OWLClassExpression, AllQuantorTranslation>> allQuantorTranslations,
+					   boolean distinct, String distinctReason, Set<QueryOptimizer.Rewrite> rewrites) {
+		Map<OWLClassExpression, AllQuantorTranslation> map = new LinkedHashMap<>();
+		for (Map.Entry<OWLClassExpression, AllQuantorTranslation> entry : allQuantorTranslations) {
+			map.put(entry.getKey(), entry.getValue());
+		}
+		this.allQuantorTranslations = Collections.unmodifiableMap(map);
+		this.distinct = distinct;
+		this.distinctReason = distinctReason;
+		this.rewrites = Collections.unmodifiableSet(rewrites);
+	}
+
+	/**
+	 * Returns the encoding used for each universal restriction of the
+	 * converted class expression, in the order of conversion. Restrictions
+	 * with a trivial filler, i.e. <code>owl:Thing</code>, are not contained.
+	 *
+	 * @return the encoding of each universal restriction
+	 * @see AllQuantorTranslation#ADAPTIVE
+	 */
+	public Map<OWLClassExpression, AllQuantorTranslation> getAllQuantorTranslations() {
+		return allQuantorTranslations;
+	}
+
+	/**
+	 * Returns whether the query uses DISTINCT, respectively COUNT(DISTINCT)
+	 * for count queries. DISTINCT is omitted if it's disabled, or if the
+	 * query can't return the same individual twice, e.g. for an atomic class
+	 * or if the query is grouped by the projection variable anyway.
+	 *
+	 * @return whether the query uses DISTINCT, <code>false</code> if no query
+	 *         has been created by the conversion
+	 * @see #getDistinctReason()
+	 */
+	public boolean isDistinct() {
+		return distinct;
+	}
+
+	/**
+	 * @return why DISTINCT has been kept or omitted, or <code>null</code> if
+	 *         no query has been created by the conversion
+	 */
+	public String getDistinctReason() {
+		return distinctReason;
+	}
+
+	/**
+	 * @return the rewrites of the query optimizer that changed the query,
+	 *         empty if no optimizer is set or the query was already optimal
+	 * @see OWLClassExpressionToSPARQLConverter#setQueryOptimizer(QueryOptimizer)
+	 */
+	public Set<QueryOptimizer.Rewrite> getRewrites() {
+		return rewrites;
+	}
+
+	@Override
+	public String toString() {
+		return "allQuantorTranslations=" + allQuantorTranslations + ", distinct=" + distinct
+				+ (distinctReason != null ? " (" + distinctReason + ")" : "")
+				+ (!rewrites.isEmpty() ? ", rewrites=" + rewrites : "");
+	}
+}
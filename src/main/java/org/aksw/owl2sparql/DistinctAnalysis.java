@@ -0,0 +1,212 @@
+/*
+ * #%L
+ * owl2sparql-core
+ * %%
+ * Copyright (C) 2015 AKSW
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package org.aksw.owl2sparql;
+
+import com.hp.hpl.jena.graph.Node;
+import com.hp.hpl.jena.graph.NodeFactory;
+import com.hp.hpl.jena.query.Query;
+import com.hp.hpl.jena.sparql.core.TriplePath;
+import com.hp.hpl.jena.sparql.core.Var;
+import com.hp.hpl.jena.sparql.syntax.*;
+import org.semanticweb.owlapi.model.*;
+import org.semanticweb.owlapi.model.parameters.Imports;
+import org.semanticweb.owlapi.reasoner.OWLReasoner;
+
+import java.util.*;
+
+/**
+ * Decides whether the graph pattern of a generated query can return the same
+ * bindings of the projection variables more than once, i.e. whether DISTINCT
+ * is needed at all.
+ * <p>
+ * The solutions of a basic graph pattern are unique if all of its variables
+ * are determined by the projection variables. A variable is determined if it
+ * is the object of a functional property, or the subject of an inverse
+ * functional property, whose other end is determined. Filters, sub-queries
+ * grouped by determined variables and inline data with distinct rows don't
+ * add solutions, just as MINUS, whereas unions and property paths can.
+ *
+ * @author Lorenz Buehmann
+ */
+final class DistinctAnalysis {
+
+	static final DistinctAnalysis EMPTY = new DistinctAnalysis(Collections.<Node>emptySet(), Collections.<Node>emptySet());
+
+	private final Set<Node> functionalProperties;
+	private final Set<Node> inverseFunctionalProperties;
+
+	private DistinctAnalysis(Set<Node> functionalProperties, Set<Node> inverseFunctionalProperties) {
+		this.functionalProperties = functionalProperties;
+		this.inverseFunctionalProperties = inverseFunctionalProperties;
+	}
+
+	/**
+	 * Takes the functional and inverse functional properties from the
+	 * ontology of the reasoner, including its imports.
+	 *
+	 * @param reasoner the reasoner, or <code>null</code>
+	 * @return the analysis
+	 */
+	static DistinctAnalysis create(OWLReasoner reasoner) {
+		if(reasoner == null) {
+			return EMPTY;
+		}
+		OWLOntology ontology = reasoner.getRootOntology();
+		Set<Node> functionalProperties = new HashSet<>();
+		Set<Node> inverseFunctionalProperties = new HashSet<>();
+		for (OWLFunctionalObjectPropertyAxiom axiom : ontology.getAxioms(AxiomType.FUNCTIONAL_OBJECT_PROPERTY, Imports.INCLUDED)) {
+			addProperty(axiom.getProperty(), functionalProperties, inverseFunctionalProperties);
+		}
+		for (OWLInverseFunctionalObjectPropertyAxiom axiom : ontology.getAxioms(AxiomType.INVERSE_FUNCTIONAL_OBJECT_PROPERTY, Imports.INCLUDED)) {
+			addProperty(axiom.getProperty(), inverseFunctionalProperties, functionalProperties);
+		}
+		for (OWLFunctionalDataPropertyAxiom axiom : ontology.getAxioms(AxiomType.FUNCTIONAL_DATA_PROPERTY, Imports.INCLUDED)) {
+			functionalProperties.add(NodeFactory.createURI(axiom.getProperty().asOWLDataProperty().toStringID()));
+		}
+		return new DistinctAnalysis(functionalProperties, inverseFunctionalProperties);
+	}
+
+	private static void addProperty(OWLObjectPropertyExpression property, Set<Node> properties, Set<Node> inverseProperties) {
+		Node node = NodeFactory.createURI(property.getNamedProperty().toStringID());
+		// the inverse of a functional property is inverse functional and vice versa
+		(property.isAnonymous() ? inverseProperties : properties).add(node);
+	}
+
+	/**
+	 * @param pattern the graph pattern of the query
+	 * @param projectionVariables the variables whose bindings have to be unique
+	 * @return <code>null</code> if the pattern can't return the same bindings
+	 *         twice, otherwise the reason why it can
+	 */
+	String duplicates(Element pattern, Collection<Var> projectionVariables) {
+		Parts parts = new Parts();
+		String reason = parts.collect(pattern);
+		if(reason != null) {
+			return reason;
+		}
+
+		// compute the variables determined by the projection variables
+		Set<Var> determined = new HashSet<>(projectionVariables);
+		boolean changed = true;
+		while(changed) {
+			changed = false;
+			for (TriplePath path : parts.paths) {
+				Node s = path.getSubject();
+				Node p = path.getPredicate();
+				Node o = path.getObject();
+				if(o.isVariable() && isDetermined(s, determined) && functionalProperties.contains(p)) {
+					changed |= determined.add((Var) o);
+				}
+				if(s.isVariable() && isDetermined(o, determined) && inverseFunctionalProperties.contains(p)) {
+					changed |= determined.add((Var) s);
+				}
+			}
+			for (Query subQuery : parts.subQueries) {
+				if(determined.containsAll(subQuery.getGroupBy().getVars())) {
+					changed |= determined.addAll(subQuery.getProjectVars());
+				}
+			}
+		}
+
+		for (TriplePath path : parts.paths) {
+			for (Node node : Arrays.asList(path.getSubject(), path.getPredicate(), path.getObject())) {
+				if(!isDetermined(node, determined)) {
+					return "the variable " + node + " in " + path + " is not determined by the projection variables";
+				}
+			}
+		}
+		for (Query subQuery : parts.subQueries) {
+			if(!determined.containsAll(subQuery.getGroupBy().getVars())) {
+				return "a sub-query is not grouped by variables determined by the projection variables";
+			}
+		}
+		for (Var var : parts.dataVariables) {
+			if(!determined.contains(var)) {
+				return "the variable " + var + " of the inline data is not determined by the projection variables";
+			}
+		}
+		return null;
+	}
+
+	private static boolean isDetermined(Node node, Set<Var> determined) {
+		return !node.isVariable() && !node.isBlank() || determined.contains(node);
+	}
+
+	/**
+	 * The parts of a graph pattern that decide whether it returns duplicates.
+	 */
+	private static class Parts {
+
+		private final List<TriplePath> paths = new ArrayList<>();
+		// sub-queries, each returns one solution per binding of its grouping variables
+		private final List<Query> subQueries = new ArrayList<>();
+		// the variables of inline data with distinct rows
+		private final List<Var> dataVariables = new ArrayList<>();
+
+		/**
+		 * Collects the parts of the pattern.
+		 *
+		 * @return the reason why the pattern can return duplicates regardless
+		 *         of the variables, or <code>null</code>
+		 */
+		private String collect(Element element) {
+			if(element instanceof ElementGroup) {
+				for (Element child : ((ElementGroup) element).getElements()) {
+					String reason = collect(child);
+					if(reason != null) {
+						return reason;
+					}
+				}
+				return null;
+			} else if(element instanceof ElementPathBlock) {
+				for (TriplePath path : ((ElementPathBlock) element).getPattern().getList()) {
+					if(!path.isTriple()) {
+						return "the property path " + path.getPath() + " can match several times";
+					}
+					paths.add(path);
+				}
+				return null;
+			} else if(element instanceof ElementTriplesBlock) {
+				((ElementTriplesBlock) element).getPattern().getList().forEach(triple -> paths.add(new TriplePath(triple)));
+				return null;
+			} else if(element instanceof ElementFilter || element instanceof ElementMinus) {
+				// filters, including FILTER (NOT) EXISTS, and MINUS only remove solutions
+				return null;
+			} else if(element instanceof ElementSubQuery) {
+				Query subQuery = ((ElementSubQuery) element).getQuery();
+				if(!subQuery.hasGroupBy()) {
+					return "a sub-query is not grouped";
+				}
+				subQueries.add(subQuery);
+				return null;
+			} else if(element instanceof ElementData) {
+				ElementData data = (ElementData) element;
+				if(data.getVars().size() != 1 || new HashSet<>(data.getRows()).size() != data.getRows().size()) {
+					return "the inline data can bind the variables several times";
+				}
+				dataVariables.addAll(data.getVars());
+				return null;
+			} else if(element instanceof ElementUnion) {
+				return "an individual can match several branches of a UNION";
+			}
+			return "the pattern contains " + element.getClass().getSimpleName();
+		}
+	}
+}
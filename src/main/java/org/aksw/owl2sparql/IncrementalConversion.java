@@ -0,0 +1,106 @@
+/*
+ * #%L
+ * owl2sparql-core
+ * %%
+ * Copyright (C) 2015 AKSW
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package org.aksw.owl2sparql;
+
+import com.hp.hpl.jena.query.Query;
+import org.aksw.owl2sparql.OWLClassExpressionToSPARQLConverter.Fragment;
+import org.aksw.owl2sparql.OWLClassExpressionToSPARQLConverter.FragmentKey;
+import org.aksw.owl2sparql.OWLClassExpressionToSPARQLConverter.Settings;
+import org.semanticweb.owlapi.model.OWLClassExpression;
+
+import java.util.Map;
+
+/**
+ * The conversion of a class expression together with the graph pattern
+ * fragments of its sub-expressions. It's used as handle to convert
+ * refinements of the class expression by
+ * {@link OWLClassExpressionToSPARQLConverter#refine(IncrementalConversion, OWLClassExpression, OWLClassExpression)},
+ * which reuses the fragments of all sub-expressions that have not been
+ * replaced.
+ *
+ * @author Lorenz Buehmann
+ */
+public class IncrementalConversion {
+
+	private final OWLClassExpression ce;
+	private final String rootVariable;
+	private final Query query;
+
+	final Settings settings;
+	final Map<FragmentKey, Fragment> fragments;
+	private final int reusedFragments;
+	private final ConversionMetadata metadata;
+
+	IncrementalConversion(OWLClassExpression ce, String rootVariable, Query query, Settings settings,
+						  Map<FragmentKey, Fragment> fragments, int reusedFragments, ConversionMetadata metadata) {
+		this.ce = ce;
+		this.rootVariable = rootVariable;
+		this.query = query;
+		this.settings = settings;
+		this.fragments = fragments;
+		this.reusedFragments = reusedFragments;
+		this.metadata = metadata;
+	}
+
+	/**
+	 * @return the converted class expression
+	 */
+	public OWLClassExpression getClassExpression() {
+		return ce;
+	}
+
+	/**
+	 * @return the name of the projection variable
+	 */
+	public String getRootVariable() {
+		return rootVariable;
+	}
+
+	/**
+	 * Returns the SPARQL query. Parts of the query are shared with the
+	 * fragments reused by refinements, thus, it must not be modified.
+	 *
+	 * @return the SPARQL query
+	 */
+	public Query getQuery() {
+		return query;
+	}
+
+	/**
+	 * @return the number of sub-expressions whose graph pattern has been
+	 *         taken from the parent conversion
+	 */
+	public int getReusedFragmentCount() {
+		return reusedFragments;
+	}
+
+	/**
+	 * @return the metadata of the conversion, including the parts taken from
+	 *         the parent conversion
+	 */
+	public ConversionMetadata getMetadata() {
+		return metadata;
+	}
+
+	@Override
+	public String toString() {
+		return ce + "\n" + query;
+	}
+}
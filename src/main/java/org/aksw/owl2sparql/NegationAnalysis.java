@@ -0,0 +1,174 @@
+/*
+ * #%L
+ * owl2sparql-core
+ * %%
+ * Copyright (C) 2015 AKSW
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package org.aksw.owl2sparql;
+
+import com.hp.hpl.jena.graph.Node;
+import com.hp.hpl.jena.query.Query;
+import com.hp.hpl.jena.sparql.core.TriplePath;
+import com.hp.hpl.jena.sparql.core.Var;
+import com.hp.hpl.jena.sparql.expr.Expr;
+import com.hp.hpl.jena.sparql.expr.ExprFunction;
+import com.hp.hpl.jena.sparql.expr.ExprFunctionOp;
+import com.hp.hpl.jena.sparql.syntax.*;
+
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Decides whether a negated graph pattern can be evaluated independently of
+ * the enclosing pattern, i.e. whether <code>MINUS</code> or
+ * <code>OPTIONAL</code> with <code>!BOUND</code> return the same solutions as
+ * <code>FILTER NOT EXISTS</code>.
+ * <p>
+ * This holds if the negated pattern shares at least one variable with the
+ * enclosing pattern, and if each shared variable is bound by triple
+ * patterns of both sides. A shared variable that only occurs in a nested
+ * filter of the negated pattern, or that is unbound in the enclosing pattern,
+ * is correlated by <code>FILTER NOT EXISTS</code> only.
+ *
+ * @author Lorenz Buehmann
+ */
+final class NegationAnalysis {
+
+	private NegationAnalysis() {}
+
+	/**
+	 * @param negatedPattern the negated pattern
+	 * @param outerVariables the variables that might be used outside of the
+	 *            negated pattern
+	 * @param boundVariables the variables bound in the enclosing pattern
+	 *            before the negation
+	 * @return the variables the negated pattern shares with the enclosing
+	 *         pattern, or <code>null</code> if it can't be evaluated
+	 *         independently
+	 */
+	static Set<Var> sharedVariables(ElementGroup negatedPattern, Set<Var> outerVariables, Set<Var> boundVariables) {
+		Set<Var> mentioned = new HashSet<>();
+		if(!mentionedVariables(negatedPattern, mentioned)) {
+			return null;
+		}
+		mentioned.retainAll(outerVariables);
+		if(mentioned.isEmpty()
+				|| !boundVariables.containsAll(mentioned)
+				|| !boundVariables(negatedPattern.getElements()).containsAll(mentioned)) {
+			return null;
+		}
+		return mentioned;
+	}
+
+	/**
+	 * @return the variables of the triple patterns and the inline data of the
+	 *         given elements of a group in the order of their occurrence, i.e.
+	 *         the variables that are bound in each solution of the group
+	 */
+	static Set<Var> boundVariables(List<Element> elements) {
+		Set<Var> vars = new LinkedHashSet<>();
+		for (Element element : elements) {
+			if(element instanceof ElementPathBlock) {
+				for (TriplePath path : ((ElementPathBlock) element).getPattern()) {
+					addVariables(vars, path.getSubject(), path.getPredicate(), path.getObject());
+				}
+			} else if(element instanceof ElementData) {
+				vars.addAll(((ElementData) element).getVars());
+			}
+		}
+		return vars;
+	}
+
+	private static void addVariables(Collection<Var> vars, Node... nodes) {
+		for (Node node : nodes) {
+			if(node != null && node.isVariable()) {
+				vars.add(Var.alloc(node));
+			}
+		}
+	}
+
+	/**
+	 * Collects the variables that occur anywhere in the element, including
+	 * nested filters and sub-queries.
+	 *
+	 * @return <code>false</code> if the element contains unsupported elements
+	 */
+	static boolean mentionedVariables(Element element, Set<Var> vars) {
+		if(element instanceof ElementGroup) {
+			for (Element child : ((ElementGroup) element).getElements()) {
+				if(!mentionedVariables(child, vars)) {
+					return false;
+				}
+			}
+			return true;
+		} else if(element instanceof ElementUnion) {
+			for (Element child : ((ElementUnion) element).getElements()) {
+				if(!mentionedVariables(child, vars)) {
+					return false;
+				}
+			}
+			return true;
+		} else if(element instanceof ElementPathBlock) {
+			for (TriplePath path : ((ElementPathBlock) element).getPattern()) {
+				addVariables(vars, path.getSubject(), path.getPredicate(), path.getObject());
+			}
+			return true;
+		} else if(element instanceof ElementData) {
+			vars.addAll(((ElementData) element).getVars());
+			return true;
+		} else if(element instanceof ElementFilter) {
+			return mentionedVariables(((ElementFilter) element).getExpr(), vars);
+		} else if(element instanceof ElementMinus) {
+			return mentionedVariables(((ElementMinus) element).getMinusElement(), vars);
+		} else if(element instanceof ElementOptional) {
+			return mentionedVariables(((ElementOptional) element).getOptionalElement(), vars);
+		} else if(element instanceof ElementNamedGraph) {
+			addVariables(vars, ((ElementNamedGraph) element).getGraphNameNode());
+			return mentionedVariables(((ElementNamedGraph) element).getElement(), vars);
+		} else if(element instanceof ElementSubQuery) {
+			Query query = ((ElementSubQuery) element).getQuery();
+			vars.addAll(query.getProjectVars());
+			if(query.hasHaving()) {
+				for (Expr expr : query.getHavingExprs()) {
+					if(!mentionedVariables(expr, vars)) {
+						return false;
+					}
+				}
+			}
+			return mentionedVariables(query.getQueryPattern(), vars);
+		}
+		return false;
+	}
+
+	private static boolean mentionedVariables(Expr expr, Set<Var> vars) {
+		if(expr.isVariable()) {
+			vars.add(expr.asVar());
+		} else if(expr instanceof ExprFunctionOp) {
+			// (NOT) EXISTS
+			return mentionedVariables(((ExprFunctionOp) expr).getElement(), vars);
+		} else if(expr instanceof ExprFunction) {
+			for (Expr arg : ((ExprFunction) expr).getArgs()) {
+				if(!mentionedVariables(arg, vars)) {
+					return false;
+				}
+			}
+		}
+		return true;
+	}
+}
@@ -20,10 +20,16 @@
 package org.aksw.owl2sparql;
 
 
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Set;
 
+import org.aksw.owl2sparql.style.NegationRendering;
 import org.aksw.owl2sparql.util.VarGenerator;
+import org.semanticweb.owlapi.model.AxiomType;
 import org.semanticweb.owlapi.model.ClassExpressionType;
 import org.semanticweb.owlapi.model.DataRangeType;
 import org.semanticweb.owlapi.model.OWLAnnotationAssertionAxiom;
@@ -77,12 +83,19 @@ import org.semanticweb.owlapi.model.SWRLRule;
 import com.hp.hpl.jena.query.ParameterizedSparqlString;
 import com.hp.hpl.jena.query.Query;
 import com.hp.hpl.jena.query.QueryFactory;
+import com.hp.hpl.jena.query.QueryParseException;
 import com.hp.hpl.jena.query.Syntax;
+import com.hp.hpl.jena.sparql.core.Var;
+import com.hp.hpl.jena.sparql.syntax.Element;
+import com.hp.hpl.jena.sparql.syntax.ElementGroup;
 import org.slf4j.LoggerFactory;
 
 /**
  * A converter from <a href="http://www.w3.org/TR/owl2-syntax/#Axioms">OWL 2
- * axioms</a> to SPARQL queries.
+ * axioms</a> to SPARQL queries. Negated patterns, e.g. of disjointness
+ * axioms, are rendered as configured by
+ * {@link OWLClassExpressionToSPARQLConverter#setNegationRendering(NegationRendering)}
+ * of the class expression converter.
  * 
  * @author Lorenz Buehmann
  *
@@ -96,15 +109,45 @@ public class OWLAxiomToSPARQLConverter implements OWLAxiomVisitor{
 	
 	private boolean useDistinct = true;
 	
-	private OWLClassExpressionToSPARQLConverter expressionConverter;
+	private final OWLClassExpressionToSPARQLConverter expressionConverter;
 	
 	private String sparql;
 	
-	public OWLAxiomToSPARQLConverter() {}
+	public OWLAxiomToSPARQLConverter() {
+		this.expressionConverter = new OWLClassExpressionToSPARQLConverter();
+	}
 	
 	public OWLAxiomToSPARQLConverter(String targetSubjectVariable, String targetObjectVariable) {
+		this(targetSubjectVariable, targetObjectVariable, new OWLClassExpressionToSPARQLConverter());
+	}
+	
+	/**
+	 * @param targetSubjectVariable the name of the subject projection variable
+	 * @param targetObjectVariable the name of the object projection variable
+	 * @param expressionConverter the converter used for the class expressions
+	 *            of the axioms, it can be shared with other axiom converters
+	 */
+	public OWLAxiomToSPARQLConverter(String targetSubjectVariable, String targetObjectVariable,
+									 OWLClassExpressionToSPARQLConverter expressionConverter) {
 		this.subjectVar = targetSubjectVariable;
 		this.objectVar = targetObjectVariable;
+		this.expressionConverter = expressionConverter;
+	}
+	
+	/**
+	 * Checks whether axioms of the given type can be converted into a SPARQL
+	 * query. Not supported are SWRL rules, HasKey axioms, ABox axioms,
+	 * datatype definitions, declarations and annotation axioms.
+	 * 
+	 * @param axiomType the axiom type
+	 * @return whether axioms of the given type are supported
+	 */
+	public static boolean isSupported(AxiomType<?> axiomType) {
+		return axiomType.isLogical()
+				&& !AxiomType.ABoxAxiomTypes.contains(axiomType)
+				&& axiomType != AxiomType.SWRL_RULE
+				&& axiomType != AxiomType.HAS_KEY
+				&& axiomType != AxiomType.DATATYPE_DEFINITION;
 	}
 	
 	/**
@@ -210,7 +253,6 @@ public class OWLAxiomToSPARQLConverter implements OWLAxiomVisitor{
 	}
 	
 	private String createGroupGraphPattern(OWLAxiom axiom) {
-		expressionConverter = new OWLClassExpressionToSPARQLConverter();
 		axiom.accept(this);
 		return "{" + sparql + "}";
 	}
@@ -218,9 +260,88 @@ public class OWLAxiomToSPARQLConverter implements OWLAxiomVisitor{
 	private String notExists(String pattern){
 		return "FILTER NOT EXISTS{" + pattern + "}";
 	}
-	
-	private String notExists(String targetVar, List<OWLClassExpression> classExpressions, boolean useUnion){
-		String pattern = "";
+
+	/**
+	 * Returns the pattern followed by the negation of each of the negated
+	 * patterns. MINUS or OPTIONAL with !BOUND are used if they are configured
+	 * and return the same solutions as FILTER NOT EXISTS, see
+	 * {@link NegationAnalysis}. A negated pattern that can't be analysed, e.g.
+	 * because it can't be parsed, is negated by FILTER NOT EXISTS.
+	 *
+	 * @param pattern the pattern that binds the variables of the group
+	 * @param negatedPatterns the patterns that must not match
+	 * @return the group graph pattern without enclosing braces
+	 */
+	private String withNegations(String pattern, List<String> negatedPatterns){
+		NegationRendering negationRendering = expressionConverter.settings().negationRendering;
+		ElementGroup positiveElement = negationRendering != NegationRendering.FILTER_NOT_EXISTS ? parse(pattern) : null;
+		List<ElementGroup> negatedElements = new ArrayList<>();
+		for (String negatedPattern : negatedPatterns) {
+			negatedElements.add(positiveElement != null ? parse(negatedPattern) : null);
+		}
+
+		String group = pattern;
+		for (int i = 0; i < negatedPatterns.size(); i++) {
+			String negatedPattern = negatedPatterns.get(i);
+			ElementGroup negatedElement = negatedElements.get(i);
+			Set<Var> outerVariables = negatedElement != null ? outerVariables(positiveElement, negatedElements, i) : null;
+			Set<Var> sharedVariables = outerVariables != null
+					? NegationAnalysis.sharedVariables(negatedElement, outerVariables,
+													   NegationAnalysis.boundVariables(positiveElement.getElements()))
+					: null;
+			if(sharedVariables != null) {
+				if(negationRendering == NegationRendering.MINUS) {
+					group += "MINUS{" + negatedPattern + "}";
+					continue;
+				}
+				// a variable that is only bound if the negated pattern matches
+				Set<Var> localVariables = NegationAnalysis.boundVariables(negatedElement.getElements());
+				localVariables.removeAll(outerVariables);
+				if(!localVariables.isEmpty()) {
+					group += "OPTIONAL{" + negatedPattern + "} FILTER(!BOUND(" + localVariables.iterator().next() + "))";
+					continue;
+				}
+			}
+			group += notExists(negatedPattern);
+		}
+		return group;
+	}
+
+	/**
+	 * @return the variables that might occur outside of the negated pattern
+	 *         with the given index, i.e. the projection variable and the
+	 *         variables of the other patterns of the group, or
+	 *         <code>null</code> if they are unknown
+	 */
+	private Set<Var> outerVariables(ElementGroup positiveElement, List<ElementGroup> negatedElements, int index){
+		Set<Var> vars = new HashSet<>();
+		vars.add(Var.alloc(subjectVar.startsWith("?") ? subjectVar.substring(1) : subjectVar));
+		if(!NegationAnalysis.mentionedVariables(positiveElement, vars)) {
+			return null;
+		}
+		for (int i = 0; i < negatedElements.size(); i++) {
+			ElementGroup negatedElement = negatedElements.get(i);
+			if(i != index && (negatedElement == null || !NegationAnalysis.mentionedVariables(negatedElement, vars))) {
+				return null;
+			}
+		}
+		return vars;
+	}
+
+	/**
+	 * @return the pattern as group, or <code>null</code> if it can't be parsed
+	 */
+	private static ElementGroup parse(String pattern){
+		try {
+			Element element = QueryFactory.createElement("{" + pattern + "}");
+			return element instanceof ElementGroup ? (ElementGroup) element : null;
+		} catch (QueryParseException e) {
+			return null;
+		}
+	}
+
+	private List<String> negatedPatterns(String targetVar, List<OWLClassExpression> classExpressions, boolean useUnion){
+		List<String> patterns = new ArrayList<>();
 		if(useUnion){
 			String unionPattern = "";
 			if(classExpressions.size() > 1){
@@ -232,13 +353,13 @@ public class OWLAxiomToSPARQLConverter implements OWLAxiomVisitor{
 			} else {
 				unionPattern = expressionConverter.asGroupGraphPattern(classExpressions.get(0), targetVar);
 			}
-			pattern = notExists(unionPattern);
+			patterns.add(unionPattern);
 		} else {
 			for (OWLClassExpression ce : classExpressions) {
-				pattern += notExists(expressionConverter.asGroupGraphPattern(ce, targetVar));
+				patterns.add(expressionConverter.asGroupGraphPattern(ce, targetVar));
 			}
 		}
-		return pattern;
+		return patterns;
 	}
 	
 	///////////////////////////////////////////////////////////////////////////
@@ -283,10 +404,8 @@ public class OWLAxiomToSPARQLConverter implements OWLAxiomVisitor{
 		for(int i = 0; i < disjointClasses.size(); i++){
 			sparql += "{";
 			OWLClassExpression ce = disjointClasses.remove(i);
-			sparql += expressionConverter.asGroupGraphPattern(ce, subjectVar);
-			for (OWLClassExpression ce2 : disjointClasses) {
-				sparql += notExists(expressionConverter.asGroupGraphPattern(ce2, subjectVar));
-			}
+			sparql += withNegations(expressionConverter.asGroupGraphPattern(ce, subjectVar),
+									negatedPatterns(subjectVar, disjointClasses, false));
 			disjointClasses.add(i, ce);
 			sparql += "}";
 			if(i < disjointClasses.size()-1){
@@ -306,11 +425,9 @@ public class OWLAxiomToSPARQLConverter implements OWLAxiomVisitor{
 			sparql += "{";
 			OWLClassExpression ce = classExpressions.remove(i);
 			
-			// add triple pattern for class to be
-			sparql += expressionConverter.asGroupGraphPattern(ce, subjectVar);
-			
-			// add NOT EXISTS for classes not to be
-			sparql += notExists(subjectVar, classExpressions, false);
+			// add triple pattern for class to be and NOT EXISTS for classes not to be
+			sparql += withNegations(expressionConverter.asGroupGraphPattern(ce, subjectVar),
+									negatedPatterns(subjectVar, classExpressions, false));
 			
 			classExpressions.add(i, ce);
 			sparql += "}";
@@ -361,20 +478,21 @@ public class OWLAxiomToSPARQLConverter implements OWLAxiomVisitor{
 		for(int i = 0; i < propertyExpressions.size(); i++){
 			sparql += "{";
 			OWLObjectPropertyExpression pe = propertyExpressions.remove(i);
+			String pattern;
 			if(pe.isAnonymous()){
-				sparql += objectVar + "<" + pe.getInverseProperty().asOWLObjectProperty().toStringID() + "> " + subjectVar + " .";
+				pattern = objectVar + "<" + pe.getInverseProperty().asOWLObjectProperty().toStringID() + "> " + subjectVar + " .";
 			} else {
-				sparql += subjectVar + "<" + pe.asOWLObjectProperty().toStringID() + "> " + objectVar + " .";
+				pattern = subjectVar + "<" + pe.asOWLObjectProperty().toStringID() + "> " + objectVar + " .";
 			}
+			List<String> negatedPatterns = new ArrayList<>();
 			for (OWLObjectPropertyExpression pe2 : propertyExpressions) {
-				String pattern;
 				if(pe2.isAnonymous()){
-					pattern = objectVar + "<" + pe2.getInverseProperty().asOWLObjectProperty().toStringID() + "> " + subjectVar + " .";
+					negatedPatterns.add(objectVar + "<" + pe2.getInverseProperty().asOWLObjectProperty().toStringID() + "> " + subjectVar + " .");
 				} else {
-					pattern = subjectVar + "<" + pe2.asOWLObjectProperty().toStringID() + "> " + objectVar + " .";
+					negatedPatterns.add(subjectVar + "<" + pe2.asOWLObjectProperty().toStringID() + "> " + objectVar + " .");
 				}
-				sparql += notExists(pattern);
 			}
+			sparql += withNegations(pattern, negatedPatterns);
 			propertyExpressions.add(i, pe);
 			sparql += "}";
 			if(i < propertyExpressions.size()-1){
@@ -406,11 +524,12 @@ public class OWLAxiomToSPARQLConverter implements OWLAxiomVisitor{
 		for(int i = 0; i < propertyExpressions.size(); i++){
 			sparql += "{";
 			OWLDataPropertyExpression pe = propertyExpressions.remove(i);
-			sparql += subjectVar + "<" + pe.asOWLDataProperty().toStringID() + "> " + objectVar + " .";
+			String pattern = subjectVar + "<" + pe.asOWLDataProperty().toStringID() + "> " + objectVar + " .";
+			List<String> negatedPatterns = new ArrayList<>();
 			for (OWLDataPropertyExpression pe2 : propertyExpressions) {
-				String pattern = subjectVar + "<" + pe2.asOWLDataProperty().toStringID() + "> " + objectVar + " .";
-				sparql += notExists(pattern);
+				negatedPatterns.add(subjectVar + "<" + pe2.asOWLDataProperty().toStringID() + "> " + objectVar + " .");
 			}
+			sparql += withNegations(pattern, negatedPatterns);
 			propertyExpressions.add(i, pe);
 			sparql += "}";
 			if(i < propertyExpressions.size()-1){
@@ -456,9 +575,11 @@ public class OWLAxiomToSPARQLConverter implements OWLAxiomVisitor{
 	@Override
 	public void visit(OWLAsymmetricObjectPropertyAxiom axiom) {
 		String propertyURI = axiom.getProperty().asOWLObjectProperty().toStringID();
-		ParameterizedSparqlString query = new ParameterizedSparqlString("?s ?p ?o . FILTER NOT EXISTS{?o ?p ?s}");
-		query.setIri("p", propertyURI);
-		sparql += query.toString();
+		ParameterizedSparqlString pattern = new ParameterizedSparqlString("?s ?p ?o .");
+		pattern.setIri("p", propertyURI);
+		ParameterizedSparqlString inversePattern = new ParameterizedSparqlString("?o ?p ?s");
+		inversePattern.setIri("p", propertyURI);
+		sparql += withNegations(pattern.toString(), Collections.singletonList(inversePattern.toString()));
 	}
 	
 	@Override
@@ -0,0 +1,241 @@
+/*
+ * #%L
+ * owl2sparql-core
+ * %%
+ * Copyright (C) 2015 AKSW
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package org.aksw.owl2sparql;
+
+import com.hp.hpl.jena.query.Query;
+import com.hp.hpl.jena.query.QuerySolution;
+import com.hp.hpl.jena.query.ResultSet;
+import com.hp.hpl.jena.rdf.model.Literal;
+import com.hp.hpl.jena.sparql.core.Var;
+import com.hp.hpl.jena.sparql.expr.ExprVar;
+import com.hp.hpl.jena.sparql.expr.NodeValue;
+import com.hp.hpl.jena.sparql.expr.aggregate.AggCountVarDistinct;
+import com.hp.hpl.jena.sparql.serializer.FormatterElement;
+import com.hp.hpl.jena.sparql.syntax.*;
+import org.semanticweb.owlapi.model.OWLClassExpression;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Converts a list of OWL class expressions into as few SPARQL queries as
+ * possible that return the number of instances of each class expression,
+ * i.e. many class expressions can be scored in one round trip.
+ * <p>
+ * Each class expression becomes a branch of a UNION that binds the index of
+ * the class expression in the list to the variable <code>?ce</code>. The
+ * query then counts the instances grouped by <code>?ce</code>:
+ * <pre>
+ * SELECT ?ce (COUNT(DISTINCT ?x) AS ?cnt) WHERE {
+ *   { BIND(0 AS ?ce) ... } UNION { BIND(1 AS ?ce) ... } UNION ...
+ * } GROUP BY ?ce
+ * </pre>
+ * If a query would contain more than the maximum number of class expressions,
+ * or exceed the maximum query length, the class expressions are split into
+ * several queries.
+ *
+ * @author Lorenz Buehmann
+ *
+ */
+public class OWLClassExpressionBatchConverter {
+
+	public static final int DEFAULT_MAX_EXPRESSIONS_PER_QUERY = 100;
+
+	private static final Var INDEX_VAR = Var.alloc("ce");
+	private static final Var COUNT_VAR = Var.alloc("cnt");
+
+	private final OWLClassExpressionToSPARQLConverter converter;
+
+	private int maxExpressionsPerQuery = DEFAULT_MAX_EXPRESSIONS_PER_QUERY;
+
+	private int maxQueryLength = -1;
+
+	public OWLClassExpressionBatchConverter() {
+		this(new OWLClassExpressionToSPARQLConverter());
+	}
+
+	/**
+	 * @param converter the converter used for the single class expressions
+	 */
+	public OWLClassExpressionBatchConverter(OWLClassExpressionToSPARQLConverter converter) {
+		this.converter = converter;
+	}
+
+	/**
+	 * The maximum number of class expressions that are fused into a single
+	 * query.
+	 *
+	 * @param maxExpressionsPerQuery the maximum number of class expressions per query
+	 */
+	public void setMaxExpressionsPerQuery(int maxExpressionsPerQuery) {
+		if(maxExpressionsPerQuery < 1) {
+			throw new IllegalArgumentException("At least one class expression per query is required.");
+		}
+		this.maxExpressionsPerQuery = maxExpressionsPerQuery;
+	}
+
+	/**
+	 * The maximum length of the serialized query pattern, e.g. to stay below
+	 * the URL length limit of SPARQL endpoints accessed via HTTP GET. A single
+	 * class expression that exceeds the limit gets its own query.
+	 *
+	 * @param maxQueryLength the maximum number of characters, a negative value
+	 *            means no limit
+	 */
+	public void setMaxQueryLength(int maxQueryLength) {
+		this.maxQueryLength = maxQueryLength;
+	}
+
+	/**
+	 * Converts the class expressions into count queries.
+	 *
+	 * @param classExpressions the class expressions
+	 * @param rootVariable the name of the variable for the instances
+	 * @return the queries, each one covering a consecutive part of the class expressions
+	 */
+	public List<BatchCountQuery> asCountQueries(List<? extends OWLClassExpression> classExpressions, String rootVariable) {
+		Var rootVar = Var.alloc(rootVariable.startsWith("?") ? rootVariable.substring(1) : rootVariable);
+
+		List<BatchCountQuery> queries = new ArrayList<>();
+
+		ElementUnion union = new ElementUnion();
+		int offset = 0;
+		int length = 0;
+		for (int i = 0; i < classExpressions.size(); i++) {
+			ElementGroup branch = branch(classExpressions.get(i), rootVariable, i);
+			int branchLength = maxQueryLength >= 0 ? FormatterElement.asString(branch).length() : 0;
+
+			int size = i - offset;
+			if(size > 0 && (size == maxExpressionsPerQuery || (maxQueryLength >= 0 && length + branchLength > maxQueryLength))) {
+				queries.add(new BatchCountQuery(countQuery(union, rootVar), classExpressions.subList(offset, i), offset));
+				union = new ElementUnion();
+				offset = i;
+				length = 0;
+			}
+			union.addElement(branch);
+			length += branchLength;
+		}
+		if(offset < classExpressions.size()) {
+			queries.add(new BatchCountQuery(countQuery(union, rootVar), classExpressions.subList(offset, classExpressions.size()), offset));
+		}
+
+		return queries;
+	}
+
+	/**
+	 * Returns { BIND(<code>index</code> AS ?ce) <code>pattern</code> }, a class
+	 * expression that needs grouping of its own, e.g. a top-level cardinality
+	 * restriction, is embedded as sub-query.
+	 */
+	private ElementGroup branch(OWLClassExpression ce, String rootVariable, int index) {
+		Query query = converter.asQuery(ce, rootVariable);
+
+		ElementGroup branch = new ElementGroup();
+		branch.addElement(new ElementBind(INDEX_VAR, NodeValue.makeInteger(index)));
+		if(query.hasGroupBy()) {
+			branch.addElement(new ElementSubQuery(query));
+		} else {
+			for (Element element : ((ElementGroup) query.getQueryPattern()).getElements()) {
+				branch.addElement(element);
+			}
+		}
+		return branch;
+	}
+
+	private static Query countQuery(ElementUnion union, Var rootVar) {
+		ElementGroup pattern = new ElementGroup();
+		pattern.addElement(union.getElements().size() == 1 ? union.getElements().get(0) : union);
+
+		Query query = new Query();
+		query.setQuerySelectType();
+		query.setQueryPattern(pattern);
+		query.addResultVar(INDEX_VAR);
+		query.addResultVar(COUNT_VAR, query.allocAggregate(new AggCountVarDistinct(new ExprVar(rootVar))));
+		query.addGroupBy(INDEX_VAR);
+		return query;
+	}
+
+	/**
+	 * A count query for a consecutive part of the class expressions.
+	 */
+	public static class BatchCountQuery {
+
+		private final Query query;
+		private final List<OWLClassExpression> classExpressions;
+		private final int offset;
+
+		BatchCountQuery(Query query, List<? extends OWLClassExpression> classExpressions, int offset) {
+			this.query = query;
+			this.classExpressions = Collections.unmodifiableList(new ArrayList<>(classExpressions));
+			this.offset = offset;
+		}
+
+		/**
+		 * @return the SPARQL query
+		 */
+		public Query getQuery() {
+			return query;
+		}
+
+		/**
+		 * @return the class expressions covered by the query
+		 */
+		public List<OWLClassExpression> getClassExpressions() {
+			return classExpressions;
+		}
+
+		/**
+		 * @return the index of the first class expression of the query in the
+		 *         list of all class expressions
+		 */
+		public int getOffset() {
+			return offset;
+		}
+
+		/**
+		 * Reads the counts from the result of the query. Class expressions
+		 * without any instance do not occur in the result, their count is 0.
+		 *
+		 * @param rs the result of the query
+		 * @return the number of instances of each class expression, in the
+		 *         order of the class expressions
+		 */
+		public Map<OWLClassExpression, Long> getCounts(ResultSet rs) {
+			long[] counts = new long[classExpressions.size()];
+			while(rs.hasNext()) {
+				QuerySolution qs = rs.next();
+				Literal index = qs.getLiteral(INDEX_VAR.getVarName());
+				Literal count = qs.getLiteral(COUNT_VAR.getVarName());
+				if(index != null && count != null) {
+					counts[index.getInt() - offset] = count.getLong();
+				}
+			}
+
+			Map<OWLClassExpression, Long> result = new LinkedHashMap<>();
+			for (int i = 0; i < counts.length; i++) {
+				result.put(classExpressions.get(i), counts[i]);
+			}
+			return result;
+		}
+	}
+}
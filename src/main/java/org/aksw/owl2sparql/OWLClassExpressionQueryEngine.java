@@ -0,0 +1,318 @@
+/*
+ * #%L
+ * owl2sparql-core
+ * %%
+ * Copyright (C) 2015 AKSW
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package org.aksw.owl2sparql;
+
+import com.hp.hpl.jena.graph.NodeFactory;
+import com.hp.hpl.jena.query.*;
+import com.hp.hpl.jena.rdf.model.Model;
+import com.hp.hpl.jena.rdf.model.RDFNode;
+import com.hp.hpl.jena.sparql.core.Var;
+import com.hp.hpl.jena.sparql.engine.binding.BindingFactory;
+import com.hp.hpl.jena.sparql.syntax.Element;
+import com.hp.hpl.jena.sparql.syntax.ElementData;
+import com.hp.hpl.jena.sparql.syntax.ElementGroup;
+import org.aksw.owl2sparql.OWLClassExpressionBatchConverter.BatchCountQuery;
+import org.semanticweb.owlapi.model.IRI;
+import org.semanticweb.owlapi.model.OWLClassExpression;
+import org.semanticweb.owlapi.model.OWLDataFactory;
+import org.semanticweb.owlapi.model.OWLNamedIndividual;
+import uk.ac.manchester.cs.owl.owlapi.OWLDataFactoryImpl;
+
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * Evaluates OWL class expressions on a local Jena {@link Model} or
+ * {@link Dataset}, e.g. an in-memory or a TDB dataset, by means of the SPARQL
+ * queries generated by an {@link OWLClassExpressionToSPARQLConverter}.
+ * <p>
+ * All query executions are closed by this class. The instances are streamed
+ * from the result set, i.e. the stream has to be closed if it's not consumed
+ * completely, preferably by try-with-resources.
+ * <p>
+ * For datasets that support transactions, a read transaction is started if
+ * the calling thread is not in a transaction yet. In that case the stream of
+ * instances has to be consumed by the calling thread.
+ * <p>
+ * If a maximum nominal size is set on the converter, class expressions with
+ * oversize nominals are evaluated by several queries, whose results are
+ * merged, see {@link OWLClassExpressionToSPARQLConverter#setMaxNominalSize(int)}.
+ *
+ * @author Lorenz Buehmann
+ *
+ */
+public class OWLClassExpressionQueryEngine {
+
+	private static final String ROOT_VARIABLE = "?x";
+
+	private final Dataset dataset;
+
+	private final OWLClassExpressionToSPARQLConverter converter;
+
+	private final OWLClassExpressionBatchConverter batchConverter;
+
+	private final OWLDataFactory df = new OWLDataFactoryImpl();
+
+	public OWLClassExpressionQueryEngine(Model model) {
+		this(DatasetFactory.create(model));
+	}
+
+	public OWLClassExpressionQueryEngine(Dataset dataset) {
+		this(dataset, new OWLClassExpressionToSPARQLConverter());
+	}
+
+	/**
+	 * @param dataset the dataset the queries are evaluated on
+	 * @param converter the converter used to generate the queries
+	 */
+	public OWLClassExpressionQueryEngine(Dataset dataset, OWLClassExpressionToSPARQLConverter converter) {
+		this.dataset = dataset;
+		this.converter = converter;
+		this.batchConverter = new OWLClassExpressionBatchConverter(converter);
+	}
+
+	/**
+	 * @return the converter used to fuse several class expressions into a
+	 *         single count query, it can be used to configure the split size
+	 */
+	public OWLClassExpressionBatchConverter getBatchConverter() {
+		return batchConverter;
+	}
+
+	/**
+	 * Returns the named individuals that belong to the class expression. The
+	 * result set is iterated lazily, and the query execution is closed once
+	 * the stream has been consumed or closed.
+	 *
+	 * @param ce the class expression
+	 * @return the instances of the class expression
+	 */
+	public Stream<OWLNamedIndividual> getInstances(OWLClassExpression ce) {
+		List<Query> queries = converter.asQueries(ce, ROOT_VARIABLE);
+		if(queries.size() == 1) {
+			return getInstances(queries.get(0));
+		}
+		// the results of the chunks of a split nominal can overlap
+		return queries.stream().flatMap(this::getInstances).distinct();
+	}
+
+	private Stream<OWLNamedIndividual> getInstances(Query query) {
+		Execution execution = new Execution(query);
+		try {
+			ResultSet rs = execution.qe.execSelect();
+			Iterator<OWLNamedIndividual> iterator = new InstanceIterator(rs, execution);
+			return StreamSupport.stream(
+					Spliterators.spliteratorUnknownSize(iterator, Spliterator.ORDERED | Spliterator.NONNULL), false)
+					.onClose(execution::close);
+		} catch (RuntimeException e) {
+			execution.close();
+			throw e;
+		}
+	}
+
+	/**
+	 * Returns the number of instances of the class expression, computed by
+	 * a COUNT query. In contrast to {@link #getInstances(OWLClassExpression)},
+	 * anonymous individuals are counted as well.
+	 *
+	 * @param ce the class expression
+	 * @return the number of instances of the class expression
+	 */
+	public long getInstanceCount(OWLClassExpression ce) {
+		List<Query> queries = converter.asQueries(ce, ROOT_VARIABLE);
+		if(queries.size() > 1) {
+			// the results of the chunks of a split nominal can overlap, thus, they can't be counted separately
+			Set<RDFNode> instances = new HashSet<>();
+			for (Query query : queries) {
+				try (Execution execution = new Execution(query)) {
+					ResultSet rs = execution.qe.execSelect();
+					while(rs.hasNext()) {
+						RDFNode node = rs.next().get(ROOT_VARIABLE.substring(1));
+						if(node != null) {
+							instances.add(node);
+						}
+					}
+				}
+			}
+			return instances.size();
+		}
+
+		Query query = converter.asQuery(ROOT_VARIABLE, ce, true);
+		String countVar = query.getProjectVars().get(0).getVarName();
+
+		try (Execution execution = new Execution(query)) {
+			ResultSet rs = execution.qe.execSelect();
+			return rs.hasNext() ? rs.next().getLiteral(countVar).getLong() : 0;
+		}
+	}
+
+	/**
+	 * Returns the number of instances of each class expression. The class
+	 * expressions are fused into as few queries as possible, see
+	 * {@link OWLClassExpressionBatchConverter}.
+	 *
+	 * @param classExpressions the class expressions
+	 * @return the number of instances of each class expression
+	 */
+	public Map<OWLClassExpression, Long> getInstanceCounts(List<? extends OWLClassExpression> classExpressions) {
+		Map<OWLClassExpression, Long> counts = new LinkedHashMap<>();
+		for (BatchCountQuery batchQuery : batchConverter.asCountQueries(classExpressions, ROOT_VARIABLE)) {
+			try (Execution execution = new Execution(batchQuery.getQuery())) {
+				counts.putAll(batchQuery.getCounts(execution.qe.execSelect()));
+			}
+		}
+		return counts;
+	}
+
+	/**
+	 * Checks whether the individual belongs to the class expression.
+	 *
+	 * @param individual the individual
+	 * @param ce the class expression
+	 * @return whether the individual belongs to the class expression
+	 */
+	public boolean isInstance(OWLNamedIndividual individual, OWLClassExpression ce) {
+		for (Query query : converter.asQueries(ce, ROOT_VARIABLE)) {
+			if(isInstance(individual, query)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	private boolean isInstance(OWLNamedIndividual individual, Query query) {
+		// bind the root variable to the individual before the pattern is evaluated
+		Var rootVar = Var.alloc(ROOT_VARIABLE.substring(1));
+		ElementData data = new ElementData();
+		data.add(rootVar);
+		data.add(BindingFactory.binding(rootVar, NodeFactory.createURI(individual.toStringID())));
+
+		ElementGroup pattern = new ElementGroup();
+		pattern.addElement(data);
+		for (Element element : ((ElementGroup) query.getQueryPattern()).getElements()) {
+			pattern.addElement(element);
+		}
+		Query instanceQuery = query.cloneQuery();
+		instanceQuery.setQueryPattern(pattern);
+
+		// a grouped query returns a single group without the root variable if the pattern has no solutions,
+		// which would pass a HAVING(COUNT(..) <= n), thus, it's not asked whether there is any solution
+		try (Execution execution = new Execution(instanceQuery)) {
+			ResultSet rs = execution.qe.execSelect();
+			while(rs.hasNext()) {
+				if(rs.next().contains(rootVar.getVarName())) {
+					return true;
+				}
+			}
+			return false;
+		}
+	}
+
+	/**
+	 * A query execution, together with the read transaction it has been
+	 * started in if necessary.
+	 */
+	private class Execution implements AutoCloseable {
+
+		private final QueryExecution qe;
+		private final boolean transaction;
+		private boolean closed = false;
+
+		Execution(Query query) {
+			transaction = dataset.supportsTransactions() && !dataset.isInTransaction();
+			if(transaction) {
+				dataset.begin(ReadWrite.READ);
+			}
+			try {
+				qe = QueryExecutionFactory.create(query, dataset);
+			} catch (RuntimeException e) {
+				if(transaction) {
+					dataset.end();
+				}
+				throw e;
+			}
+		}
+
+		@Override
+		public void close() {
+			if(!closed) {
+				closed = true;
+				try {
+					qe.close();
+				} finally {
+					if(transaction) {
+						dataset.end();
+					}
+				}
+			}
+		}
+	}
+
+	/**
+	 * Iterates the named individuals of the result set and closes the
+	 * execution once the end is reached.
+	 */
+	private class InstanceIterator implements Iterator<OWLNamedIndividual> {
+
+		private final ResultSet rs;
+		private final Execution execution;
+		private final String rootVariable = ROOT_VARIABLE.substring(1);
+		private OWLNamedIndividual next;
+
+		InstanceIterator(ResultSet rs, Execution execution) {
+			this.rs = rs;
+			this.execution = execution;
+		}
+
+		@Override
+		public boolean hasNext() {
+			while(next == null && !execution.closed && rs.hasNext()) {
+				RDFNode node = rs.next().get(rootVariable);
+				// anonymous individuals are not returned
+				if(node != null && node.isURIResource()) {
+					next = df.getOWLNamedIndividual(IRI.create(node.asResource().getURI()));
+				}
+			}
+			if(next == null) {
+				execution.close();
+			}
+			return next != null;
+		}
+
+		@Override
+		public OWLNamedIndividual next() {
+			if(!hasNext()) {
+				throw new NoSuchElementException();
+			}
+			OWLNamedIndividual individual = next;
+			next = null;
+			return individual;
+		}
+	}
+}
@@ -19,33 +19,68 @@
  */
 package org.aksw.owl2sparql;
 
-import com.google.common.base.Joiner;
 import com.google.common.collect.HashMultimap;
+import com.google.common.collect.Maps;
 import com.google.common.collect.Multimap;
 import com.google.common.collect.Sets;
+import com.hp.hpl.jena.datatypes.RDFDatatype;
+import com.hp.hpl.jena.datatypes.TypeMapper;
+import com.hp.hpl.jena.graph.Node;
+import com.hp.hpl.jena.graph.NodeFactory;
+import com.hp.hpl.jena.graph.Triple;
 import com.hp.hpl.jena.query.Query;
-import com.hp.hpl.jena.query.QueryFactory;
-import com.hp.hpl.jena.query.Syntax;
 import com.hp.hpl.jena.sparql.algebra.Algebra;
 import com.hp.hpl.jena.sparql.algebra.Op;
+import com.hp.hpl.jena.sparql.core.TriplePath;
+import com.hp.hpl.jena.sparql.core.Var;
+import com.hp.hpl.jena.sparql.engine.binding.BindingFactory;
+import com.hp.hpl.jena.sparql.expr.*;
+import com.hp.hpl.jena.sparql.expr.aggregate.AggCountVar;
+import com.hp.hpl.jena.sparql.expr.aggregate.AggCountVarDistinct;
+import com.hp.hpl.jena.sparql.expr.aggregate.Aggregator;
+import com.hp.hpl.jena.sparql.path.P_Alt;
+import com.hp.hpl.jena.sparql.path.P_Inverse;
+import com.hp.hpl.jena.sparql.path.P_Link;
+import com.hp.hpl.jena.sparql.path.P_Seq;
+import com.hp.hpl.jena.sparql.path.P_ZeroOrMore1;
+import com.hp.hpl.jena.sparql.path.Path;
+import com.hp.hpl.jena.sparql.serializer.FormatterElement;
+import com.hp.hpl.jena.sparql.syntax.*;
+import com.hp.hpl.jena.sparql.util.ExprUtils;
+import com.hp.hpl.jena.vocabulary.RDF;
+import com.hp.hpl.jena.vocabulary.RDFS;
+import org.aksw.owl2sparql.selectivity.ClassExpressionSizeEstimator;
+import org.aksw.owl2sparql.selectivity.SelectivityEstimator;
+import org.aksw.owl2sparql.selectivity.TriplePathOrdering;
 import org.aksw.owl2sparql.style.AllQuantorTranslation;
+import org.aksw.owl2sparql.style.CardinalitySubqueryTranslation;
 import org.aksw.owl2sparql.style.EqualityRendering;
+import org.aksw.owl2sparql.style.IndividualUniverse;
+import org.aksw.owl2sparql.style.MaxCardinalityTranslation;
+import org.aksw.owl2sparql.style.MinCardinalityTranslation;
+import org.aksw.owl2sparql.style.NegationRendering;
 import org.aksw.owl2sparql.style.NominalTranslation;
 import org.aksw.owl2sparql.style.OWLThingRendering;
+import org.aksw.owl2sparql.util.HierarchyClosure;
+import org.aksw.owl2sparql.util.NodeSubstitution;
 import org.aksw.owl2sparql.util.OWLClassExpressionMinimizer;
+import org.aksw.owl2sparql.util.OWLClassExpressionReplacer;
+import org.aksw.owl2sparql.util.OWLObjectOneOfSplitter;
 import org.aksw.owl2sparql.util.VariablesMapping;
 import org.semanticweb.owlapi.apibinding.OWLManager;
 import org.semanticweb.owlapi.dlsyntax.renderer.DLSyntaxObjectRenderer;
 import org.semanticweb.owlapi.io.ToStringRenderer;
 import org.semanticweb.owlapi.model.*;
+import org.semanticweb.owlapi.reasoner.OWLReasoner;
 import org.semanticweb.owlapi.util.DefaultPrefixManager;
 import org.semanticweb.owlapi.vocab.OWLFacet;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import uk.ac.manchester.cs.owl.owlapi.OWLDataFactoryImpl;
 
+import java.io.OutputStream;
 import java.util.*;
-import java.util.stream.Collectors;
+import java.util.function.Consumer;
 
 import static org.semanticweb.owlapi.model.ClassExpressionType.OBJECT_MAX_CARDINALITY;
 
@@ -53,59 +88,98 @@ import static org.semanticweb.owlapi.model.ClassExpressionType.OBJECT_MAX_CARDIN
  * A converter from
  * <a href="http://www.w3.org/TR/owl2-syntax/#Class_Expressions">OWL 2 class
  * expressions</a> to SPARQL queries.
- * 
+ * <p>
+ * The visitor methods build the Jena syntax tree, i.e. {@link ElementGroup}s,
+ * {@link ElementPathBlock}s, {@link ElementFilter}s, {@link ElementSubQuery}s
+ * and {@link ElementData}, directly. The string based methods are just a
+ * serialization of that tree, thus, no query string has to be parsed again.
+ * <p>
+ * The converter itself does not hold any state of a conversion, each call
+ * works on its own {@link ConversionContext}. Thus, once configured, a single
+ * instance can be used by any number of threads at the same time. A setting
+ * that is changed while conversions are running is only used by conversions
+ * that start afterwards.
+ *
  * @author Lorenz Buehmann
  *
  */
-public class OWLClassExpressionToSPARQLConverter implements OWLClassExpressionVisitor, OWLDataRangeVisitor{
-	
+public class OWLClassExpressionToSPARQLConverter {
+
 	private static final Logger logger = LoggerFactory.getLogger(OWLClassExpressionToSPARQLConverter.class);
-	
-	private static final String TRIPLE_PATTERN = "%s %s %s .\n";
-	
-	private OWLDataFactory df = new OWLDataFactoryImpl();
-	
-	private Multimap<Integer, OWLEntity> properties = HashMultimap.create();
-	
-	private Map<Integer, Boolean> intersection;
-	private Set<? extends OWLEntity> variableEntities = new HashSet<>();
-	
-	private VariablesMapping mapping = new VariablesMapping();
-	
-	private OWLClassExpression expr;
-	
-	private Deque<Integer> naryExpressions = new ArrayDeque<>();
-	
-	private OWLClassExpressionMinimizer minimizer = new OWLClassExpressionMinimizer(df);
-	
-	private boolean ignoreGenericTypeStatements = true;
-
-	private boolean needOuterTriplePattern = true;
-	
-	private boolean useDistinct = true;
-	
-	private boolean useReasoning = false;
-	
-	private EqualityRendering equalityRendering = EqualityRendering.TERM_EQUALITY;
-	
-	private AllQuantorTranslation allQuantorTranslation = AllQuantorTranslation.DOUBLE_NEGATION;
-	
-	private OWLThingRendering owlThingRendering = OWLThingRendering.GENERIC_TRIPLE_PATTERN;
-
-	private NominalTranslation nominalTranslation = NominalTranslation.VALUES;
-	
-	private String countVar = "?cnt";
-	
-	private String sparql = "";
-	private String appendix = "";
-	private Stack<String> variables = new Stack<>();
-	
-	private boolean negatedDataRange = false;
-
-	private Deque<OWLClassExpression> existentialFillers = new ArrayDeque<>();
-	
-	public OWLClassExpressionToSPARQLConverter() {}
-	
+
+	private static final Path TYPE_PATH = new P_Seq(
+			new P_Link(RDF.type.asNode()),
+			new P_ZeroOrMore1(new P_Link(RDFS.subClassOf.asNode())));
+
+	private static final String COUNT_VAR = "?cnt";
+
+	private final OWLDataFactory df = new OWLDataFactoryImpl();
+
+	private volatile OWLClassExpressionMinimizer minimizer = new OWLClassExpressionMinimizer(df);
+
+	private volatile DistinctAnalysis distinctAnalysis = DistinctAnalysis.EMPTY;
+
+	private final VariablesMapping mapping;
+
+	// the variables mapping of the last conversion
+	private volatile VariablesMapping lastMapping = new VariablesMapping();
+
+	// the metadata of the last conversion
+	private volatile ConversionMetadata lastMetadata = ConversionMetadata.EMPTY;
+
+	private volatile boolean useDistinct = true;
+
+	private volatile boolean useReasoning = false;
+
+	private volatile HierarchyClosure hierarchyClosure;
+
+	private volatile EqualityRendering equalityRendering = EqualityRendering.TERM_EQUALITY;
+
+	private volatile AllQuantorTranslation allQuantorTranslation = AllQuantorTranslation.DOUBLE_NEGATION;
+
+	// the average number of successors per subject above which adaptive universal restrictions are counted
+	private volatile double adaptiveFanOutThreshold = 8;
+
+	private volatile OWLThingRendering owlThingRendering = OWLThingRendering.GENERIC_TRIPLE_PATTERN;
+
+	private volatile IndividualUniverse individualUniverse = IndividualUniverse.ALL_SUBJECTS;
+
+	private volatile NominalTranslation nominalTranslation = NominalTranslation.VALUES;
+
+	// the maximum number of individuals of a nominal that is filtered in adaptive mode
+	private volatile int adaptiveFilterInMaxSize = 10;
+
+	private volatile NegationRendering negationRendering = NegationRendering.FILTER_NOT_EXISTS;
+
+	private volatile MinCardinalityTranslation minCardinalityTranslation = MinCardinalityTranslation.GROUP_BY_HAVING;
+
+	// the maximum cardinality that is expressed by joining distinct successors instead of counting them
+	private volatile int distinctSuccessorsMaxCardinality = 3;
+
+	private volatile MaxCardinalityTranslation maxCardinalityTranslation = MaxCardinalityTranslation.FILTER_NOT_EXISTS;
+
+	// the maximum cardinality that is expressed by the absence of further distinct successors instead of counting them
+	private volatile int filterNotExistsMaxCardinality = 1;
+
+	private volatile CardinalitySubqueryTranslation cardinalitySubqueryTranslation = CardinalitySubqueryTranslation.UNRESTRICTED;
+
+	private volatile SelectivityEstimator selectivityEstimator;
+
+	private volatile QueryOptimizer queryOptimizer;
+
+	private volatile int maxNominalSize = Integer.MAX_VALUE;
+
+	public OWLClassExpressionToSPARQLConverter() {
+		this.mapping = null;
+	}
+
+	/**
+	 * @param mapping a mapping that is filled with the variables of the
+	 *            last conversion
+	 * @deprecated the given mapping is shared by all conversions, use
+	 *             {@link #getVariablesMapping()} instead
+	 */
+	@Deprecated
 	public OWLClassExpressionToSPARQLConverter(VariablesMapping mapping) {
 		this.mapping = mapping;
 	}
@@ -122,9 +196,28 @@ public class OWLClassExpressionToSPARQLConverter implements OWLClassExpressionVi
 	 * @return the SPARQL query
 	 */
 	public String convert(OWLClassExpression ce, String rootVariable, boolean countQuery){
-		return createSelectClause(countQuery) + createWhereClause(ce) + createSolutionModifier();
+		Settings settings = settings();
+		return createQuery(settings, rootVariable, ce, Collections.<OWLEntity>emptySet(), countQuery).serialize();
+	}
+
+	/**
+	 * Converts an OWL class expression into a SPARQL query with
+	 * <code>rootVariable</code> as projection variable and writes it to the
+	 * output stream. In contrast to {@link #convert(OWLClassExpression, String, boolean)},
+	 * the query string is never held in memory as a whole, which matters for
+	 * class expressions with huge nominals.
+	 *
+	 * @param ce the OWL class expression to convert
+	 * @param rootVariable the name of the projection variable in the SPARQL
+	 *            query
+	 * @param countQuery whether to return a SELECT (COUNT(?var) as ?cnt) query
+	 * @param out the output stream the query is written to
+	 */
+	public void convert(OWLClassExpression ce, String rootVariable, boolean countQuery, OutputStream out){
+		Settings settings = settings();
+		createQuery(settings, rootVariable, ce, Collections.<OWLEntity>emptySet(), countQuery).serialize(out);
 	}
-	
+
 	/**
 	 * Converts an OWL class expression into a SPARQL query with
 	 * <code>rootVariable</code> as projection variable.
@@ -137,7 +230,34 @@ public class OWLClassExpressionToSPARQLConverter implements OWLClassExpressionVi
 	public Query asQuery(OWLClassExpression ce, String rootVariable){
 		return asQuery(rootVariable, ce, Collections.<OWLEntity>emptySet());
 	}
-	
+
+	/**
+	 * Converts an OWL class expression into one or more SPARQL queries with
+	 * <code>rootVariable</code> as projection variable. Nominals with more
+	 * individuals than the maximum nominal size are split into chunks, and a
+	 * query is returned for each chunk. The instances of the class expression
+	 * are the union of the results of the queries, i.e. the results have to
+	 * be merged by the client.
+	 *
+	 * @param ce the OWL class expression to convert
+	 * @param rootVariable the name of the projection variable in the SPARQL
+	 *            query
+	 * @return the SPARQL queries
+	 * @see #setMaxNominalSize(int)
+	 * @see OWLObjectOneOfSplitter
+	 */
+	public List<Query> asQueries(OWLClassExpression ce, String rootVariable){
+		int maxNominalSize = this.maxNominalSize;
+		if(maxNominalSize == Integer.MAX_VALUE) {
+			return Collections.singletonList(asQuery(ce, rootVariable));
+		}
+		List<Query> queries = new ArrayList<>();
+		for (OWLClassExpression chunk : new OWLObjectOneOfSplitter(df, maxNominalSize).split(ce)) {
+			queries.add(asQuery(chunk, rootVariable));
+		}
+		return queries;
+	}
+
 	/**
 	 * Converts an OWL class expression into a SPARQL query with
 	 * <code>rootVariable</code> as projection variable. It's possible to
@@ -150,11 +270,10 @@ public class OWLClassExpressionToSPARQLConverter implements OWLClassExpressionVi
 	 * @return the SPARQL query
 	 */
 	public Query asQuery(String rootVariable, OWLClassExpression ce, boolean countQuery){
-		String queryString = convert(ce, rootVariable, countQuery);
-		
-		return QueryFactory.create(queryString, Syntax.syntaxARQ);
+		Settings settings = settings();
+		return createQuery(settings, rootVariable, ce, Collections.<OWLEntity>emptySet(), countQuery);
 	}
-	
+
 	/**
 	 * Converts an OWL class expression into a SPARQL query with
 	 * <code>rootVariable</code> as projection variable. It's possible to
@@ -171,7 +290,7 @@ public class OWLClassExpressionToSPARQLConverter implements OWLClassExpressionVi
 	public Query asQuery(String rootVariable, OWLClassExpression ce, Set<? extends OWLEntity> variableEntities){
 		return asQuery(rootVariable, ce, variableEntities, false);
 	}
-	
+
 	/**
 	 * Converts an OWL class expression into a SPARQL query with
 	 * <code>rootVariable</code> as projection variable. It's possible to
@@ -188,45 +307,130 @@ public class OWLClassExpressionToSPARQLConverter implements OWLClassExpressionVi
 	 * @return the SPARQL query
 	 */
 	public Query asQuery(String rootVariable, OWLClassExpression ce, Set<? extends OWLEntity> variableEntities, boolean countQuery){
-		this.variableEntities = variableEntities;
-		
-		String queryString = "SELECT DISTINCT ";
-		
-		String triplePattern = asGroupGraphPattern(ce, rootVariable, true);
-		
-		if(variableEntities.isEmpty()){
-			queryString += rootVariable + " WHERE {";
-		} else {
-			for (OWLEntity owlEntity : variableEntities) {
-				String var = mapping.get(owlEntity);
-				queryString += var + " ";
-			}
-			if(countQuery){
-				queryString += "(COUNT(DISTINCT " + rootVariable + ") AS ?cnt)"; 
-			} else {
-				queryString += rootVariable;
+		Query query = createQuery(settings(), rootVariable, ce, variableEntities, countQuery);
+		logger.debug("Query: {}", query);
+		return query;
+	}
+
+	/**
+	 * Converts an OWL class expression into a query template, in which the
+	 * given placeholder entities are replaced by variables. Instantiating the
+	 * template with concrete entities only substitutes the variables in the
+	 * prebuilt query, i.e. the class expression is neither minimized nor
+	 * converted again. This is useful when a lot of expressions that differ
+	 * only in some entities have to be converted, e.g. during a refinement
+	 * based search.
+	 *
+	 * @param ce the OWL class expression to convert
+	 * @param rootVariable the name of the projection variable in the SPARQL
+	 *            query
+	 * @param placeholders the entities that are replaced when the template is
+	 *            instantiated
+	 * @return the query template
+	 */
+	public QueryTemplate prepare(OWLClassExpression ce, String rootVariable, Set<? extends OWLEntity> placeholders){
+		return prepare(ce, rootVariable, placeholders, false);
+	}
+
+	/**
+	 * Converts an OWL class expression into a query template, in which the
+	 * given placeholder entities are replaced by variables. It's possible to
+	 * return a COUNT query if wanted.
+	 *
+	 * @param ce the OWL class expression to convert
+	 * @param rootVariable the name of the projection variable in the SPARQL
+	 *            query
+	 * @param placeholders the entities that are replaced when the template is
+	 *            instantiated
+	 * @param countQuery whether to return a SELECT (COUNT(?var) as ?cnt) query
+	 * @return the query template
+	 * @see #prepare(OWLClassExpression, String, Set)
+	 */
+	public QueryTemplate prepare(OWLClassExpression ce, String rootVariable, Set<? extends OWLEntity> placeholders,
+								 boolean countQuery){
+		Settings settings = settings();
+		Var rootVar = toVar(rootVariable);
+		ConversionContext context = new ConversionContext(this, settings, placeholders, true);
+		ElementGroup queryPattern = context.convert(ce, rootVar);
+
+		// placeholders that do not occur in the (minimized) expression don't have a variable
+		Map<OWLEntity, Var> variables = new HashMap<>();
+		for (OWLEntity placeholder : placeholders) {
+			String var = context.mapping.get(placeholder);
+			if(var != null) {
+				variables.put(placeholder, toVar(var));
 			}
-			queryString += " WHERE {";
 		}
-		
-		queryString += triplePattern;
-		queryString += "}";
 
-		if (countQuery && !variableEntities.isEmpty()) {
-			queryString += "GROUP BY ";
-			for (OWLEntity owlEntity : variableEntities) {
-				String var = mapping.get(owlEntity);
-				queryString += var;
-			}
-			queryString += " ORDER BY DESC(?cnt)";
+		Query query = createQuery(context, queryPattern, rootVar, Collections.<Var>emptyList(), countQuery,
+								  settings.useDistinct);
+		finished(context);
+		return new QueryTemplate(query, variables);
+	}
+
+	/**
+	 * Converts an OWL class expression into a SPARQL query with
+	 * <code>rootVariable</code> as projection variable and keeps the graph
+	 * pattern fragments of its sub-expressions, such that expressions derived
+	 * from it by {@link #refine(IncrementalConversion, OWLClassExpression, OWLClassExpression)}
+	 * can be converted incrementally.
+	 *
+	 * @param ce the OWL class expression to convert
+	 * @param rootVariable the name of the projection variable in the SPARQL
+	 *            query
+	 * @return the conversion
+	 */
+	public IncrementalConversion convertIncrementally(OWLClassExpression ce, String rootVariable){
+		return convertIncrementally(settings(), ce, rootVariable, Collections.<FragmentKey, Fragment>emptyMap());
+	}
+
+	/**
+	 * Converts the class expression obtained by replacing a sub-expression of
+	 * a previously converted class expression, as it's done by refinement
+	 * operators. The graph pattern fragments of all sub-expressions that are
+	 * not affected by the replacement are taken from the previous conversion,
+	 * only the variables are renamed. The fragments can't be reused if the
+	 * settings of the converter have been changed in the meantime.
+	 *
+	 * @param parent the conversion of the parent expression
+	 * @param replaced the sub-expression of the parent expression that is
+	 *            replaced
+	 * @param replacement the class expression that replaces the sub-expression
+	 * @return the conversion of the new expression
+	 * @throws IllegalArgumentException if the sub-expression does not occur in
+	 *             the parent expression
+	 */
+	public IncrementalConversion refine(IncrementalConversion parent, OWLClassExpression replaced,
+										OWLClassExpression replacement){
+		OWLClassExpressionReplacer replacer = new OWLClassExpressionReplacer(df, replaced, replacement);
+		OWLClassExpression ce = replacer.replace(parent.getClassExpression());
+		if(replacer.getReplacements() == 0) {
+			throw new IllegalArgumentException(replaced + " does not occur in " + parent.getClassExpression());
 		}
-		queryString += appendix;
-		logger.debug("Query: {}", queryString);
-		return QueryFactory.create(queryString, Syntax.syntaxSPARQL_11);
+
+		Settings settings = settings();
+		Map<FragmentKey, Fragment> reusableFragments = settings.equals(parent.settings)
+				? parent.fragments
+				: Collections.<FragmentKey, Fragment>emptyMap();
+		return convertIncrementally(settings, ce, parent.getRootVariable(), reusableFragments);
+	}
+
+	private IncrementalConversion convertIncrementally(Settings settings, OWLClassExpression ce, String rootVariable,
+													   Map<FragmentKey, Fragment> reusableFragments){
+		Var rootVar = toVar(rootVariable);
+		ConversionContext context = new ConversionContext(this, settings, Collections.<OWLEntity>emptySet(), true);
+		context.enableIncrementalConversion(reusableFragments);
+		ElementGroup queryPattern = context.convert(ce, rootVar);
+
+		Query query = createQuery(context, queryPattern, rootVar, Collections.<Var>emptyList(), false,
+								  settings.useDistinct);
+		finished(context);
+		return new IncrementalConversion(ce, rootVariable, query, settings, context.fragments,
+										 context.reusedFragments, context.metadata());
 	}
-	
+
 	/**
-	 * Converts an OWL class expression into a GroupGraphPattern, which can be described 
+	 * Converts an OWL class expression into a GroupGraphPattern, which can be described
 	 * as the outer-most graph pattern in a query, sometimes also called the query pattern.
 	 * @param ce the OWL class expression
 	 * @param rootVariable  the name of the projection variable
@@ -235,98 +439,175 @@ public class OWLClassExpressionToSPARQLConverter implements OWLClassExpressionVi
 	public String asGroupGraphPattern(OWLClassExpression ce, String rootVariable){
 		return asGroupGraphPattern(ce, rootVariable, false);
 	}
-	
+
 	/**
-	 * Converts an OWL class expression into a GroupGraphPattern, which can be described 
+	 * Converts an OWL class expression into a GroupGraphPattern, which can be described
 	 * as the outer-most graph pattern in a query, sometimes also called the query pattern.
 	 * @param ce the OWL class expression
 	 * @param rootVariable the name of the projection variable
-	 * @param needOuterTriplePattern whether 
+	 * @param needOuterTriplePattern whether
 	 * @return a SPARQL graph pattern
 	 */
 	public String asGroupGraphPattern(OWLClassExpression ce, String rootVariable, boolean needOuterTriplePattern){
-		this.needOuterTriplePattern = needOuterTriplePattern;
-		reset();
-		variables.push(rootVariable);
-		
-		// minimize the class expression
-		this.expr = minimizer.minimizeClone(ce);
-		if(!expr.equals(ce)) {
-			logger.info("CE rewritten to " + expr);
-		}
+		return asString(asElementGroup(settings(), ce, rootVariable, needOuterTriplePattern));
+	}
 
-		if(expr.equals(df.getOWLThing())) {
-			logger.warn("Expression is logically equivalent to owl:Thing, thus, the SPARQL query returns all triples.");
-		}
-		
-		// convert
-		expr.accept(this);
-		
-		return sparql;
+	/**
+	 * Converts an OWL class expression into a GroupGraphPattern, which can be described
+	 * as the outer-most graph pattern in a query, sometimes also called the query pattern.
+	 * @param ce the OWL class expression
+	 * @param rootVariable the name of the projection variable
+	 * @return the SPARQL graph pattern as Jena syntax element
+	 */
+	public ElementGroup asElementGroup(OWLClassExpression ce, String rootVariable){
+		return asElementGroup(ce, rootVariable, false);
+	}
+
+	/**
+	 * Converts an OWL class expression into a GroupGraphPattern, which can be described
+	 * as the outer-most graph pattern in a query, sometimes also called the query pattern.
+	 * @param ce the OWL class expression
+	 * @param rootVariable the name of the projection variable
+	 * @param needOuterTriplePattern whether a generic triple pattern is needed to bind the
+	 *            root variable of negated expressions
+	 * @return the SPARQL graph pattern as Jena syntax element
+	 */
+	public ElementGroup asElementGroup(OWLClassExpression ce, String rootVariable, boolean needOuterTriplePattern){
+		return asElementGroup(settings(), ce, rootVariable, needOuterTriplePattern);
 	}
-	
+
+	ElementGroup asElementGroup(Settings settings, OWLClassExpression ce, String rootVariable, boolean needOuterTriplePattern){
+		ConversionContext context = new ConversionContext(this, settings, Collections.<OWLEntity>emptySet(), needOuterTriplePattern);
+		ElementGroup pattern = context.convert(ce, toVar(rootVariable));
+		finished(context);
+		return pattern;
+	}
+
 	/**
 	 * Converts an OWL data range into a GroupGraphPattern.
 	 * @param dr the OWL data range
 	 * @param rootVariable the name of the projection variable
 	 * @return a SPARQL graph pattern
 	 */
-	public String asGroupGraphPattern(OWLDataRange dr, String rootVariable) 
+	public String asGroupGraphPattern(OWLDataRange dr, String rootVariable)
 	{
-		reset();
-		variables.push(rootVariable);
-		
-		// convert
-		dr.accept(this);
-		
-		return sparql;
+		ConversionContext context = new ConversionContext(this, settings(), Collections.<OWLEntity>emptySet(), false);
+		ElementGroup pattern = context.convert(dr, toVar(rootVariable));
+		finished(context);
+		return asString(pattern);
 	}
 
 	/**
-	 * Whether to return SPARQL queries with DISTINCT keyword.
+	 * Whether to return SPARQL queries with DISTINCT keyword. The setting is
+	 * honoured by all methods that return queries, i.e. the
+	 * <code>convert</code>, <code>asQuery</code> and <code>asQueries</code>
+	 * methods, {@link #prepare(OWLClassExpression, String, Set)} and the
+	 * incremental conversion. Even if enabled, DISTINCT is omitted for queries
+	 * that can't return duplicates, see {@link ConversionMetadata#isDistinct()}.
 	 * @param useDistinct <code>true</code> if use DISTINCT, otherwise <code>false</code>
 	 */
 	public void setUseDistinct(boolean useDistinct) {
 		this.useDistinct = useDistinct;
 	}
-	
+
 	/**
 	 * Since SPARQL 1.1 there is a mechanism called property
 	 * paths (see <a href="http://www.w3.org/TR/sparql11-query/#propertypaths">W3C rec.</a>),
 	 * which allows to add some kind of light-weight inferencing to a SPARQL query.
-	 * 
+	 *
 	 * Currently, we do the following if enabled
-	 * 
+	 *
 	 * <ul>
 	 * <li>?s rdf:type :A . -&gt; ?s rdf:type/(rdfs:subClassOf|owl:equivalentClass)* :A . </li>
 	 * </ul>
-	 * 
-	 * Note, this feature only works on query engines that support SPARQL 1.1 . 
+	 *
+	 * Note, this feature only works on query engines that support SPARQL 1.1 .
+	 * If the hierarchy is known in advance, the expansion of the class and
+	 * property atoms is usually much faster, see
+	 * {@link #setHierarchyClosure(HierarchyClosure)}.
 	 *
 	 * @param useReasoning use inferencing
 	 */
 	public void setUseReasoning(boolean useReasoning) {
 		this.useReasoning = useReasoning;
 	}
-	
+
+	/**
+	 * Sets the precomputed class and property hierarchy that is used instead
+	 * of property paths if reasoning is enabled. Each class atom is expanded
+	 * into the class and its subclasses, and each property atom into the
+	 * property and its sub-properties, e.g.
+	 * <div>
+	 * <pre>
+	 * ?s rdf:type ?cls0 VALUES ?cls0 { :A :A1 :A2 }
+	 * ?s ?p0 ?o VALUES ?p0 { :r :r1 }
+	 * </pre>
+	 * </div>
+	 * The query engine doesn't have to evaluate a transitive path for each
+	 * atom, but the query gets larger with the size of the hierarchy.
+	 * Successors are counted with <code>COUNT(DISTINCT)</code> then, since a
+	 * successor can match several sub-properties and subclasses.
+	 *
+	 * @param hierarchyClosure the closure of the hierarchy, or
+	 *            <code>null</code> to use property paths
+	 * @see #setUseReasoning(boolean)
+	 */
+	public void setHierarchyClosure(HierarchyClosure hierarchyClosure) {
+		this.hierarchyClosure = hierarchyClosure;
+	}
+
+	/**
+	 * Sets the reasoner that is used to remove redundant operands of
+	 * intersections and unions before the conversion, e.g. <code>A</code> in
+	 * <code>A and B</code> if <code>B</code> is a subclass of <code>A</code>.
+	 * The subsumption checks are cached, thus, the reasoner has to be set
+	 * again if its ontology has been changed.
+	 * <p>
+	 * The functional properties of the ontology of the reasoner are used to
+	 * detect queries that can't return duplicates, see
+	 * {@link ConversionMetadata#isDistinct()}.
+	 *
+	 * @param reasoner the reasoner, or <code>null</code> to only remove
+	 *            <code>owl:Thing</code> and <code>owl:Nothing</code>
+	 */
+	public void setReasoner(OWLReasoner reasoner) {
+		this.minimizer = new OWLClassExpressionMinimizer(df, reasoner);
+		this.distinctAnalysis = DistinctAnalysis.create(reasoner);
+	}
+
 	/**
 	 * How to express equality in SPARQL.
-	 * 
+	 *
 	 * @param equalityRendering the equalityRendering to set
 	 */
 	public void setEqualityRendering(EqualityRendering equalityRendering) {
 		this.equalityRendering = equalityRendering;
 	}
-	
+
 	/**
 	 * How to translate <code>owl:allValuesFrom</code> into SPARQL.
-	 * 
+	 *
 	 * @param allQuantorTranslation the allQuantorTranslation to set
 	 */
 	public void setAllQuantorTranslation(AllQuantorTranslation allQuantorTranslation) {
 		this.allQuantorTranslation = allQuantorTranslation;
 	}
-	
+
+	/**
+	 * Sets the average number of successors per subject above which a
+	 * universal restriction is translated by counting the successors in
+	 * {@link AllQuantorTranslation#ADAPTIVE} mode, below or at it double
+	 * negation is used. The default is 8.
+	 *
+	 * @param adaptiveFanOutThreshold the average number of successors per subject
+	 */
+	public void setAdaptiveFanOutThreshold(double adaptiveFanOutThreshold) {
+		if(adaptiveFanOutThreshold < 0) {
+			throw new IllegalArgumentException("The fan-out threshold must not be negative, but was " + adaptiveFanOutThreshold);
+		}
+		this.adaptiveFanOutThreshold = adaptiveFanOutThreshold;
+	}
+
 	/**
 	 * How to express <code>owl:Thing</code> in SPARQL.
 	 * @param owlThingRendering the owlThingRendering to set
@@ -334,608 +615,1890 @@ public class OWLClassExpressionToSPARQLConverter implements OWLClassExpressionVi
 	public void setOwlThingRendering(OWLThingRendering owlThingRendering) {
 		this.owlThingRendering = owlThingRendering;
 	}
-	
-	public VariablesMapping getVariablesMapping() {
-		return mapping;
-	}
-	
-	private String createSelectClause(boolean countQuery) {
-		return "SELECT " + (countQuery ? "(COUNT(" : "") + (useDistinct ? " DISTINCT " : "")  + variables.firstElement() + (countQuery ? " AS " + countVar + ")" : "");
-	}
-	
-	private String createWhereClause(OWLClassExpression ce){
-		return " WHERE " + createGroupGraphPattern(ce);
-	}
-	
-	private String createGroupGraphPattern(OWLClassExpression ce) {
-		ce.accept(this);
-		return "{" + sparql + "}";
-	}
 
-//	private OWLClassExpression rewrite(OWLClassExpression ce) {
-//
-//	}
-	
-	private String createSolutionModifier() {
-		return appendix;
-	}
-	
-	private void reset(){
-		variables.clear();
-		properties.clear();
-		sparql = "";
-		appendix = "";
-		intersection = new HashMap<>();
-		mapping.reset();
+	/**
+	 * The individuals a variable ranges over if it's not bound by any other
+	 * pattern, e.g. for top-level negations, intersections of negations and
+	 * nominals translated as <code>FILTER IN</code>. By default, these are all
+	 * subjects of the dataset, i.e. <code>?s ?p ?o</code>, which means a scan
+	 * of the whole dataset.
+	 * @param individualUniverse the individualUniverse to set
+	 */
+	public void setIndividualUniverse(IndividualUniverse individualUniverse) {
+		this.individualUniverse = Objects.requireNonNull(individualUniverse);
 	}
-	
-	private int modalDepth(){
-		return variables.size();
+
+	/**
+	 * How to translate nominals, i.e. <code>owl:oneOf</code>, into SPARQL.
+	 * @param nominalTranslation the nominalTranslation to set
+	 */
+	public void setNominalTranslation(NominalTranslation nominalTranslation) {
+		this.nominalTranslation = nominalTranslation;
 	}
-	
+
 	/**
-	 * Checks whether the intersection contains at least one operand that
-	 * is not a negation.
-	 * @param intersection the intersection
-	 * @return whether the intersection contains at least one operand that
-	 * is not a negation.
+	 * Sets the maximum number of individuals of a nested nominal that is
+	 * translated as <code>FILTER IN</code> in {@link NominalTranslation#ADAPTIVE}
+	 * mode, larger nominals are translated as <code>VALUES</code>. The default
+	 * is 10.
+	 *
+	 * @param adaptiveFilterInMaxSize the maximum number of individuals
 	 */
-	private boolean containsNonNegationOperand(OWLObjectIntersectionOf intersection){
-		for (OWLClassExpression op : intersection.getOperands()) {
-			if(op.getClassExpressionType() != ClassExpressionType.OBJECT_COMPLEMENT_OF){
-				return true;
-			}
+	public void setAdaptiveFilterInMaxSize(int adaptiveFilterInMaxSize) {
+		if(adaptiveFilterInMaxSize < 0) {
+			throw new IllegalArgumentException("The maximum size of a filtered nominal must not be negative, but was " + adaptiveFilterInMaxSize);
 		}
-		return false;
-	}
-	
-	private boolean inIntersection(){
-		return intersection.containsKey(modalDepth()) ? intersection.get(modalDepth()) : false;
+		this.adaptiveFilterInMaxSize = adaptiveFilterInMaxSize;
 	}
-	
-	private void enterIntersection(){
-		naryExpressions.push(1);
-		intersection.put(modalDepth(), true);
-	}
-	
-	private void leaveIntersection(){
-		naryExpressions.pop();
-		intersection.remove(modalDepth());
+
+	/**
+	 * How to render negated graph patterns in SPARQL. <code>MINUS</code> and
+	 * <code>OPTIONAL</code> are only used where they are equivalent to
+	 * <code>FILTER NOT EXISTS</code>, see {@link NegationRendering}.
+	 * @param negationRendering the negationRendering to set
+	 */
+	public void setNegationRendering(NegationRendering negationRendering) {
+		this.negationRendering = negationRendering;
 	}
-	
-	private String asTriplePattern(String subject, String predicate, String object){
-		return String.format(TRIPLE_PATTERN, subject, predicate, object);
+
+	/**
+	 * How to translate minimum cardinality restrictions, i.e.
+	 * <code>owl:minQualifiedCardinality</code>, into SPARQL.
+	 * @param minCardinalityTranslation the minCardinalityTranslation to set
+	 */
+	public void setMinCardinalityTranslation(MinCardinalityTranslation minCardinalityTranslation) {
+		this.minCardinalityTranslation = minCardinalityTranslation;
 	}
-	
-	private String asTriplePattern(String subject, OWLEntity predicate, OWLEntity object){
-		return asTriplePattern(subject, render(predicate), render(object));
+
+	/**
+	 * Sets the maximum cardinality of a minimum cardinality restriction that
+	 * is translated by joining distinct successors in
+	 * {@link MinCardinalityTranslation#DISTINCT_SUCCESSORS} mode, larger
+	 * cardinalities are counted. The default is 3.
+	 *
+	 * @param distinctSuccessorsMaxCardinality the maximum cardinality
+	 */
+	public void setDistinctSuccessorsMaxCardinality(int distinctSuccessorsMaxCardinality) {
+		if(distinctSuccessorsMaxCardinality < 0) {
+			throw new IllegalArgumentException("The maximum cardinality must not be negative, but was " + distinctSuccessorsMaxCardinality);
+		}
+		this.distinctSuccessorsMaxCardinality = distinctSuccessorsMaxCardinality;
 	}
-	
-	private String asTriplePattern(String subject, OWLEntity predicate, String object){
-		return asTriplePattern(subject, render(predicate), object);
+
+	/**
+	 * How to translate maximum cardinality restrictions, i.e.
+	 * <code>owl:maxQualifiedCardinality</code>, into SPARQL.
+	 * @param maxCardinalityTranslation the maxCardinalityTranslation to set
+	 */
+	public void setMaxCardinalityTranslation(MaxCardinalityTranslation maxCardinalityTranslation) {
+		this.maxCardinalityTranslation = maxCardinalityTranslation;
 	}
-	
-	private String asTriplePattern(String subject, OWLEntity predicate, OWLLiteral object){
-		return asTriplePattern(subject, render(predicate), render(object));
+
+	/**
+	 * Sets the maximum cardinality of a maximum cardinality restriction that
+	 * is translated by the absence of further distinct successors in
+	 * {@link MaxCardinalityTranslation#FILTER_NOT_EXISTS} mode, larger
+	 * cardinalities are counted. The default is 1, i.e. only
+	 * <code>&lt;= 1</code> restrictions are translated by
+	 * <code>FILTER NOT EXISTS</code>.
+	 *
+	 * @param filterNotExistsMaxCardinality the maximum cardinality
+	 */
+	public void setFilterNotExistsMaxCardinality(int filterNotExistsMaxCardinality) {
+		if(filterNotExistsMaxCardinality < 0) {
+			throw new IllegalArgumentException("The maximum cardinality must not be negative, but was " + filterNotExistsMaxCardinality);
+		}
+		this.filterNotExistsMaxCardinality = filterNotExistsMaxCardinality;
 	}
-	
-	private String genericTriplePattern(){
-//		BasicPattern bgp = new BasicPattern();
-//		bgp.add(Triple.create(NodeFactory.createVariable("s"), NodeFactory.createVariable("s"), NodeFactory.createVariable("s")));
-//		System.out.println(FormatterElement.asString(new ElementTriplesBlock(bgp)));
-		return variables.peek() + " ?p ?o .";
+
+	/**
+	 * How to count the successors of cardinality restrictions that are
+	 * nested in intersections or existential restrictions, i.e. whether the
+	 * sub-queries are restricted to the candidates of the enclosing pattern.
+	 * The selectivity estimator, if set, decides which triple patterns
+	 * of the enclosing pattern shrink the aggregation.
+	 * @param cardinalitySubqueryTranslation the cardinalitySubqueryTranslation to set
+	 */
+	public void setCardinalitySubqueryTranslation(CardinalitySubqueryTranslation cardinalitySubqueryTranslation) {
+		this.cardinalitySubqueryTranslation = cardinalitySubqueryTranslation;
 	}
-	
-	private String typeTriplePattern(String var, String type){
-		return var + (useReasoning ? " <http://www.w3.org/1999/02/22-rdf-syntax-ns#type>/<http://www.w3.org/2000/01/rdf-schema#subClassOf>* " : " a ") + type + " .\n";
+
+	/**
+	 * Sets the maximum number of individuals of a nominal, i.e.
+	 * <code>owl:oneOf</code>, in the queries returned by
+	 * {@link #asQueries(OWLClassExpression, String)}. Some triple stores
+	 * fail on queries with tens of thousands of individuals in a single
+	 * <code>VALUES</code> block or <code>FILTER</code>.
+	 *
+	 * @param maxNominalSize the maximum size, or {@link Integer#MAX_VALUE} to
+	 *            not split nominals at all
+	 */
+	public void setMaxNominalSize(int maxNominalSize) {
+		if(maxNominalSize < 1) {
+			throw new IllegalArgumentException("The maximum size of a nominal must be positive, but was " + maxNominalSize);
+		}
+		this.maxNominalSize = maxNominalSize;
 	}
-	
-	private String equalExpressions(String expr1, String expr2, boolean negated){
-		return (equalityRendering == EqualityRendering.TERM_EQUALITY) ?
-				(negated ? "!" : "") + "sameTerm(" + expr1 + ", " + expr2 + ")" :
-					expr1 + (negated ? " != " : " = ") + expr2;
+
+	/**
+	 * Sets the estimator that is used to order the operands of intersections
+	 * and the triple patterns of each basic graph pattern by their
+	 * selectivity, i.e. the most selective ones are put first. This helps
+	 * triple stores that don't reorder the patterns themselves, in particular
+	 * inside of <code>FILTER NOT EXISTS</code> and subqueries.
+	 *
+	 * @param selectivityEstimator the estimator, or <code>null</code> to keep
+	 *            the order of the class expression
+	 * @see org.aksw.owl2sparql.selectivity.DatasetStatistics
+	 */
+	public void setSelectivityEstimator(SelectivityEstimator selectivityEstimator) {
+		this.selectivityEstimator = selectivityEstimator;
 	}
-	
-	private String filter(String expr){
-		return "FILTER(" + expr + ")";
+
+	/**
+	 * Sets the optimizer that rewrites each created query, e.g. by merging
+	 * basic graph patterns, removing redundant triple patterns and placing the
+	 * filters after the patterns binding their variables.
+	 *
+	 * @param queryOptimizer the optimizer, or <code>null</code> to return the
+	 *            queries as created
+	 * @see ConversionMetadata#getRewrites()
+	 */
+	public void setQueryOptimizer(QueryOptimizer queryOptimizer) {
+		this.queryOptimizer = queryOptimizer;
 	}
-	
-	private String render(OWLEntity entity){
-		String s;
-		if(variableEntities.contains(entity)){
-			s = mapping.getVariable(entity);
-		} else {
-			s = "<" + entity.toStringID() + ">";
-		}
-		if(entity.isOWLObjectProperty()){
-			properties.put(modalDepth(), entity);
-		}
-		return s;
+
+	/**
+	 * Returns the mapping from the entities to the variables used in the last
+	 * conversion. If the converter is used by several threads at the same time,
+	 * it's not defined which of the conversions is returned.
+	 *
+	 * @return the variables mapping of the last conversion
+	 */
+	public VariablesMapping getVariablesMapping() {
+		return lastMapping;
 	}
-	
-	private String render(OWLLiteral literal){
-		return "\"" + literal.getLiteral() + "\"^^<" + literal.getDatatype().toStringID() + ">";
+
+	/**
+	 * Returns the metadata of the last conversion, e.g. the encoding chosen
+	 * for each universal restriction. If the converter is used by several
+	 * threads at the same time, it's not defined which of the conversions is
+	 * returned.
+	 *
+	 * @return the metadata of the last conversion
+	 */
+	public ConversionMetadata getConversionMetadata() {
+		return lastMetadata;
 	}
 
-	@Override
-	public void visit(OWLClass ce) {
-		if(ce.equals(expr) || (ignoreGenericTypeStatements && !ce.isOWLThing())){
-			if(!ce.isOWLThing() || owlThingRendering == OWLThingRendering.EXPLICIT){
-				sparql += typeTriplePattern(variables.peek(), render(ce));
-			} else {
-				sparql += asTriplePattern(variables.peek(), "?p", "?o");
+	private void finished(ConversionContext context) {
+		lastMapping = context.mapping;
+		lastMetadata = context.metadata();
+		if(mapping != null) {
+			synchronized (mapping) {
+				mapping.clear();
+				mapping.putAll(context.mapping);
 			}
 		}
 	}
 
-	@Override
-	public void visit(OWLObjectIntersectionOf ce) {
-		// if all operands are negated, we have to add a generic triple
-		if(!containsNonNegationOperand(ce) && needOuterTriplePattern){
-			sparql += genericTriplePattern();
+	/**
+	 * @return the current settings of the converter
+	 */
+	Settings settings() {
+		return new Settings(useDistinct, useReasoning, hierarchyClosure, equalityRendering, allQuantorTranslation,
+							adaptiveFanOutThreshold, owlThingRendering, individualUniverse, nominalTranslation,
+							adaptiveFilterInMaxSize, minCardinalityTranslation, distinctSuccessorsMaxCardinality,
+							maxCardinalityTranslation, filterNotExistsMaxCardinality, cardinalitySubqueryTranslation,
+							negationRendering, minimizer,
+							distinctAnalysis, selectivityEstimator, queryOptimizer);
+	}
+
+	Query createQuery(Settings settings, String rootVariable, OWLClassExpression ce, Set<? extends OWLEntity> variableEntities,
+					  boolean countQuery) {
+		Var rootVar = toVar(rootVariable);
+		ConversionContext context = new ConversionContext(this, settings, variableEntities, true);
+		ElementGroup queryPattern = context.convert(ce, rootVar);
+
+		// the entities replaced by variables are used as additional projection and grouping variables
+		List<Var> entityVars = new ArrayList<>();
+		for (OWLEntity owlEntity : variableEntities) {
+			entityVars.add(toVar(context.mapping.get(owlEntity)));
 		}
-		
-		enterIntersection();
-		List<OWLClassExpression> operands = ce.getOperandsAsList();
-		for (OWLClassExpression operand : operands) {
-			operand.accept(this);
-		}
-		Collection<OWLEntity> props = properties.get(modalDepth());
-		if(props.size() > 1){
-			Collection<String> vars = new TreeSet<>();
-			for (OWLEntity p : props) {
-				if(mapping.containsKey(p)){
-					vars.add(mapping.get(p));
+
+		Query query = createQuery(context, queryPattern, rootVar, entityVars, countQuery, settings.useDistinct);
+		finished(context);
+		return query;
+	}
+
+	private static Query createQuery(ConversionContext context, ElementGroup queryPattern, Var rootVar, List<Var> entityVars,
+									 boolean countQuery, boolean distinct) {
+		// DISTINCT is omitted if the query can't return duplicates anyway
+		if(!distinct) {
+			context.distinctReason = "DISTINCT is disabled";
+		} else if(!context.solutionModifiers.isEmpty()) {
+			distinct = false;
+			context.distinctReason = "the solutions are grouped by the projection variables";
+		} else {
+			List<Var> projectionVars = new ArrayList<>(entityVars);
+			projectionVars.add(rootVar);
+			// the placeholders of a template are bound to a single entity each
+			for (OWLEntity entity : context.variableEntities) {
+				String var = context.mapping.get(entity);
+				if(var != null) {
+					projectionVars.add(toVar(var));
 				}
 			}
-			if(vars.size() == 2){
-				List<String> varList = new ArrayList<>(vars);
-				sparql += filter(equalExpressions(varList.get(0), varList.get(1), true));
+			String duplicates = context.distinctAnalysis.duplicates(queryPattern, projectionVars);
+			distinct = duplicates != null;
+			context.distinctReason = distinct
+					? duplicates
+					: "all variables are determined by the projection variables";
+		}
+		context.distinct = distinct;
+
+		Query query = new Query();
+		query.setQuerySelectType();
+
+		if(countQuery) {
+			if(!context.solutionModifiers.isEmpty()) {
+				// the grouping of a top-level cardinality restriction has to be done before counting
+				Query subQuery = new Query();
+				subQuery.setQuerySelectType();
+				entityVars.forEach(subQuery::addResultVar);
+				subQuery.addResultVar(rootVar);
+				subQuery.setQueryPattern(queryPattern);
+				entityVars.forEach(subQuery::addGroupBy);
+				context.createSolutionModifier(subQuery);
+
+				queryPattern = new ElementGroup();
+				queryPattern.addElement(new ElementSubQuery(subQuery));
+			}
+			query.setQueryPattern(queryPattern);
+
+			entityVars.forEach(query::addResultVar);
+			Expr count = query.allocAggregate(distinct
+													  ? new AggCountVarDistinct(new ExprVar(rootVar))
+													  : new AggCountVar(new ExprVar(rootVar)));
+			query.addResultVar(toVar(COUNT_VAR), count);
+
+			if(!entityVars.isEmpty()) {
+				entityVars.forEach(query::addGroupBy);
+				query.addOrderBy(toVar(COUNT_VAR), Query.ORDER_DESCENDING);
 			}
+		} else {
+			query.setDistinct(distinct);
+			query.setQueryPattern(queryPattern);
+
+			entityVars.forEach(query::addResultVar);
+			query.addResultVar(rootVar);
+
+			context.createSolutionModifier(query);
 		}
-		leaveIntersection();
-	}
 
-	@Override
-	public void visit(OWLObjectUnionOf ce) {
-		naryExpressions.push(0);
-		List<OWLClassExpression> operands = ce.getOperandsAsList();
-		for (int i = 0; i < operands.size()-1; i++) {
-			sparql += "{";
-			operands.get(i).accept(this);
-			sparql += "}";
-			sparql += " UNION ";
-		}
-		sparql += "{";
-		operands.get(operands.size()-1).accept(this);
-		sparql += "}";
-		naryExpressions.pop();
-	}
-	
-	private boolean inUnion() {
-		return !naryExpressions.isEmpty() && naryExpressions.peek().equals(0);
+		if(context.queryOptimizer != null) {
+			QueryOptimizer.Result result = context.queryOptimizer.optimize(query);
+			context.rewrites = result.getRewrites();
+			query = result.getQuery();
+		}
+
+		return query;
 	}
 
-	@Override
-	public void visit(OWLObjectComplementOf ce) {
-		if((!inIntersection() &&
-//				modalDepth() == 1 &&
-				needOuterTriplePattern && (existentialFillers.isEmpty() || !existentialFillers.peek().equals(ce))) || inUnion()){
-			sparql += genericTriplePattern();
+	/**
+	 * Serializes the content of the group graph pattern, i.e. without the
+	 * enclosing braces, such that it can be embedded into other patterns.
+	 */
+	static String asString(ElementGroup pattern) {
+		String s = FormatterElement.asString(pattern).trim();
+		if(s.startsWith("{") && s.endsWith("}")) {
+			s = s.substring(1, s.length() - 1);
 		}
 
-		sparql += "FILTER NOT EXISTS {";
-		ce.getOperand().accept(this);
-		sparql += "}";
+		// terminate a trailing triples block, otherwise appending further triple patterns is not possible
+		List<Element> elements = pattern.getElements();
+		if(!elements.isEmpty() && elements.get(elements.size() - 1) instanceof ElementPathBlock) {
+			s += " .";
+		}
+		return s + "\n";
 	}
 
-	@Override
-	public void visit(OWLObjectSomeValuesFrom ce) {
-		String objectVariable = mapping.newIndividualVariable();
-		OWLObjectPropertyExpression propertyExpression = ce.getProperty();
-		if(propertyExpression.isAnonymous()){
-			//property expression is inverse of a property
-			sparql += asTriplePattern(objectVariable, propertyExpression.getNamedProperty(), variables.peek());
-		} else {
-			sparql += asTriplePattern(variables.peek(), propertyExpression.getNamedProperty(), objectVariable);
-		}
-		OWLClassExpression filler = ce.getFiller();
-		existentialFillers.push(filler);
-		variables.push(objectVariable);
-		filler.accept(this);
-		variables.pop();
-		existentialFillers.pop();
-//		if(filler.isAnonymous()){
-//			variables.push(objectVariable);
-//			filler.accept(this);
-//			variables.pop();
-//		} else {
-//			sparql += triple(objectVariable, "a", filler.asOWLClass());
-//		}
-		
-	}
-	
-	private boolean isTrivialConcept(OWLClassExpression ce) {
-		return ce.isOWLThing()
-				|| (ce.getClassExpressionType() == ClassExpressionType.OBJECT_ALL_VALUES_FROM && isTrivialConcept(((OWLObjectAllValuesFrom) ce)
-						.getFiller()));
+	private static Var toVar(String name){
+		return Var.alloc(name.startsWith("?") ? name.substring(1) : name);
 	}
 
-	@Override
-	public void visit(OWLObjectAllValuesFrom ce) {
-		OWLClassExpression filler = ce.getFiller();
-		
-		String subject = variables.peek();
-		String objectVariable = mapping.newIndividualVariable();
-		
-		if(isTrivialConcept(filler)) { 
-			// \forall r.\top is trivial, as everything belongs to that concept
-			// thus, we can omit it if it's used in a conjunction or as complex filler
-			if(!inIntersection()) {
-				sparql += asTriplePattern(subject, mapping.newPropertyVariable(), objectVariable);
+	/**
+	 * A snapshot of the settings of the converter, used to run a conversion
+	 * with consistent settings and as part of cache keys.
+	 */
+	static final class Settings {
+
+		final boolean useDistinct;
+		final boolean useReasoning;
+		final HierarchyClosure hierarchyClosure;
+		final EqualityRendering equalityRendering;
+		final AllQuantorTranslation allQuantorTranslation;
+		final double adaptiveFanOutThreshold;
+		final OWLThingRendering owlThingRendering;
+		final IndividualUniverse individualUniverse;
+		final NominalTranslation nominalTranslation;
+		final int adaptiveFilterInMaxSize;
+		final MinCardinalityTranslation minCardinalityTranslation;
+		final int distinctSuccessorsMaxCardinality;
+		final MaxCardinalityTranslation maxCardinalityTranslation;
+		final int filterNotExistsMaxCardinality;
+		final CardinalitySubqueryTranslation cardinalitySubqueryTranslation;
+		final NegationRendering negationRendering;
+		final OWLClassExpressionMinimizer minimizer;
+		final DistinctAnalysis distinctAnalysis;
+		final SelectivityEstimator selectivityEstimator;
+		final QueryOptimizer queryOptimizer;
+
+		Settings(boolean useDistinct, boolean useReasoning, HierarchyClosure hierarchyClosure,
+				 EqualityRendering equalityRendering, AllQuantorTranslation allQuantorTranslation, double adaptiveFanOutThreshold,
+				 OWLThingRendering owlThingRendering,
+				 IndividualUniverse individualUniverse, NominalTranslation nominalTranslation, int adaptiveFilterInMaxSize,
+				 MinCardinalityTranslation minCardinalityTranslation, int distinctSuccessorsMaxCardinality,
+				 MaxCardinalityTranslation maxCardinalityTranslation, int filterNotExistsMaxCardinality,
+				 CardinalitySubqueryTranslation cardinalitySubqueryTranslation,
+				 NegationRendering negationRendering,
+				 OWLClassExpressionMinimizer minimizer, DistinctAnalysis distinctAnalysis, SelectivityEstimator selectivityEstimator,
+				 QueryOptimizer queryOptimizer) {
+			this.useDistinct = useDistinct;
+			this.useReasoning = useReasoning;
+			this.hierarchyClosure = hierarchyClosure;
+			this.equalityRendering = equalityRendering;
+			this.allQuantorTranslation = allQuantorTranslation;
+			this.adaptiveFanOutThreshold = adaptiveFanOutThreshold;
+			this.owlThingRendering = owlThingRendering;
+			this.individualUniverse = individualUniverse;
+			this.nominalTranslation = nominalTranslation;
+			this.adaptiveFilterInMaxSize = adaptiveFilterInMaxSize;
+			this.minCardinalityTranslation = minCardinalityTranslation;
+			this.distinctSuccessorsMaxCardinality = distinctSuccessorsMaxCardinality;
+			this.maxCardinalityTranslation = maxCardinalityTranslation;
+			this.filterNotExistsMaxCardinality = filterNotExistsMaxCardinality;
+			this.cardinalitySubqueryTranslation = cardinalitySubqueryTranslation;
+			this.negationRendering = negationRendering;
+			this.minimizer = minimizer;
+			this.distinctAnalysis = distinctAnalysis;
+			this.selectivityEstimator = selectivityEstimator;
+			this.queryOptimizer = queryOptimizer;
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if(this == obj) {
+				return true;
 			}
-		} else {
-			// we can either use double negation on \forall r.A such that we have a logically
-			// equivalent expression \neg \exists r.\neg A
-			// or we use subselects get the individuals whose r successors are only of type A
-			if(allQuantorTranslation == AllQuantorTranslation.DOUBLE_NEGATION){
-				OWLObjectComplementOf doubleNegatedExpression = df.getOWLObjectComplementOf(
-						df.getOWLObjectSomeValuesFrom(
-								ce.getProperty(), 
-								df.getOWLObjectComplementOf(ce.getFiller())));
-				doubleNegatedExpression.accept(this);
-			} else {
-				if(!inIntersection()) {
-					sparql += asTriplePattern(subject, mapping.newPropertyVariable(), objectVariable);
-				}
-
-				OWLObjectPropertyExpression propertyExpression = ce.getProperty();
-				OWLObjectProperty predicate = propertyExpression.getNamedProperty();
-				if(propertyExpression.isAnonymous()){
-					//property expression is inverse of a property
-					sparql += asTriplePattern(objectVariable, predicate, variables.peek());
-				} else {
-					sparql += asTriplePattern(variables.peek(), predicate, objectVariable);
-				}
-				
-				String var = mapping.newIndividualVariable();
-				sparql += "{SELECT " + subject + " (COUNT(" + var + ") AS ?cnt1) WHERE {";
-				sparql += asTriplePattern(subject, predicate, var);
-				variables.push(var);
-				filler.accept(this);
-				variables.pop();
-				sparql += "} GROUP BY " + subject + "}";
-				
-				var = mapping.newIndividualVariable();
-				sparql += "{SELECT " + subject + " (COUNT(" + var + ") AS ?cnt2) WHERE {";
-				sparql += asTriplePattern(subject, predicate, var);
-				sparql += "} GROUP BY " + subject + "}";
-				
-				sparql += filter("?cnt1=?cnt2");
+			if(!(obj instanceof Settings)) {
+				return false;
 			}
+			Settings other = (Settings) obj;
+			return useDistinct == other.useDistinct
+					&& useReasoning == other.useReasoning
+					&& hierarchyClosure == other.hierarchyClosure
+					&& equalityRendering == other.equalityRendering
+					&& allQuantorTranslation == other.allQuantorTranslation
+					&& Double.compare(adaptiveFanOutThreshold, other.adaptiveFanOutThreshold) == 0
+					&& owlThingRendering == other.owlThingRendering
+					&& individualUniverse.equals(other.individualUniverse)
+					&& nominalTranslation == other.nominalTranslation
+					&& adaptiveFilterInMaxSize == other.adaptiveFilterInMaxSize
+					&& minCardinalityTranslation == other.minCardinalityTranslation
+					&& distinctSuccessorsMaxCardinality == other.distinctSuccessorsMaxCardinality
+					&& maxCardinalityTranslation == other.maxCardinalityTranslation
+					&& filterNotExistsMaxCardinality == other.filterNotExistsMaxCardinality
+					&& cardinalitySubqueryTranslation == other.cardinalitySubqueryTranslation
+					&& negationRendering == other.negationRendering
+					&& minimizer == other.minimizer
+					&& distinctAnalysis == other.distinctAnalysis
+					&& selectivityEstimator == other.selectivityEstimator
+					&& queryOptimizer == other.queryOptimizer;
 		}
-	}
 
-	@Override
-	public void visit(OWLObjectHasValue ce) {
-		OWLObjectPropertyExpression propertyExpression = ce.getProperty();
-		OWLNamedIndividual value = ce.getFiller().asOWLNamedIndividual();
-		if(propertyExpression.isAnonymous()){
-			//property expression is inverse of a property
-			sparql += asTriplePattern(value.toStringID(), propertyExpression.getNamedProperty(), variables.peek());
-		} else {
-			sparql += asTriplePattern(variables.peek(), propertyExpression.getNamedProperty(), value);
+		@Override
+		public int hashCode() {
+			return Objects.hash(useDistinct, useReasoning, System.identityHashCode(hierarchyClosure), equalityRendering,
+								allQuantorTranslation, adaptiveFanOutThreshold, owlThingRendering, individualUniverse, nominalTranslation,
+								adaptiveFilterInMaxSize, minCardinalityTranslation, distinctSuccessorsMaxCardinality,
+								maxCardinalityTranslation, filterNotExistsMaxCardinality, cardinalitySubqueryTranslation, negationRendering,
+								System.identityHashCode(minimizer),
+								System.identityHashCode(distinctAnalysis), System.identityHashCode(selectivityEstimator),
+								System.identityHashCode(queryOptimizer));
 		}
 	}
 
-	@Override
-	public void visit(OWLObjectMinCardinality ce) {
-		processObjectCardinalityRestriction(ce, ">=");
-	}
+	/**
+	 * Identifies the graph pattern fragment of a sub-expression. Besides the
+	 * sub-expression, the fragment depends on the position of the
+	 * sub-expression, i.e. the parts of the conversion state that are read
+	 * while it's converted.
+	 */
+	static final class FragmentKey {
+
+		private final OWLClassExpression ce;
+		private final boolean topLevel;
+		private final boolean inIntersection;
+		private final boolean inUnion;
+		private final boolean existentialFiller;
+		private final boolean bound;
+		private final boolean counted;
+		private final boolean joinedUnion;
+
+		FragmentKey(OWLClassExpression ce, boolean topLevel, boolean inIntersection, boolean inUnion,
+					boolean existentialFiller, boolean bound, boolean counted, boolean joinedUnion) {
+			this.ce = ce;
+			this.topLevel = topLevel;
+			this.inIntersection = inIntersection;
+			this.inUnion = inUnion;
+			this.existentialFiller = existentialFiller;
+			this.bound = bound;
+			this.counted = counted;
+			this.joinedUnion = joinedUnion;
+		}
 
-	@Override
-	public void visit(OWLObjectExactCardinality ce) {
-		processObjectCardinalityRestriction(ce, "=");
+		@Override
+		public boolean equals(Object obj) {
+			if(this == obj) {
+				return true;
+			}
+			if(!(obj instanceof FragmentKey)) {
+				return false;
+			}
+			FragmentKey other = (FragmentKey) obj;
+			return topLevel == other.topLevel
+					&& inIntersection == other.inIntersection
+					&& inUnion == other.inUnion
+					&& existentialFiller == other.existentialFiller
+					&& bound == other.bound
+					&& counted == other.counted
+					&& joinedUnion == other.joinedUnion
+					&& ce.equals(other.ce);
+		}
+
+		@Override
+		public int hashCode() {
+			return Objects.hash(ce, topLevel, inIntersection, inUnion, existentialFiller, bound, counted, joinedUnion);
+		}
 	}
 
-	@Override
-	public void visit(OWLObjectMaxCardinality ce) {
-		processObjectCardinalityRestriction(ce, "<=");
+	/**
+	 * The graph pattern fragment converted from a sub-expression, i.e. the
+	 * elements added to the enclosing group. The triple paths that have been
+	 * added to an existing triples block of the group are kept separately.
+	 * The fragment is parameterized by the incoming variable and the fresh
+	 * variables created during its conversion.
+	 */
+	static final class Fragment {
+
+		private final Var variable;
+		private final List<TriplePath> paths;
+		private final List<Element> elements;
+		private final List<Var> individualVariables;
+		private final List<Var> propertyVariables;
+		private final List<Var> classVariables;
+		private final List<Var> countVariables;
+		private final List<Map.Entry<OWLClassExpression, AllQuantorTranslation>> allQuantorTranslations;
+
+		Fragment(Var variable, List<TriplePath> paths, List<Element> elements, List<Var> individualVariables,
+				 List<Var> propertyVariables, List<Var> classVariables, List<Var> countVariables,
+				 List<Map.Entry<OWLClassExpression, AllQuantorTranslation>> allQuantorTranslations) {
+			this.variable = variable;
+			this.paths = new ArrayList<>(paths);
+			this.elements = new ArrayList<>(elements);
+			this.individualVariables = new ArrayList<>(individualVariables);
+			this.propertyVariables = new ArrayList<>(propertyVariables);
+			this.classVariables = new ArrayList<>(classVariables);
+			this.countVariables = new ArrayList<>(countVariables);
+			this.allQuantorTranslations = new ArrayList<>(allQuantorTranslations);
+
+			// a leading triples block is merged with a triples block in front of it
+			if(this.paths.isEmpty() && !this.elements.isEmpty() && this.elements.get(0) instanceof ElementPathBlock) {
+				this.paths.addAll(((ElementPathBlock) this.elements.remove(0)).getPattern().getList());
+			}
+			// a trailing triples block is extended by the following triple paths, thus, it's copied
+			int last = this.elements.size() - 1;
+			if(last >= 0 && this.elements.get(last) instanceof ElementPathBlock) {
+				ElementPathBlock block = new ElementPathBlock();
+				((ElementPathBlock) this.elements.get(last)).getPattern().getList().forEach(block::addTriplePath);
+				this.elements.set(last, block);
+			}
+		}
 	}
 
-	private void processObjectCardinalityRestriction(OWLObjectCardinalityRestriction ce, String operator) {
-		String subjectVariable = variables.peek();
-		String objectVariable = mapping.newIndividualVariable();
+	/**
+	 * The state of a single conversion. It's created for each call and used
+	 * by one thread only, the settings of the converter are copied when the
+	 * conversion starts.
+	 */
+	private static class ConversionContext implements OWLClassExpressionVisitor, OWLDataRangeVisitorEx<Expr> {
+
+		private final OWLDataFactory df;
+		private final OWLClassExpressionMinimizer minimizer;
+		private final DistinctAnalysis distinctAnalysis;
+
+		private final boolean ignoreGenericTypeStatements = true;
+		private final boolean needOuterTriplePattern;
+		private final boolean useReasoning;
+		private final HierarchyClosure hierarchyClosure;
+		private final EqualityRendering equalityRendering;
+		private final AllQuantorTranslation allQuantorTranslation;
+		private final double adaptiveFanOutThreshold;
+		private final OWLThingRendering owlThingRendering;
+		private final IndividualUniverse individualUniverse;
+		private final NominalTranslation nominalTranslation;
+		private final int adaptiveFilterInMaxSize;
+		private final MinCardinalityTranslation minCardinalityTranslation;
+		private final int distinctSuccessorsMaxCardinality;
+		private final MaxCardinalityTranslation maxCardinalityTranslation;
+		private final int filterNotExistsMaxCardinality;
+		private final CardinalitySubqueryTranslation cardinalitySubqueryTranslation;
+		private final NegationRendering negationRendering;
+		private final SelectivityEstimator selectivityEstimator;
+		private final ClassExpressionSizeEstimator sizeEstimator;
+		private final QueryOptimizer queryOptimizer;
+
+		private final Set<? extends OWLEntity> variableEntities;
+
+		private final VariablesMapping mapping = new VariablesMapping();
+
+		private final Multimap<Integer, OWLEntity> properties = HashMultimap.create();
+		private final Map<Integer, Boolean> intersection = new HashMap<>();
+		private final Deque<Integer> naryExpressions = new ArrayDeque<>();
+		private final Deque<OWLClassExpression> existentialFillers = new ArrayDeque<>();
+		// the number of enclosing fillers whose successors are counted, i.e. whose solutions must not be multiplied
+		private int countedFillers = 0;
+		// the number of enclosing union operands that are evaluated with the bindings of the preceding patterns
+		private int joinedUnionOperands = 0;
+
+		// the group graph patterns currently under construction, the innermost on top
+		private final Deque<ElementGroup> groups = new ArrayDeque<>();
+		// modifications of the outer query, e.g. GROUP BY and HAVING of a top-level cardinality restriction
+		private final List<Consumer<Query>> solutionModifiers = new ArrayList<>();
+		private final Stack<Var> variables = new Stack<>();
+
+		private OWLClassExpression expr;
+
+		private boolean negatedDataRange = false;
+
+		// the fragments of a previous conversion and the fragments of this conversion, only used if incremental
+		private Map<FragmentKey, Fragment> reusableFragments;
+		private Map<FragmentKey, Fragment> fragments;
+		private int reusedFragments;
+		// the fresh variables in the order of creation, only logged if incremental
+		private final List<Var> individualVariables = new ArrayList<>();
+		private final List<Var> propertyVariables = new ArrayList<>();
+		private final List<Var> classVariables = new ArrayList<>();
+		private final List<Var> countVariables = new ArrayList<>();
+		private int countVariableCount = 0;
+
+		// the encoding of each universal restriction in the order of conversion
+		private final List<Map.Entry<OWLClassExpression, AllQuantorTranslation>> allQuantorTranslations = new ArrayList<>();
+
+		// whether the query uses DISTINCT and why, only set if a query has been created
+		private boolean distinct;
+		private String distinctReason;
+		// the rewrites of the optimizer that changed the query
+		private Set<QueryOptimizer.Rewrite> rewrites = Collections.emptySet();
+
+		ConversionContext(OWLClassExpressionToSPARQLConverter converter, Settings settings,
+						  Set<? extends OWLEntity> variableEntities, boolean needOuterTriplePattern) {
+			this.df = converter.df;
+			this.minimizer = settings.minimizer;
+			this.distinctAnalysis = settings.distinctAnalysis;
+			this.useReasoning = settings.useReasoning;
+			this.hierarchyClosure = settings.useReasoning ? settings.hierarchyClosure : null;
+			this.equalityRendering = settings.equalityRendering;
+			this.allQuantorTranslation = settings.allQuantorTranslation;
+			this.adaptiveFanOutThreshold = settings.adaptiveFanOutThreshold;
+			this.owlThingRendering = settings.owlThingRendering;
+			this.individualUniverse = settings.individualUniverse;
+			this.nominalTranslation = settings.nominalTranslation;
+			this.adaptiveFilterInMaxSize = settings.adaptiveFilterInMaxSize;
+			this.minCardinalityTranslation = settings.minCardinalityTranslation;
+			this.distinctSuccessorsMaxCardinality = settings.distinctSuccessorsMaxCardinality;
+			this.maxCardinalityTranslation = settings.maxCardinalityTranslation;
+			this.filterNotExistsMaxCardinality = settings.filterNotExistsMaxCardinality;
+			this.cardinalitySubqueryTranslation = settings.cardinalitySubqueryTranslation;
+			this.negationRendering = settings.negationRendering;
+			this.selectivityEstimator = settings.selectivityEstimator;
+			this.sizeEstimator = selectivityEstimator != null ? new ClassExpressionSizeEstimator(selectivityEstimator) : null;
+			this.queryOptimizer = settings.queryOptimizer;
+			this.variableEntities = variableEntities;
+			this.needOuterTriplePattern = needOuterTriplePattern;
+		}
 
-		int cardinality = ce.getCardinality();
+		/**
+		 * Enables the memoization of the fragments converted from the
+		 * sub-expressions, the given fragments of a previous conversion are
+		 * reused.
+		 */
+		void enableIncrementalConversion(Map<FragmentKey, Fragment> reusableFragments) {
+			this.reusableFragments = reusableFragments;
+			this.fragments = new HashMap<>();
+		}
 
-		boolean maxOneCardinalityAsFilterNotExists = true;
-		boolean useMaxCardOptimization = ce.getClassExpressionType() ==  OBJECT_MAX_CARDINALITY && cardinality == 1 && maxOneCardinalityAsFilterNotExists;
+		ElementGroup convert(OWLClassExpression ce, Var rootVariable) {
+			variables.push(rootVariable);
 
-		if(useMaxCardOptimization){
-			// process the restriction once with the filler variable ?o1
-			processPropertyRestriction(ce, subjectVariable, objectVariable);
+			// minimize the class expression
+			this.expr = minimizer.minimize(ce);
+			if(!expr.equals(ce)) {
+				logger.info("CE rewritten to " + expr);
+			}
 
-			sparql += "FILTER NOT EXISTS {";
+			if(expr.equals(df.getOWLThing())) {
+				logger.warn("Expression is logically equivalent to owl:Thing, thus, the SPARQL query returns all triples.");
+			}
 
-			// we need a second filler variable ?o2
-			String objectVariable2 = mapping.newIndividualVariable();
+			// convert
+			ElementGroup pattern = enterGroup();
+			expr.accept(this);
+			leaveGroup();
 
-			// process the restriction again with the new filler variable
-			processPropertyRestriction(ce, subjectVariable, objectVariable2);
+			if(cardinalitySubqueryTranslation == CardinalitySubqueryTranslation.OUTER_CANDIDATES) {
+				pattern = CardinalityCandidates.restrict(pattern, selectivityEstimator);
+			}
 
-			// add FILTER(?o1 != ?o2)
-			sparql += filter(equalExpressions(objectVariable, objectVariable2, true));
-			sparql += "}";
-		} else {
-			if(!useMaxCardOptimization && (inIntersection() || modalDepth() > 1)){
-				sparql += "{SELECT " + subjectVariable + " WHERE {";
+			return pattern;
+		}
+
+		ElementGroup convert(OWLDataRange dr, Var rootVariable) {
+			variables.push(rootVariable);
+
+			// convert
+			ElementGroup pattern = enterGroup();
+			processDataRange(dr);
+			leaveGroup();
+
+			return pattern;
+		}
+
+		ConversionMetadata metadata() {
+			return new ConversionMetadata(allQuantorTranslations, distinct, distinctReason, rewrites);
+		}
+
+		private void createSolutionModifier(Query query) {
+			for (Consumer<Query> solutionModifier : solutionModifiers) {
+				solutionModifier.accept(query);
 			}
+		}
 
-			processPropertyRestriction(ce, subjectVariable, objectVariable);
+		private int modalDepth(){
+			return variables.size();
+		}
 
-			String grouping = " GROUP BY " + subjectVariable + " HAVING(COUNT(" + objectVariable + ")" + operator + cardinality + ")";
-			if(inIntersection() || modalDepth() > 1){
-				sparql += "}" + grouping + "}";
+		/**
+		 * Checks whether the intersection contains at least one operand that
+		 * is not a negation.
+		 * @param intersection the intersection
+		 * @return whether the intersection contains at least one operand that
+		 * is not a negation.
+		 */
+		private boolean containsNonNegationOperand(OWLObjectIntersectionOf intersection){
+			for (OWLClassExpression op : intersection.getOperands()) {
+				if(op.getClassExpressionType() != ClassExpressionType.OBJECT_COMPLEMENT_OF){
+					return true;
+				}
+			}
+			return false;
+		}
+
+		private boolean inIntersection(){
+			return intersection.containsKey(modalDepth()) ? intersection.get(modalDepth()) : false;
+		}
+
+		private void enterIntersection(){
+			naryExpressions.push(1);
+			intersection.put(modalDepth(), true);
+		}
+
+		private void leaveIntersection(){
+			naryExpressions.pop();
+			intersection.remove(modalDepth());
+		}
+
+		/**
+		 * Starts a new group graph pattern, all following elements are added to
+		 * this group until {@link #leaveGroup()} is called.
+		 */
+		private ElementGroup enterGroup(){
+			ElementGroup group = new ElementGroup();
+			groups.push(group);
+			return group;
+		}
+
+		private ElementGroup leaveGroup(){
+			ElementGroup group = groups.pop();
+			if(selectivityEstimator != null) {
+				orderTriplePaths(group);
+			}
+			return group;
+		}
+
+		/**
+		 * Puts the most selective triple patterns of each triples block of the
+		 * group first. The blocks are replaced instead of modified, as they
+		 * might be shared with fragments of an incremental conversion.
+		 */
+		private void orderTriplePaths(ElementGroup group){
+			// nested groups are correlated with the enclosing pattern by the current subject
+			Set<Var> boundVariables = groups.isEmpty()
+					? Collections.<Var>emptySet()
+					: Collections.singleton(variables.peek());
+			List<Element> elements = group.getElements();
+			for (int i = 0; i < elements.size(); i++) {
+				if(elements.get(i) instanceof ElementPathBlock) {
+					List<TriplePath> paths = ((ElementPathBlock) elements.get(i)).getPattern().getList();
+					List<TriplePath> orderedPaths = TriplePathOrdering.order(paths, selectivityEstimator, boundVariables);
+					if(!orderedPaths.equals(paths)) {
+						ElementPathBlock block = new ElementPathBlock();
+						orderedPaths.forEach(block::addTriplePath);
+						elements.set(i, block);
+					}
+				}
+			}
+		}
+
+		/**
+		 * @return the operands, the most selective first if an estimator is set
+		 */
+		private List<OWLClassExpression> orderOperands(OWLObjectIntersectionOf ce){
+			List<OWLClassExpression> operands = ce.getOperandsAsList();
+			if(sizeEstimator != null) {
+				Map<OWLClassExpression, Double> sizes = new HashMap<>();
+				for (OWLClassExpression operand : operands) {
+					sizes.put(operand, sizeEstimator.estimate(operand).getEstimate());
+				}
+				operands.sort(Comparator.comparingDouble(sizes::get));
+			}
+			return operands;
+		}
+
+		private void addElement(Element element){
+			groups.peek().addElement(element);
+		}
+
+		private void addFilter(Expr expr){
+			addElement(new ElementFilter(expr));
+		}
+
+		/**
+		 * Adds the negation of the pattern, i.e. FILTER NOT EXISTS, unless
+		 * MINUS or OPTIONAL with !BOUND are configured and equivalent.
+		 */
+		private void addNegation(ElementGroup pattern){
+			if(negationRendering != NegationRendering.FILTER_NOT_EXISTS) {
+				Set<Var> outerVariables = outerVariables();
+				Set<Var> sharedVariables = outerVariables != null
+						? NegationAnalysis.sharedVariables(pattern, outerVariables,
+														   NegationAnalysis.boundVariables(groups.peek().getElements()))
+						: null;
+				if(sharedVariables != null) {
+					if(negationRendering == NegationRendering.MINUS) {
+						// ARQ substitutes the bindings of the preceding patterns into a union that is joined to
+						// them, thus, MINUS wouldn't share any variable in there and remove nothing
+						if(joinedUnionOperands == 0) {
+							addElement(new ElementMinus(pattern));
+						} else {
+							addFilter(new E_NotExists(pattern));
+						}
+						return;
+					}
+					// a variable that is only bound if the negated pattern matches
+					Set<Var> localVariables = NegationAnalysis.boundVariables(pattern.getElements());
+					localVariables.removeAll(outerVariables);
+					if(!localVariables.isEmpty()) {
+						addElement(new ElementOptional(pattern));
+						addFilter(new E_LogicalNot(new E_Bound(new ExprVar(localVariables.iterator().next()))));
+						return;
+					}
+				}
+			}
+			addFilter(new E_NotExists(pattern));
+		}
+
+		/**
+		 * @return the variables that might occur outside of a pattern that is
+		 *         negated in the current group, i.e. the variables of the
+		 *         enclosing groups, the generic triple pattern and the
+		 *         placeholders, or <code>null</code> if they are unknown
+		 */
+		private Set<Var> outerVariables(){
+			Set<Var> vars = new HashSet<>(variables);
+			vars.add(Var.alloc("p"));
+			vars.add(Var.alloc("o"));
+			for (OWLEntity entity : variableEntities) {
+				String var = mapping.get(entity);
+				if(var != null) {
+					vars.add(toVar(var));
+				}
+			}
+			for (ElementGroup group : groups) {
+				if(!NegationAnalysis.mentionedVariables(group, vars)) {
+					return null;
+				}
+			}
+			return vars;
+		}
+
+		/**
+		 * Adds the triple path to the current group. Consecutive triple paths are
+		 * collected in the same block, i.e. the same basic graph pattern.
+		 */
+		private void addTriplePath(TriplePath triplePath){
+			List<Element> elements = groups.peek().getElements();
+			ElementPathBlock block;
+			if(!elements.isEmpty() && elements.get(elements.size() - 1) instanceof ElementPathBlock) {
+				block = (ElementPathBlock) elements.get(elements.size() - 1);
 			} else {
-				appendix += grouping;
+				block = new ElementPathBlock();
+				addElement(block);
 			}
+			block.addTriplePath(triplePath);
 		}
-	}
 
-	private void processPropertyRestrictionFiller(String objectVariable, OWLClassExpression filler) {
-		variables.push(objectVariable);
-		filler.accept(this);
-		variables.pop();
-	}
+		private void addTriplePattern(Node subject, Node predicate, Node object){
+			addTriplePath(new TriplePath(Triple.create(subject, predicate, object)));
+		}
 
-	private <R extends OWLObjectRestriction & OWLQuantifiedRestriction<OWLClassExpression>> void processPropertyRestriction(
-			R ce, String subjectVariable, String objectVariable) {
-		OWLObjectPropertyExpression pe = ce.getProperty();
+		private void addTriplePattern(Node subject, OWLEntity predicate, OWLEntity object){
+			addTriplePattern(subject, predicate, render(object));
+		}
 
-		if (pe.isAnonymous()) {// property expression is inverse of a property
-			sparql += asTriplePattern(objectVariable, pe.getNamedProperty(), subjectVariable);
-		} else {
-			sparql += asTriplePattern(subjectVariable, pe.getNamedProperty(), objectVariable);
+		private void addTriplePattern(Node subject, OWLEntity predicate, Node object){
+			Node node = render(predicate);
+			Set<OWLEntity> subProperties = subEntities(predicate);
+			if(subProperties.size() > 1) {
+				Var var = newPropertyVariable();
+				addTriplePattern(subject, var, object);
+				addElement(values(var, subProperties));
+			} else {
+				addTriplePattern(subject, node, object);
+			}
 		}
 
-		// process the filler
-		processPropertyRestrictionFiller(objectVariable, ce.getFiller());
-	}
+		private void addTriplePattern(Node subject, OWLEntity predicate, OWLLiteral object){
+			addTriplePattern(subject, predicate, render(object));
+		}
 
-	@Override
-	public void visit(OWLObjectHasSelf ce) {
-		String subject = variables.peek();
-		OWLObjectPropertyExpression property = ce.getProperty();
-		sparql += asTriplePattern(subject, property.getNamedProperty(), subject);
-	}
+		/**
+		 * Binds the current variable to the individual universe, unless it's
+		 * already bound by the current group.
+		 */
+		private void addGenericTriplePattern(){
+			Var var = variables.peek();
+			if(isBound(var)) {
+				return;
+			}
+			switch (individualUniverse.getType()) {
+				case TYPED_INDIVIDUALS:
+					addTriplePattern(var, RDF.type.asNode(), newClassVariable());
+					break;
+				case CANDIDATES:
+					addElement(values(var, individualUniverse.getCandidates()));
+					break;
+				case NAMED_GRAPH:
+					ElementPathBlock block = new ElementPathBlock();
+					block.addTriple(Triple.create(var, RDF.type.asNode(), newClassVariable()));
+					ElementGroup pattern = new ElementGroup();
+					pattern.addElement(block);
+					addElement(new ElementNamedGraph(NodeFactory.createURI(individualUniverse.getGraph().toString()), pattern));
+					break;
+				default:
+					addTriplePattern(var, Var.alloc("p"), Var.alloc("o"));
+			}
+		}
 
-	@Override
-	public void visit(OWLObjectOneOf ce) {
-		String subject = variables.peek();
-		String valuesString = Joiner
-				.on(nominalTranslation == NominalTranslation.FILTER_IN ? "," : " ")
-				.join(ce.getIndividuals().stream()
-							  .map(ind -> "<" + ind.toStringID() + ">")
-							  .collect(Collectors.toList()));
-		if(nominalTranslation == NominalTranslation.FILTER_IN) {
-			if(modalDepth() == 1){
-				sparql += genericTriplePattern();
+		/**
+		 * @return whether the variable occurs in a triple pattern or the inline
+		 *         data of the current group
+		 */
+		private boolean isBound(Var var){
+			for (Element element : groups.peek().getElements()) {
+				if(element instanceof ElementPathBlock) {
+					for (TriplePath path : ((ElementPathBlock) element).getPattern()) {
+						if(var.equals(path.getSubject()) || var.equals(path.getObject())) {
+							return true;
+						}
+					}
+				} else if(element instanceof ElementData && ((ElementData) element).getVars().contains(var)) {
+					return true;
+				}
 			}
-			sparql += "FILTER(" + subject + " IN (" + valuesString + "))";
-		} else if(nominalTranslation == NominalTranslation.VALUES){
-			sparql += "VALUES " + subject + " {" + valuesString + "}";
-		} else {
-			throw new RuntimeException(nominalTranslation + " not implemented yet");
+			return false;
 		}
-	}
 
-	@Override
-	public void visit(OWLDataSomeValuesFrom ce) {
-		String objectVariable = mapping.newIndividualVariable();
-		OWLDataPropertyExpression propertyExpression = ce.getProperty();
-		sparql += asTriplePattern(variables.peek(), propertyExpression.asOWLDataProperty(), objectVariable);
-		OWLDataRange filler = ce.getFiller();
-		variables.push(objectVariable);
-		processDataRange(filler);
-		variables.pop();
-	}
+		private void addTypeTriplePattern(Node var, OWLClass cls){
+			Node type = render(cls);
+			Set<OWLEntity> subClasses = subEntities(cls);
+			if(subClasses.size() > 1) {
+				Var clsVar = newClassVariable();
+				addTriplePattern(var, RDF.type.asNode(), clsVar);
+				addElement(values(clsVar, subClasses));
+			} else if(useReasoning && (hierarchyClosure == null || variableEntities.contains(cls))) {
+				addTriplePath(new TriplePath(var, TYPE_PATH, type));
+			} else {
+				addTriplePattern(var, RDF.type.asNode(), type);
+			}
+		}
 
-	@Override
-	public void visit(OWLDataAllValuesFrom ce) {
-		OWLDataRange filler = ce.getFiller();
-
-		String subject = variables.peek();
-		String objectVariable = mapping.newIndividualVariable();
-
-		// we can either use double negation on \forall r.A such that we have a logically
-		// equivalent expression \neg \exists r.\neg A
-		// or we use subselects get the individuals whose r successors are only of type A
-		if(allQuantorTranslation == AllQuantorTranslation.DOUBLE_NEGATION){
-			OWLObjectComplementOf doubleNegatedExpression = df.getOWLObjectComplementOf(
-					df.getOWLDataSomeValuesFrom(
-							ce.getProperty(),
-							df.getOWLDataComplementOf(ce.getFiller())));
-			doubleNegatedExpression.accept(this);
-		} else {
-			if(!inIntersection()) {
-				sparql += asTriplePattern(subject, mapping.newPropertyVariable(), objectVariable);
+		/**
+		 * @return the entity and its sub-entities if the hierarchy is expanded,
+		 *         otherwise only the entity
+		 */
+		private Set<OWLEntity> subEntities(OWLEntity entity){
+			if(hierarchyClosure == null || variableEntities.contains(entity)) {
+				return Collections.singleton(entity);
 			}
+			return hierarchyClosure.getSubEntities(entity);
+		}
 
-			OWLDataPropertyExpression propertyExpression = ce.getProperty();
-			OWLDataProperty predicate = propertyExpression.asOWLDataProperty();
+		/**
+		 * @return VALUES <code>var</code> {<code>entities</code>}
+		 */
+		private static ElementData values(Var var, Collection<? extends OWLEntity> entities){
+			ElementData data = new ElementData();
+			data.add(var);
+			for (OWLEntity entity : entities) {
+				data.add(BindingFactory.binding(var, NodeFactory.createURI(entity.toStringID())));
+			}
+			return data;
+		}
+
+		private Expr equalExpressions(Var var1, Var var2, boolean negated){
+			Expr expr1 = new ExprVar(var1);
+			Expr expr2 = new ExprVar(var2);
+			if(equalityRendering == EqualityRendering.TERM_EQUALITY) {
+				Expr sameTerm = new E_SameTerm(expr1, expr2);
+				return negated ? new E_LogicalNot(sameTerm) : sameTerm;
+			}
+			return negated ? new E_NotEquals(expr1, expr2) : new E_Equals(expr1, expr2);
+		}
+
+		private static Expr compare(Expr left, String operator, Expr right){
+			switch (operator) {
+				case ">=": return new E_GreaterThanOrEqual(left, right);
+				case "<=": return new E_LessThanOrEqual(left, right);
+				case "=": return new E_Equals(left, right);
+				default: throw new IllegalArgumentException("Unsupported comparison operator " + operator);
+			}
+		}
+
+		/**
+		 * @return COUNT(<code>object</code>), respectively COUNT(DISTINCT <code>object</code>)
+		 *         if the hierarchy is expanded, since a successor can match several
+		 *         sub-properties and subclasses then
+		 */
+		private Aggregator count(Var object){
+			return hierarchyClosure != null
+					? new AggCountVarDistinct(new ExprVar(object))
+					: new AggCountVar(new ExprVar(object));
+		}
+
+		/**
+		 * Adds GROUP BY <code>subject</code> HAVING(COUNT(<code>object</code>) <code>operator</code> <code>cardinality</code>)
+		 * to the given query.
+		 */
+		private void addCardinalityCondition(Query query, Var subject, Var object, String operator, int cardinality){
+			query.addGroupBy(subject);
+			Expr count = query.allocAggregate(count(object));
+			query.addHavingCondition(compare(count, operator, NodeValue.makeInteger(cardinality)));
+		}
+
+		/**
+		 * Returns SELECT <code>subject</code> WHERE {<code>pattern</code>} GROUP BY <code>subject</code>
+		 * HAVING(COUNT(<code>object</code>) <code>operator</code> <code>cardinality</code>)
+		 */
+		private Query cardinalityQuery(Var subject, Var object, String operator, int cardinality, ElementGroup pattern){
+			Query query = new Query();
+			query.setQuerySelectType();
+			query.addResultVar(subject);
+			query.setQueryPattern(pattern);
+			addCardinalityCondition(query, subject, object, operator, cardinality);
+			return query;
+		}
+
+		/**
+		 * Returns SELECT <code>subject</code> (COUNT(<code>object</code>) AS <code>countVar</code>) WHERE {<code>pattern</code>}
+		 * GROUP BY <code>subject</code>
+		 */
+		private Query countQuery(Var subject, Var object, Var countVar, ElementGroup pattern){
+			Query query = new Query();
+			query.setQuerySelectType();
+			query.addResultVar(subject);
+			query.addResultVar(countVar, query.allocAggregate(count(object)));
+			query.setQueryPattern(pattern);
+			query.addGroupBy(subject);
+			return query;
+		}
+
+		private Var newIndividualVariable(){
+			Var var = toVar(mapping.newIndividualVariable());
+			if(fragments != null) {
+				individualVariables.add(var);
+			}
+			return var;
+		}
+
+		private Var newPropertyVariable(){
+			Var var = toVar(mapping.newPropertyVariable());
+			if(fragments != null) {
+				propertyVariables.add(var);
+			}
+			return var;
+		}
+
+		private Var newClassVariable(){
+			Var var = toVar(mapping.newClassVariable());
+			if(fragments != null) {
+				classVariables.add(var);
+			}
+			return var;
+		}
+
+		/**
+		 * @return a fresh variable for the number of successors compared by a
+		 *         universal restriction, i.e. <code>?cnt1</code>, <code>?cnt2</code>, ...
+		 */
+		private Var newCountVariable(){
+			Var var = Var.alloc("cnt" + ++countVariableCount);
+			if(fragments != null) {
+				countVariables.add(var);
+			}
+			return var;
+		}
+
+		/**
+		 * Returns the encoding of the universal restriction and records it in
+		 * the metadata of the conversion. In adaptive mode, the successors are
+		 * counted if the property has many successors per subject on average.
+		 */
+		private AllQuantorTranslation allQuantorTranslation(OWLClassExpression ce, OWLProperty property, boolean inverse){
+			AllQuantorTranslation translation = allQuantorTranslation;
+			if(translation == AllQuantorTranslation.ADAPTIVE) {
+				translation = fanOut(property, inverse) > adaptiveFanOutThreshold
+						? AllQuantorTranslation.SUBSELECT_COUNT_EQUALS
+						: AllQuantorTranslation.DOUBLE_NEGATION;
+			} else if(translation == AllQuantorTranslation.DOUBLE_NEGATION_STRICT) {
+				// not supported yet, the successors are counted instead
+				translation = AllQuantorTranslation.SUBSELECT_COUNT_EQUALS;
+			} else if(translation == AllQuantorTranslation.DOUBLE_NEGATION_PATH) {
+				// a single restriction, i.e. there is no chain to collapse
+				translation = AllQuantorTranslation.DOUBLE_NEGATION;
+			}
+			allQuantorTranslations.add(Maps.immutableEntry(ce, translation));
+			return translation;
+		}
+
+		/**
+		 * @return the average number of successors per subject of the property,
+		 *         or 0 if unknown
+		 */
+		private double fanOut(OWLProperty property, boolean inverse){
+			if(selectivityEstimator == null || variableEntities.contains(property)) {
+				return 0;
+			}
+			Node predicate = NodeFactory.createURI(property.toStringID());
+			long subjects = inverse
+					? selectivityEstimator.getObjectCount(predicate)
+					: selectivityEstimator.getSubjectCount(predicate);
+			return subjects == 0 ? 0 : selectivityEstimator.getTripleCount(predicate) / (double) subjects;
+		}
+
+		/**
+		 * Converts a sub-expression. In an incremental conversion the fragment
+		 * of the sub-expression is either reused from the previous conversion,
+		 * or recorded such that it can be reused by the next one.
+		 */
+		private void process(OWLClassExpression ce) {
+			if(fragments == null || !ce.isAnonymous()) {
+				ce.accept(this);
+				return;
+			}
+
+			FragmentKey key = new FragmentKey(ce, modalDepth() == 1, inIntersection(), inUnion(),
+											  !existentialFillers.isEmpty() && existentialFillers.peek().equals(ce),
+											  isBound(variables.peek()), countedFillers > 0, joinedUnionOperands > 0);
+			Fragment fragment = reusableFragments.get(key);
+			if(fragment != null) {
+				reuse(fragment);
+				fragments.put(key, fragment);
+				reusedFragments++;
+				return;
+			}
+
+			// the state before the conversion, the first triple paths might be added to the last block of the group
+			List<Element> elements = groups.peek().getElements();
+			int firstElement = elements.size();
+			ElementPathBlock lastBlock = firstElement > 0 && elements.get(firstElement - 1) instanceof ElementPathBlock
+					? (ElementPathBlock) elements.get(firstElement - 1)
+					: null;
+			int firstPath = lastBlock != null ? lastBlock.getPattern().size() : 0;
+			int firstIndividualVariable = individualVariables.size();
+			int firstPropertyVariable = propertyVariables.size();
+			int firstClassVariable = classVariables.size();
+			int firstCountVariable = countVariables.size();
+			int firstAllQuantorTranslation = allQuantorTranslations.size();
+			int firstSolutionModifier = solutionModifiers.size();
+
+			ce.accept(this);
+
+			// modifications of the outer query can't be reused
+			if(solutionModifiers.size() == firstSolutionModifier) {
+				List<TriplePath> paths = lastBlock != null
+						? lastBlock.getPattern().getList().subList(firstPath, lastBlock.getPattern().size())
+						: Collections.<TriplePath>emptyList();
+				fragments.put(key, new Fragment(variables.peek(), paths, elements.subList(firstElement, elements.size()),
+												individualVariables.subList(firstIndividualVariable, individualVariables.size()),
+												propertyVariables.subList(firstPropertyVariable, propertyVariables.size()),
+												classVariables.subList(firstClassVariable, classVariables.size()),
+												countVariables.subList(firstCountVariable, countVariables.size()),
+												allQuantorTranslations.subList(firstAllQuantorTranslation, allQuantorTranslations.size())));
+			}
+		}
+
+		/**
+		 * Adds the fragment with fresh variables to the current group. If the
+		 * variables are the same as in the previous conversion, the elements are
+		 * shared instead of copied.
+		 */
+		private void reuse(Fragment fragment) {
+			Map<Var, Node> substitutions = new HashMap<>();
+			boolean renamed = rename(fragment.variable, variables.peek(), substitutions);
+			for (Var var : fragment.individualVariables) {
+				renamed |= rename(var, newIndividualVariable(), substitutions);
+			}
+			for (Var var : fragment.propertyVariables) {
+				renamed |= rename(var, newPropertyVariable(), substitutions);
+			}
+			for (Var var : fragment.classVariables) {
+				renamed |= rename(var, newClassVariable(), substitutions);
+			}
+			for (Var var : fragment.countVariables) {
+				renamed |= rename(var, newCountVariable(), substitutions);
+			}
+			allQuantorTranslations.addAll(fragment.allQuantorTranslations);
+
+			for (TriplePath path : fragment.paths) {
+				addTriplePath(renamed ? NodeSubstitution.substitute(path, substitutions) : path);
+			}
+			for (int i = 0; i < fragment.elements.size(); i++) {
+				Element element = fragment.elements.get(i);
+				if(renamed) {
+					element = NodeSubstitution.substitute(element, substitutions);
+				} else if(element instanceof ElementPathBlock && i == fragment.elements.size() - 1) {
+					// the trailing triples block might be extended by the following triple paths
+					ElementPathBlock block = new ElementPathBlock();
+					((ElementPathBlock) element).getPattern().getList().forEach(block::addTriplePath);
+					element = block;
+				}
+				addElement(element);
+			}
+		}
+
+		private static boolean rename(Var var, Var newVar, Map<Var, Node> substitutions) {
+			substitutions.put(var, newVar);
+			return !var.equals(newVar);
+		}
+
+		private Node render(OWLEntity entity){
+			Node node;
+			if(variableEntities.contains(entity)){
+				node = toVar(mapping.getVariable(entity));
+			} else {
+				node = NodeFactory.createURI(entity.toStringID());
+			}
+			if(entity.isOWLObjectProperty()){
+				properties.put(modalDepth(), entity);
+			}
+			return node;
+		}
+
+		private Node render(OWLLiteral literal){
+			if(literal.hasLang()) {
+				return NodeFactory.createLiteral(literal.getLiteral(), literal.getLang(), false);
+			} else if(literal.isRDFPlainLiteral()) {
+				return NodeFactory.createLiteral(literal.getLiteral());
+			}
+			return NodeFactory.createLiteral(literal.getLiteral(), datatype(literal.getDatatype()));
+		}
+
+		private static RDFDatatype datatype(OWLDatatype datatype){
+			// unknown datatypes are registered on the fly in a non-synchronized map of the type mapper
+			TypeMapper typeMapper = TypeMapper.getInstance();
+			synchronized (typeMapper) {
+				return typeMapper.getSafeTypeByName(datatype.toStringID());
+			}
+		}
+
+		@Override
+		public void visit(OWLClass ce) {
+			if(ce.equals(expr) || (ignoreGenericTypeStatements && !ce.isOWLThing())){
+				if(!ce.isOWLThing() || owlThingRendering == OWLThingRendering.EXPLICIT){
+					addTypeTriplePattern(variables.peek(), ce);
+				} else {
+					addGenericTriplePattern();
+				}
+			}
+		}
+
+		@Override
+		public void visit(OWLObjectIntersectionOf ce) {
+			// if all operands are negated, we have to add a generic triple
+			if(!containsNonNegationOperand(ce) && needOuterTriplePattern){
+				addGenericTriplePattern();
+			}
+
+			enterIntersection();
+			List<OWLClassExpression> operands = orderOperands(ce);
+			for (OWLClassExpression operand : operands) {
+				process(operand);
+			}
+			Collection<OWLEntity> props = properties.get(modalDepth());
+			if(props.size() > 1){
+				Collection<String> vars = new TreeSet<>();
+				for (OWLEntity p : props) {
+					if(mapping.containsKey(p)){
+						vars.add(mapping.get(p));
+					}
+				}
+				if(vars.size() == 2){
+					List<String> varList = new ArrayList<>(vars);
+					addFilter(equalExpressions(toVar(varList.get(0)), toVar(varList.get(1)), true));
+				}
+			}
+			leaveIntersection();
+		}
+
+		@Override
+		public void visit(OWLObjectUnionOf ce) {
+			// only a union at the beginning of the query pattern isn't joined to other patterns before
+			boolean joined = groups.size() > 1 || !groups.peek().getElements().isEmpty();
+			naryExpressions.push(0);
+			ElementUnion union = new ElementUnion();
+			for (OWLClassExpression operand : ce.getOperandsAsList()) {
+				union.addElement(enterGroup());
+				if(joined) {
+					joinedUnionOperands++;
+				}
+				process(operand);
+				if(joined) {
+					joinedUnionOperands--;
+				}
+				leaveGroup();
+			}
+			naryExpressions.pop();
+			addElement(union);
+		}
+
+		private boolean inUnion() {
+			return !naryExpressions.isEmpty() && naryExpressions.peek().equals(0);
+		}
+
+		@Override
+		public void visit(OWLObjectComplementOf ce) {
+			if((!inIntersection() &&
+	//				modalDepth() == 1 &&
+					needOuterTriplePattern && (existentialFillers.isEmpty() || !existentialFillers.peek().equals(ce))) || inUnion()){
+				addGenericTriplePattern();
+			}
+
+			ElementGroup notExistsPattern = enterGroup();
+			process(ce.getOperand());
+			leaveGroup();
+			addNegation(notExistsPattern);
+		}
+
+		@Override
+		public void visit(OWLObjectSomeValuesFrom ce) {
+			Var objectVariable = newIndividualVariable();
+			OWLObjectPropertyExpression propertyExpression = ce.getProperty();
 			if(propertyExpression.isAnonymous()){
 				//property expression is inverse of a property
-				sparql += asTriplePattern(objectVariable, predicate, variables.peek());
+				addTriplePattern(objectVariable, propertyExpression.getNamedProperty(), variables.peek());
+			} else {
+				addTriplePattern(variables.peek(), propertyExpression.getNamedProperty(), objectVariable);
+			}
+			OWLClassExpression filler = ce.getFiller();
+			existentialFillers.push(filler);
+			variables.push(objectVariable);
+			process(filler);
+			variables.pop();
+			existentialFillers.pop();
+		}
+
+		private boolean isTrivialConcept(OWLClassExpression ce) {
+			return ce.isOWLThing()
+					|| (ce.getClassExpressionType() == ClassExpressionType.OBJECT_ALL_VALUES_FROM && isTrivialConcept(((OWLObjectAllValuesFrom) ce)
+							.getFiller()));
+		}
+
+		@Override
+		public void visit(OWLObjectAllValuesFrom ce) {
+			OWLClassExpression filler = ce.getFiller();
+
+			Var subject = variables.peek();
+			Var objectVariable = newIndividualVariable();
+
+			if(isTrivialConcept(filler)) {
+				// \forall r.\top is trivial, as everything belongs to that concept
+				// thus, we can omit it if it's used in a conjunction or as complex filler
+				if(!inIntersection()) {
+					addTriplePattern(subject, newPropertyVariable(), objectVariable);
+				}
 			} else {
-				sparql += asTriplePattern(variables.peek(), predicate, objectVariable);
+				// we can either use double negation on \forall r.A such that we have a logically
+				// equivalent expression \neg \exists r.\neg A
+				// or we use subselects get the individuals whose r successors are only of type A
+				OWLObjectPropertyExpression propertyExpression = ce.getProperty();
+				OWLObjectProperty predicate = propertyExpression.getNamedProperty();
+				List<OWLObjectAllValuesFrom> chain = universalChain(ce);
+				if(chain.size() > 1) {
+					allQuantorTranslations.add(Maps.immutableEntry(ce, AllQuantorTranslation.DOUBLE_NEGATION_PATH));
+					addUniversalChain(subject, chain, objectVariable);
+				} else if(allQuantorTranslation(ce, predicate, propertyExpression.isAnonymous()) == AllQuantorTranslation.DOUBLE_NEGATION){
+					OWLObjectComplementOf doubleNegatedExpression = df.getOWLObjectComplementOf(
+							df.getOWLObjectSomeValuesFrom(
+									ce.getProperty(),
+									df.getOWLObjectComplementOf(ce.getFiller())));
+					process(doubleNegatedExpression);
+				} else {
+					if(!inIntersection()) {
+						addTriplePattern(subject, newPropertyVariable(), objectVariable);
+					}
+
+					addSuccessorPattern(subject, propertyExpression, objectVariable);
+
+					Var count1 = newCountVariable();
+					Var var = newIndividualVariable();
+					ElementGroup pattern = enterGroup();
+					addSuccessorPattern(subject, propertyExpression, var);
+					variables.push(var);
+					countedFillers++;
+					process(filler);
+					countedFillers--;
+					variables.pop();
+					leaveGroup();
+					addElement(new ElementSubQuery(countQuery(subject, var, count1, pattern)));
+
+					Var count2 = newCountVariable();
+					var = newIndividualVariable();
+					pattern = enterGroup();
+					addSuccessorPattern(subject, propertyExpression, var);
+					leaveGroup();
+					addElement(new ElementSubQuery(countQuery(subject, var, count2, pattern)));
+
+					addFilter(new E_Equals(new ExprVar(count1), new ExprVar(count2)));
+				}
 			}
+		}
 
-			String var = mapping.newIndividualVariable();
-			sparql += "{SELECT " + subject + " (COUNT(" + var + ") AS ?cnt1) WHERE {";
-			sparql += asTriplePattern(subject, predicate, var);
-			variables.push(var);
-			filler.accept(this);
+		/**
+		 * @return the chain of nested universal restrictions starting at the
+		 *         given one that can be collapsed into a single negation,
+		 *         empty if chains are not collapsed
+		 * @see AllQuantorTranslation#DOUBLE_NEGATION_PATH
+		 */
+		private List<OWLObjectAllValuesFrom> universalChain(OWLObjectAllValuesFrom ce){
+			List<OWLObjectAllValuesFrom> chain = new ArrayList<>();
+			if(allQuantorTranslation != AllQuantorTranslation.DOUBLE_NEGATION_PATH) {
+				return chain;
+			}
+			OWLClassExpression current = ce;
+			// properties replaced by variables can't be used in a property path
+			while(current.getClassExpressionType() == ClassExpressionType.OBJECT_ALL_VALUES_FROM
+					&& !variableEntities.contains(((OWLObjectAllValuesFrom) current).getProperty().getNamedProperty())) {
+				chain.add((OWLObjectAllValuesFrom) current);
+				current = ((OWLObjectAllValuesFrom) current).getFiller();
+			}
+			return chain;
+		}
+
+		/**
+		 * Adds the chain \forall r_1 ... \forall r_n.A as the single negation
+		 * \neg \exists r_1/.../r_n.\neg A, i.e. without binding the
+		 * intermediate successors to the individual universe.
+		 */
+		private void addUniversalChain(Var subject, List<OWLObjectAllValuesFrom> chain, Var objectVariable){
+			if((!inIntersection() && needOuterTriplePattern) || inUnion()){
+				addGenericTriplePattern();
+			}
+
+			Path path = null;
+			for (OWLObjectAllValuesFrom restriction : chain) {
+				Path step = propertyPath(restriction.getProperty());
+				path = path == null ? step : new P_Seq(path, step);
+			}
+			OWLClassExpression negatedFiller = df.getOWLObjectComplementOf(chain.get(chain.size() - 1).getFiller());
+
+			ElementGroup notExistsPattern = enterGroup();
+			addTriplePath(new TriplePath(subject, path, objectVariable));
+			existentialFillers.push(negatedFiller);
+			variables.push(objectVariable);
+			process(negatedFiller);
 			variables.pop();
-			sparql += "} GROUP BY " + subject + "}";
+			existentialFillers.pop();
+			leaveGroup();
+			addNegation(notExistsPattern);
+		}
 
-			var = mapping.newIndividualVariable();
-			sparql += "{SELECT " + subject + " (COUNT(" + var + ") AS ?cnt2) WHERE {";
-			sparql += asTriplePattern(subject, predicate, var);
-			sparql += "} GROUP BY " + subject + "}";
+		/**
+		 * @return the property, the alternative of its sub-properties if the
+		 *         hierarchy is expanded, and its inverse for an inverse property
+		 */
+		private Path propertyPath(OWLObjectPropertyExpression propertyExpression){
+			Path path = null;
+			for (OWLEntity property : subEntities(propertyExpression.getNamedProperty())) {
+				Path link = new P_Link(render(property));
+				path = path == null ? link : new P_Alt(path, link);
+			}
+			return propertyExpression.isAnonymous() ? new P_Inverse(path) : path;
+		}
 
-			sparql += filter("?cnt1=?cnt2");
+		private void addSuccessorPattern(Var subject, OWLObjectPropertyExpression propertyExpression, Var object){
+			if(propertyExpression.isAnonymous()){
+				//property expression is inverse of a property
+				addTriplePattern(object, propertyExpression.getNamedProperty(), subject);
+			} else {
+				addTriplePattern(subject, propertyExpression.getNamedProperty(), object);
+			}
 		}
-	}
 
-	@Override
-	public void visit(OWLDataHasValue ce) {
-		OWLDataPropertyExpression propertyExpression = ce.getProperty();
-		OWLLiteral value = ce.getFiller();
-		sparql += asTriplePattern(variables.peek(), propertyExpression.asOWLDataProperty(), value);
-	}
+		@Override
+		public void visit(OWLObjectHasValue ce) {
+			OWLObjectPropertyExpression propertyExpression = ce.getProperty();
+			OWLNamedIndividual value = ce.getFiller().asOWLNamedIndividual();
+			if(propertyExpression.isAnonymous()){
+				//property expression is inverse of a property
+				addTriplePattern(render(value), propertyExpression.getNamedProperty(), variables.peek());
+			} else {
+				addTriplePattern(variables.peek(), propertyExpression.getNamedProperty(), value);
+			}
+		}
 
-	@Override
-	public void visit(OWLDataMinCardinality ce) {
-		processDataCardinality(ce, ">=");
-	}
+		@Override
+		public void visit(OWLObjectMinCardinality ce) {
+			processObjectCardinalityRestriction(ce, ">=");
+		}
 
-	@Override
-	public void visit(OWLDataExactCardinality ce) {
-		processDataCardinality(ce, "=");
-	}
+		@Override
+		public void visit(OWLObjectExactCardinality ce) {
+			processObjectCardinalityRestriction(ce, "=");
+		}
 
-	@Override
-	public void visit(OWLDataMaxCardinality ce) {
-		processDataCardinality(ce, "<=");
-	}
+		@Override
+		public void visit(OWLObjectMaxCardinality ce) {
+			processObjectCardinalityRestriction(ce, "<=");
+		}
 
-	private void processDataCardinality(OWLDataCardinalityRestriction ce, String operator) {
-		String subjectVariable = variables.peek();
-		String objectVariable = mapping.newIndividualVariable();
-		OWLDataPropertyExpression propertyExpression = ce.getProperty();
-		int cardinality = ce.getCardinality();
-		sparql += "{SELECT " + subjectVariable + " WHERE {";
-		sparql += asTriplePattern(subjectVariable, propertyExpression.asOWLDataProperty(), objectVariable);
-		OWLDataRange filler = ce.getFiller();
-		variables.push(objectVariable);
-		processDataRange(filler);
-		variables.pop();
-
-		sparql += "} GROUP BY " + subjectVariable + " HAVING(COUNT(" + objectVariable + ")" + operator + cardinality + ")}";
-	}
-	
-	private void processDataRange(OWLDataRange dataRange) {
-		sparql += "FILTER(";
-		dataRange.accept(this);
-		sparql += ")";
-	}
-	
-	@Override
-	public void visit(OWLDatatype node) {
-		if (ignoreGenericTypeStatements && !node.isRDFPlainLiteral() && !node.isTopDatatype()) {
-			sparql += 
-					String.format("DATATYPE(%s) %s %s", 
-						variables.peek(),
-						(negatedDataRange ? "!=" : "="),
-						node.getIRI().toQuotedString());
+		private void processObjectCardinalityRestriction(OWLObjectCardinalityRestriction ce, String operator) {
+			Var subjectVariable = variables.peek();
+			Var objectVariable = newIndividualVariable();
+
+			int cardinality = ce.getCardinality();
+
+			if(useNoFurtherDistinctSuccessors(ce, cardinality)){
+				addNoFurtherDistinctSuccessors(objectVariable, cardinality,
+											   object -> processPropertyRestriction(ce, subjectVariable, object));
+			} else if(useDistinctSuccessors(ce, cardinality)){
+				addDistinctSuccessors(objectVariable, cardinality,
+									  object -> processPropertyRestriction(ce, subjectVariable, object));
+			} else {
+				countedFillers++;
+				if(inIntersection() || modalDepth() > 1){
+					ElementGroup pattern = enterGroup();
+					processPropertyRestriction(ce, subjectVariable, objectVariable);
+					leaveGroup();
+					addElement(new ElementSubQuery(
+							cardinalityQuery(subjectVariable, objectVariable, operator, cardinality, pattern)));
+				} else {
+					processPropertyRestriction(ce, subjectVariable, objectVariable);
+					solutionModifiers.add(query -> addCardinalityCondition(
+							query, subjectVariable, objectVariable, operator, cardinality));
+				}
+				countedFillers--;
+			}
+		}
+
+		/**
+		 * @return whether the restriction is expressed by joining distinct
+		 *         successors instead of counting them, which returns a
+		 *         solution per combination of successors, thus, it's not used
+		 *         inside of a filler whose successors are counted
+		 * @see MinCardinalityTranslation#DISTINCT_SUCCESSORS
+		 */
+		private boolean useDistinctSuccessors(OWLCardinalityRestriction<?> ce, int cardinality) {
+			return minCardinalityTranslation == MinCardinalityTranslation.DISTINCT_SUCCESSORS
+					&& (ce.getClassExpressionType() == ClassExpressionType.OBJECT_MIN_CARDINALITY
+						|| ce.getClassExpressionType() == ClassExpressionType.DATA_MIN_CARDINALITY)
+					&& cardinality >= 1 && cardinality <= distinctSuccessorsMaxCardinality
+					&& countedFillers == 0;
 		}
-	}
 
-	@Override
-	public void visit(OWLDataOneOf node) {
-		String subject = variables.peek();
-		if(modalDepth() == 1){
-			sparql += genericTriplePattern();
+		/**
+		 * @return whether the restriction is expressed by the absence of
+		 *         further distinct successors instead of counting them, which
+		 *         returns a solution per successor, thus, it's not used inside
+		 *         of a filler whose successors are counted
+		 * @see MaxCardinalityTranslation#FILTER_NOT_EXISTS
+		 */
+		private boolean useNoFurtherDistinctSuccessors(OWLCardinalityRestriction<?> ce, int cardinality) {
+			return maxCardinalityTranslation == MaxCardinalityTranslation.FILTER_NOT_EXISTS
+					&& (ce.getClassExpressionType() == OBJECT_MAX_CARDINALITY
+						|| ce.getClassExpressionType() == ClassExpressionType.DATA_MAX_CARDINALITY)
+					&& cardinality >= 1 && cardinality <= filterNotExistsMaxCardinality
+					&& countedFillers == 0;
 		}
-		sparql += subject + (negatedDataRange ? " NOT " : "") + " IN (";
-		String values = "";
-		for (OWLLiteral value : node.getValues()) {
-			if(!values.isEmpty()){
-				values += ",";
+
+		/**
+		 * Adds the pattern of each successor, the first one bound to the
+		 * given variable, and the filters that make the successors pairwise
+		 * distinct.
+		 */
+		private void addDistinctSuccessors(Var objectVariable, int cardinality, Consumer<Var> successorPattern) {
+			List<Var> successors = new ArrayList<>();
+			successors.add(objectVariable);
+			for (int i = 1; i < cardinality; i++) {
+				successors.add(newIndividualVariable());
+			}
+			for (Var successor : successors) {
+				successorPattern.accept(successor);
 			}
-			values += render(value);
+			addPairwiseDistinctFilters(successors);
 		}
-		sparql += values;
-		sparql +=  ")";
-	}
 
-	@Override
-	public void visit(OWLDataComplementOf node) {
-		negatedDataRange = true;
-		node.getDataRange().accept(this);
-		negatedDataRange = false;
-	}
+		/**
+		 * Adds the pattern of a successor bound to the given variable, and
+		 * FILTER NOT EXISTS over <code>cardinality</code> further successors
+		 * that are pairwise distinct from each other and from the first one.
+		 */
+		private void addNoFurtherDistinctSuccessors(Var objectVariable, int cardinality, Consumer<Var> successorPattern) {
+			// process the restriction once with the filler variable ?o1
+			successorPattern.accept(objectVariable);
+
+			ElementGroup notExistsPattern = enterGroup();
+			List<Var> successors = new ArrayList<>();
+			successors.add(objectVariable);
+			for (int i = 0; i < cardinality; i++) {
+				Var successor = newIndividualVariable();
+				successorPattern.accept(successor);
+				successors.add(successor);
+			}
+			addPairwiseDistinctFilters(successors);
+			leaveGroup();
+			addNegation(notExistsPattern);
+		}
 
-	@Override
-	public void visit(OWLDataIntersectionOf node) {
-		Iterator<OWLDataRange> iterator = node.getOperands().iterator();
-		while(iterator.hasNext()) {
-			iterator.next().accept(this);
-			if(iterator.hasNext()) {
-				sparql += " && ";
+		private void addPairwiseDistinctFilters(List<Var> successors) {
+			for (int i = 0; i < successors.size(); i++) {
+				for (int j = i + 1; j < successors.size(); j++) {
+					addFilter(equalExpressions(successors.get(i), successors.get(j), true));
+				}
 			}
 		}
-	}
 
-	@Override
-	public void visit(OWLDataUnionOf node) {
-		Iterator<OWLDataRange> iterator = node.getOperands().iterator();
-		while(iterator.hasNext()) {
-			iterator.next().accept(this);
-			if(iterator.hasNext()) {
-				sparql += " || ";
+		private void processPropertyRestrictionFiller(Var objectVariable, OWLClassExpression filler) {
+			variables.push(objectVariable);
+			process(filler);
+			variables.pop();
+		}
+
+		private <R extends OWLObjectRestriction & OWLQuantifiedRestriction<OWLClassExpression>> void processPropertyRestriction(
+				R ce, Var subjectVariable, Var objectVariable) {
+			OWLObjectPropertyExpression pe = ce.getProperty();
+
+			if (pe.isAnonymous()) {// property expression is inverse of a property
+				addTriplePattern(objectVariable, pe.getNamedProperty(), subjectVariable);
+			} else {
+				addTriplePattern(subjectVariable, pe.getNamedProperty(), objectVariable);
 			}
+
+			// process the filler
+			processPropertyRestrictionFiller(objectVariable, ce.getFiller());
 		}
-	}
 
-	@Override
-	public void visit(OWLDatatypeRestriction node) {
-		String subject = variables.peek();
-
-		for (Iterator<OWLFacetRestriction> iterator = node.getFacetRestrictions().iterator(); iterator.hasNext();) {
-			OWLFacetRestriction fr = iterator.next();
-			
-			OWLFacet facet = fr.getFacet();
-			OWLLiteral value = fr.getFacetValue();
-			String valueString = value.getLiteral();
-			
-			switch(facet) {
-				case LENGTH: sparql += String.format("STRLEN(STR(%s) = %d)", subject, value.parseInteger());
-					break;
-				case MIN_LENGTH: sparql += String.format("STRLEN(STR(%s) >= %d)", subject, value.parseInteger());
-					break;
-				case MAX_LENGTH: sparql += String.format("STRLEN(STR(%s) <= %d)", subject, value.parseInteger());
-					break;
-				case PATTERN: sparql += String.format("REGEX(STR(%s), %d)", subject, value.parseInteger());
-					break;
-				case LANG_RANGE:
-					break;
-				case MAX_EXCLUSIVE: sparql += subject + "<" + valueString;
-					break;
-				case MAX_INCLUSIVE: sparql += subject + "<=" + valueString;
-					break;
-				case MIN_EXCLUSIVE: sparql += subject + ">" + valueString;
-					break;
-				case MIN_INCLUSIVE: sparql += subject + ">=" + valueString;
-					break;
-				case FRACTION_DIGITS:
-					break;
-				case TOTAL_DIGITS:
-					break;
-				default:
-					break;
-			
+		@Override
+		public void visit(OWLObjectHasSelf ce) {
+			Var subject = variables.peek();
+			OWLObjectPropertyExpression property = ce.getProperty();
+			addTriplePattern(subject, property.getNamedProperty(), subject);
+		}
+
+		@Override
+		public void visit(OWLObjectOneOf ce) {
+			Var subject = variables.peek();
+			// individuals replaced by variables can't be used as values of a VALUES block
+			boolean variableIndividuals = ce.getIndividuals().stream().anyMatch(variableEntities::contains);
+			// a filter below a restriction can only be used if the successor is bound in the same group, which
+			// isn't the case for an operand of a union
+			boolean subjectBound = modalDepth() == 1 || isBound(subject);
+			NominalTranslation translation = nominalTranslation;
+			if(translation == NominalTranslation.ADAPTIVE) {
+				translation = modalDepth() > 1 && subjectBound && ce.getIndividuals().size() <= adaptiveFilterInMaxSize
+						? NominalTranslation.FILTER_IN
+						: NominalTranslation.VALUES;
 			}
-			
-			if(iterator.hasNext()) {
-				sparql += " && ";
+			// the individuals are sorted, thus, the query doesn't depend on the order of the set
+			Set<OWLIndividual> individuals = new TreeSet<>(ce.getIndividuals());
+			if(variableIndividuals && !subjectBound) {
+				// the successor is bound to each individual, one branch of a union per individual
+				ElementUnion union = new ElementUnion();
+				for (OWLIndividual ind : individuals) {
+					ElementGroup branch = new ElementGroup();
+					branch.addElement(new ElementBind(subject, individualExpr(ind)));
+					union.addElement(branch);
+				}
+				addElement(union.getElements().size() == 1 ? union.getElements().get(0) : union);
+			} else if(translation == NominalTranslation.FILTER_IN || variableIndividuals) {
+				if(modalDepth() == 1){
+					addGenericTriplePattern();
+				}
+				ExprList values = new ExprList();
+				for (OWLIndividual ind : individuals) {
+					values.add(individualExpr(ind));
+				}
+				addFilter(new E_OneOf(new ExprVar(subject), values));
+			} else if(translation == NominalTranslation.VALUES){
+				ElementData data = new ElementData();
+				data.add(subject);
+				for (OWLIndividual ind : individuals) {
+					data.add(BindingFactory.binding(subject, NodeFactory.createURI(ind.toStringID())));
+				}
+				addElement(data);
+			} else {
+				throw new RuntimeException(nominalTranslation + " not implemented yet");
 			}
 		}
-		
-		sparql += " && datatype(" + subject + ")=<" + node.getDatatype().toStringID() + ">";
+
+		/**
+		 * @return the individual as expression, i.e. the variable of a
+		 *         placeholder or the IRI
+		 */
+		private Expr individualExpr(OWLIndividual ind) {
+			return ExprUtils.nodeToExpr(ind.isNamed()
+												? render(ind.asOWLNamedIndividual())
+												: NodeFactory.createURI(ind.toStringID()));
+		}
+
+		@Override
+		public void visit(OWLDataSomeValuesFrom ce) {
+			Var objectVariable = newIndividualVariable();
+			OWLDataPropertyExpression propertyExpression = ce.getProperty();
+			addTriplePattern(variables.peek(), propertyExpression.asOWLDataProperty(), objectVariable);
+			OWLDataRange filler = ce.getFiller();
+			variables.push(objectVariable);
+			processDataRange(filler);
+			variables.pop();
+		}
+
+		@Override
+		public void visit(OWLDataAllValuesFrom ce) {
+			OWLDataRange filler = ce.getFiller();
+
+			Var subject = variables.peek();
+			Var objectVariable = newIndividualVariable();
+
+			// we can either use double negation on \forall r.A such that we have a logically
+			// equivalent expression \neg \exists r.\neg A
+			// or we use subselects get the individuals whose r successors are only of type A
+			OWLDataProperty predicate = ce.getProperty().asOWLDataProperty();
+			if(allQuantorTranslation(ce, predicate, false) == AllQuantorTranslation.DOUBLE_NEGATION){
+				OWLObjectComplementOf doubleNegatedExpression = df.getOWLObjectComplementOf(
+						df.getOWLDataSomeValuesFrom(
+								ce.getProperty(),
+								df.getOWLDataComplementOf(ce.getFiller())));
+				process(doubleNegatedExpression);
+			} else {
+				if(!inIntersection()) {
+					addTriplePattern(subject, newPropertyVariable(), objectVariable);
+				}
+
+				addTriplePattern(variables.peek(), predicate, objectVariable);
+
+				Var count1 = newCountVariable();
+				Var var = newIndividualVariable();
+				ElementGroup pattern = enterGroup();
+				addTriplePattern(subject, predicate, var);
+				variables.push(var);
+				processDataRange(filler);
+				variables.pop();
+				leaveGroup();
+				addElement(new ElementSubQuery(countQuery(subject, var, count1, pattern)));
+
+				Var count2 = newCountVariable();
+				var = newIndividualVariable();
+				pattern = enterGroup();
+				addTriplePattern(subject, predicate, var);
+				leaveGroup();
+				addElement(new ElementSubQuery(countQuery(subject, var, count2, pattern)));
+
+				addFilter(new E_Equals(new ExprVar(count1), new ExprVar(count2)));
+			}
+		}
+
+		@Override
+		public void visit(OWLDataHasValue ce) {
+			OWLDataPropertyExpression propertyExpression = ce.getProperty();
+			OWLLiteral value = ce.getFiller();
+			addTriplePattern(variables.peek(), propertyExpression.asOWLDataProperty(), value);
+		}
+
+		@Override
+		public void visit(OWLDataMinCardinality ce) {
+			processDataCardinality(ce, ">=");
+		}
+
+		@Override
+		public void visit(OWLDataExactCardinality ce) {
+			processDataCardinality(ce, "=");
+		}
+
+		@Override
+		public void visit(OWLDataMaxCardinality ce) {
+			processDataCardinality(ce, "<=");
+		}
+
+		private void processDataCardinality(OWLDataCardinalityRestriction ce, String operator) {
+			Var subjectVariable = variables.peek();
+			Var objectVariable = newIndividualVariable();
+			int cardinality = ce.getCardinality();
+			if(useNoFurtherDistinctSuccessors(ce, cardinality)) {
+				addNoFurtherDistinctSuccessors(objectVariable, cardinality,
+											   object -> processDataPropertyRestriction(ce, subjectVariable, object));
+			} else if(useDistinctSuccessors(ce, cardinality)) {
+				addDistinctSuccessors(objectVariable, cardinality,
+									  object -> processDataPropertyRestriction(ce, subjectVariable, object));
+			} else {
+				ElementGroup pattern = enterGroup();
+				processDataPropertyRestriction(ce, subjectVariable, objectVariable);
+				leaveGroup();
+
+				addElement(new ElementSubQuery(cardinalityQuery(subjectVariable, objectVariable, operator, cardinality, pattern)));
+			}
+		}
+
+		private void processDataPropertyRestriction(OWLDataCardinalityRestriction ce, Var subjectVariable, Var objectVariable) {
+			addTriplePattern(subjectVariable, ce.getProperty().asOWLDataProperty(), objectVariable);
+			variables.push(objectVariable);
+			processDataRange(ce.getFiller());
+			variables.pop();
+		}
+
+		private void processDataRange(OWLDataRange dataRange) {
+			Expr filterExpr = dataRange.accept(this);
+			if(filterExpr != null) {
+				addFilter(filterExpr);
+			}
+		}
+
+		/**
+		 * Combines the expressions by the given operator, expressions that are
+		 * <code>null</code>, i.e. do not restrict anything, are omitted.
+		 */
+		private Expr combine(Iterable<? extends OWLDataRange> dataRanges, boolean conjunction) {
+			Expr result = null;
+			for (OWLDataRange dataRange : dataRanges) {
+				Expr expr = dataRange.accept(this);
+				if(expr != null) {
+					result = result == null ? expr : conjunction ? new E_LogicalAnd(result, expr) : new E_LogicalOr(result, expr);
+				}
+			}
+			return result;
+		}
+
+		@Override
+		public Expr visit(OWLDatatype node) {
+			if (ignoreGenericTypeStatements && !node.isRDFPlainLiteral() && !node.isTopDatatype()) {
+				Expr datatype = new E_Datatype(new ExprVar(variables.peek()));
+				NodeValue datatypeIRI = NodeValue.makeNode(NodeFactory.createURI(node.getIRI().toString()));
+				return negatedDataRange ? new E_NotEquals(datatype, datatypeIRI) : new E_Equals(datatype, datatypeIRI);
+			}
+			return null;
+		}
+
+		@Override
+		public Expr visit(OWLDataOneOf node) {
+			Var subject = variables.peek();
+			if(modalDepth() == 1){
+				addGenericTriplePattern();
+			}
+			ExprList values = new ExprList();
+			for (OWLLiteral value : node.getValues()) {
+				values.add(NodeValue.makeNode(render(value)));
+			}
+			return negatedDataRange ? new E_NotOneOf(new ExprVar(subject), values) : new E_OneOf(new ExprVar(subject), values);
+		}
+
+		@Override
+		public Expr visit(OWLDataComplementOf node) {
+			negatedDataRange = true;
+			Expr expr = node.getDataRange().accept(this);
+			negatedDataRange = false;
+			return expr;
+		}
+
+		@Override
+		public Expr visit(OWLDataIntersectionOf node) {
+			return combine(node.getOperands(), true);
+		}
+
+		@Override
+		public Expr visit(OWLDataUnionOf node) {
+			return combine(node.getOperands(), false);
+		}
+
+		@Override
+		public Expr visit(OWLDatatypeRestriction node) {
+			ExprVar subject = new ExprVar(variables.peek());
+
+			Expr result = null;
+			for (OWLFacetRestriction fr : node.getFacetRestrictions()) {
+				OWLFacet facet = fr.getFacet();
+				OWLLiteral value = fr.getFacetValue();
+				NodeValue valueNode = NodeValue.makeNode(render(value));
+
+				Expr expr;
+				switch(facet) {
+					case LENGTH: expr = new E_Equals(new E_StrLength(new E_Str(subject)), valueNode);
+						break;
+					case MIN_LENGTH: expr = new E_GreaterThanOrEqual(new E_StrLength(new E_Str(subject)), valueNode);
+						break;
+					case MAX_LENGTH: expr = new E_LessThanOrEqual(new E_StrLength(new E_Str(subject)), valueNode);
+						break;
+					case PATTERN: expr = new E_Regex(new E_Str(subject), value.getLiteral(), null);
+						break;
+					case MAX_EXCLUSIVE: expr = new E_LessThan(subject, valueNode);
+						break;
+					case MAX_INCLUSIVE: expr = new E_LessThanOrEqual(subject, valueNode);
+						break;
+					case MIN_EXCLUSIVE: expr = new E_GreaterThan(subject, valueNode);
+						break;
+					case MIN_INCLUSIVE: expr = new E_GreaterThanOrEqual(subject, valueNode);
+						break;
+					case LANG_RANGE:
+					case FRACTION_DIGITS:
+					case TOTAL_DIGITS:
+					default: expr = null;
+						break;
+				}
+
+				if(expr != null) {
+					result = result == null ? expr : new E_LogicalAnd(result, expr);
+				}
+			}
+
+			OWLDatatype datatype = node.getDatatype();
+			if(!datatype.isRDFPlainLiteral() && !datatype.isTopDatatype()) {
+				Expr datatypeExpr = new E_Equals(new E_Datatype(subject), NodeValue.makeNode(NodeFactory.createURI(datatype.toStringID())));
+				result = result == null ? datatypeExpr : new E_LogicalAnd(result, datatypeExpr);
+			}
+
+			return (result != null && negatedDataRange) ? new E_LogicalNot(result) : result;
+		}
 	}
-	
+
 	public static void main(String[] args) throws Exception {
 		ToStringRenderer.getInstance().setRenderer(new DLSyntaxObjectRenderer());
 		OWLClassExpressionToSPARQLConverter converter = new OWLClassExpressionToSPARQLConverter();
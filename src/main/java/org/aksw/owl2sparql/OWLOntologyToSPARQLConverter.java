@@ -0,0 +1,201 @@
+/*
+ * #%L
+ * owl2sparql-core
+ * %%
+ * Copyright (C) 2015 AKSW
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package org.aksw.owl2sparql;
+
+import org.semanticweb.owlapi.model.AxiomType;
+import org.semanticweb.owlapi.model.OWLAxiom;
+import org.semanticweb.owlapi.model.OWLOntology;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.stream.Stream;
+
+/**
+ * Converts all axioms of an ontology, or any other stream of OWL axioms, into
+ * SPARQL queries. The axioms are converted in parallel on the given executor.
+ * <p>
+ * Axioms that are not supported by the {@link OWLAxiomToSPARQLConverter},
+ * e.g. SWRL rules, HasKey axioms and ABox axioms, are skipped and reported in
+ * the summary of the {@link OntologyConversion}.
+ *
+ * @author Lorenz Buehmann
+ *
+ */
+public class OWLOntologyToSPARQLConverter {
+
+	private static final Logger logger = LoggerFactory.getLogger(OWLOntologyToSPARQLConverter.class);
+
+	private final Executor executor;
+
+	private final String targetSubjectVariable;
+	private final String targetObjectVariable;
+
+	private final OWLClassExpressionToSPARQLConverter expressionConverter = new OWLClassExpressionToSPARQLConverter();
+
+	private volatile boolean useDistinct = true;
+
+	// the axiom converter is not thread-safe, thus, each thread gets its own
+	private final ThreadLocal<OWLAxiomToSPARQLConverter> axiomConverter = new ThreadLocal<OWLAxiomToSPARQLConverter>() {
+		@Override
+		protected OWLAxiomToSPARQLConverter initialValue() {
+			return new OWLAxiomToSPARQLConverter(targetSubjectVariable, targetObjectVariable, expressionConverter);
+		}
+	};
+
+	/**
+	 * Uses the common fork-join pool and the variables <code>?x</code> and
+	 * <code>?o</code> as projection variables.
+	 */
+	public OWLOntologyToSPARQLConverter() {
+		this(ForkJoinPool.commonPool());
+	}
+
+	/**
+	 * @param executor the executor the axioms are converted on
+	 */
+	public OWLOntologyToSPARQLConverter(Executor executor) {
+		this(executor, "?x", "?o");
+	}
+
+	/**
+	 * @param executor the executor the axioms are converted on
+	 * @param targetSubjectVariable the name of the subject projection variable
+	 * @param targetObjectVariable the name of the object projection variable
+	 */
+	public OWLOntologyToSPARQLConverter(Executor executor, String targetSubjectVariable, String targetObjectVariable) {
+		this.executor = executor;
+		this.targetSubjectVariable = targetSubjectVariable;
+		this.targetObjectVariable = targetObjectVariable;
+	}
+
+	/**
+	 * Whether to return SPARQL queries with DISTINCT keyword.
+	 * @param useDistinct <code>true</code> if use DISTINCT, otherwise <code>false</code>
+	 */
+	public void setUseDistinct(boolean useDistinct) {
+		this.useDistinct = useDistinct;
+	}
+
+	/**
+	 * @return the converter used for the class expressions of the axioms, it
+	 *         can be used to configure the translation styles
+	 */
+	public OWLClassExpressionToSPARQLConverter getExpressionConverter() {
+		return expressionConverter;
+	}
+
+	/**
+	 * Converts all axioms of the ontology, the queries are returned in the
+	 * iteration order of the axioms.
+	 *
+	 * @param ontology the ontology
+	 * @return the conversion of the axioms
+	 */
+	public OntologyConversion convert(OWLOntology ontology) {
+		return convert(ontology, true);
+	}
+
+	/**
+	 * Converts all axioms of the ontology.
+	 *
+	 * @param ontology the ontology
+	 * @param ordered whether the queries are returned in the iteration order
+	 *            of the axioms or as soon as they have been converted
+	 * @return the conversion of the axioms
+	 */
+	public OntologyConversion convert(OWLOntology ontology, boolean ordered) {
+		return convert(ontology.getAxioms().stream(), ordered);
+	}
+
+	/**
+	 * Converts all axioms of the stream.
+	 *
+	 * @param axioms the axioms
+	 * @param ordered whether the queries are returned in the order of the
+	 *            stream or as soon as they have been converted
+	 * @return the conversion of the axioms
+	 */
+	public OntologyConversion convert(Stream<? extends OWLAxiom> axioms, boolean ordered) {
+		Map<AxiomType<?>, Integer> skippedAxiomTypes = new LinkedHashMap<>();
+		List<OWLAxiom> supportedAxioms = new ArrayList<>();
+		axioms.forEachOrdered(axiom -> {
+			if(OWLAxiomToSPARQLConverter.isSupported(axiom.getAxiomType())) {
+				supportedAxioms.add(axiom);
+			} else {
+				skippedAxiomTypes.merge(axiom.getAxiomType(), 1, Integer::sum);
+			}
+		});
+		if(!skippedAxiomTypes.isEmpty()) {
+			logger.warn("Ignoring {} axioms of unsupported types {}", skippedAxiomTypes.values().stream().mapToInt(Integer::intValue).sum(),
+						skippedAxiomTypes);
+		}
+
+		OntologyConversion conversion = new OntologyConversion(skippedAxiomTypes);
+
+		BlockingQueue<Optional<AxiomQuery>> completed = new LinkedBlockingQueue<>();
+		List<CompletableFuture<Optional<AxiomQuery>>> futures = new ArrayList<>(supportedAxioms.size());
+		for (OWLAxiom axiom : supportedAxioms) {
+			CompletableFuture<Optional<AxiomQuery>> future = CompletableFuture.supplyAsync(() -> convert(axiom, conversion), executor);
+			if(!ordered) {
+				future.thenAccept(completed::add);
+			}
+			futures.add(future);
+		}
+
+		if(ordered) {
+			conversion.queries = futures.stream()
+					.map(CompletableFuture::join)
+					.filter(Optional::isPresent)
+					.map(Optional::get);
+		} else {
+			conversion.queries = Stream.generate(() -> take(completed))
+					.limit(supportedAxioms.size())
+					.filter(Optional::isPresent)
+					.map(Optional::get);
+		}
+
+		return conversion;
+	}
+
+	private Optional<AxiomQuery> convert(OWLAxiom axiom, OntologyConversion conversion) {
+		try {
+			OWLAxiomToSPARQLConverter converter = axiomConverter.get();
+			converter.setUseDistinct(useDistinct);
+			AxiomQuery axiomQuery = new AxiomQuery(axiom, converter.asQuery(axiom, targetSubjectVariable, targetObjectVariable));
+			conversion.convertedAxioms.incrementAndGet();
+			return Optional.of(axiomQuery);
+		} catch (RuntimeException e) {
+			logger.debug("Conversion of axiom " + axiom + " failed.", e);
+			conversion.failedAxioms.put(axiom, e);
+			return Optional.empty();
+		}
+	}
+
+	private static <T> T take(BlockingQueue<T> queue) {
+		try {
+			return queue.take();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new CancellationException("Interrupted while waiting for the next converted axiom.");
+		}
+	}
+}
@@ -0,0 +1,101 @@
+/*
+ * #%L
+ * owl2sparql-core
+ * %%
+ * Copyright (C) 2015 AKSW
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package org.aksw.owl2sparql;
+
+import com.google.common.collect.ImmutableMap;
+import org.semanticweb.owlapi.model.AxiomType;
+import org.semanticweb.owlapi.model.OWLAxiom;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Stream;
+
+/**
+ * The result of converting a set of OWL axioms, i.e. the stream of the
+ * generated SPARQL queries and a summary of the axioms that have been skipped
+ * or could not be converted.
+ * <p>
+ * The skipped axiom types are known immediately, the number of converted
+ * axioms and the failures are complete once the stream has been consumed.
+ *
+ * @author Lorenz Buehmann
+ *
+ */
+public class OntologyConversion {
+
+	Stream<AxiomQuery> queries;
+
+	private final Map<AxiomType<?>, Integer> skippedAxiomTypes;
+
+	final AtomicInteger convertedAxioms = new AtomicInteger();
+	final ConcurrentMap<OWLAxiom, RuntimeException> failedAxioms = new ConcurrentHashMap<>();
+
+	OntologyConversion(Map<AxiomType<?>, Integer> skippedAxiomTypes) {
+		this.skippedAxiomTypes = ImmutableMap.copyOf(skippedAxiomTypes);
+	}
+
+	/**
+	 * Returns the pairs of axiom and SPARQL query. The stream can be consumed
+	 * only once.
+	 *
+	 * @return the pairs of axiom and SPARQL query
+	 */
+	public Stream<AxiomQuery> queries() {
+		return queries;
+	}
+
+	/**
+	 * @return the number of skipped axioms for each type of unsupported axioms
+	 */
+	public Map<AxiomType<?>, Integer> getSkippedAxiomTypes() {
+		return skippedAxiomTypes;
+	}
+
+	/**
+	 * @return the total number of skipped axioms
+	 */
+	public int getSkippedAxiomCount() {
+		return skippedAxiomTypes.values().stream().mapToInt(Integer::intValue).sum();
+	}
+
+	/**
+	 * @return the number of axioms that have been converted so far
+	 */
+	public int getConvertedAxiomCount() {
+		return convertedAxioms.get();
+	}
+
+	/**
+	 * @return the axioms of a supported type whose conversion failed, e.g. a
+	 *         data property range that is not a datatype
+	 */
+	public Map<OWLAxiom, RuntimeException> getFailedAxioms() {
+		return failedAxioms;
+	}
+
+	@Override
+	public String toString() {
+		return "converted axioms: " + getConvertedAxiomCount()
+				+ ", failed axioms: " + failedAxioms.size()
+				+ ", skipped axioms: " + getSkippedAxiomCount() + " " + skippedAxiomTypes;
+	}
+}
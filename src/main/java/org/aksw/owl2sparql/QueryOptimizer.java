@@ -0,0 +1,752 @@
+/*
+ * #%L
+ * owl2sparql-core
+ * %%
+ * Copyright (C) 2015 AKSW
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package org.aksw.owl2sparql;
+
+import com.google.common.collect.HashMultiset;
+import com.google.common.collect.Multiset;
+import com.hp.hpl.jena.graph.Node;
+import com.hp.hpl.jena.graph.NodeFactory;
+import com.hp.hpl.jena.query.Query;
+import com.hp.hpl.jena.query.SortCondition;
+import com.hp.hpl.jena.sparql.algebra.Algebra;
+import com.hp.hpl.jena.sparql.algebra.Op;
+import com.hp.hpl.jena.sparql.algebra.OpAsQuery;
+import com.hp.hpl.jena.sparql.algebra.Transform;
+import com.hp.hpl.jena.sparql.algebra.Transformer;
+import com.hp.hpl.jena.sparql.algebra.optimize.TransformFilterPlacement;
+import com.hp.hpl.jena.sparql.algebra.optimize.TransformMergeBGPs;
+import com.hp.hpl.jena.sparql.algebra.optimize.TransformSimplify;
+import com.hp.hpl.jena.sparql.core.TriplePath;
+import com.hp.hpl.jena.sparql.core.Var;
+import com.hp.hpl.jena.sparql.core.VarExprList;
+import com.hp.hpl.jena.sparql.engine.binding.Binding;
+import com.hp.hpl.jena.sparql.engine.binding.BindingFactory;
+import com.hp.hpl.jena.sparql.engine.binding.BindingMap;
+import com.hp.hpl.jena.sparql.expr.*;
+import com.hp.hpl.jena.sparql.syntax.*;
+import org.aksw.owl2sparql.util.NodeSubstitution;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.*;
+
+/**
+ * Rewrites a SPARQL query into an equivalent query that is cheaper to
+ * evaluate, e.g. a query created by the class expression converter. Besides
+ * the transformations of the Jena optimizer on the algebra of the query, it
+ * inlines plain sub-queries, removes redundant triple patterns, flattens
+ * nested groups and puts filters after the patterns that bind their
+ * variables.
+ * <p>
+ * The rewritten algebra is serialized back by {@link OpAsQuery}, which
+ * can't serialize grouped sub-queries with HAVING in Jena 2.13. Therefore,
+ * sub-queries are optimized on their own and are opaque in the algebra of
+ * the enclosing pattern. If the serialized pattern doesn't compile to the
+ * rewritten algebra again, the algebra rewrites are dropped.
+ * <p>
+ * The optimizer is immutable and can be used by several threads at the same
+ * time. The given queries are not modified.
+ *
+ * @author Lorenz Buehmann
+ */
+public class QueryOptimizer {
+
+	private static final Logger logger = LoggerFactory.getLogger(QueryOptimizer.class);
+
+	// the IRI prefix of the inline data that stands for a sub-query in the algebra of the enclosing pattern
+	private static final String SUBQUERY_MARKER = "urn:x-owl2sparql:subquery:";
+
+	/**
+	 * The rewrites of the optimizer.
+	 */
+	public enum Rewrite {
+		/**
+		 * Inlines sub-queries without solution modifiers that only project
+		 * variables, if their other variables don't occur outside of them.
+		 */
+		INLINE_SUBQUERIES,
+		/**
+		 * Removes triple patterns that occur twice in a group, and generic
+		 * triple patterns <code>?s ?p ?o</code> whose subject is the subject of
+		 * another triple pattern of the group, if duplicates don't matter, e.g.
+		 * below DISTINCT or inside of FILTER NOT EXISTS.
+		 */
+		REDUNDANT_TRIPLE_PATTERNS,
+		/**
+		 * Merges joined basic graph patterns, see {@link TransformMergeBGPs}.
+		 */
+		MERGE_BGPS,
+		/**
+		 * Removes joins with the empty pattern, see {@link TransformSimplify}.
+		 */
+		SIMPLIFY,
+		/**
+		 * Evaluates filters as soon as their variables are bound, see
+		 * {@link TransformFilterPlacement}, and puts filters after the
+		 * patterns that bind their variables.
+		 */
+		FILTER_PLACEMENT,
+		/**
+		 * Replaces nested groups by their content, unless a filter of the
+		 * nested group would see other variables.
+		 */
+		FLATTEN_GROUPS
+	}
+
+	/**
+	 * The optimized query and the rewrites that changed it.
+	 */
+	public static final class Result {
+
+		private final Query query;
+		private final Set<Rewrite> rewrites;
+
+		Result(Query query, Set<Rewrite> rewrites) {
+			this.query = query;
+			this.rewrites = Collections.unmodifiableSet(rewrites);
+		}
+
+		/**
+		 * @return the optimized query, the given query itself if no rewrite
+		 *         changed it
+		 */
+		public Query getQuery() {
+			return query;
+		}
+
+		/**
+		 * @return the rewrites that changed the query, including its
+		 *         sub-queries
+		 */
+		public Set<Rewrite> getRewrites() {
+			return rewrites;
+		}
+
+		@Override
+		public String toString() {
+			return rewrites + "\n" + query;
+		}
+	}
+
+	private final Set<Rewrite> rewrites;
+
+	/**
+	 * Creates an optimizer that applies all rewrites.
+	 */
+	public QueryOptimizer() {
+		this(EnumSet.allOf(Rewrite.class));
+	}
+
+	/**
+	 * @param rewrites the rewrites to apply
+	 */
+	public QueryOptimizer(Set<Rewrite> rewrites) {
+		this.rewrites = rewrites.isEmpty() ? EnumSet.noneOf(Rewrite.class) : EnumSet.copyOf(rewrites);
+	}
+
+	/**
+	 * @return the rewrites applied by this optimizer
+	 */
+	public Set<Rewrite> getRewrites() {
+		return Collections.unmodifiableSet(rewrites);
+	}
+
+	/**
+	 * Optimizes the SELECT or ASK query.
+	 *
+	 * @param query the query
+	 * @return the optimized query and the rewrites that changed it
+	 */
+	public Result optimize(Query query) {
+		if(!query.isSelectType() && !query.isAskType()) {
+			throw new IllegalArgumentException("Only SELECT and ASK queries are supported: " + query);
+		}
+		Set<Rewrite> applied = EnumSet.noneOf(Rewrite.class);
+		return new Result(optimize(query, applied), applied);
+	}
+
+	private Query optimize(Query query, Set<Rewrite> applied) {
+		Set<Rewrite> queryRewrites = EnumSet.noneOf(Rewrite.class);
+		Element pattern = optimizePattern(query, queryRewrites);
+		applied.addAll(queryRewrites);
+		if(queryRewrites.isEmpty()) {
+			return query;
+		}
+		Query copy = NodeSubstitution.substitute(query, Collections.<Var, Node>emptyMap());
+		copy.setQueryPattern(pattern);
+		return copy;
+	}
+
+	private Element optimizePattern(Query query, Set<Rewrite> applied) {
+		Element original = query.getQueryPattern();
+		// whether only the existence of a solution matters, but not how often it's returned
+		boolean distinct = query.isDistinct() || query.isReduced() || query.isAskType();
+
+		Element pattern = original;
+		if(rewrites.contains(Rewrite.INLINE_SUBQUERIES)) {
+			pattern = apply(Rewrite.INLINE_SUBQUERIES, new SubQueryInliner(mentions(query, pattern)), pattern, distinct, applied);
+		}
+		if(rewrites.contains(Rewrite.REDUNDANT_TRIPLE_PATTERNS)) {
+			pattern = apply(Rewrite.REDUNDANT_TRIPLE_PATTERNS, new DuplicateRemover(), pattern, distinct, applied);
+			// the generic triple patterns are removed only if their variables aren't used elsewhere
+			pattern = apply(Rewrite.REDUNDANT_TRIPLE_PATTERNS, new GenericPatternRemover(mentions(query, pattern)),
+							pattern, distinct, applied);
+		}
+
+		// the sub-queries are replaced by inline data in the algebra of the pattern
+		SubQueryMasker masker = new SubQueryMasker(applied);
+		Element masked = masker.rewrite(pattern, distinct);
+		if(!masker.unsupported) {
+			Op op = Algebra.compile(masked);
+			Set<Rewrite> algebraRewrites = EnumSet.noneOf(Rewrite.class);
+			Op rewritten = transform(Rewrite.MERGE_BGPS, new TransformMergeBGPs(), op, algebraRewrites);
+			rewritten = transform(Rewrite.SIMPLIFY, new TransformSimplify(), rewritten, algebraRewrites);
+			rewritten = transform(Rewrite.FILTER_PLACEMENT, new TransformFilterPlacement(), rewritten, algebraRewrites);
+			if(!algebraRewrites.isEmpty()) {
+				Element serialized = new ElementRewriter() {}.rewrite(OpAsQuery.asQuery(rewritten).getQueryPattern(), distinct);
+				if(Algebra.compile(serialized).equals(rewritten)) {
+					pattern = new SubQueryUnmasker(masker.subQueries).rewrite(serialized, distinct);
+					applied.addAll(algebraRewrites);
+				} else {
+					logger.debug("Dropped the rewrites {}, the serialized pattern doesn't compile to the rewritten algebra:\n{}",
+								 algebraRewrites, serialized);
+					pattern = new SubQueryUnmasker(masker.subQueries).rewrite(masked, distinct);
+				}
+			} else {
+				pattern = new SubQueryUnmasker(masker.subQueries).rewrite(masked, distinct);
+			}
+		}
+
+		if(rewrites.contains(Rewrite.FLATTEN_GROUPS)) {
+			GroupFlattener flattener = new GroupFlattener();
+			Element flattened = flattener.rewrite(pattern, distinct);
+			// nested groups added by the serialization of the algebra don't count
+			if(flattener.changed && groups(flattened) < groups(original)) {
+				applied.add(Rewrite.FLATTEN_GROUPS);
+			}
+			pattern = flattened;
+		}
+		if(rewrites.contains(Rewrite.FILTER_PLACEMENT)) {
+			pattern = apply(Rewrite.FILTER_PLACEMENT, new FilterOrdering(), pattern, distinct, applied);
+		}
+		return pattern;
+	}
+
+	private Element apply(Rewrite rewrite, ElementRewriter rewriter, Element pattern, boolean distinct, Set<Rewrite> applied) {
+		Element rewritten = rewriter.rewrite(pattern, distinct);
+		if(rewriter.changed) {
+			applied.add(rewrite);
+		}
+		return rewritten;
+	}
+
+	private Op transform(Rewrite rewrite, Transform transform, Op op, Set<Rewrite> applied) {
+		if(!rewrites.contains(rewrite)) {
+			return op;
+		}
+		Op transformed = Transformer.transform(transform, op);
+		if(!transformed.equals(op)) {
+			applied.add(rewrite);
+		}
+		return transformed;
+	}
+
+	/**
+	 * Counts the occurrences of each variable in the query, i.e. in the
+	 * pattern and the solution modifiers.
+	 */
+	private static Multiset<Var> mentions(Query query, Element pattern) {
+		Multiset<Var> vars = HashMultiset.create();
+		mentions(pattern, vars);
+		VarExprList project = query.getProject();
+		vars.addAll(project.getVars());
+		for (Expr expr : project.getExprs().values()) {
+			mentions(expr, vars);
+		}
+		VarExprList groupBy = query.getGroupBy();
+		vars.addAll(groupBy.getVars());
+		for (Expr expr : groupBy.getExprs().values()) {
+			mentions(expr, vars);
+		}
+		for (Expr expr : query.getHavingExprs()) {
+			mentions(expr, vars);
+		}
+		if(query.hasOrderBy()) {
+			for (SortCondition condition : query.getOrderBy()) {
+				mentions(condition.getExpression(), vars);
+			}
+		}
+		if(query.hasValues()) {
+			vars.addAll(query.getValuesVariables());
+		}
+		return vars;
+	}
+
+	private static void mentions(Element element, Multiset<Var> vars) {
+		if(element instanceof ElementGroup) {
+			((ElementGroup) element).getElements().forEach(child -> mentions(child, vars));
+		} else if(element instanceof ElementUnion) {
+			((ElementUnion) element).getElements().forEach(child -> mentions(child, vars));
+		} else if(element instanceof ElementPathBlock) {
+			for (TriplePath path : ((ElementPathBlock) element).getPattern()) {
+				mentions(vars, path.getSubject(), path.getPredicate(), path.getObject());
+			}
+		} else if(element instanceof ElementData) {
+			vars.addAll(((ElementData) element).getVars());
+		} else if(element instanceof ElementFilter) {
+			mentions(((ElementFilter) element).getExpr(), vars);
+		} else if(element instanceof ElementBind) {
+			vars.add(((ElementBind) element).getVar());
+			mentions(((ElementBind) element).getExpr(), vars);
+		} else if(element instanceof ElementOptional) {
+			mentions(((ElementOptional) element).getOptionalElement(), vars);
+		} else if(element instanceof ElementMinus) {
+			mentions(((ElementMinus) element).getMinusElement(), vars);
+		} else if(element instanceof ElementNamedGraph) {
+			mentions(vars, ((ElementNamedGraph) element).getGraphNameNode());
+			mentions(((ElementNamedGraph) element).getElement(), vars);
+		} else if(element instanceof ElementSubQuery) {
+			Query subQuery = ((ElementSubQuery) element).getQuery();
+			vars.addAll(mentions(subQuery, subQuery.getQueryPattern()));
+		} else {
+			// at least the variables that can be bound by the element
+			vars.addAll(PatternVars.vars(element));
+		}
+	}
+
+	private static void mentions(Expr expr, Multiset<Var> vars) {
+		if(expr instanceof ExprAggregator) {
+			ExprList args = ((ExprAggregator) expr).getAggregator().getExprList();
+			if(args != null) {
+				args.forEach(arg -> mentions(arg, vars));
+			}
+		} else if(expr.isVariable()) {
+			vars.add(expr.asVar());
+		} else if(expr instanceof ExprFunctionOp) {
+			// (NOT) EXISTS
+			mentions(((ExprFunctionOp) expr).getElement(), vars);
+		} else if(expr instanceof ExprFunction) {
+			((ExprFunction) expr).getArgs().forEach(arg -> mentions(arg, vars));
+		}
+	}
+
+	private static void mentions(Multiset<Var> vars, Node... nodes) {
+		for (Node node : nodes) {
+			if(node != null && node.isVariable()) {
+				vars.add(Var.alloc(node));
+			}
+		}
+	}
+
+	private static int groups(Element element) {
+		int[] groups = {0};
+		ElementWalker.walk(element, new ElementVisitorBase() {
+			@Override
+			public void visit(ElementGroup el) {
+				groups[0]++;
+			}
+		});
+		return groups[0];
+	}
+
+	/**
+	 * Copies an element bottom-up, the hooks can replace the copied groups,
+	 * sub-queries and inline data.
+	 */
+	private abstract static class ElementRewriter {
+
+		// whether the element has been changed by a hook
+		boolean changed = false;
+
+		/**
+		 * @param distinct whether only the existence of the solutions of the
+		 *            element matters, but not how often they're returned
+		 */
+		Element rewrite(Element element, boolean distinct) {
+			if(element instanceof ElementGroup) {
+				List<Element> elements = new ArrayList<>();
+				for (Element child : ((ElementGroup) element).getElements()) {
+					elements.add(rewrite(child, distinct));
+				}
+				return rewriteGroup(elements, distinct);
+			} else if(element instanceof ElementUnion) {
+				ElementUnion union = new ElementUnion();
+				for (Element child : ((ElementUnion) element).getElements()) {
+					union.addElement(rewrite(child, distinct));
+				}
+				return union;
+			} else if(element instanceof ElementOptional) {
+				return new ElementOptional(rewrite(((ElementOptional) element).getOptionalElement(), distinct));
+			} else if(element instanceof ElementMinus) {
+				// only the existence of a solution matters
+				return new ElementMinus(rewrite(((ElementMinus) element).getMinusElement(), true));
+			} else if(element instanceof ElementNamedGraph) {
+				ElementNamedGraph namedGraph = (ElementNamedGraph) element;
+				return new ElementNamedGraph(namedGraph.getGraphNameNode(), rewrite(namedGraph.getElement(), distinct));
+			} else if(element instanceof ElementFilter) {
+				return new ElementFilter(ExprTransformer.transform(new ExistsTransform(), ((ElementFilter) element).getExpr()));
+			} else if(element instanceof ElementSubQuery) {
+				return rewriteSubQuery((ElementSubQuery) element, distinct);
+			} else if(element instanceof ElementData) {
+				return rewriteData((ElementData) element);
+			}
+			return element;
+		}
+
+		Element rewriteGroup(List<Element> elements, boolean distinct) {
+			ElementGroup group = new ElementGroup();
+			elements.forEach(group::addElement);
+			return group;
+		}
+
+		Element rewriteSubQuery(ElementSubQuery subQuery, boolean distinct) {
+			return subQuery;
+		}
+
+		Element rewriteData(ElementData data) {
+			return data;
+		}
+
+		/**
+		 * Rewrites the patterns of EXISTS and NOT EXISTS.
+		 */
+		private class ExistsTransform extends ExprTransformCopy {
+			@Override
+			public Expr transform(ExprFunctionOp funcOp, ExprList args, Op opArg) {
+				// only the existence of a solution matters
+				if(funcOp instanceof E_NotExists) {
+					return new E_NotExists(rewrite(element(funcOp), true));
+				} else if(funcOp instanceof E_Exists) {
+					return new E_Exists(rewrite(element(funcOp), true));
+				}
+				return super.transform(funcOp, args, opArg);
+			}
+
+			private Element element(ExprFunctionOp funcOp) {
+				// the patterns rebuilt by algebra transformations only have an operator
+				return funcOp.getElement() != null ? funcOp.getElement()
+												   : OpAsQuery.asQuery(funcOp.getGraphPattern()).getQueryPattern();
+			}
+		}
+	}
+
+	/**
+	 * Replaces sub-queries that only project variables by their pattern.
+	 */
+	private static class SubQueryInliner extends ElementRewriter {
+
+		private final Multiset<Var> mentions;
+
+		SubQueryInliner(Multiset<Var> mentions) {
+			this.mentions = mentions;
+		}
+
+		@Override
+		Element rewriteSubQuery(ElementSubQuery element, boolean distinct) {
+			Query subQuery = element.getQuery();
+			if(!subQuery.isSelectType()
+					|| subQuery.hasGroupBy() || subQuery.hasAggregators() || subQuery.hasHaving()
+					|| subQuery.hasOrderBy() || subQuery.hasLimit() || subQuery.hasOffset() || subQuery.hasValues()
+					|| !subQuery.getProject().getExprs().isEmpty()
+					// DISTINCT can be dropped if the enclosing pattern ignores duplicates anyway
+					|| (subQuery.isDistinct() || subQuery.isReduced()) && !distinct) {
+				return element;
+			}
+			if(!subQuery.isQueryResultStar()) {
+				// the variables that are not projected must not occur outside of the sub-query
+				Multiset<Var> inner = HashMultiset.create();
+				mentions(subQuery.getQueryPattern(), inner);
+				for (Var var : inner.elementSet()) {
+					if(!subQuery.getProjectVars().contains(var) && mentions.count(var) != inner.count(var)) {
+						return element;
+					}
+				}
+			}
+			changed = true;
+			return rewrite(subQuery.getQueryPattern(), distinct);
+		}
+	}
+
+	/**
+	 * Removes triple patterns that occur twice in a group. Only simple triple
+	 * patterns are removed if duplicates matter, because the solutions of a
+	 * property path can have a multiplicity.
+	 */
+	private static class DuplicateRemover extends ElementRewriter {
+
+		@Override
+		Element rewriteGroup(List<Element> elements, boolean distinct) {
+			Set<TriplePath> paths = new HashSet<>();
+			List<Element> result = new ArrayList<>();
+			for (Element element : elements) {
+				if(element instanceof ElementPathBlock) {
+					ElementPathBlock block = new ElementPathBlock();
+					for (TriplePath path : ((ElementPathBlock) element).getPattern()) {
+						if(!paths.add(path) && (path.isTriple() || distinct)
+								&& !isBlank(path.getSubject()) && !isBlank(path.getObject())) {
+							changed = true;
+						} else {
+							block.addTriplePath(path);
+						}
+					}
+					if(!block.isEmpty()) {
+						result.add(block);
+					}
+				} else {
+					result.add(element);
+				}
+			}
+			return super.rewriteGroup(result, distinct);
+		}
+
+		private static boolean isBlank(Node node) {
+			return node.isBlank() || Var.isBlankNodeVar(node);
+		}
+	}
+
+	/**
+	 * Removes generic triple patterns <code>?s ?p ?o</code> if
+	 * <code>?s</code> is the subject of another triple pattern of the group,
+	 * <code>?p</code> and <code>?o</code> occur nowhere else, and duplicates
+	 * don't matter.
+	 */
+	private static class GenericPatternRemover extends ElementRewriter {
+
+		private final Multiset<Var> mentions;
+
+		GenericPatternRemover(Multiset<Var> mentions) {
+			this.mentions = mentions;
+		}
+
+		@Override
+		Element rewriteGroup(List<Element> elements, boolean distinct) {
+			if(!distinct) {
+				return super.rewriteGroup(elements, distinct);
+			}
+			List<TriplePath> paths = new ArrayList<>();
+			for (Element element : elements) {
+				if(element instanceof ElementPathBlock) {
+					((ElementPathBlock) element).getPattern().forEach(paths::add);
+				}
+			}
+			List<Element> result = new ArrayList<>();
+			for (Element element : elements) {
+				if(element instanceof ElementPathBlock) {
+					ElementPathBlock block = new ElementPathBlock();
+					for (TriplePath path : ((ElementPathBlock) element).getPattern()) {
+						if(isGeneric(path) && hasOtherTriple(path, paths)) {
+							paths.remove(path);
+							changed = true;
+						} else {
+							block.addTriplePath(path);
+						}
+					}
+					if(!block.isEmpty()) {
+						result.add(block);
+					}
+				} else {
+					result.add(element);
+				}
+			}
+			return super.rewriteGroup(result, distinct);
+		}
+
+		private boolean isGeneric(TriplePath path) {
+			Node s = path.getSubject();
+			Node p = path.getPredicate();
+			Node o = path.getObject();
+			return path.isTriple() && s.isVariable() && p.isVariable() && o.isVariable()
+					&& !s.equals(p) && !s.equals(o) && !p.equals(o)
+					&& mentions.count(p) == 1 && mentions.count(o) == 1;
+		}
+
+		private boolean hasOtherTriple(TriplePath generic, List<TriplePath> paths) {
+			for (TriplePath path : paths) {
+				if(path != generic && path.isTriple() && path.getSubject().equals(generic.getSubject())) {
+					return true;
+				}
+			}
+			return false;
+		}
+	}
+
+	/**
+	 * Optimizes the sub-queries and replaces them by inline data with a
+	 * single row, whose values identify the sub-query.
+	 */
+	private class SubQueryMasker extends ElementRewriter {
+
+		private final Set<Rewrite> applied;
+		private final List<ElementSubQuery> subQueries = new ArrayList<>();
+		// whether a sub-query can't be masked
+		private boolean unsupported = false;
+
+		SubQueryMasker(Set<Rewrite> applied) {
+			this.applied = applied;
+		}
+
+		@Override
+		Element rewriteSubQuery(ElementSubQuery element, boolean distinct) {
+			Query subQuery = element.getQuery();
+			if(subQuery.isQueryResultStar() || subQuery.getProjectVars().isEmpty()) {
+				unsupported = true;
+				return element;
+			}
+			Query optimized = optimize(subQuery, applied);
+			Node marker = NodeFactory.createURI(SUBQUERY_MARKER + subQueries.size());
+			subQueries.add(optimized == subQuery ? element : new ElementSubQuery(optimized));
+
+			ElementData data = new ElementData();
+			BindingMap row = BindingFactory.create();
+			for (Var var : subQuery.getProjectVars()) {
+				data.add(var);
+				row.add(var, marker);
+			}
+			data.add(row);
+			return data;
+		}
+	}
+
+	/**
+	 * Replaces the inline data of masked sub-queries by the sub-queries.
+	 */
+	private static class SubQueryUnmasker extends ElementRewriter {
+
+		private final List<ElementSubQuery> subQueries;
+
+		SubQueryUnmasker(List<ElementSubQuery> subQueries) {
+			this.subQueries = subQueries;
+		}
+
+		@Override
+		Element rewriteData(ElementData data) {
+			List<Binding> rows = data.getRows();
+			if(rows.size() == 1 && !data.getVars().isEmpty()) {
+				Node value = rows.get(0).get(data.getVars().get(0));
+				if(value != null && value.isURI() && value.getURI().startsWith(SUBQUERY_MARKER)) {
+					return subQueries.get(Integer.parseInt(value.getURI().substring(SUBQUERY_MARKER.length())));
+				}
+			}
+			return data;
+		}
+	}
+
+	/**
+	 * Replaces nested groups by their content. A filter in a nested group
+	 * only sees the variables of that group, thus, the group is kept if it
+	 * contains a filter that uses other variables, or elements whose
+	 * evaluation depends on the preceding elements, e.g. OPTIONAL.
+	 */
+	private static class GroupFlattener extends ElementRewriter {
+
+		@Override
+		Element rewriteGroup(List<Element> elements, boolean distinct) {
+			// a group that only contains a group is the same as the inner group
+			if(elements.size() == 1 && elements.get(0) instanceof ElementGroup) {
+				changed = true;
+				return elements.get(0);
+			}
+			List<Element> result = new ArrayList<>();
+			for (Element element : elements) {
+				if(element instanceof ElementGroup && canFlatten((ElementGroup) element)) {
+					result.addAll(((ElementGroup) element).getElements());
+					changed = true;
+				} else {
+					result.add(element);
+				}
+			}
+			return super.rewriteGroup(result, distinct);
+		}
+
+		private boolean canFlatten(ElementGroup group) {
+			Set<Var> bound = NegationAnalysis.boundVariables(group.getElements());
+			for (Element element : group.getElements()) {
+				if(element instanceof ElementFilter) {
+					Set<Var> vars = new HashSet<>();
+					if(!NegationAnalysis.mentionedVariables(element, vars) || !bound.containsAll(vars)) {
+						return false;
+					}
+				} else if(!(element instanceof ElementPathBlock || element instanceof ElementData
+						|| element instanceof ElementUnion || element instanceof ElementGroup
+						|| element instanceof ElementSubQuery || element instanceof ElementNamedGraph)) {
+					return false;
+				}
+			}
+			return true;
+		}
+	}
+
+	/**
+	 * Puts each filter of a group after the last element that uses one of
+	 * its variables. The position of a filter doesn't change the result, but
+	 * triple stores that evaluate the elements in the given order can apply
+	 * the filter to the bound variables then.
+	 */
+	private static class FilterOrdering extends ElementRewriter {
+
+		@Override
+		Element rewriteGroup(List<Element> elements, boolean distinct) {
+			List<Element> others = new ArrayList<>();
+			// the variables of the other elements, null if they're unknown
+			List<Set<Var>> otherVars = new ArrayList<>();
+			for (Element element : elements) {
+				if(!(element instanceof ElementFilter)) {
+					Set<Var> vars = new HashSet<>();
+					others.add(element);
+					otherVars.add(NegationAnalysis.mentionedVariables(element, vars) ? vars : null);
+				}
+			}
+
+			// the filters that follow each of the other elements, the filters in front of all elements at -1
+			Map<Integer, List<Element>> filters = new HashMap<>();
+			int preceding = -1;
+			for (Element element : elements) {
+				if(element instanceof ElementFilter) {
+					int position = preceding;
+					Set<Var> vars = new HashSet<>();
+					if(NegationAnalysis.mentionedVariables(element, vars)) {
+						for (int i = others.size() - 1; i > preceding; i--) {
+							if(otherVars.get(i) == null || !Collections.disjoint(otherVars.get(i), vars)) {
+								position = i;
+								break;
+							}
+						}
+					}
+					filters.computeIfAbsent(position, i -> new ArrayList<>()).add(element);
+				} else {
+					preceding++;
+				}
+			}
+
+			List<Element> result = new ArrayList<>(filters.getOrDefault(-1, Collections.<Element>emptyList()));
+			for (int i = 0; i < others.size(); i++) {
+				result.add(others.get(i));
+				result.addAll(filters.getOrDefault(i, Collections.<Element>emptyList()));
+			}
+			for (int i = 0; i < result.size(); i++) {
+				if(result.get(i) != elements.get(i)) {
+					changed = true;
+					break;
+				}
+			}
+			return super.rewriteGroup(result, distinct);
+		}
+	}
+}
@@ -0,0 +1,127 @@
+/*
+ * #%L
+ * owl2sparql-core
+ * %%
+ * Copyright (C) 2015 AKSW
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package org.aksw.owl2sparql;
+
+import com.hp.hpl.jena.graph.Node;
+import com.hp.hpl.jena.graph.NodeFactory;
+import com.hp.hpl.jena.query.Query;
+import com.hp.hpl.jena.sparql.core.Var;
+import org.aksw.owl2sparql.util.NodeSubstitution;
+import org.semanticweb.owlapi.model.OWLEntity;
+
+import java.util.*;
+
+/**
+ * A SPARQL query converted from a class expression once, in which some
+ * placeholder entities have been replaced by variables. The template can be
+ * instantiated with concrete entities any number of times, which replaces
+ * the variables by the IRIs of the entities in a copy of the query.
+ * <p>
+ * The instantiated query is equivalent to the conversion of the class
+ * expression with the placeholders replaced by the concrete entities. It
+ * can differ syntactically, because the expression is minimized only once
+ * and nominals containing placeholders are translated as FILTER IN.
+ * <p>
+ * A template is immutable and can be instantiated by several threads at the
+ * same time. Templates are created by
+ * {@link OWLClassExpressionToSPARQLConverter#prepare(org.semanticweb.owlapi.model.OWLClassExpression, String, Set)}.
+ *
+ * @author Lorenz Buehmann
+ */
+public class QueryTemplate {
+
+	private final Query query;
+	private final Map<OWLEntity, Var> variables;
+
+	QueryTemplate(Query query, Map<OWLEntity, Var> variables) {
+		this.query = query;
+		this.variables = Collections.unmodifiableMap(variables);
+	}
+
+	/**
+	 * Replaces the placeholders by the given entities. Each placeholder has
+	 * to be mapped to an entity of the same type, e.g. a placeholder class
+	 * to an OWL class.
+	 *
+	 * @param bindings the mapping from the placeholders to the entities
+	 * @return the SPARQL query
+	 * @throws IllegalArgumentException if a placeholder is not bound or bound
+	 *             to an entity of another type
+	 */
+	public Query instantiate(Map<? extends OWLEntity, ? extends OWLEntity> bindings) {
+		Map<Var, Node> substitutions = new HashMap<>();
+		for (Map.Entry<OWLEntity, Var> entry : variables.entrySet()) {
+			OWLEntity placeholder = entry.getKey();
+			OWLEntity entity = bindings.get(placeholder);
+			if(entity == null) {
+				throw new IllegalArgumentException("No entity bound to placeholder " + placeholder);
+			}
+			if(entity.getEntityType() != placeholder.getEntityType()) {
+				throw new IllegalArgumentException("Placeholder " + placeholder + " can't be bound to " +
+														   entity.getEntityType() + " " + entity);
+			}
+			substitutions.put(entry.getValue(), NodeFactory.createURI(entity.toStringID()));
+		}
+		return NodeSubstitution.substitute(query, substitutions);
+	}
+
+	/**
+	 * Replaces the only placeholder by the given entity.
+	 *
+	 * @param placeholder the placeholder
+	 * @param entity the entity
+	 * @return the SPARQL query
+	 * @see #instantiate(Map)
+	 */
+	public Query instantiate(OWLEntity placeholder, OWLEntity entity) {
+		return instantiate(Collections.singletonMap(placeholder, entity));
+	}
+
+	/**
+	 * @return the placeholders that occur in the query
+	 */
+	public Set<OWLEntity> getPlaceholders() {
+		return variables.keySet();
+	}
+
+	/**
+	 * @param placeholder the placeholder
+	 * @return the variable which represents the placeholder in the query, or
+	 *         <code>null</code> if it doesn't occur in the query
+	 */
+	public Var getVariable(OWLEntity placeholder) {
+		return variables.get(placeholder);
+	}
+
+	/**
+	 * Returns the query with the placeholders as variables. The query is
+	 * used for each instantiation, thus, it must not be modified.
+	 *
+	 * @return the query with the placeholders as variables
+	 */
+	public Query getQuery() {
+		return query;
+	}
+
+	@Override
+	public String toString() {
+		return query.toString();
+	}
+}
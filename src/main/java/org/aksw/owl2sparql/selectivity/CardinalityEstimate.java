@@ -0,0 +1,123 @@
+/*
+ * #%L
+ * owl2sparql-core
+ * %%
+ * Copyright (C) 2015 AKSW
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package org.aksw.owl2sparql.selectivity;
+
+import java.util.Locale;
+import java.util.Objects;
+
+/**
+ * The estimated number of instances of a class expression together with a
+ * lower and an upper bound. The bounds hold as far as the statistics they
+ * are computed from are exact and complete, the estimate assumes that
+ * classes and properties are independent of each other.
+ *
+ * @author Lorenz Buehmann
+ */
+public final class CardinalityEstimate {
+
+	private final long lowerBound;
+	private final double estimate;
+	private final long upperBound;
+
+	/**
+	 * @param lowerBound the lower bound
+	 * @param estimate the estimate, it's clamped to the bounds
+	 * @param upperBound the upper bound
+	 * @throws IllegalArgumentException if the lower bound is greater than the
+	 *             upper bound
+	 */
+	public CardinalityEstimate(long lowerBound, double estimate, long upperBound) {
+		if(lowerBound < 0 || lowerBound > upperBound) {
+			throw new IllegalArgumentException("Invalid bounds [" + lowerBound + ", " + upperBound + "]");
+		}
+		this.lowerBound = lowerBound;
+		this.estimate = Math.max(lowerBound, Math.min(upperBound, estimate));
+		this.upperBound = upperBound;
+	}
+
+	/**
+	 * Creates an estimate from real valued bounds, the lower bound is rounded
+	 * down and the upper bound is rounded up.
+	 */
+	static CardinalityEstimate of(double lowerBound, double estimate, double upperBound) {
+		long upper = (long) Math.ceil(Math.max(0, upperBound) - 1e-9);
+		long lower = Math.min(upper, (long) Math.floor(Math.max(0, lowerBound) + 1e-9));
+		return new CardinalityEstimate(lower, estimate, upper);
+	}
+
+	/**
+	 * @return the lower bound of the number of instances
+	 */
+	public long getLowerBound() {
+		return lowerBound;
+	}
+
+	/**
+	 * @return the estimated number of instances
+	 */
+	public double getEstimate() {
+		return estimate;
+	}
+
+	/**
+	 * @return the upper bound of the number of instances
+	 */
+	public long getUpperBound() {
+		return upperBound;
+	}
+
+	/**
+	 * @return whether the class expression certainly has no instances
+	 */
+	public boolean isEmpty() {
+		return upperBound == 0;
+	}
+
+	/**
+	 * @return whether the exact number of instances is known
+	 */
+	public boolean isExact() {
+		return lowerBound == upperBound;
+	}
+
+	@Override
+	public boolean equals(Object obj) {
+		if(this == obj) {
+			return true;
+		}
+		if(!(obj instanceof CardinalityEstimate)) {
+			return false;
+		}
+		CardinalityEstimate other = (CardinalityEstimate) obj;
+		return lowerBound == other.lowerBound
+				&& upperBound == other.upperBound
+				&& Double.compare(estimate, other.estimate) == 0;
+	}
+
+	@Override
+	public int hashCode() {
+		return Objects.hash(lowerBound, estimate, upperBound);
+	}
+
+	@Override
+	public String toString() {
+		return String.format(Locale.ROOT, "%.1f [%d, %d]", estimate, lowerBound, upperBound);
+	}
+}
@@ -0,0 +1,365 @@
+/*
+ * #%L
+ * owl2sparql-core
+ * %%
+ * Copyright (C) 2015 AKSW
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package org.aksw.owl2sparql.selectivity;
+
+import com.hp.hpl.jena.graph.Node;
+import com.hp.hpl.jena.graph.NodeFactory;
+import org.aksw.owl2sparql.util.OWLClassExpressionNormalizer;
+import org.semanticweb.owlapi.model.*;
+import uk.ac.manchester.cs.owl.owlapi.OWLDataFactoryImpl;
+
+/**
+ * Estimates the number of instances of a class expression from the
+ * statistics provided by a {@link SelectivityEstimator}, without executing
+ * any query. The expression is traversed the same way it's converted, i.e.
+ * the instances are those of the SPARQL query without reasoning, where
+ * <code>owl:Thing</code> denotes all subjects of the dataset and maximum and
+ * exact cardinality restrictions with a cardinality greater than zero
+ * require at least one successor.
+ * <p>
+ * Besides the estimate, which assumes that the instances of different
+ * classes and the successors of different properties are independent of
+ * each other, a lower and an upper bound are computed. Those hold as far as
+ * the statistics are exact, e.g. computed by
+ * {@link DatasetStatistics#compute(com.hp.hpl.jena.rdf.model.Model)}, thus,
+ * class expressions can be pruned or rejected as too expensive before they
+ * are sent to the endpoint:
+ * <pre>
+ * CardinalityEstimate estimate = new ClassExpressionSizeEstimator(statistics).estimate(ce);
+ * if(estimate.isEmpty()) {
+ *     // no need to run the query
+ * }
+ * </pre>
+ *
+ * @author Lorenz Buehmann
+ */
+public class ClassExpressionSizeEstimator implements OWLClassExpressionVisitorEx<CardinalityEstimate> {
+
+	/**
+	 * The selectivity of a data range other than a datatype or an
+	 * enumeration of literals, e.g. a facet restriction, as commonly assumed
+	 * for range predicates.
+	 */
+	private static final double DATA_RANGE_SELECTIVITY = 1d / 3;
+
+	private final SelectivityEstimator statistics;
+	private final OWLClassExpressionNormalizer normalizer;
+
+	public ClassExpressionSizeEstimator(SelectivityEstimator statistics) {
+		this.statistics = statistics;
+		this.normalizer = new OWLClassExpressionNormalizer(new OWLDataFactoryImpl());
+	}
+
+	/**
+	 * @param ce the class expression
+	 * @return the estimated number of instances of the class expression
+	 */
+	public CardinalityEstimate estimate(OWLClassExpression ce) {
+		return normalizer.normalize(ce).accept(this);
+	}
+
+	private double individuals() {
+		return statistics.getIndividualCount();
+	}
+
+	private CardinalityEstimate all() {
+		return CardinalityEstimate.of(individuals(), individuals(), individuals());
+	}
+
+	private CardinalityEstimate complement(CardinalityEstimate estimate) {
+		double n = individuals();
+		return CardinalityEstimate.of(n - estimate.getUpperBound(), n - estimate.getEstimate(), n - estimate.getLowerBound());
+	}
+
+	/**
+	 * @return the fraction of all individuals that belong to the estimate
+	 */
+	private double fraction(CardinalityEstimate estimate) {
+		return individuals() == 0 ? 0 : Math.min(1, estimate.getEstimate() / individuals());
+	}
+
+	/**
+	 * The successors of a property, seen from the subject of a restriction,
+	 * i.e. subjects and objects are swapped for inverse properties.
+	 */
+	private final class Successors {
+		final double triples;
+		final double subjects;
+		final double objects;
+
+		Successors(OWLPropertyExpression property) {
+			Node node = node(property);
+			triples = statistics.getTripleCount(node);
+			boolean inverse = property.isAnonymous();
+			subjects = Math.min(individuals(), inverse ? statistics.getObjectCount(node) : statistics.getSubjectCount(node));
+			objects = inverse ? statistics.getSubjectCount(node) : statistics.getObjectCount(node);
+		}
+
+		/**
+		 * @return the average number of successors matching a filler with the
+		 *         given selectivity
+		 */
+		double mean(double selectivity) {
+			return subjects == 0 ? 0 : selectivity * triples / subjects;
+		}
+
+		/**
+		 * @param n the minimum number of successors
+		 * @param selectivity the fraction of the successors that match the filler
+		 * @param emptyFiller whether the filler certainly has no instances
+		 * @param completeFiller whether all successors certainly match the filler
+		 * @return the estimate of the subjects with at least <code>n</code>
+		 *         successors that match the filler
+		 */
+		CardinalityEstimate atLeast(int n, double selectivity, boolean emptyFiller, boolean completeFiller) {
+			if(n == 0) {
+				return all();
+			}
+			double upper = emptyFiller ? 0 : Math.min(subjects, Math.floor(triples / n));
+			double lower = n == 1 && completeFiller ? subjects : 0;
+			return CardinalityEstimate.of(lower, subjects * poissonTail(mean(selectivity), n), upper);
+		}
+
+		/**
+		 * @return the estimate of the subjects with at least one and at most
+		 *         <code>n</code> successors that match the filler, or without
+		 *         any if <code>n</code> is zero
+		 * @see #atLeast(int, double, boolean, boolean)
+		 */
+		CardinalityEstimate atMost(int n, double selectivity, boolean emptyFiller, boolean completeFiller) {
+			CardinalityEstimate atLeastOne = atLeast(1, selectivity, emptyFiller, completeFiller);
+			if(n == 0) {
+				return complement(atLeastOne);
+			}
+			CardinalityEstimate moreThanN = atLeast(n + 1, selectivity, emptyFiller, completeFiller);
+			return CardinalityEstimate.of(atLeastOne.getLowerBound() - moreThanN.getUpperBound(),
+										  atLeastOne.getEstimate() - moreThanN.getEstimate(),
+										  atLeastOne.getUpperBound());
+		}
+
+		/**
+		 * @return the estimate of the subjects with exactly <code>n</code>
+		 *         successors that match the filler
+		 * @see #atLeast(int, double, boolean, boolean)
+		 */
+		CardinalityEstimate exactly(int n, double selectivity, boolean emptyFiller, boolean completeFiller) {
+			if(n == 0) {
+				return atMost(0, selectivity, emptyFiller, completeFiller);
+			}
+			CardinalityEstimate atLeast = atLeast(n, selectivity, emptyFiller, completeFiller);
+			double estimate = subjects * (poissonTail(mean(selectivity), n) - poissonTail(mean(selectivity), n + 1));
+			return CardinalityEstimate.of(0, estimate, atLeast.getUpperBound());
+		}
+
+		/**
+		 * @return the estimate of the subjects having a particular successor
+		 */
+		CardinalityEstimate value() {
+			return CardinalityEstimate.of(0, objects == 0 ? 0 : triples / objects, subjects);
+		}
+	}
+
+	/**
+	 * @return the probability that a Poisson distributed variable with the
+	 *         given mean is at least <code>n</code>
+	 */
+	private static double poissonTail(double mean, int n) {
+		if(n <= 0) {
+			return 1;
+		}
+		double term = Math.exp(-mean);
+		double cumulative = 0;
+		for (int k = 0; k < n && term > 0; k++) {
+			cumulative += term;
+			term *= mean / (k + 1);
+		}
+		return Math.max(0, 1 - cumulative);
+	}
+
+	private static Node node(OWLPropertyExpression property) {
+		OWLEntity entity = property.isAnonymous()
+				? ((OWLObjectPropertyExpression) property).getNamedProperty()
+				: (OWLEntity) property;
+		return node(entity);
+	}
+
+	private static Node node(OWLEntity entity) {
+		return NodeFactory.createURI(entity.toStringID());
+	}
+
+	private static double selectivity(OWLDataRange range, Successors successors) {
+		if(range.isTopDatatype()) {
+			return 1;
+		} else if(range instanceof OWLDataOneOf) {
+			return successors.objects == 0 ? 0 : Math.min(1, ((OWLDataOneOf) range).getValues().size() / successors.objects);
+		} else if(range instanceof OWLDataComplementOf) {
+			return 1 - selectivity(((OWLDataComplementOf) range).getDataRange(), successors);
+		} else if(range.isDatatype()) {
+			return 1;
+		}
+		return DATA_RANGE_SELECTIVITY;
+	}
+
+	@Override
+	public CardinalityEstimate visit(OWLClass ce) {
+		if(ce.isOWLThing()) {
+			return all();
+		} else if(ce.isOWLNothing()) {
+			return CardinalityEstimate.of(0, 0, 0);
+		}
+		long count = statistics.getInstanceCount(node(ce));
+		return CardinalityEstimate.of(count, count, count);
+	}
+
+	@Override
+	public CardinalityEstimate visit(OWLObjectIntersectionOf ce) {
+		double n = individuals();
+		double lower = n;
+		double estimate = n;
+		// nominals might contain individuals that don't occur in the dataset
+		double upper = Double.POSITIVE_INFINITY;
+		for (OWLClassExpression operand : ce.getOperands()) {
+			CardinalityEstimate operandEstimate = operand.accept(this);
+			// at least the instances that can't be excluded by any of the other operands
+			lower -= n - operandEstimate.getLowerBound();
+			estimate *= fraction(operandEstimate);
+			upper = Math.min(upper, operandEstimate.getUpperBound());
+		}
+		return CardinalityEstimate.of(lower, estimate, upper);
+	}
+
+	@Override
+	public CardinalityEstimate visit(OWLObjectUnionOf ce) {
+		double lower = 0;
+		double missing = 1;
+		double upper = 0;
+		// nominals might contain individuals that don't occur in the dataset
+		double nominalsUpper = 0;
+		for (OWLClassExpression operand : ce.getOperands()) {
+			CardinalityEstimate operandEstimate = operand.accept(this);
+			lower = Math.max(lower, operandEstimate.getLowerBound());
+			missing *= 1 - fraction(operandEstimate);
+			if(operand.getClassExpressionType() == ClassExpressionType.OBJECT_ONE_OF) {
+				nominalsUpper += operandEstimate.getUpperBound();
+			} else {
+				upper += operandEstimate.getUpperBound();
+			}
+		}
+		return CardinalityEstimate.of(lower, individuals() * (1 - missing), Math.min(upper, individuals()) + nominalsUpper);
+	}
+
+	@Override
+	public CardinalityEstimate visit(OWLObjectComplementOf ce) {
+		return complement(ce.getOperand().accept(this));
+	}
+
+	@Override
+	public CardinalityEstimate visit(OWLObjectSomeValuesFrom ce) {
+		CardinalityEstimate filler = ce.getFiller().accept(this);
+		return new Successors(ce.getProperty()).atLeast(1, fraction(filler), filler.isEmpty(), ce.getFiller().isOWLThing());
+	}
+
+	@Override
+	public CardinalityEstimate visit(OWLObjectAllValuesFrom ce) {
+		// \forall r.C \equiv \neg \exists r.\neg C
+		CardinalityEstimate filler = complement(ce.getFiller().accept(this));
+		return complement(new Successors(ce.getProperty()).atLeast(1, fraction(filler), filler.isEmpty(), false));
+	}
+
+	@Override
+	public CardinalityEstimate visit(OWLObjectHasValue ce) {
+		return new Successors(ce.getProperty()).value();
+	}
+
+	@Override
+	public CardinalityEstimate visit(OWLObjectMinCardinality ce) {
+		CardinalityEstimate filler = ce.getFiller().accept(this);
+		return new Successors(ce.getProperty()).atLeast(ce.getCardinality(), fraction(filler), filler.isEmpty(),
+														 ce.getFiller().isOWLThing());
+	}
+
+	@Override
+	public CardinalityEstimate visit(OWLObjectExactCardinality ce) {
+		CardinalityEstimate filler = ce.getFiller().accept(this);
+		return new Successors(ce.getProperty()).exactly(ce.getCardinality(), fraction(filler), filler.isEmpty(),
+														 ce.getFiller().isOWLThing());
+	}
+
+	@Override
+	public CardinalityEstimate visit(OWLObjectMaxCardinality ce) {
+		CardinalityEstimate filler = ce.getFiller().accept(this);
+		return new Successors(ce.getProperty()).atMost(ce.getCardinality(), fraction(filler), filler.isEmpty(),
+														ce.getFiller().isOWLThing());
+	}
+
+	@Override
+	public CardinalityEstimate visit(OWLObjectHasSelf ce) {
+		Successors successors = new Successors(ce.getProperty());
+		return CardinalityEstimate.of(0, individuals() == 0 ? 0 : successors.triples / individuals(), successors.subjects);
+	}
+
+	@Override
+	public CardinalityEstimate visit(OWLObjectOneOf ce) {
+		// the individuals are enumerated, regardless of whether they occur in the dataset
+		int size = ce.getIndividuals().size();
+		return CardinalityEstimate.of(0, size, size);
+	}
+
+	@Override
+	public CardinalityEstimate visit(OWLDataSomeValuesFrom ce) {
+		Successors successors = new Successors(ce.getProperty());
+		double selectivity = selectivity(ce.getFiller(), successors);
+		return successors.atLeast(1, selectivity, selectivity == 0, ce.getFiller().isTopDatatype());
+	}
+
+	@Override
+	public CardinalityEstimate visit(OWLDataAllValuesFrom ce) {
+		// \forall d.R \equiv \neg \exists d.\neg R
+		Successors successors = new Successors(ce.getProperty());
+		double selectivity = 1 - selectivity(ce.getFiller(), successors);
+		return complement(successors.atLeast(1, selectivity, ce.getFiller().isTopDatatype(), false));
+	}
+
+	@Override
+	public CardinalityEstimate visit(OWLDataHasValue ce) {
+		return new Successors(ce.getProperty()).value();
+	}
+
+	@Override
+	public CardinalityEstimate visit(OWLDataMinCardinality ce) {
+		Successors successors = new Successors(ce.getProperty());
+		double selectivity = selectivity(ce.getFiller(), successors);
+		return successors.atLeast(ce.getCardinality(), selectivity, selectivity == 0, ce.getFiller().isTopDatatype());
+	}
+
+	@Override
+	public CardinalityEstimate visit(OWLDataExactCardinality ce) {
+		Successors successors = new Successors(ce.getProperty());
+		double selectivity = selectivity(ce.getFiller(), successors);
+		return successors.exactly(ce.getCardinality(), selectivity, selectivity == 0, ce.getFiller().isTopDatatype());
+	}
+
+	@Override
+	public CardinalityEstimate visit(OWLDataMaxCardinality ce) {
+		Successors successors = new Successors(ce.getProperty());
+		double selectivity = selectivity(ce.getFiller(), successors);
+		return successors.atMost(ce.getCardinality(), selectivity, selectivity == 0, ce.getFiller().isTopDatatype());
+	}
+}
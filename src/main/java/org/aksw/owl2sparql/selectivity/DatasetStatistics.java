@@ -0,0 +1,348 @@
+/*
+ * #%L
+ * owl2sparql-core
+ * %%
+ * Copyright (C) 2015 AKSW
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package org.aksw.owl2sparql.selectivity;
+
+import com.hp.hpl.jena.datatypes.xsd.XSDDatatype;
+import com.hp.hpl.jena.graph.Graph;
+import com.hp.hpl.jena.graph.Node;
+import com.hp.hpl.jena.graph.NodeFactory;
+import com.hp.hpl.jena.graph.Triple;
+import com.hp.hpl.jena.rdf.model.Model;
+import com.hp.hpl.jena.rdf.model.ModelFactory;
+import com.hp.hpl.jena.util.iterator.ExtendedIterator;
+import com.hp.hpl.jena.vocabulary.RDF;
+import org.apache.jena.riot.RDFDataMgr;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * A {@link SelectivityEstimator} based on the number of instances per class
+ * and the number of triples per property of a dataset. The statistics are
+ * either computed from a local Jena {@link Model} or read from a
+ * <a href="https://www.w3.org/TR/void/">VoID</a> description, i.e. from the
+ * class and property partitions of the dataset.
+ * <p>
+ * Computed statistics can be stored as VoID description by
+ * {@link #toVoID()}, such that the snapshot can be read again instead of
+ * scanning the dataset.
+ *
+ * @author Lorenz Buehmann
+ */
+public class DatasetStatistics implements SelectivityEstimator {
+
+	private static final String VOID_NS = "http://rdfs.org/ns/void#";
+
+	private static final Node VOID_DATASET = NodeFactory.createURI(VOID_NS + "Dataset");
+	private static final Node VOID_TRIPLES = NodeFactory.createURI(VOID_NS + "triples");
+	private static final Node VOID_ENTITIES = NodeFactory.createURI(VOID_NS + "entities");
+	private static final Node VOID_DISTINCT_SUBJECTS = NodeFactory.createURI(VOID_NS + "distinctSubjects");
+	private static final Node VOID_DISTINCT_OBJECTS = NodeFactory.createURI(VOID_NS + "distinctObjects");
+	private static final Node VOID_CLASS_PARTITION = NodeFactory.createURI(VOID_NS + "classPartition");
+	private static final Node VOID_CLASS = NodeFactory.createURI(VOID_NS + "class");
+	private static final Node VOID_PROPERTY_PARTITION = NodeFactory.createURI(VOID_NS + "propertyPartition");
+	private static final Node VOID_PROPERTY = NodeFactory.createURI(VOID_NS + "property");
+
+	private final long tripleCount;
+	private final long individualCount;
+	private final Map<Node, Long> instanceCounts;
+	private final Map<Node, Long> propertyTripleCounts;
+	private final Map<Node, Long> propertySubjectCounts;
+	private final Map<Node, Long> propertyObjectCounts;
+
+	/**
+	 * @param tripleCount the number of triples
+	 * @param individualCount the number of individuals
+	 * @param instanceCounts the number of instances per class
+	 * @param propertyTripleCounts the number of triples per property
+	 */
+	public DatasetStatistics(long tripleCount, long individualCount, Map<Node, Long> instanceCounts,
+							 Map<Node, Long> propertyTripleCounts) {
+		this(tripleCount, individualCount, instanceCounts, propertyTripleCounts, Collections.<Node, Long>emptyMap(),
+			 Collections.<Node, Long>emptyMap());
+	}
+
+	/**
+	 * @param tripleCount the number of triples
+	 * @param individualCount the number of individuals
+	 * @param instanceCounts the number of instances per class
+	 * @param propertyTripleCounts the number of triples per property
+	 * @param propertySubjectCounts the number of distinct subjects per
+	 *            property, missing properties are estimated
+	 * @param propertyObjectCounts the number of distinct objects per
+	 *            property, missing properties are estimated
+	 */
+	public DatasetStatistics(long tripleCount, long individualCount, Map<Node, Long> instanceCounts,
+							 Map<Node, Long> propertyTripleCounts, Map<Node, Long> propertySubjectCounts,
+							 Map<Node, Long> propertyObjectCounts) {
+		this.tripleCount = tripleCount;
+		this.individualCount = individualCount;
+		this.instanceCounts = Collections.unmodifiableMap(new HashMap<>(instanceCounts));
+		this.propertyTripleCounts = Collections.unmodifiableMap(new HashMap<>(propertyTripleCounts));
+		this.propertySubjectCounts = Collections.unmodifiableMap(new HashMap<>(propertySubjectCounts));
+		this.propertyObjectCounts = Collections.unmodifiableMap(new HashMap<>(propertyObjectCounts));
+	}
+
+	/**
+	 * Computes the statistics of the model. Besides a pass over all triples,
+	 * the triples of each property are scanned once to count their distinct
+	 * subjects and objects.
+	 *
+	 * @param model the model
+	 * @return the statistics of the model
+	 */
+	public static DatasetStatistics compute(Model model) {
+		Node type = RDF.type.asNode();
+		long tripleCount = 0;
+		Set<Node> subjects = new HashSet<>();
+		Map<Node, Long> instanceCounts = new HashMap<>();
+		Map<Node, Long> propertyTripleCounts = new HashMap<>();
+
+		ExtendedIterator<Triple> it = model.getGraph().find(Node.ANY, Node.ANY, Node.ANY);
+		try {
+			while (it.hasNext()) {
+				Triple triple = it.next();
+				tripleCount++;
+				subjects.add(triple.getSubject());
+				propertyTripleCounts.merge(triple.getPredicate(), 1L, Long::sum);
+				if(triple.getPredicate().equals(type)) {
+					instanceCounts.merge(triple.getObject(), 1L, Long::sum);
+				}
+			}
+		} finally {
+			it.close();
+		}
+		long individualCount = subjects.size();
+		subjects = null; // can be garbage collected while the properties are scanned
+
+		Map<Node, Long> propertySubjectCounts = new HashMap<>();
+		Map<Node, Long> propertyObjectCounts = new HashMap<>();
+		for (Node property : propertyTripleCounts.keySet()) {
+			Set<Node> propertySubjects = new HashSet<>();
+			Set<Node> propertyObjects = new HashSet<>();
+			it = model.getGraph().find(Node.ANY, property, Node.ANY);
+			try {
+				while (it.hasNext()) {
+					Triple triple = it.next();
+					propertySubjects.add(triple.getSubject());
+					propertyObjects.add(triple.getObject());
+				}
+			} finally {
+				it.close();
+			}
+			propertySubjectCounts.put(property, (long) propertySubjects.size());
+			propertyObjectCounts.put(property, (long) propertyObjects.size());
+		}
+
+		return new DatasetStatistics(tripleCount, individualCount, instanceCounts, propertyTripleCounts,
+									 propertySubjectCounts, propertyObjectCounts);
+	}
+
+	/**
+	 * Reads the statistics from a VoID description, i.e. the number of
+	 * triples and entities of the dataset (<code>void:triples</code>,
+	 * <code>void:entities</code> or <code>void:distinctSubjects</code>), the
+	 * number of instances of each class partition (<code>void:class</code>,
+	 * <code>void:entities</code>) and the number of triples of each property
+	 * partition (<code>void:property</code>, <code>void:triples</code> and
+	 * optionally <code>void:distinctSubjects</code>,
+	 * <code>void:distinctObjects</code>). Missing totals are derived from the
+	 * partitions.
+	 *
+	 * @param voidDescription the VoID description of the dataset
+	 * @return the statistics of the dataset
+	 */
+	public static DatasetStatistics fromVoID(Model voidDescription) {
+		Graph graph = voidDescription.getGraph();
+
+		Map<Node, Long> instanceCounts = partitionCounts(graph, VOID_CLASS_PARTITION, VOID_CLASS, VOID_ENTITIES);
+		Map<Node, Long> propertyTripleCounts = partitionCounts(graph, VOID_PROPERTY_PARTITION, VOID_PROPERTY, VOID_TRIPLES);
+		Map<Node, Long> propertySubjectCounts = partitionCounts(graph, VOID_PROPERTY_PARTITION, VOID_PROPERTY,
+																VOID_DISTINCT_SUBJECTS);
+		Map<Node, Long> propertyObjectCounts = partitionCounts(graph, VOID_PROPERTY_PARTITION, VOID_PROPERTY,
+															   VOID_DISTINCT_OBJECTS);
+
+		Long tripleCount = null;
+		Long individualCount = null;
+		ExtendedIterator<Triple> it = graph.find(Node.ANY, RDF.type.asNode(), VOID_DATASET);
+		try {
+			while (it.hasNext()) {
+				Node dataset = it.next().getSubject();
+				// partitions are datasets as well
+				if(graph.contains(Node.ANY, VOID_CLASS_PARTITION, dataset)
+						|| graph.contains(Node.ANY, VOID_PROPERTY_PARTITION, dataset)) {
+					continue;
+				}
+				tripleCount = value(graph, dataset, VOID_TRIPLES);
+				individualCount = value(graph, dataset, VOID_ENTITIES);
+				if(individualCount == null) {
+					individualCount = value(graph, dataset, VOID_DISTINCT_SUBJECTS);
+				}
+			}
+		} finally {
+			it.close();
+		}
+
+		if(tripleCount == null) {
+			tripleCount = propertyTripleCounts.values().stream().mapToLong(Long::longValue).sum();
+		}
+		if(individualCount == null) {
+			individualCount = instanceCounts.values().stream().mapToLong(Long::longValue).max().orElse(tripleCount);
+		}
+		return new DatasetStatistics(tripleCount, individualCount, instanceCounts, propertyTripleCounts,
+									 propertySubjectCounts, propertyObjectCounts);
+	}
+
+	/**
+	 * Reads the statistics from a VoID description.
+	 *
+	 * @param voidFile the location of the VoID description, i.e. a file name or URL
+	 * @return the statistics of the dataset
+	 * @see #fromVoID(Model)
+	 */
+	public static DatasetStatistics fromVoID(String voidFile) {
+		return fromVoID(RDFDataMgr.loadModel(voidFile));
+	}
+
+	/**
+	 * Returns the statistics as VoID description of a blank node dataset, with
+	 * a class partition for each class and a property partition for each
+	 * property. The description can be read again by
+	 * {@link #fromVoID(Model)}.
+	 *
+	 * @return the VoID description of the statistics
+	 */
+	public Model toVoID() {
+		Model model = ModelFactory.createDefaultModel();
+		model.setNsPrefix("void", VOID_NS);
+		Graph graph = model.getGraph();
+
+		Node dataset = NodeFactory.createAnon();
+		graph.add(Triple.create(dataset, RDF.type.asNode(), VOID_DATASET));
+		graph.add(Triple.create(dataset, VOID_TRIPLES, count(tripleCount)));
+		graph.add(Triple.create(dataset, VOID_ENTITIES, count(individualCount)));
+
+		for (Map.Entry<Node, Long> entry : instanceCounts.entrySet()) {
+			Node partition = NodeFactory.createAnon();
+			graph.add(Triple.create(dataset, VOID_CLASS_PARTITION, partition));
+			graph.add(Triple.create(partition, VOID_CLASS, entry.getKey()));
+			graph.add(Triple.create(partition, VOID_ENTITIES, count(entry.getValue())));
+		}
+		for (Map.Entry<Node, Long> entry : propertyTripleCounts.entrySet()) {
+			Node property = entry.getKey();
+			Node partition = NodeFactory.createAnon();
+			graph.add(Triple.create(dataset, VOID_PROPERTY_PARTITION, partition));
+			graph.add(Triple.create(partition, VOID_PROPERTY, property));
+			graph.add(Triple.create(partition, VOID_TRIPLES, count(entry.getValue())));
+			if(propertySubjectCounts.containsKey(property)) {
+				graph.add(Triple.create(partition, VOID_DISTINCT_SUBJECTS, count(propertySubjectCounts.get(property))));
+			}
+			if(propertyObjectCounts.containsKey(property)) {
+				graph.add(Triple.create(partition, VOID_DISTINCT_OBJECTS, count(propertyObjectCounts.get(property))));
+			}
+		}
+		return model;
+	}
+
+	private static Node count(long value) {
+		return NodeFactory.createLiteral(Long.toString(value), XSDDatatype.XSDinteger);
+	}
+
+	private static Map<Node, Long> partitionCounts(Graph graph, Node partitionProperty, Node keyProperty,
+												   Node countProperty) {
+		Map<Node, Long> counts = new HashMap<>();
+		ExtendedIterator<Triple> it = graph.find(Node.ANY, partitionProperty, Node.ANY);
+		try {
+			while (it.hasNext()) {
+				Node partition = it.next().getObject();
+				Node key = object(graph, partition, keyProperty);
+				Long count = value(graph, partition, countProperty);
+				if(key != null && count != null) {
+					counts.merge(key, count, Long::sum);
+				}
+			}
+		} finally {
+			it.close();
+		}
+		return counts;
+	}
+
+	private static Node object(Graph graph, Node subject, Node predicate) {
+		ExtendedIterator<Triple> it = graph.find(subject, predicate, Node.ANY);
+		try {
+			return it.hasNext() ? it.next().getObject() : null;
+		} finally {
+			it.close();
+		}
+	}
+
+	private static Long value(Graph graph, Node subject, Node predicate) {
+		Node object = object(graph, subject, predicate);
+		if(object == null || !object.isLiteral()) {
+			return null;
+		}
+		try {
+			return Long.parseLong(object.getLiteralLexicalForm().trim());
+		} catch (NumberFormatException e) {
+			return null;
+		}
+	}
+
+	@Override
+	public long getTripleCount() {
+		return tripleCount;
+	}
+
+	@Override
+	public long getIndividualCount() {
+		return individualCount;
+	}
+
+	@Override
+	public long getInstanceCount(Node cls) {
+		return instanceCounts.getOrDefault(cls, 0L);
+	}
+
+	@Override
+	public long getTripleCount(Node property) {
+		return propertyTripleCounts.getOrDefault(property, 0L);
+	}
+
+	@Override
+	public long getSubjectCount(Node property) {
+		Long count = propertySubjectCounts.get(property);
+		return count != null ? count : SelectivityEstimator.super.getSubjectCount(property);
+	}
+
+	@Override
+	public long getObjectCount(Node property) {
+		Long count = propertyObjectCounts.get(property);
+		return count != null ? count : SelectivityEstimator.super.getObjectCount(property);
+	}
+
+	@Override
+	public String toString() {
+		return "DatasetStatistics[triples=" + tripleCount + ", individuals=" + individualCount
+				+ ", classes=" + instanceCounts.size() + ", properties=" + propertyTripleCounts.size() + "]";
+	}
+}
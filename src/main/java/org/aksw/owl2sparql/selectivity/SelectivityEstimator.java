@@ -0,0 +1,111 @@
+/*
+ * #%L
+ * owl2sparql-core
+ * %%
+ * Copyright (C) 2015 AKSW
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package org.aksw.owl2sparql.selectivity;
+
+import com.hp.hpl.jena.graph.Node;
+import com.hp.hpl.jena.graph.Triple;
+import com.hp.hpl.jena.sparql.core.TriplePath;
+import com.hp.hpl.jena.vocabulary.RDF;
+
+/**
+ * Provides the statistics of a dataset that are used to estimate the
+ * selectivity of the parts of a generated query, such that the most selective
+ * ones can be put first.
+ * <p>
+ * The estimates only have to be good enough to rank the parts of a query,
+ * implementations may return approximate counts.
+ *
+ * @author Lorenz Buehmann
+ * @see DatasetStatistics
+ */
+public interface SelectivityEstimator {
+
+	/**
+	 * @return the number of triples in the dataset
+	 */
+	long getTripleCount();
+
+	/**
+	 * @return the number of individuals in the dataset, i.e. the number of
+	 *         distinct subjects
+	 */
+	long getIndividualCount();
+
+	/**
+	 * @param cls the URI of the class
+	 * @return the number of instances of the class
+	 */
+	long getInstanceCount(Node cls);
+
+	/**
+	 * @param property the URI of the property
+	 * @return the number of triples with the property as predicate
+	 */
+	long getTripleCount(Node property);
+
+	/**
+	 * @param property the URI of the property
+	 * @return the number of distinct subjects of the property, by default
+	 *         bounded by the number of triples and individuals
+	 */
+	default long getSubjectCount(Node property) {
+		return Math.min(getTripleCount(property), getIndividualCount());
+	}
+
+	/**
+	 * @param property the URI of the property
+	 * @return the number of distinct objects of the property, by default
+	 *         the number of triples
+	 */
+	default long getObjectCount(Node property) {
+		return getTripleCount(property);
+	}
+
+	/**
+	 * Estimates the number of solutions of a single triple pattern or
+	 * property path, in which the variables are not bound yet.
+	 *
+	 * @param path the triple pattern or property path
+	 * @return the estimated number of solutions
+	 */
+	default long estimateCardinality(TriplePath path) {
+		Node object = path.getObject();
+		if(!path.isTriple()) {
+			// the converter uses rdf:type/rdfs:subClassOf* and the sequence paths of universal restrictions
+			return object.isConcrete() ? getInstanceCount(object) : getTripleCount();
+		}
+
+		Triple triple = path.asTriple();
+		Node predicate = triple.getPredicate();
+		if(!predicate.isConcrete()) {
+			return getTripleCount();
+		} else if(predicate.equals(RDF.type.asNode()) && object.isConcrete()) {
+			return getInstanceCount(object);
+		}
+
+		long count = getTripleCount(predicate);
+		if(triple.getSubject().isConcrete()) {
+			return Math.min(count, Math.max(1, count / Math.max(1, getSubjectCount(predicate))));
+		} else if(object.isConcrete()) {
+			return Math.min(count, Math.max(1, count / Math.max(1, getObjectCount(predicate))));
+		}
+		return count;
+	}
+}
@@ -0,0 +1,121 @@
+/*
+ * #%L
+ * owl2sparql-core
+ * %%
+ * Copyright (C) 2015 AKSW
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package org.aksw.owl2sparql.selectivity;
+
+import com.hp.hpl.jena.graph.Node;
+import com.hp.hpl.jena.sparql.core.TriplePath;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Orders the triple patterns of a basic graph pattern by their estimated
+ * number of solutions. The ordering is greedy: it starts with the most
+ * selective pattern and continues with the most selective pattern that
+ * shares a variable with the patterns chosen so far, such that no cross
+ * products are introduced.
+ * <p>
+ * Variables that are bound outside of the basic graph pattern, e.g. the
+ * subject of a <code>FILTER NOT EXISTS</code> pattern or of a correlated
+ * subquery, are taken into account: the patterns that contain them are
+ * evaluated per binding and, thus, come first.
+ *
+ * @author Lorenz Buehmann
+ */
+public final class TriplePathOrdering {
+
+	private TriplePathOrdering() {}
+
+	/**
+	 * @param paths the triple patterns
+	 * @param estimator the estimator of the number of solutions
+	 * @return the ordered triple patterns
+	 */
+	public static List<TriplePath> order(List<TriplePath> paths, SelectivityEstimator estimator) {
+		return order(paths, estimator, Collections.<Node>emptySet());
+	}
+
+	/**
+	 * @param paths the triple patterns
+	 * @param estimator the estimator of the number of solutions
+	 * @param boundVariables the variables that are already bound when the
+	 *            triple patterns are evaluated
+	 * @return the ordered triple patterns
+	 */
+	public static List<TriplePath> order(List<TriplePath> paths, SelectivityEstimator estimator,
+										 Collection<? extends Node> boundVariables) {
+		if(paths.size() < 2) {
+			return paths;
+		}
+
+		List<TriplePath> candidates = new ArrayList<>(paths);
+		long[] cardinalities = new long[candidates.size()];
+		for (int i = 0; i < cardinalities.length; i++) {
+			cardinalities[i] = estimator.estimateCardinality(candidates.get(i));
+		}
+		boolean[] chosen = new boolean[candidates.size()];
+
+		List<TriplePath> ordered = new ArrayList<>(paths.size());
+		Set<Node> bound = new HashSet<>(boundVariables);
+		while (ordered.size() < candidates.size()) {
+			int next = -1;
+			boolean nextConnected = false;
+			for (int i = 0; i < candidates.size(); i++) {
+				if(chosen[i]) {
+					continue;
+				}
+				boolean connected = isConnected(candidates.get(i), bound);
+				// ties are resolved by the original order
+				if(next == -1
+						|| (connected && !nextConnected)
+						|| (connected == nextConnected && cardinalities[i] < cardinalities[next])) {
+					next = i;
+					nextConnected = connected;
+				}
+			}
+			chosen[next] = true;
+			TriplePath path = candidates.get(next);
+			ordered.add(path);
+			addVariables(path, bound);
+		}
+		return ordered;
+	}
+
+	private static boolean isConnected(TriplePath path, Set<Node> boundVariables) {
+		return boundVariables.contains(path.getSubject()) || boundVariables.contains(path.getObject())
+				|| (path.isTriple() && boundVariables.contains(path.getPredicate()));
+	}
+
+	private static void addVariables(TriplePath path, Set<Node> variables) {
+		if(path.getSubject().isVariable()) {
+			variables.add(path.getSubject());
+		}
+		if(path.getObject().isVariable()) {
+			variables.add(path.getObject());
+		}
+		if(path.isTriple() && path.getPredicate().isVariable()) {
+			variables.add(path.getPredicate());
+		}
+	}
+}
@@ -64,7 +64,32 @@ public enum AllQuantorTranslation {
 	 * </pre> 
 	 * </div>
 	 */
-	DOUBLE_NEGATION, 
+	DOUBLE_NEGATION,
+	/**
+	 * Use double negation as {@link #DOUBLE_NEGATION} does, but collapse a
+	 * chain of nested universal restrictions, e.g. <code>\forall r.\forall s.\forall t.A</code>,
+	 * into a single negation over the sequence path of its properties, e.g.
+	 * <div>
+	 * <pre>
+	 * FILTER NOT EXISTS {
+	 * 	?s :r/:s/:t ?o .
+	 * 	FILTER NOT EXISTS { ?o a :A }
+	 * }
+	 * </pre>
+	 * </div>
+	 * instead of one nested <code>FILTER NOT EXISTS</code> per restriction,
+	 * each of which also binds the intermediate successor to the individual
+	 * universe. The chain ends at the first filler that is not a universal
+	 * restriction and at properties replaced by variables, which can't be used
+	 * in a property path. Only the first restriction of a collapsed chain is
+	 * returned as part of the {@link org.aksw.owl2sparql.ConversionMetadata}.
+	 * <p>
+	 * Note that unlike {@link #DOUBLE_NEGATION}, the intermediate successors
+	 * are not bound to the individual universe, i.e. a successor that is not
+	 * the subject of any triple doesn't violate the nested restrictions, as it
+	 * has no successors at all.
+	 */
+	DOUBLE_NEGATION_PATH,
 	/**
 	 * Use two sub-selects and compare its values, e.g.
 	 * <div>
@@ -76,5 +101,23 @@ public enum AllQuantorTranslation {
 	 * </pre> 
 	 * </div>
 	 */
-	SUBSELECT_COUNT_EQUALS
+	SUBSELECT_COUNT_EQUALS,
+	/**
+	 * Choose between {@link #DOUBLE_NEGATION} and {@link #SUBSELECT_COUNT_EQUALS}
+	 * for each universal restriction, based on the average number of
+	 * successors per subject of its property. The nested
+	 * <code>FILTER NOT EXISTS</code> are evaluated for each successor of each
+	 * candidate, which is cheap for properties with few successors. For
+	 * properties with many successors, counting the successors per subject
+	 * once pays off. The threshold is set by
+	 * {@link org.aksw.owl2sparql.OWLClassExpressionToSPARQLConverter#setAdaptiveFanOutThreshold(double)}.
+	 * <p>
+	 * The statistics are taken from the selectivity estimator of the converter.
+	 * Without an estimator, and for properties replaced by variables,
+	 * {@link #DOUBLE_NEGATION} is used. The chosen encoding of each restriction
+	 * is returned as part of the {@link org.aksw.owl2sparql.ConversionMetadata}.
+	 * Note that, just as {@link #SUBSELECT_COUNT_EQUALS} does, the count based
+	 * encoding only returns individuals that have at least one successor.
+	 */
+	ADAPTIVE
 }
\ No newline at end of file
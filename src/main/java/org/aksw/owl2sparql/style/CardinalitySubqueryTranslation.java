@@ -0,0 +1,59 @@
+/*
+ * #%L
+ * owl2sparql-core
+ * %%
+ * Copyright (C) 2015 AKSW
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package org.aksw.owl2sparql.style;
+
+/**
+ * How to express a cardinality restriction that is nested in an intersection
+ * or an existential restriction, i.e. that is counted in a sub-query, in
+ * SPARQL.
+ *
+ * @author Lorenz Buehmann
+ */
+public enum CardinalitySubqueryTranslation {
+
+	/**
+	 * Count the successors of all subjects of the property, e.g.
+	 * <div>
+	 * <pre>
+	 * ?x :r ?s0
+	 * {SELECT ?s0 WHERE { ?s0 :s ?s1 . ?s1 a :C } GROUP BY ?s0 HAVING(COUNT(?s1) &gt;= 2)}
+	 * </pre>
+	 * </div>
+	 * The sub-query doesn't depend on the enclosing pattern, but it
+	 * aggregates the whole extension of the property.
+	 */
+	UNRESTRICTED,
+	/**
+	 * Count the successors of the candidates of the enclosing pattern only,
+	 * e.g.
+	 * <div>
+	 * <pre>
+	 * ?x :r ?s0
+	 * {SELECT ?s0 WHERE { {SELECT DISTINCT ?s0 WHERE { ?x :r ?s0 }} ?s0 :s ?s1 . ?s1 a :C }
+	 *  GROUP BY ?s0 HAVING(COUNT(?s1) &gt;= 2)}
+	 * </pre>
+	 * </div>
+	 * Inline data of the enclosing pattern is copied as <code>VALUES</code>.
+	 * Given a selectivity estimator, the triple patterns of the enclosing
+	 * pattern are only copied if they have fewer distinct candidates than
+	 * the counted property has subjects.
+	 */
+	OUTER_CANDIDATES
+}
@@ -0,0 +1,169 @@
+/*
+ * #%L
+ * owl2sparql-core
+ * %%
+ * Copyright (C) 2015 AKSW
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package org.aksw.owl2sparql.style;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Objects;
+import java.util.Set;
+
+import org.semanticweb.owlapi.model.IRI;
+import org.semanticweb.owlapi.model.OWLNamedIndividual;
+
+import com.google.common.collect.ImmutableSet;
+
+/**
+ * The individuals a variable ranges over if nothing else in the query binds
+ * it, e.g. for a top-level negation, an intersection of negations or a
+ * nominal that is translated as <code>FILTER IN</code>.
+ *
+ * @author Lorenz Buehmann
+ */
+public final class IndividualUniverse {
+
+	/**
+	 * The kind of the universe.
+	 */
+	public enum Type {
+		/**
+		 * All subjects of the dataset, i.e. <code>?s ?p ?o .</code>
+		 */
+		ALL_SUBJECTS,
+		/**
+		 * All subjects of a type assertion, i.e. <code>?s a ?cls0 .</code>
+		 */
+		TYPED_INDIVIDUALS,
+		/**
+		 * A given set of candidate individuals, i.e.
+		 * <code>VALUES ?s { :a :b }</code>
+		 */
+		CANDIDATES,
+		/**
+		 * All subjects of a type assertion in a named graph, i.e.
+		 * <code>GRAPH :g { ?s a ?cls0 }</code>
+		 */
+		NAMED_GRAPH
+	}
+
+	/**
+	 * All subjects of the dataset. This needs a scan of the whole dataset and
+	 * an individual is matched once per triple, thus, the query needs
+	 * DISTINCT.
+	 */
+	public static final IndividualUniverse ALL_SUBJECTS = new IndividualUniverse(
+			Type.ALL_SUBJECTS, Collections.<OWLNamedIndividual>emptySet(), null);
+
+	/**
+	 * All individuals with a type assertion. Usually, there are far less
+	 * type assertions than triples, and most triple stores index them.
+	 */
+	public static final IndividualUniverse TYPED_INDIVIDUALS = new IndividualUniverse(
+			Type.TYPED_INDIVIDUALS, Collections.<OWLNamedIndividual>emptySet(), null);
+
+	private final Type type;
+	private final Set<OWLNamedIndividual> candidates;
+	private final IRI graph;
+	private final int hashCode;
+
+	private IndividualUniverse(Type type, Set<OWLNamedIndividual> candidates, IRI graph) {
+		this.type = type;
+		this.candidates = candidates;
+		this.graph = graph;
+		this.hashCode = Objects.hash(type, candidates, graph);
+	}
+
+	/**
+	 * The given individuals, e.g. the examples of a learning problem. An
+	 * individual that is not among them is never returned.
+	 *
+	 * @param candidates the candidate individuals
+	 * @return the universe
+	 */
+	public static IndividualUniverse candidates(Collection<? extends OWLNamedIndividual> candidates) {
+		if(candidates.isEmpty()) {
+			throw new IllegalArgumentException("The set of candidate individuals must not be empty");
+		}
+		return new IndividualUniverse(Type.CANDIDATES, ImmutableSet.copyOf(candidates), null);
+	}
+
+	/**
+	 * The individuals with a type assertion in the given named graph, e.g. a
+	 * graph that declares each individual as <code>owl:NamedIndividual</code>.
+	 *
+	 * @param graph the IRI of the named graph
+	 * @return the universe
+	 */
+	public static IndividualUniverse namedGraph(IRI graph) {
+		return new IndividualUniverse(Type.NAMED_GRAPH, Collections.<OWLNamedIndividual>emptySet(),
+									  Objects.requireNonNull(graph));
+	}
+
+	/**
+	 * @return the kind of the universe
+	 */
+	public Type getType() {
+		return type;
+	}
+
+	/**
+	 * @return the candidate individuals in the given order, empty if the
+	 *         universe is not {@link Type#CANDIDATES}
+	 */
+	public Set<OWLNamedIndividual> getCandidates() {
+		return candidates;
+	}
+
+	/**
+	 * @return the IRI of the named graph, <code>null</code> if the universe
+	 *         is not {@link Type#NAMED_GRAPH}
+	 */
+	public IRI getGraph() {
+		return graph;
+	}
+
+	@Override
+	public boolean equals(Object obj) {
+		if(this == obj) {
+			return true;
+		}
+		if(!(obj instanceof IndividualUniverse)) {
+			return false;
+		}
+		IndividualUniverse other = (IndividualUniverse) obj;
+		return type == other.type
+				&& hashCode == other.hashCode
+				&& candidates.equals(other.candidates)
+				&& Objects.equals(graph, other.graph);
+	}
+
+	@Override
+	public int hashCode() {
+		return hashCode;
+	}
+
+	@Override
+	public String toString() {
+		switch (type) {
+			case CANDIDATES: return type + "(" + candidates.size() + " individuals)";
+			case NAMED_GRAPH: return type + "(" + graph + ")";
+			default: return type.toString();
+		}
+	}
+}
@@ -0,0 +1,64 @@
+/*
+ * #%L
+ * owl2sparql-core
+ * %%
+ * Copyright (C) 2015 - 2016 AKSW
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package org.aksw.owl2sparql.style;
+
+/**
+ * How to express a maximum cardinality restriction, i.e.
+ * <code>owl:maxQualifiedCardinality</code>, in SPARQL.
+ *
+ * @author Lorenz Buehmann
+ */
+public enum MaxCardinalityTranslation {
+
+	/**
+	 * Count the successors of each subject, e.g.
+	 * <div>
+	 * <pre>
+	 * {SELECT ?s WHERE { ?s :p ?o . ?o a :Class } GROUP BY ?s HAVING(COUNT(?o) &lt;= 2)}
+	 * </pre>
+	 * </div>
+	 */
+	GROUP_BY_HAVING,
+	/**
+	 * Make sure that there are no further pairwise distinct successors
+	 * besides the given number, e.g.
+	 * <div>
+	 * <pre>
+	 * ?s :p ?o1 . ?o1 a :Class .
+	 * FILTER NOT EXISTS {
+	 * 	?s :p ?o2 . ?o2 a :Class .
+	 * 	?s :p ?o3 . ?o3 a :Class .
+	 * 	FILTER(!sameTerm(?o1, ?o2) &amp;&amp; ...)
+	 * }
+	 * </pre>
+	 * </div>
+	 * The successors of a subject don't have to be aggregated, i.e. query
+	 * engines can stop as soon as one successor too many has been found.
+	 * Just as {@link #GROUP_BY_HAVING}, only subjects with at least one
+	 * successor are returned. As the number of joins and filters grows with
+	 * the cardinality, this is only done for small cardinalities, by default
+	 * only for 1, otherwise the successors are counted. The bound is set by
+	 * {@link org.aksw.owl2sparql.OWLClassExpressionToSPARQLConverter#setFilterNotExistsMaxCardinality(int)}.
+	 * As there is a solution per successor, the successors are counted as
+	 * well inside of the filler of a restriction whose successors are
+	 * counted.
+	 */
+	FILTER_NOT_EXISTS
+}
@@ -0,0 +1,64 @@
+/*
+ * #%L
+ * owl2sparql-core
+ * %%
+ * Copyright (C) 2015 AKSW
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package org.aksw.owl2sparql.style;
+
+/**
+ * How to express a negated graph pattern, e.g. of an
+ * <code>owl:complementOf</code>, in SPARQL.
+ * <p>
+ * {@link #MINUS} and {@link #OPTIONAL_NOT_BOUND} evaluate the negated pattern
+ * independently of the enclosing pattern, whereas <code>FILTER NOT
+ * EXISTS</code> is evaluated for each solution of the enclosing pattern. Both
+ * are only used if they return the same solutions, i.e. if each variable the
+ * negated pattern shares with the enclosing pattern is bound by triple
+ * patterns on both sides before the negation, otherwise
+ * {@link #FILTER_NOT_EXISTS} is used.
+ *
+ * @author Lorenz Buehmann
+ */
+public enum NegationRendering {
+
+	/**
+	 * Use a filter, e.g.
+	 * <pre>
+	 * ?s :p ?o FILTER NOT EXISTS { ?s a :Class }
+	 * </pre>
+	 */
+	FILTER_NOT_EXISTS,
+	/**
+	 * Remove the compatible solutions, e.g.
+	 * <pre>
+	 * ?s :p ?o MINUS { ?s a :Class }
+	 * </pre>
+	 * Inside of the operands of a union that is joined to preceding patterns,
+	 * the negation is filtered, as ARQ evaluates them with the bindings of the
+	 * preceding patterns, thus, MINUS wouldn't share any variables.
+	 */
+	MINUS,
+	/**
+	 * Use a left outer join and keep the solutions without a match, e.g.
+	 * <pre>
+	 * ?s :p ?o OPTIONAL { ?s :r ?s0 . ?s0 a :Class } FILTER(!BOUND(?s0))
+	 * </pre>
+	 * This needs a variable that is only bound by the negated pattern, thus,
+	 * e.g. a negated class is still filtered.
+	 */
+	OPTIONAL_NOT_BOUND
+}
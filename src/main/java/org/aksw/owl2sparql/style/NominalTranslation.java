@@ -20,10 +20,35 @@
 package org.aksw.owl2sparql.style;
 
 /**
+ * How to express a nominal, i.e. <code>owl:oneOf</code>, in SPARQL.
+ *
  * @author Lorenz Buehmann
  */
 public enum NominalTranslation {
 
+	/**
+	 * Use a filter on the individuals, e.g.
+	 * <pre>
+	 * FILTER(?s IN (:a, :b))
+	 * </pre>
+	 */
 	FILTER_IN,
-	VALUES
+	/**
+	 * Use an inline data block, e.g.
+	 * <pre>
+	 * VALUES ?s { :a :b }
+	 * </pre>
+	 */
+	VALUES,
+	/**
+	 * Choose between {@link #FILTER_IN} and {@link #VALUES} for each nominal.
+	 * Small nominals below a property restriction are filtered, as the
+	 * successors are bound by the triple pattern of the restriction anyway.
+	 * All other nominals are joined as data block, in particular large ones,
+	 * top-level ones, which would need a generic triple pattern to be
+	 * filtered, and operands of a union, whose branch doesn't bind the
+	 * successors. The maximum size of a filtered nominal is set by
+	 * {@link org.aksw.owl2sparql.OWLClassExpressionToSPARQLConverter#setAdaptiveFilterInMaxSize(int)}.
+	 */
+	ADAPTIVE
 }
@@ -35,7 +35,8 @@ public enum OWLThingRendering {
 	 */
 	EXPLICIT,
 	/**
-	 * Use a generic triple pattern <code>?s ?p ?o .</code> 
+	 * Use a generic triple pattern <code>?s ?p ?o .</code>, respectively the
+	 * pattern of the configured {@link IndividualUniverse}.
 	 */
 	GENERIC_TRIPLE_PATTERN
 }
\ No newline at end of file
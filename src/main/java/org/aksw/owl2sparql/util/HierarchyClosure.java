@@ -0,0 +1,151 @@
+/*
+ * #%L
+ * owl2sparql-core
+ * %%
+ * Copyright (C) 2015 AKSW
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package org.aksw.owl2sparql.util;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+
+import org.semanticweb.owlapi.model.*;
+import org.semanticweb.owlapi.model.parameters.Imports;
+import org.semanticweb.owlapi.reasoner.OWLReasoner;
+import org.semanticweb.owlapi.reasoner.structural.StructuralReasonerFactory;
+
+import com.google.common.collect.ImmutableSet;
+
+/**
+ * The precomputed transitive closure of the class and property hierarchy of
+ * an ontology, i.e. for each class all of its subclasses and for each
+ * property all of its sub-properties. Equivalent entities are included,
+ * <code>owl:Nothing</code> and the bottom properties are not.
+ * <p>
+ * Only named sub-properties are kept, i.e. an inverse property that is a
+ * sub-property of <code>r</code> does not match <code>r</code>.
+ * <p>
+ * The closure is immutable and can be shared between threads and converters.
+ *
+ * @author Lorenz Buehmann
+ *
+ */
+public class HierarchyClosure {
+
+	private final Map<OWLEntity, Set<OWLEntity>> subEntities;
+
+	private HierarchyClosure(Map<OWLEntity, Set<OWLEntity>> subEntities) {
+		this.subEntities = subEntities;
+	}
+
+	/**
+	 * Computes the closure of the asserted hierarchy of the ontology and its
+	 * imports.
+	 *
+	 * @param ontology the ontology
+	 * @return the closure
+	 */
+	public static HierarchyClosure compute(OWLOntology ontology) {
+		OWLReasoner reasoner = new StructuralReasonerFactory().createNonBufferingReasoner(ontology);
+		try {
+			return compute(reasoner);
+		} finally {
+			reasoner.dispose();
+		}
+	}
+
+	/**
+	 * Computes the closure of the hierarchy inferred by the reasoner for the
+	 * entities of its ontology, including its imports.
+	 *
+	 * @param reasoner the reasoner
+	 * @return the closure
+	 */
+	public static HierarchyClosure compute(OWLReasoner reasoner) {
+		OWLOntology ontology = reasoner.getRootOntology();
+		Map<OWLEntity, Set<OWLEntity>> subEntities = new HashMap<>();
+
+		for (OWLClass cls : ontology.getClassesInSignature(Imports.INCLUDED)) {
+			if(!cls.isBuiltIn()) {
+				Set<OWLEntity> subClasses = newSet(cls);
+				subClasses.addAll(reasoner.getEquivalentClasses(cls).getEntities());
+				subClasses.addAll(reasoner.getSubClasses(cls, false).getFlattened());
+				add(cls, subClasses, subEntities);
+			}
+		}
+		for (OWLObjectProperty property : ontology.getObjectPropertiesInSignature(Imports.INCLUDED)) {
+			if(!property.isBuiltIn()) {
+				Set<OWLEntity> subProperties = newSet(property);
+				for (OWLObjectPropertyExpression subProperty : reasoner.getEquivalentObjectProperties(property).getEntities()) {
+					if(!subProperty.isAnonymous()) {
+						subProperties.add(subProperty.asOWLObjectProperty());
+					}
+				}
+				for (OWLObjectPropertyExpression subProperty : reasoner.getSubObjectProperties(property, false).getFlattened()) {
+					if(!subProperty.isAnonymous()) {
+						subProperties.add(subProperty.asOWLObjectProperty());
+					}
+				}
+				add(property, subProperties, subEntities);
+			}
+		}
+		for (OWLDataProperty property : ontology.getDataPropertiesInSignature(Imports.INCLUDED)) {
+			if(!property.isBuiltIn()) {
+				Set<OWLEntity> subProperties = newSet(property);
+				subProperties.addAll(reasoner.getEquivalentDataProperties(property).getEntities());
+				subProperties.addAll(reasoner.getSubDataProperties(property, false).getFlattened());
+				add(property, subProperties, subEntities);
+			}
+		}
+		return new HierarchyClosure(subEntities);
+	}
+
+	private static Set<OWLEntity> newSet(OWLEntity entity) {
+		// sorted, thus, the expansion doesn't depend on the reasoner
+		Set<OWLEntity> entities = new TreeSet<>();
+		entities.add(entity);
+		return entities;
+	}
+
+	private static void add(OWLEntity entity, Set<OWLEntity> entities, Map<OWLEntity, Set<OWLEntity>> subEntities) {
+		entities.removeIf(OWLEntity::isBottomEntity);
+		// the entity itself is returned for entities without sub-entities anyway
+		if(entities.size() > 1) {
+			subEntities.put(entity, ImmutableSet.copyOf(entities));
+		}
+	}
+
+	/**
+	 * @param entity the class or property
+	 * @return the entity and all of its subclasses, respectively sub-properties,
+	 *         in a deterministic order, only the entity itself if it's unknown
+	 */
+	public Set<OWLEntity> getSubEntities(OWLEntity entity) {
+		Set<OWLEntity> entities = subEntities.get(entity);
+		return entities != null ? entities : Collections.singleton(entity);
+	}
+
+	/**
+	 * @return the number of entities that have other sub-entities than
+	 *         themselves
+	 */
+	public int size() {
+		return subEntities.size();
+	}
+}
@@ -0,0 +1,296 @@
+/*
+ * #%L
+ * owl2sparql-core
+ * %%
+ * Copyright (C) 2015 AKSW
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package org.aksw.owl2sparql.util;
+
+import com.hp.hpl.jena.graph.Node;
+import com.hp.hpl.jena.graph.Triple;
+import com.hp.hpl.jena.query.Query;
+import com.hp.hpl.jena.query.SortCondition;
+import com.hp.hpl.jena.sparql.algebra.Op;
+import com.hp.hpl.jena.sparql.core.TriplePath;
+import com.hp.hpl.jena.sparql.core.Var;
+import com.hp.hpl.jena.sparql.core.VarExprList;
+import com.hp.hpl.jena.sparql.engine.binding.Binding;
+import com.hp.hpl.jena.sparql.engine.binding.BindingFactory;
+import com.hp.hpl.jena.sparql.engine.binding.BindingMap;
+import com.hp.hpl.jena.sparql.expr.*;
+import com.hp.hpl.jena.sparql.expr.aggregate.Aggregator;
+import com.hp.hpl.jena.sparql.syntax.*;
+
+import java.util.*;
+
+/**
+ * Replaces variables by nodes in the syntax tree of a SPARQL query. In
+ * contrast to a replacement on the algebra level, the result is again a
+ * query in syntax form, i.e. it can be serialized and extended like a query
+ * returned by the converter.
+ * <p>
+ * Variables can be replaced by constants or renamed, i.e. replaced by other
+ * variables. Projected, grouped and bound variables can only be renamed.
+ * The given query is not modified, all parts that might contain a replaced
+ * variable are copied. Variables inside of property paths are not replaced.
+ *
+ * @author Lorenz Buehmann
+ */
+public final class NodeSubstitution {
+
+	private NodeSubstitution() {}
+
+	/**
+	 * @param query the SELECT or ASK query
+	 * @param substitutions the nodes by which the variables are replaced
+	 * @return a copy of the query with the variables replaced
+	 */
+	public static Query substitute(Query query, Map<Var, Node> substitutions) {
+		Query copy = new Query();
+		if(query.isSelectType()) {
+			copy.setQuerySelectType();
+		} else if(query.isAskType()) {
+			copy.setQueryAskType();
+		} else {
+			throw new IllegalArgumentException("Only SELECT and ASK queries are supported: " + query);
+		}
+		copy.getPrefixMapping().setNsPrefixes(query.getPrefixMapping());
+		copy.setDistinct(query.isDistinct());
+		copy.setReduced(query.isReduced());
+		copy.setQueryPattern(substitute(query.getQueryPattern(), substitutions));
+
+		// aggregators are owned by the query, thus, they have to be allocated again
+		Map<Var, Expr> aggregators = new HashMap<>();
+		ExprTransform transform = new SubstitutionTransform(substitutions, aggregators);
+		for (ExprAggregator aggregator : query.getAggregators()) {
+			Aggregator agg = aggregator.getAggregator();
+			if(agg.getExprList() != null) {
+				agg = agg.copy(ExprTransformer.transform(transform, agg.getExprList()));
+			}
+			aggregators.put(aggregator.getVar(), copy.allocAggregate(agg));
+		}
+
+		if(query.isQueryResultStar()) {
+			copy.setQueryResultStar(true);
+		} else {
+			VarExprList project = query.getProject();
+			for (Var var : project.getVars()) {
+				Expr expr = project.getExpr(var);
+				if(expr == null) {
+					copy.addResultVar(rename(var, substitutions));
+				} else {
+					copy.addResultVar(rename(var, substitutions), ExprTransformer.transform(transform, expr));
+				}
+			}
+		}
+
+		VarExprList groupBy = query.getGroupBy();
+		for (Var var : groupBy.getVars()) {
+			Expr expr = groupBy.getExpr(var);
+			if(expr == null) {
+				copy.addGroupBy(rename(var, substitutions));
+			} else {
+				copy.addGroupBy(rename(var, substitutions), ExprTransformer.transform(transform, expr));
+			}
+		}
+		for (Expr expr : query.getHavingExprs()) {
+			copy.addHavingCondition(ExprTransformer.transform(transform, expr));
+		}
+		if(query.hasOrderBy()) {
+			for (SortCondition condition : query.getOrderBy()) {
+				copy.addOrderBy(ExprTransformer.transform(transform, condition.getExpression()), condition.getDirection());
+			}
+		}
+		copy.setLimit(query.getLimit());
+		copy.setOffset(query.getOffset());
+
+		if(query.hasValues()) {
+			List<Binding> rows = new ArrayList<>();
+			for (Binding row : query.getValuesData()) {
+				rows.add(substitute(row, substitutions));
+			}
+			List<Var> vars = new ArrayList<>();
+			for (Var var : query.getValuesVariables()) {
+				vars.add(rename(var, substitutions));
+			}
+			copy.setValuesDataBlock(vars, rows);
+		}
+
+		return copy;
+	}
+
+	/**
+	 * @param element the syntax element
+	 * @param substitutions the nodes by which the variables are replaced
+	 * @return a copy of the element with the variables replaced
+	 */
+	public static Element substitute(Element element, Map<Var, Node> substitutions) {
+		if(element instanceof ElementGroup) {
+			ElementGroup group = new ElementGroup();
+			for (Element child : ((ElementGroup) element).getElements()) {
+				group.addElement(substitute(child, substitutions));
+			}
+			return group;
+		} else if(element instanceof ElementPathBlock) {
+			ElementPathBlock block = new ElementPathBlock();
+			for (TriplePath triplePath : ((ElementPathBlock) element).getPattern()) {
+				block.addTriplePath(substitute(triplePath, substitutions));
+			}
+			return block;
+		} else if(element instanceof ElementTriplesBlock) {
+			ElementTriplesBlock block = new ElementTriplesBlock();
+			for (Triple triple : ((ElementTriplesBlock) element).getPattern()) {
+				block.addTriple(substitute(triple, substitutions));
+			}
+			return block;
+		} else if(element instanceof ElementFilter) {
+			return new ElementFilter(substitute(((ElementFilter) element).getExpr(), substitutions));
+		} else if(element instanceof ElementBind) {
+			ElementBind bind = (ElementBind) element;
+			return new ElementBind(rename(bind.getVar(), substitutions), substitute(bind.getExpr(), substitutions));
+		} else if(element instanceof ElementUnion) {
+			ElementUnion union = new ElementUnion();
+			for (Element child : ((ElementUnion) element).getElements()) {
+				union.addElement(substitute(child, substitutions));
+			}
+			return union;
+		} else if(element instanceof ElementOptional) {
+			return new ElementOptional(substitute(((ElementOptional) element).getOptionalElement(), substitutions));
+		} else if(element instanceof ElementMinus) {
+			return new ElementMinus(substitute(((ElementMinus) element).getMinusElement(), substitutions));
+		} else if(element instanceof ElementNotExists) {
+			return new ElementNotExists(substitute(((ElementNotExists) element).getElement(), substitutions));
+		} else if(element instanceof ElementExists) {
+			return new ElementExists(substitute(((ElementExists) element).getElement(), substitutions));
+		} else if(element instanceof ElementNamedGraph) {
+			ElementNamedGraph namedGraph = (ElementNamedGraph) element;
+			return new ElementNamedGraph(substitute(namedGraph.getGraphNameNode(), substitutions),
+										 substitute(namedGraph.getElement(), substitutions));
+		} else if(element instanceof ElementSubQuery) {
+			return new ElementSubQuery(substitute(((ElementSubQuery) element).getQuery(), substitutions));
+		} else if(element instanceof ElementData) {
+			ElementData data = (ElementData) element;
+			ElementData copy = new ElementData();
+			for (Var var : data.getVars()) {
+				copy.add(rename(var, substitutions));
+			}
+			for (Binding row : data.getRows()) {
+				copy.add(substitute(row, substitutions));
+			}
+			return copy;
+		}
+		throw new UnsupportedOperationException("Substitution not supported for " + element.getClass().getSimpleName());
+	}
+
+	/**
+	 * @param expr the expression
+	 * @param substitutions the nodes by which the variables are replaced
+	 * @return a copy of the expression with the variables replaced
+	 */
+	public static Expr substitute(Expr expr, Map<Var, Node> substitutions) {
+		return ExprTransformer.transform(new SubstitutionTransform(substitutions, Collections.<Var, Expr>emptyMap()), expr);
+	}
+
+	/**
+	 * @param triplePath the triple path
+	 * @param substitutions the nodes by which the variables are replaced
+	 * @return a copy of the triple path with the variables replaced
+	 */
+	public static TriplePath substitute(TriplePath triplePath, Map<Var, Node> substitutions) {
+		if(triplePath.isTriple()) {
+			return new TriplePath(substitute(triplePath.asTriple(), substitutions));
+		}
+		return new TriplePath(substitute(triplePath.getSubject(), substitutions),
+							  triplePath.getPath(),
+							  substitute(triplePath.getObject(), substitutions));
+	}
+
+	private static Triple substitute(Triple triple, Map<Var, Node> substitutions) {
+		return Triple.create(substitute(triple.getSubject(), substitutions),
+							 substitute(triple.getPredicate(), substitutions),
+							 substitute(triple.getObject(), substitutions));
+	}
+
+	private static Binding substitute(Binding binding, Map<Var, Node> substitutions) {
+		BindingMap copy = BindingFactory.create();
+		for (Iterator<Var> it = binding.vars(); it.hasNext();) {
+			Var var = it.next();
+			copy.add(rename(var, substitutions), substitute(binding.get(var), substitutions));
+		}
+		return copy;
+	}
+
+	private static Node substitute(Node node, Map<Var, Node> substitutions) {
+		if(Var.isVar(node)) {
+			Node replacement = substitutions.get(Var.alloc(node));
+			if(replacement != null) {
+				return replacement;
+			}
+		}
+		return node;
+	}
+
+	/**
+	 * Returns the variable the given variable is renamed to, or the variable
+	 * itself if it isn't renamed.
+	 */
+	private static Var rename(Var var, Map<Var, Node> substitutions) {
+		Node replacement = substitutions.get(var);
+		return replacement != null && Var.isVar(replacement) ? Var.alloc(replacement) : var;
+	}
+
+	/**
+	 * Replaces variables by nodes, rebuilds EXISTS and NOT EXISTS from
+	 * their syntax element and maps aggregators to the ones allocated in the
+	 * copy of the query.
+	 */
+	private static class SubstitutionTransform extends ExprTransformCopy {
+
+		private final Map<Var, Node> substitutions;
+		private final Map<Var, Expr> aggregators;
+
+		SubstitutionTransform(Map<Var, Node> substitutions, Map<Var, Expr> aggregators) {
+			this.substitutions = substitutions;
+			this.aggregators = aggregators;
+		}
+
+		@Override
+		public Expr transform(ExprVar exprVar) {
+			Node replacement = substitutions.get(exprVar.asVar());
+			if(replacement == null) {
+				return super.transform(exprVar);
+			}
+			return Var.isVar(replacement) ? new ExprVar(replacement) : NodeValue.makeNode(replacement);
+		}
+
+		@Override
+		public Expr transform(ExprFunctionOp funcOp, ExprList args, Op opArg) {
+			// the algebra of the pattern is derived from the element, not the other way round
+			if(funcOp instanceof E_NotExists) {
+				return new E_NotExists(substitute(funcOp.getElement(), substitutions));
+			} else if(funcOp instanceof E_Exists) {
+				return new E_Exists(substitute(funcOp.getElement(), substitutions));
+			}
+			return super.transform(funcOp, args, opArg);
+		}
+
+		@Override
+		public Expr transform(ExprAggregator eAgg) {
+			Expr aggregator = aggregators.get(eAgg.getVar());
+			return aggregator != null ? aggregator : super.transform(eAgg);
+		}
+	}
+}
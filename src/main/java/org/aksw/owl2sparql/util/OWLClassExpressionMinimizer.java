@@ -19,10 +19,13 @@
  */
 package org.aksw.owl2sparql.util;
 
+import java.util.ArrayList;
 import java.util.HashSet;
 import java.util.List;
+import java.util.Objects;
 import java.util.Set;
 
+import org.semanticweb.owlapi.model.AxiomType;
 import org.semanticweb.owlapi.model.OWLClass;
 import org.semanticweb.owlapi.model.OWLClassExpression;
 import org.semanticweb.owlapi.model.OWLClassExpressionVisitorEx;
@@ -44,34 +47,138 @@ import org.semanticweb.owlapi.model.OWLObjectMinCardinality;
 import org.semanticweb.owlapi.model.OWLObjectOneOf;
 import org.semanticweb.owlapi.model.OWLObjectSomeValuesFrom;
 import org.semanticweb.owlapi.model.OWLObjectUnionOf;
+import org.semanticweb.owlapi.reasoner.OWLReasoner;
 import org.semanticweb.owlapi.util.OWLObjectDuplicator;
 
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheLoader;
+import com.google.common.cache.CacheStats;
+import com.google.common.cache.LoadingCache;
+import com.google.common.collect.Iterators;
+
 /**
+ * Removes redundant parts of class expressions, e.g. operands of an
+ * intersection that are super classes of other operands.
+ * <p>
+ * The expression is first brought into normal form by an
+ * {@link OWLClassExpressionNormalizer}, which takes <code>owl:Thing</code>,
+ * <code>owl:Nothing</code> and duplicate operands into account in linear time.
+ * Both steps share all unchanged parts of the given expression, i.e. new
+ * objects are only created for the parts that have been rewritten. If a reasoner is given, the subsumptions between
+ * the operands are checked by the reasoner and the answers are cached, thus,
+ * the cache has to be invalidated if the ontology of the reasoner changes.
+ * The minimizer can be used by several threads at the same time, the calls
+ * of the reasoner are synchronized.
+ *
  * @author Lorenz Buehmann
  *
  */
 public class OWLClassExpressionMinimizer implements OWLClassExpressionVisitorEx<OWLClassExpression>{
+
+	public static final long DEFAULT_CACHE_SIZE = 100000;
 	
-	private OWLDataFactory df;
-	private OWLObjectDuplicator objectDuplicator;
+	private final OWLDataFactory df;
+
+	private final OWLClassExpressionNormalizer normalizer;
+
+	private final OWLReasoner reasoner;
+
+	private final LoadingCache<Subsumption, Boolean> subsumptionCache;
 	
 	private boolean beautify = true;
 	
 	public OWLClassExpressionMinimizer(OWLDataFactory dataFactory) {
+		this(dataFactory, null);
+	}
+
+	/**
+	 * @param dataFactory the data factory
+	 * @param reasoner the reasoner used to check the subsumption between
+	 *            operands, e.g. a structural reasoner for the asserted class
+	 *            hierarchy, or <code>null</code>
+	 */
+	public OWLClassExpressionMinimizer(OWLDataFactory dataFactory, OWLReasoner reasoner) {
+		this(dataFactory, reasoner, DEFAULT_CACHE_SIZE);
+	}
+
+	/**
+	 * @param dataFactory the data factory
+	 * @param reasoner the reasoner used to check the subsumption between
+	 *            operands, e.g. a structural reasoner for the asserted class
+	 *            hierarchy, or <code>null</code>
+	 * @param cacheSize the maximum number of cached subsumption checks
+	 */
+	public OWLClassExpressionMinimizer(OWLDataFactory dataFactory, OWLReasoner reasoner, long cacheSize) {
 		this.df = dataFactory;
-		
-		objectDuplicator = new OWLObjectDuplicator(dataFactory);
+		this.normalizer = new OWLClassExpressionNormalizer(dataFactory);
+		this.reasoner = reasoner;
+		this.subsumptionCache = CacheBuilder.newBuilder()
+				.maximumSize(cacheSize)
+				.recordStats()
+				.build(new CacheLoader<Subsumption, Boolean>() {
+					@Override
+					public Boolean load(Subsumption subsumption) {
+						return isEntailed(subsumption.subClass, subsumption.superClass);
+					}
+				});
+	}
+
+	/**
+	 * @return the reasoner used to check the subsumption between operands, or
+	 *         <code>null</code>
+	 */
+	public OWLReasoner getReasoner() {
+		return reasoner;
+	}
+
+	/**
+	 * @return the statistics of the subsumption cache
+	 */
+	public CacheStats getSubsumptionCacheStats() {
+		return subsumptionCache.stats();
+	}
+
+	/**
+	 * Removes all cached subsumption checks, which is necessary if the
+	 * ontology of the reasoner has been changed.
+	 */
+	public void invalidateSubsumptionCache() {
+		subsumptionCache.invalidateAll();
 	}
 	
+	/**
+	 * Brings the class expression into normal form and removes redundant
+	 * operands.
+	 *
+	 * @param ce the class expression
+	 * @return the minimized class expression
+	 * @see OWLClassExpressionNormalizer
+	 */
 	public OWLClassExpression minimize(OWLClassExpression ce){
-		return ce.accept(this);
+		return normalizer.normalize(ce).accept(this);
 	}
 	
+	/**
+	 * Minimizes a copy of the class expression.
+	 *
+	 * @param ce the class expression
+	 * @return the minimized class expression
+	 * @deprecated OWL API objects are immutable and {@link #minimize(OWLClassExpression)}
+	 * only creates new objects for the parts of the expression that have been
+	 * changed, thus, copying the whole expression upfront isn't necessary
+	 */
+	@Deprecated
 	public OWLClassExpression minimizeClone(OWLClassExpression ce){
-		OWLClassExpression clone = objectDuplicator.duplicateObject(ce);
-		return clone.accept(this);
+		// the duplicator keeps the currently copied object in a field, thus, it must not be shared between threads
+		OWLClassExpression clone = new OWLObjectDuplicator(df).duplicateObject(ce);
+		return minimize(clone);
 	}
 
+	/*
+	 * The visitor expects an expression in normal form, i.e. flattened and without
+	 * owl:Thing and owl:Nothing as operands or fillers.
+	 */
+
 	/* (non-Javadoc)
 	 * @see org.semanticweb.owlapi.model.OWLClassExpressionVisitorEx#visit(org.semanticweb.owlapi.model.OWLClass)
 	 */
@@ -85,37 +192,60 @@ public class OWLClassExpressionMinimizer implements OWLClassExpressionVisitorEx<
 	 */
 	@Override
 	public OWLClassExpression visit(OWLObjectIntersectionOf ce) {
-		List<OWLClassExpression> operands = ce.getOperandsAsList();
-		//replace operands by the short form
-		for (int i = 0; i < operands.size(); i++) {
-			operands.set(i, operands.get(i).accept(this));
-		}
-		
-		Set<OWLClassExpression> newOperands = new HashSet<>(operands);
-		
-		if(newOperands.size() == 1){
-			return newOperands.iterator().next().accept(this);
+		Set<OWLClassExpression> newOperands = minimizeOperands(ce.getOperands());
+		boolean changed = newOperands != null;
+		if(!changed) {
+			if(reasoner == null) {// nothing to remove, thus, the expression is shared
+				return ce;
+			}
+			newOperands = new HashSet<>(ce.getOperands());
 		}
-		
-		for (int i = 0; i < operands.size(); i++) {
-			OWLClassExpression op1 = operands.get(i);
-			for (int j = i + 1; j < operands.size(); j++) {
-				OWLClassExpression op2 = operands.get(j);
-				
-				//remove operand if it is a super class
-				if(isSubClassOf(op1, op2)){
-					newOperands.remove(op2);
-				} else if(isSubClassOf(op2, op1)){
-					newOperands.remove(op1);
+
+		// without a reasoner the normal form doesn't contain any subsumed operands
+		if(reasoner != null) {
+			List<OWLClassExpression> operands = new ArrayList<>(newOperands);
+			for (int i = 0; i < operands.size(); i++) {
+				OWLClassExpression op1 = operands.get(i);
+				for (int j = i + 1; j < operands.size() && newOperands.contains(op1); j++) {
+					OWLClassExpression op2 = operands.get(j);
+
+					//remove operand if it is a super class
+					if(isSubClassOf(op1, op2)){
+						changed |= newOperands.remove(op2);
+					} else if(isSubClassOf(op2, op1)){
+						changed |= newOperands.remove(op1);
+					}
 				}
 			}
 		}
 		
 		if(newOperands.size() == 1){
-			return newOperands.iterator().next().accept(this);
+			return newOperands.iterator().next();
 		}
-		
-		return df.getOWLObjectIntersectionOf(newOperands);
+		return changed ? df.getOWLObjectIntersectionOf(newOperands) : ce;
+	}
+
+	/**
+	 * Minimizes the operands. The set of minimized operands is only allocated
+	 * once an operand has been changed.
+	 * @return the minimized operands, or <code>null</code> if no operand has
+	 *         been changed
+	 */
+	private Set<OWLClassExpression> minimizeOperands(Set<OWLClassExpression> operands) {
+		Set<OWLClassExpression> newOperands = null;
+		int i = 0;
+		for (OWLClassExpression operand : operands) {
+			OWLClassExpression newOperand = operand.accept(this);
+			if(newOperands == null && newOperand != operand) {
+				newOperands = new HashSet<>();
+				Iterators.addAll(newOperands, Iterators.limit(operands.iterator(), i));
+			}
+			if(newOperands != null) {
+				newOperands.add(newOperand);
+			}
+			i++;
+		}
+		return newOperands;
 	}
 
 	/**
@@ -125,7 +255,23 @@ public class OWLClassExpressionMinimizer implements OWLClassExpressionVisitorEx<
 	 * @return whether {@code subclass} is a subclass of {@code superclass}
 	 */
 	private boolean isSubClassOf(OWLClassExpression subClass, OWLClassExpression superClass) {
-		return subClass.isOWLNothing() || superClass.isOWLThing();
+		if(subClass.isOWLNothing() || superClass.isOWLThing()) {
+			return true;
+		}
+		return reasoner != null && subsumptionCache.getUnchecked(new Subsumption(subClass, superClass));
+	}
+
+	private boolean isEntailed(OWLClassExpression subClass, OWLClassExpression superClass) {
+		// reasoners are in general not thread-safe
+		synchronized (reasoner) {
+			if(!subClass.isAnonymous() && !superClass.isAnonymous()) {
+				// also supported by reasoners without entailment checking, e.g. the structural reasoner
+				return reasoner.getSuperClasses(subClass, false).containsEntity(superClass.asOWLClass())
+						|| reasoner.getEquivalentClasses(subClass).contains(superClass.asOWLClass());
+			}
+			return reasoner.isEntailmentCheckingSupported(AxiomType.SUBCLASS_OF)
+					&& reasoner.isEntailed(df.getOWLSubClassOfAxiom(subClass, superClass));
+		}
 	}
 
 	/* (non-Javadoc)
@@ -133,42 +279,40 @@ public class OWLClassExpressionMinimizer implements OWLClassExpressionVisitorEx<
 	 */
 	@Override
 	public OWLClassExpression visit(OWLObjectUnionOf ce) {
-		List<OWLClassExpression> operands = ce.getOperandsAsList();
-		//replace operands by the short form
-		for (int i = 0; i < operands.size(); i++) {
-			operands.set(i, operands.get(i).accept(this));
-		}
-		Set<OWLClassExpression> newOperands = new HashSet<>(operands);
-		
-		if(newOperands.size() == 1){
-			return newOperands.iterator().next().accept(this);
+		Set<OWLClassExpression> newOperands = minimizeOperands(ce.getOperands());
+		boolean changed = newOperands != null;
+		if(!changed) {
+			if(reasoner == null) {// nothing to remove, thus, the expression is shared
+				return ce;
+			}
+			newOperands = new HashSet<>(ce.getOperands());
 		}
-		
-		for (int i = 0; i < operands.size(); i++) {
-			OWLClassExpression op1 = operands.get(i);
-			for (int j = i + 1; j < operands.size(); j++) {
-				OWLClassExpression op2 = operands.get(j);
-				
-				//remove operand if it is a subclass
-				if(isSubClassOf(op2, op1)){
-					newOperands.remove(op2);
-				} else if(isSubClassOf(op1, op2)){
-					newOperands.remove(op1);
-				} else if(isSubClassOf(op1, df.getOWLObjectComplementOf(op2)) || isSubClassOf(op2, df.getOWLObjectComplementOf(op1))) {
-					// check for C or not C
-					return df.getOWLThing();
+
+		// without a reasoner the normal form doesn't contain any subsumed operands
+		if(reasoner != null) {
+			List<OWLClassExpression> operands = new ArrayList<>(newOperands);
+			for (int i = 0; i < operands.size(); i++) {
+				OWLClassExpression op1 = operands.get(i);
+				for (int j = i + 1; j < operands.size() && newOperands.contains(op1); j++) {
+					OWLClassExpression op2 = operands.get(j);
+
+					//remove operand if it is a subclass
+					if(isSubClassOf(op2, op1)){
+						changed |= newOperands.remove(op2);
+					} else if(isSubClassOf(op1, op2)){
+						changed |= newOperands.remove(op1);
+					} else if(isSubClassOf(df.getOWLObjectComplementOf(op2), op1) || isSubClassOf(df.getOWLObjectComplementOf(op1), op2)) {
+						// check for C or not C, i.e. whether the complement of one operand is covered by the other
+						return df.getOWLThing();
+					}
 				}
 			}
 		}
-		
+
 		if(newOperands.size() == 1){
-			return newOperands.iterator().next().accept(this);
+			return newOperands.iterator().next();
 		}
-		
-		
-		
-		
-		return df.getOWLObjectUnionOf(newOperands);
+		return changed ? df.getOWLObjectUnionOf(newOperands) : ce;
 	}
 
 	/* (non-Javadoc)
@@ -178,11 +322,7 @@ public class OWLClassExpressionMinimizer implements OWLClassExpressionVisitorEx<
 	public OWLClassExpression visit(OWLObjectComplementOf ce) {
 		OWLClassExpression operand = ce.getOperand();
 		OWLClassExpression shortendedOperand = operand.accept(this);
-		if(shortendedOperand.isOWLThing()){// \neg \top \equiv \bot
-			return df.getOWLNothing();
-		} else if(shortendedOperand.isOWLNothing()){// \neg \bot \equiv \top
-			return df.getOWLThing();
-		} else if(operand != shortendedOperand){
+		if(operand != shortendedOperand){
 			return df.getOWLObjectComplementOf(shortendedOperand);
 		}
 		return ce;
@@ -195,15 +335,12 @@ public class OWLClassExpressionMinimizer implements OWLClassExpressionVisitorEx<
 	public OWLClassExpression visit(OWLObjectSomeValuesFrom ce) {
 		OWLClassExpression filler = ce.getFiller();
 		OWLClassExpression shortenedFiller = filler.accept(this);
-		if(shortenedFiller.isOWLNothing()){// \exists r.\bottom \equiv \bottom
-			return df.getOWLNothing();
-		} else if(!filler.equals(shortenedFiller)){
-			return df.getOWLObjectSomeValuesFrom(ce.getProperty(), shortenedFiller);
-		}
 
 		// convert r some {a} to r value a
 		if(shortenedFiller instanceof OWLObjectOneOf && ((OWLObjectOneOf) shortenedFiller).getIndividuals().size() == 1) {
 			return df.getOWLObjectHasValue(ce.getProperty(), ((OWLObjectOneOf) shortenedFiller).getIndividuals().iterator().next());
+		} else if(filler != shortenedFiller){
+			return df.getOWLObjectSomeValuesFrom(ce.getProperty(), shortenedFiller);
 		}
 		return ce;
 	}
@@ -214,12 +351,11 @@ public class OWLClassExpressionMinimizer implements OWLClassExpressionVisitorEx<
 	@Override
 	public OWLClassExpression visit(OWLObjectAllValuesFrom ce) {
 		OWLClassExpression filler = ce.getFiller();
-		OWLClassExpression shortenedFiller = filler.accept(this);
-		if(shortenedFiller.isOWLThing()){// \forall r.\top \equiv \top
-			return df.getOWLThing();
-		} else if(beautify && shortenedFiller.isOWLNothing()) {// \forall r.\bot to \neg \exists r.\top
+		if(beautify && filler.isOWLNothing()) {// \forall r.\bot to \neg \exists r.\top
 			return df.getOWLObjectComplementOf(df.getOWLObjectSomeValuesFrom(ce.getProperty(), df.getOWLThing()));
-		} else if(!filler.equals(shortenedFiller)){
+		}
+		OWLClassExpression shortenedFiller = filler.accept(this);
+		if(filler != shortenedFiller){
 			return df.getOWLObjectAllValuesFrom(ce.getProperty(), shortenedFiller);
 		}
 		return ce;
@@ -238,16 +374,9 @@ public class OWLClassExpressionMinimizer implements OWLClassExpressionVisitorEx<
 	 */
 	@Override
 	public OWLClassExpression visit(OWLObjectMinCardinality ce) {
-		// >= 0 r.C \equiv \top
-		int cardinality = ce.getCardinality();
-		if (cardinality == 0) {
-			return df.getOWLThing();
-		}
 		OWLClassExpression filler = ce.getFiller();
 		OWLClassExpression shortenedFiller = filler.accept(this);
-		if(shortenedFiller.isOWLNothing()){// >= n r.\bot \equiv \bot if n != 0
-			return df.getOWLNothing();
-		} else if(!filler.equals(shortenedFiller)){
+		if(filler != shortenedFiller){
 			return df.getOWLObjectMinCardinality(ce.getCardinality(), ce.getProperty(), shortenedFiller);
 		}
 		return ce;
@@ -260,7 +389,9 @@ public class OWLClassExpressionMinimizer implements OWLClassExpressionVisitorEx<
 	public OWLClassExpression visit(OWLObjectExactCardinality ce) {
 		OWLClassExpression filler = ce.getFiller();
 		OWLClassExpression shortenedFiller = filler.accept(this);
-		if(!filler.equals(shortenedFiller)){
+		if(beautify && ce.getCardinality() == 0) {// = 0 r C is the same as <= 0 r C, i.e. \neg \exists r C
+			return df.getOWLObjectComplementOf(df.getOWLObjectSomeValuesFrom(ce.getProperty(), shortenedFiller));
+		} else if(filler != shortenedFiller){
 			return df.getOWLObjectExactCardinality(ce.getCardinality(), ce.getProperty(), shortenedFiller);
 		}
 		return ce;
@@ -273,11 +404,9 @@ public class OWLClassExpressionMinimizer implements OWLClassExpressionVisitorEx<
 	public OWLClassExpression visit(OWLObjectMaxCardinality ce) {
 		OWLClassExpression filler = ce.getFiller();
 		OWLClassExpression shortenedFiller = filler.accept(this);
-		if(shortenedFiller.isOWLNothing()){// <= n r.\bot \equiv \top
-			return df.getOWLThing();
-		} else if(beautify && ce.getCardinality() == 0) {// we rewrite <= 0 r C to \neg \exists r C - easier to read for humans
+		if(beautify && ce.getCardinality() == 0) {// we rewrite <= 0 r C to \neg \exists r C - easier to read for humans
 			return df.getOWLObjectComplementOf(df.getOWLObjectSomeValuesFrom(ce.getProperty(), shortenedFiller));
-		} else if(!filler.equals(shortenedFiller)){
+		} else if(filler != shortenedFiller){
 			return df.getOWLObjectMaxCardinality(ce.getCardinality(), ce.getProperty(), shortenedFiller);
 		}
 		return ce;
@@ -336,6 +465,9 @@ public class OWLClassExpressionMinimizer implements OWLClassExpressionVisitorEx<
 	 */
 	@Override
 	public OWLClassExpression visit(OWLDataExactCardinality ce) {
+		if(beautify && ce.getCardinality() == 0) {// = 0 d R to \neg \exists d R
+			return df.getOWLObjectComplementOf(df.getOWLDataSomeValuesFrom(ce.getProperty(), ce.getFiller()));
+		}
 		return ce;
 	}
 
@@ -344,6 +476,37 @@ public class OWLClassExpressionMinimizer implements OWLClassExpressionVisitorEx<
 	 */
 	@Override
 	public OWLClassExpression visit(OWLDataMaxCardinality ce) {
+		if(beautify && ce.getCardinality() == 0) {// <= 0 d R to \neg \exists d R
+			return df.getOWLObjectComplementOf(df.getOWLDataSomeValuesFrom(ce.getProperty(), ce.getFiller()));
+		}
 		return ce;
 	}
+
+	private static final class Subsumption {
+
+		private final OWLClassExpression subClass;
+		private final OWLClassExpression superClass;
+
+		Subsumption(OWLClassExpression subClass, OWLClassExpression superClass) {
+			this.subClass = subClass;
+			this.superClass = superClass;
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if(this == obj) {
+				return true;
+			}
+			if(!(obj instanceof Subsumption)) {
+				return false;
+			}
+			Subsumption other = (Subsumption) obj;
+			return subClass.equals(other.subClass) && superClass.equals(other.superClass);
+		}
+
+		@Override
+		public int hashCode() {
+			return Objects.hash(subClass, superClass);
+		}
+	}
 }
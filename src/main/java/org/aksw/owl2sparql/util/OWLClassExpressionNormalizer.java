@@ -0,0 +1,397 @@
+/*
+ * #%L
+ * owl2sparql-core
+ * %%
+ * Copyright (C) 2015 AKSW
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package org.aksw.owl2sparql.util;
+
+import com.google.common.collect.Iterators;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.semanticweb.owlapi.model.*;
+
+/**
+ * Brings class expressions into a normal form in a single pass, i.e. in time
+ * linear in the size of the expression:
+ * <ul>
+ * <li>nested intersections and unions are flattened,</li>
+ * <li>duplicate operands are removed by hashing,</li>
+ * <li><code>owl:Thing</code> and <code>owl:Nothing</code> are eliminated,
+ * e.g. <code>A and owl:Thing</code> becomes <code>A</code> and
+ * <code>r some owl:Nothing</code> becomes <code>owl:Nothing</code>,</li>
+ * <li>complementary operands are detected, e.g. <code>A and not A</code>
+ * becomes <code>owl:Nothing</code>,</li>
+ * <li>double negations are removed.</li>
+ * </ul>
+ * Optionally, negations are pushed inwards, i.e. the expression is
+ * converted into negation normal form (NNF). This is disabled by default,
+ * because a negated group is cheaper to evaluate in SPARQL than the negated
+ * operands, e.g. <code>not (r some A)</code> is a single FILTER NOT EXISTS,
+ * whereas its NNF <code>r only (not A)</code> needs a double negation.
+ *
+ * @author Lorenz Buehmann
+ *
+ */
+public class OWLClassExpressionNormalizer implements OWLClassExpressionVisitorEx<OWLClassExpression>{
+
+	private final OWLDataFactory df;
+	private final boolean negationNormalForm;
+
+	public OWLClassExpressionNormalizer(OWLDataFactory dataFactory) {
+		this(dataFactory, false);
+	}
+
+	/**
+	 * @param dataFactory the data factory used to create the new expressions
+	 * @param negationNormalForm whether to push negations inwards
+	 */
+	public OWLClassExpressionNormalizer(OWLDataFactory dataFactory, boolean negationNormalForm) {
+		this.df = dataFactory;
+		this.negationNormalForm = negationNormalForm;
+	}
+
+	/**
+	 * @param ce the class expression
+	 * @return the normal form of the class expression, the expression itself
+	 *         if it's already in normal form
+	 */
+	public OWLClassExpression normalize(OWLClassExpression ce){
+		return ce.accept(this);
+	}
+
+	@Override
+	public OWLClassExpression visit(OWLClass ce) {
+		return ce;
+	}
+
+	@Override
+	public OWLClassExpression visit(OWLObjectIntersectionOf ce) {
+		Set<OWLClassExpression> operands = ce.getOperands();
+		List<OWLClassExpression> normalizedOperands = normalizeOperands(operands, ClassExpressionType.OBJECT_INTERSECTION_OF);
+		if(normalizedOperands == null) {// nothing to rewrite, thus, the expression is shared
+			return containsComplementaryOperands(operands) ? df.getOWLNothing() : ce;
+		}
+		return intersection(normalizedOperands);
+	}
+
+	@Override
+	public OWLClassExpression visit(OWLObjectUnionOf ce) {
+		Set<OWLClassExpression> operands = ce.getOperands();
+		List<OWLClassExpression> normalizedOperands = normalizeOperands(operands, ClassExpressionType.OBJECT_UNION_OF);
+		if(normalizedOperands == null) {// nothing to rewrite, thus, the expression is shared
+			return containsComplementaryOperands(operands) ? df.getOWLThing() : ce;
+		}
+		return union(normalizedOperands);
+	}
+
+	/**
+	 * Normalizes the operands of an n-ary expression. The list of normalized
+	 * operands is only allocated once an operand has been changed or has to be
+	 * flattened or eliminated.
+	 *
+	 * @param operands the operands
+	 * @param type the type of the n-ary expression
+	 * @return the normalized operands, or <code>null</code> if the expression
+	 *         can be kept as it is
+	 */
+	private List<OWLClassExpression> normalizeOperands(Set<OWLClassExpression> operands, ClassExpressionType type) {
+		List<OWLClassExpression> normalizedOperands = null;
+		if(operands.size() == 1) {// has to be unwrapped
+			normalizedOperands = new ArrayList<>(1);
+		}
+		int i = 0;
+		for (OWLClassExpression operand : operands) {
+			OWLClassExpression normalizedOperand = operand.accept(this);
+			if(normalizedOperands == null
+					&& (normalizedOperand != operand || normalizedOperand.isOWLThing() || normalizedOperand.isOWLNothing()
+						|| normalizedOperand.getClassExpressionType() == type)) {
+				normalizedOperands = new ArrayList<>(operands.size());
+				Iterators.addAll(normalizedOperands, Iterators.limit(operands.iterator(), i));
+			}
+			if(normalizedOperands != null) {
+				normalizedOperands.add(normalizedOperand);
+			}
+			i++;
+		}
+		return normalizedOperands;
+	}
+
+	/**
+	 * @param operands the normalized operands
+	 * @return the normalized intersection of the operands
+	 */
+	private OWLClassExpression intersection(Collection<OWLClassExpression> operands) {
+		Set<OWLClassExpression> newOperands = new HashSet<>();
+		for (OWLClassExpression operand : operands) {
+			if(operand.isOWLNothing()) {
+				return df.getOWLNothing();
+			} else if(operand.getClassExpressionType() == ClassExpressionType.OBJECT_INTERSECTION_OF) {
+				newOperands.addAll(((OWLObjectIntersectionOf) operand).getOperands());
+			} else if(!operand.isOWLThing()) {
+				newOperands.add(operand);
+			}
+		}
+		if(containsComplementaryOperands(newOperands)) {// C and not C
+			return df.getOWLNothing();
+		}
+		if(newOperands.isEmpty()) {
+			return df.getOWLThing();
+		} else if(newOperands.size() == 1) {
+			return newOperands.iterator().next();
+		}
+		return df.getOWLObjectIntersectionOf(newOperands);
+	}
+
+	/**
+	 * @param operands the normalized operands
+	 * @return the normalized union of the operands
+	 */
+	private OWLClassExpression union(Collection<OWLClassExpression> operands) {
+		Set<OWLClassExpression> newOperands = new HashSet<>();
+		for (OWLClassExpression operand : operands) {
+			if(operand.isOWLThing()) {
+				return df.getOWLThing();
+			} else if(operand.getClassExpressionType() == ClassExpressionType.OBJECT_UNION_OF) {
+				newOperands.addAll(((OWLObjectUnionOf) operand).getOperands());
+			} else if(!operand.isOWLNothing()) {
+				newOperands.add(operand);
+			}
+		}
+		if(containsComplementaryOperands(newOperands)) {// C or not C
+			return df.getOWLThing();
+		}
+		if(newOperands.isEmpty()) {
+			return df.getOWLNothing();
+		} else if(newOperands.size() == 1) {
+			return newOperands.iterator().next();
+		}
+		return df.getOWLObjectUnionOf(newOperands);
+	}
+
+	private boolean containsComplementaryOperands(Set<OWLClassExpression> operands) {
+		for (OWLClassExpression operand : operands) {
+			if(operand.getClassExpressionType() == ClassExpressionType.OBJECT_COMPLEMENT_OF
+					&& operands.contains(((OWLObjectComplementOf) operand).getOperand())) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	@Override
+	public OWLClassExpression visit(OWLObjectComplementOf ce) {
+		OWLClassExpression operand = ce.getOperand().accept(this);
+		if(negationNormalForm) {
+			return negate(operand);
+		}
+		if(operand.isOWLThing()) {// \neg \top \equiv \bot
+			return df.getOWLNothing();
+		} else if(operand.isOWLNothing()) {// \neg \bot \equiv \top
+			return df.getOWLThing();
+		} else if(operand.getClassExpressionType() == ClassExpressionType.OBJECT_COMPLEMENT_OF) {// \neg \neg C \equiv C
+			return ((OWLObjectComplementOf) operand).getOperand();
+		}
+		return operand != ce.getOperand() ? df.getOWLObjectComplementOf(operand) : ce;
+	}
+
+	/**
+	 * @param ce a normalized class expression
+	 * @return the normalized negation of the class expression, with the
+	 *         negation pushed inwards as far as possible
+	 */
+	private OWLClassExpression negate(OWLClassExpression ce) {
+		switch (ce.getClassExpressionType()) {
+			case OWL_CLASS:
+				if(ce.isOWLThing()) {
+					return df.getOWLNothing();
+				} else if(ce.isOWLNothing()) {
+					return df.getOWLThing();
+				}
+				return df.getOWLObjectComplementOf(ce);
+			case OBJECT_COMPLEMENT_OF:
+				return ((OWLObjectComplementOf) ce).getOperand();
+			case OBJECT_INTERSECTION_OF:
+				return union(negate(((OWLObjectIntersectionOf) ce).getOperands()));
+			case OBJECT_UNION_OF:
+				return intersection(negate(((OWLObjectUnionOf) ce).getOperands()));
+			case OBJECT_SOME_VALUES_FROM: {
+				OWLObjectSomeValuesFrom restriction = (OWLObjectSomeValuesFrom) ce;
+				return allValuesFrom(restriction.getProperty(), negate(restriction.getFiller()), null);
+			}
+			case OBJECT_ALL_VALUES_FROM: {
+				OWLObjectAllValuesFrom restriction = (OWLObjectAllValuesFrom) ce;
+				return someValuesFrom(restriction.getProperty(), negate(restriction.getFiller()), null);
+			}
+			case OBJECT_MIN_CARDINALITY: {// \neg >= n r.C \equiv <= n-1 r.C
+				OWLObjectMinCardinality restriction = (OWLObjectMinCardinality) ce;
+				return maxCardinality(restriction.getCardinality() - 1, restriction.getProperty(), restriction.getFiller(), null);
+			}
+			case OBJECT_MAX_CARDINALITY: {// \neg <= n r.C \equiv >= n+1 r.C
+				OWLObjectMaxCardinality restriction = (OWLObjectMaxCardinality) ce;
+				return minCardinality(restriction.getCardinality() + 1, restriction.getProperty(), restriction.getFiller(), null);
+			}
+			case DATA_SOME_VALUES_FROM: {
+				OWLDataSomeValuesFrom restriction = (OWLDataSomeValuesFrom) ce;
+				return df.getOWLDataAllValuesFrom(restriction.getProperty(), negate(restriction.getFiller()));
+			}
+			case DATA_ALL_VALUES_FROM: {
+				OWLDataAllValuesFrom restriction = (OWLDataAllValuesFrom) ce;
+				return df.getOWLDataSomeValuesFrom(restriction.getProperty(), negate(restriction.getFiller()));
+			}
+			case DATA_MIN_CARDINALITY: {
+				OWLDataMinCardinality restriction = (OWLDataMinCardinality) ce;
+				return df.getOWLDataMaxCardinality(restriction.getCardinality() - 1, restriction.getProperty(), restriction.getFiller());
+			}
+			case DATA_MAX_CARDINALITY: {
+				OWLDataMaxCardinality restriction = (OWLDataMaxCardinality) ce;
+				return df.getOWLDataMinCardinality(restriction.getCardinality() + 1, restriction.getProperty(), restriction.getFiller());
+			}
+			default:
+				// there is no negation free equivalent of nominals, value and exact cardinality restrictions
+				return df.getOWLObjectComplementOf(ce);
+		}
+	}
+
+	private List<OWLClassExpression> negate(Set<OWLClassExpression> operands) {
+		List<OWLClassExpression> negatedOperands = new ArrayList<>(operands.size());
+		for (OWLClassExpression operand : operands) {
+			negatedOperands.add(negate(operand));
+		}
+		return negatedOperands;
+	}
+
+	private OWLDataRange negate(OWLDataRange dr) {
+		return dr instanceof OWLDataComplementOf ? ((OWLDataComplementOf) dr).getDataRange() : df.getOWLDataComplementOf(dr);
+	}
+
+	private OWLClassExpression someValuesFrom(OWLObjectPropertyExpression property, OWLClassExpression filler,
+											  OWLObjectSomeValuesFrom original) {
+		if(filler.isOWLNothing()) {// \exists r.\bot \equiv \bot
+			return df.getOWLNothing();
+		}
+		return original != null && filler == original.getFiller() ? original : df.getOWLObjectSomeValuesFrom(property, filler);
+	}
+
+	private OWLClassExpression allValuesFrom(OWLObjectPropertyExpression property, OWLClassExpression filler,
+											 OWLObjectAllValuesFrom original) {
+		if(filler.isOWLThing()) {// \forall r.\top \equiv \top
+			return df.getOWLThing();
+		}
+		return original != null && filler == original.getFiller() ? original : df.getOWLObjectAllValuesFrom(property, filler);
+	}
+
+	private OWLClassExpression minCardinality(int cardinality, OWLObjectPropertyExpression property,
+											  OWLClassExpression filler, OWLObjectMinCardinality original) {
+		if(cardinality == 0) {// >= 0 r.C \equiv \top
+			return df.getOWLThing();
+		} else if(filler.isOWLNothing()) {// >= n r.\bot \equiv \bot if n != 0
+			return df.getOWLNothing();
+		}
+		return original != null && filler == original.getFiller()
+				? original
+				: df.getOWLObjectMinCardinality(cardinality, property, filler);
+	}
+
+	private OWLClassExpression maxCardinality(int cardinality, OWLObjectPropertyExpression property,
+											  OWLClassExpression filler, OWLObjectMaxCardinality original) {
+		if(filler.isOWLNothing()) {// <= n r.\bot \equiv \top
+			return df.getOWLThing();
+		}
+		return original != null && filler == original.getFiller()
+				? original
+				: df.getOWLObjectMaxCardinality(cardinality, property, filler);
+	}
+
+	@Override
+	public OWLClassExpression visit(OWLObjectSomeValuesFrom ce) {
+		return someValuesFrom(ce.getProperty(), ce.getFiller().accept(this), ce);
+	}
+
+	@Override
+	public OWLClassExpression visit(OWLObjectAllValuesFrom ce) {
+		return allValuesFrom(ce.getProperty(), ce.getFiller().accept(this), ce);
+	}
+
+	@Override
+	public OWLClassExpression visit(OWLObjectHasValue ce) {
+		return ce;
+	}
+
+	@Override
+	public OWLClassExpression visit(OWLObjectMinCardinality ce) {
+		return minCardinality(ce.getCardinality(), ce.getProperty(), ce.getFiller().accept(this), ce);
+	}
+
+	@Override
+	public OWLClassExpression visit(OWLObjectExactCardinality ce) {
+		OWLClassExpression filler = ce.getFiller().accept(this);
+		if(filler.isOWLNothing()) {// = 0 r.\bot \equiv \top, = n r.\bot \equiv \bot if n != 0
+			return ce.getCardinality() == 0 ? df.getOWLThing() : df.getOWLNothing();
+		}
+		return filler != ce.getFiller() ? df.getOWLObjectExactCardinality(ce.getCardinality(), ce.getProperty(), filler) : ce;
+	}
+
+	@Override
+	public OWLClassExpression visit(OWLObjectMaxCardinality ce) {
+		return maxCardinality(ce.getCardinality(), ce.getProperty(), ce.getFiller().accept(this), ce);
+	}
+
+	@Override
+	public OWLClassExpression visit(OWLObjectHasSelf ce) {
+		return ce;
+	}
+
+	@Override
+	public OWLClassExpression visit(OWLObjectOneOf ce) {
+		return ce;
+	}
+
+	@Override
+	public OWLClassExpression visit(OWLDataSomeValuesFrom ce) {
+		return ce;
+	}
+
+	@Override
+	public OWLClassExpression visit(OWLDataAllValuesFrom ce) {
+		return ce;
+	}
+
+	@Override
+	public OWLClassExpression visit(OWLDataHasValue ce) {
+		return ce;
+	}
+
+	@Override
+	public OWLClassExpression visit(OWLDataMinCardinality ce) {
+		return ce.getCardinality() == 0 ? df.getOWLThing() : ce;
+	}
+
+	@Override
+	public OWLClassExpression visit(OWLDataExactCardinality ce) {
+		return ce;
+	}
+
+	@Override
+	public OWLClassExpression visit(OWLDataMaxCardinality ce) {
+		return ce;
+	}
+}
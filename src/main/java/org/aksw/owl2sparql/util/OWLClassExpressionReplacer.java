@@ -0,0 +1,184 @@
+/*
+ * #%L
+ * owl2sparql-core
+ * %%
+ * Copyright (C) 2015 AKSW
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package org.aksw.owl2sparql.util;
+
+import java.util.HashSet;
+import java.util.Set;
+
+import org.semanticweb.owlapi.model.*;
+
+/**
+ * Replaces each occurrence of a sub-expression in a class expression by
+ * another class expression. Parts of the expression that don't contain the
+ * replaced sub-expression are not copied.
+ *
+ * @author Lorenz Buehmann
+ *
+ */
+public class OWLClassExpressionReplacer implements OWLClassExpressionVisitorEx<OWLClassExpression>{
+
+	private final OWLDataFactory df;
+	private final OWLClassExpression replaced;
+	private final OWLClassExpression replacement;
+
+	private int replacements;
+
+	/**
+	 * @param dataFactory the data factory used to create the new expressions
+	 * @param replaced the sub-expression that is replaced
+	 * @param replacement the class expression that replaces the sub-expression
+	 */
+	public OWLClassExpressionReplacer(OWLDataFactory dataFactory, OWLClassExpression replaced,
+									  OWLClassExpression replacement) {
+		this.df = dataFactory;
+		this.replaced = replaced;
+		this.replacement = replacement;
+	}
+
+	/**
+	 * @param ce the class expression
+	 * @return the class expression with all occurrences of the sub-expression
+	 *         replaced
+	 */
+	public OWLClassExpression replace(OWLClassExpression ce){
+		if(ce.equals(replaced)) {
+			replacements++;
+			return replacement;
+		}
+		return ce.accept(this);
+	}
+
+	/**
+	 * @return the number of occurrences replaced so far
+	 */
+	public int getReplacements() {
+		return replacements;
+	}
+
+	private Set<OWLClassExpression> replace(Set<OWLClassExpression> operands, boolean[] changed){
+		Set<OWLClassExpression> newOperands = new HashSet<>();
+		for (OWLClassExpression operand : operands) {
+			OWLClassExpression newOperand = replace(operand);
+			changed[0] |= newOperand != operand;
+			newOperands.add(newOperand);
+		}
+		return newOperands;
+	}
+
+	@Override
+	public OWLClassExpression visit(OWLClass ce) {
+		return ce;
+	}
+
+	@Override
+	public OWLClassExpression visit(OWLObjectIntersectionOf ce) {
+		boolean[] changed = new boolean[1];
+		Set<OWLClassExpression> operands = replace(ce.getOperands(), changed);
+		return changed[0] ? df.getOWLObjectIntersectionOf(operands) : ce;
+	}
+
+	@Override
+	public OWLClassExpression visit(OWLObjectUnionOf ce) {
+		boolean[] changed = new boolean[1];
+		Set<OWLClassExpression> operands = replace(ce.getOperands(), changed);
+		return changed[0] ? df.getOWLObjectUnionOf(operands) : ce;
+	}
+
+	@Override
+	public OWLClassExpression visit(OWLObjectComplementOf ce) {
+		OWLClassExpression operand = replace(ce.getOperand());
+		return operand != ce.getOperand() ? df.getOWLObjectComplementOf(operand) : ce;
+	}
+
+	@Override
+	public OWLClassExpression visit(OWLObjectSomeValuesFrom ce) {
+		OWLClassExpression filler = replace(ce.getFiller());
+		return filler != ce.getFiller() ? df.getOWLObjectSomeValuesFrom(ce.getProperty(), filler) : ce;
+	}
+
+	@Override
+	public OWLClassExpression visit(OWLObjectAllValuesFrom ce) {
+		OWLClassExpression filler = replace(ce.getFiller());
+		return filler != ce.getFiller() ? df.getOWLObjectAllValuesFrom(ce.getProperty(), filler) : ce;
+	}
+
+	@Override
+	public OWLClassExpression visit(OWLObjectHasValue ce) {
+		return ce;
+	}
+
+	@Override
+	public OWLClassExpression visit(OWLObjectMinCardinality ce) {
+		OWLClassExpression filler = replace(ce.getFiller());
+		return filler != ce.getFiller() ? df.getOWLObjectMinCardinality(ce.getCardinality(), ce.getProperty(), filler) : ce;
+	}
+
+	@Override
+	public OWLClassExpression visit(OWLObjectExactCardinality ce) {
+		OWLClassExpression filler = replace(ce.getFiller());
+		return filler != ce.getFiller() ? df.getOWLObjectExactCardinality(ce.getCardinality(), ce.getProperty(), filler) : ce;
+	}
+
+	@Override
+	public OWLClassExpression visit(OWLObjectMaxCardinality ce) {
+		OWLClassExpression filler = replace(ce.getFiller());
+		return filler != ce.getFiller() ? df.getOWLObjectMaxCardinality(ce.getCardinality(), ce.getProperty(), filler) : ce;
+	}
+
+	@Override
+	public OWLClassExpression visit(OWLObjectHasSelf ce) {
+		return ce;
+	}
+
+	@Override
+	public OWLClassExpression visit(OWLObjectOneOf ce) {
+		return ce;
+	}
+
+	@Override
+	public OWLClassExpression visit(OWLDataSomeValuesFrom ce) {
+		return ce;
+	}
+
+	@Override
+	public OWLClassExpression visit(OWLDataAllValuesFrom ce) {
+		return ce;
+	}
+
+	@Override
+	public OWLClassExpression visit(OWLDataHasValue ce) {
+		return ce;
+	}
+
+	@Override
+	public OWLClassExpression visit(OWLDataMinCardinality ce) {
+		return ce;
+	}
+
+	@Override
+	public OWLClassExpression visit(OWLDataExactCardinality ce) {
+		return ce;
+	}
+
+	@Override
+	public OWLClassExpression visit(OWLDataMaxCardinality ce) {
+		return ce;
+	}
+}
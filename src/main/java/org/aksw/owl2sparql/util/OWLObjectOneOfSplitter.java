@@ -0,0 +1,120 @@
+/*
+ * #%L
+ * owl2sparql-core
+ * %%
+ * Copyright (C) 2015 AKSW
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package org.aksw.owl2sparql.util;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.TreeSet;
+
+import org.semanticweb.owlapi.model.*;
+
+import com.google.common.collect.Lists;
+
+/**
+ * Splits the oversize nominals of a class expression, i.e. enumerations
+ * <code>{a1,...,an}</code> with more than a given number of individuals, into
+ * several class expressions that contain only a chunk of the individuals.
+ * The instances of the class expression are the union of the instances of
+ * the chunked expressions.
+ * <p>
+ * This only holds if the nominal occurs in a position that distributes over
+ * unions, i.e. nested in intersections, unions and existential restrictions.
+ * Nominals below negations, universal or cardinality restrictions, and
+ * nominals that occur more than once, are not split.
+ *
+ * @author Lorenz Buehmann
+ *
+ */
+public class OWLObjectOneOfSplitter {
+
+	private final OWLDataFactory df;
+	private final int maxSize;
+
+	/**
+	 * @param dataFactory the data factory used to create the new expressions
+	 * @param maxSize the maximum number of individuals of a nominal
+	 */
+	public OWLObjectOneOfSplitter(OWLDataFactory dataFactory, int maxSize) {
+		if(maxSize < 1) {
+			throw new IllegalArgumentException("The maximum size of a nominal must be positive, but was " + maxSize);
+		}
+		this.df = dataFactory;
+		this.maxSize = maxSize;
+	}
+
+	/**
+	 * Splits all oversize nominals of the class expression. If there are
+	 * several of them, all combinations of their chunks are returned.
+	 *
+	 * @param ce the class expression
+	 * @return the class expressions whose instances make up the instances of
+	 *         the given class expression, only the given expression if there
+	 *         is no oversize nominal that can be split
+	 */
+	public List<OWLClassExpression> split(OWLClassExpression ce) {
+		OWLObjectOneOf nominal = findSplittableNominal(ce);
+		if(nominal == null) {
+			return Collections.singletonList(ce);
+		}
+
+		List<OWLClassExpression> result = new ArrayList<>();
+		for (List<OWLIndividual> chunk : Lists.partition(new ArrayList<>(new TreeSet<>(nominal.getIndividuals())), maxSize)) {
+			OWLClassExpression chunked = new OWLClassExpressionReplacer(df, nominal, df.getOWLObjectOneOf(new HashSet<>(chunk))).replace(ce);
+			result.addAll(split(chunked));
+		}
+		return result;
+	}
+
+	private OWLObjectOneOf findSplittableNominal(OWLClassExpression ce) {
+		for (OWLObjectOneOf nominal : distributiveNominals(ce, new ArrayList<>())) {
+			if(nominal.getIndividuals().size() > maxSize) {
+				// the nominal must not occur in other positions
+				OWLClassExpressionReplacer replacer = new OWLClassExpressionReplacer(df, nominal, df.getOWLNothing());
+				replacer.replace(ce);
+				if(replacer.getReplacements() == 1) {
+					return nominal;
+				}
+			}
+		}
+		return null;
+	}
+
+	private List<OWLObjectOneOf> distributiveNominals(OWLClassExpression ce, List<OWLObjectOneOf> nominals) {
+		switch (ce.getClassExpressionType()) {
+			case OBJECT_ONE_OF:
+				nominals.add((OWLObjectOneOf) ce);
+				break;
+			case OBJECT_INTERSECTION_OF:
+			case OBJECT_UNION_OF:
+				for (OWLClassExpression operand : ((OWLNaryBooleanClassExpression) ce).getOperands()) {
+					distributiveNominals(operand, nominals);
+				}
+				break;
+			case OBJECT_SOME_VALUES_FROM:
+				distributiveNominals(((OWLObjectSomeValuesFrom) ce).getFiller(), nominals);
+				break;
+			default:
+				break;
+		}
+		return nominals;
+	}
+}
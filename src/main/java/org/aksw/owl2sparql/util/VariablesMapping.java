@@ -58,6 +58,13 @@ public class VariablesMapping extends HashMap<OWLEntity, String>{
 		return individualVarGenerator.newVar();
 	}
 	
+	/**
+	 * @return a fresh variable used in object position of a type triple.
+	 */
+	public String newClassVariable(){
+		return classVarGenerator.newVar();
+	}
+	
 	/**
 	 * @return a fresh variable used in predicate position.
 	 */
@@ -0,0 +1,108 @@
+/*
+ * #%L
+ * owl2sparql-core
+ * %%
+ * Copyright (C) 2015 AKSW
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package org.aksw.owl2sparql;
+
+import org.aksw.owl2sparql.style.AllQuantorTranslation;
+import org.aksw.owl2sparql.style.NegationRendering;
+import org.junit.Test;
+import org.semanticweb.owlapi.apibinding.OWLManager;
+import org.semanticweb.owlapi.model.*;
+import org.semanticweb.owlapi.util.DefaultPrefixManager;
+
+import java.util.Arrays;
+import java.util.Set;
+import java.util.TreeSet;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Checks the instances of chains of universal restrictions that are collapsed
+ * into a single negation over a property path on a local dataset.
+ *
+ * @author Lorenz Buehmann
+ *
+ */
+public class AllQuantorTranslationTest {
+
+	private static final String NS = "http://example.org/";
+
+	private static final LocalDataset DATASET = new LocalDataset(
+			"@prefix : <http://example.org/> .\n" +
+			":a :r :b , :c .\n" +
+			":b :s :d .\n" +
+			":c :s :e .\n" +
+			":d a :A .\n" +
+			":e a :A .\n" +
+			":f :r :g .\n" +
+			":g :s :h .\n" +
+			":h a :B ; :t :a .\n" +
+			":i :r :j .\n" +
+			":k a :B .\n");
+
+	private OWLDataFactory df = OWLManager.getOWLDataFactory();
+	private PrefixManager pm = new DefaultPrefixManager(NS);
+
+	private OWLClass clsA = df.getOWLClass("A", pm);
+	private OWLClass clsB = df.getOWLClass("B", pm);
+	private OWLObjectProperty propR = df.getOWLObjectProperty("r", pm);
+	private OWLObjectProperty propS = df.getOWLObjectProperty("s", pm);
+	private OWLObjectProperty propT = df.getOWLObjectProperty("t", pm);
+
+	private Set<String> instances(OWLClassExpression ce, NegationRendering negationRendering) {
+		OWLClassExpressionToSPARQLConverter converter = new OWLClassExpressionToSPARQLConverter();
+		converter.setAllQuantorTranslation(AllQuantorTranslation.DOUBLE_NEGATION_PATH);
+		converter.setNegationRendering(negationRendering);
+		return DATASET.localNames(LocalDataset.assertRoundTrip(converter.asQuery(ce, "?x")));
+	}
+
+	private void assertInstances(OWLClassExpression ce, String... expected) {
+		for (NegationRendering negationRendering : NegationRendering.values()) {
+			assertEquals(ce + " with " + negationRendering,
+						 new TreeSet<>(Arrays.asList(expected)), instances(ce, negationRendering));
+		}
+	}
+
+	@Test
+	public void testChain() {
+		// :j has no successors at all, thus, :i belongs to the restriction
+		assertInstances(df.getOWLObjectAllValuesFrom(propR, df.getOWLObjectAllValuesFrom(propS, clsA)),
+						"a", "b", "c", "d", "e", "g", "h", "i", "k");
+
+		assertInstances(df.getOWLObjectIntersectionOf(
+				clsB, df.getOWLObjectAllValuesFrom(propR, df.getOWLObjectAllValuesFrom(propS, clsA))),
+						"h", "k");
+	}
+
+	@Test
+	public void testInverseChain() {
+		OWLClassExpression nominal = df.getOWLObjectOneOf(df.getOWLNamedIndividual("a", pm));
+		assertInstances(df.getOWLObjectAllValuesFrom(propS.getInverseProperty(),
+													 df.getOWLObjectAllValuesFrom(propR.getInverseProperty(), nominal)),
+						"a", "b", "c", "d", "e", "f", "g", "i", "k");
+	}
+
+	@Test
+	public void testChainInExistentialRestriction() {
+		// the successors of :r are bound by the enclosing pattern
+		assertInstances(df.getOWLObjectSomeValuesFrom(
+				propR, df.getOWLObjectAllValuesFrom(propS, df.getOWLObjectAllValuesFrom(propT, clsA))),
+						"a", "i");
+	}
+}
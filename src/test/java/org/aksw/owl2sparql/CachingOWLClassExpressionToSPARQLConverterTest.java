@@ -0,0 +1,196 @@
+/*
+ * #%L
+ * owl2sparql-core
+ * %%
+ * Copyright (C) 2015 AKSW
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package org.aksw.owl2sparql;
+
+import com.google.common.cache.CacheStats;
+import com.hp.hpl.jena.query.Query;
+import org.aksw.owl2sparql.style.AllQuantorTranslation;
+import org.aksw.owl2sparql.style.NominalTranslation;
+import org.junit.Test;
+import org.semanticweb.owlapi.apibinding.OWLManager;
+import org.semanticweb.owlapi.model.*;
+import org.semanticweb.owlapi.util.DefaultPrefixManager;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+/**
+ * @author Lorenz Buehmann
+ *
+ */
+public class CachingOWLClassExpressionToSPARQLConverterTest {
+
+	private OWLDataFactory df = OWLManager.getOWLDataFactory();
+	private PrefixManager pm = new DefaultPrefixManager("http://example.org/");
+
+	private OWLClass clsA = df.getOWLClass("A", pm);
+	private OWLClass clsB = df.getOWLClass("B", pm);
+	private OWLObjectProperty propR = df.getOWLObjectProperty("r", pm);
+
+	private OWLClassExpression ce = df.getOWLObjectIntersectionOf(clsA, df.getOWLObjectAllValuesFrom(propR, clsB));
+
+	@Test
+	public void testHitsAndMisses() {
+		OWLClassExpressionToSPARQLConverter converter = new OWLClassExpressionToSPARQLConverter();
+		CachingOWLClassExpressionToSPARQLConverter cache = new CachingOWLClassExpressionToSPARQLConverter(converter);
+
+		Query query = cache.asQuery(ce, "?x");
+		assertEquals(converter.asQuery(ce, "?x"), query);
+		assertEquals(query, cache.asQuery(ce, "?x"));
+
+		// different root variable, entities and count flag are different entries
+		cache.asQuery(ce, "?y");
+		cache.asQuery("?x", ce, Collections.singleton(clsB));
+		cache.asQuery("?x", ce, true);
+		cache.asQuery("?x", ce, true);
+
+		CacheStats stats = cache.getStats();
+		assertEquals(2, stats.hitCount());
+		assertEquals(4, stats.missCount());
+
+		// the query string is taken from the same entry as the query
+		assertEquals(converter.convert(ce, "?x", false), cache.convert(ce, "?x", false));
+		assertEquals(converter.asGroupGraphPattern(ce, "?x"), cache.asGroupGraphPattern(ce, "?x"));
+		assertEquals(5, cache.getStats().missCount());
+	}
+
+	@Test
+	public void testReturnedQueriesCanBeModified() {
+		OWLClassExpressionToSPARQLConverter converter = new OWLClassExpressionToSPARQLConverter();
+		CachingOWLClassExpressionToSPARQLConverter cache = new CachingOWLClassExpressionToSPARQLConverter(converter);
+
+		Query query = cache.asQuery(ce, "?x");
+		query.setQueryAskType();
+		Query other = cache.asQuery(ce, "?x");
+		assertNotSame(query, other);
+		assertTrue(other.isSelectType());
+		assertEquals(converter.asQuery(ce, "?x"), other);
+		assertEquals(1, cache.getStats().hitCount());
+	}
+
+	@Test
+	public void testSettingsArePartOfTheKey() {
+		OWLClassExpressionToSPARQLConverter converter = new OWLClassExpressionToSPARQLConverter();
+		CachingOWLClassExpressionToSPARQLConverter cache = new CachingOWLClassExpressionToSPARQLConverter(converter);
+
+		Query doubleNegation = cache.asQuery(ce, "?x");
+
+		converter.setAllQuantorTranslation(AllQuantorTranslation.SUBSELECT_COUNT_EQUALS);
+		Query subSelect = cache.asQuery(ce, "?x");
+		assertNotEquals(doubleNegation, subSelect);
+		assertEquals(converter.asQuery(ce, "?x"), subSelect);
+
+		// without DISTINCT the query differs, also the one with variable entities
+		converter.setUseDistinct(false);
+		assertFalse(cache.asQuery("?x", ce, false).isDistinct());
+		assertEquals(cache.asQuery("?x", ce, false), cache.asQuery("?x", ce, Collections.<OWLEntity>emptySet(), false));
+		assertFalse(cache.asQuery("?x", ce, Collections.singleton(clsA), false).isDistinct());
+
+		converter.setAllQuantorTranslation(AllQuantorTranslation.DOUBLE_NEGATION);
+		converter.setUseDistinct(true);
+		assertEquals(doubleNegation, cache.asQuery(ce, "?x"));
+		assertEquals(3, cache.getStats().hitCount());
+	}
+
+	@Test
+	public void testAdaptiveThresholdsArePartOfTheKey() {
+		OWLClassExpressionToSPARQLConverter converter = new OWLClassExpressionToSPARQLConverter();
+		CachingOWLClassExpressionToSPARQLConverter cache = new CachingOWLClassExpressionToSPARQLConverter(converter);
+		converter.setAllQuantorTranslation(AllQuantorTranslation.ADAPTIVE);
+
+		// the threshold is part of the key, even if it doesn't change the query without statistics
+		cache.asQuery(ce, "?x");
+		converter.setAdaptiveFanOutThreshold(2);
+		cache.asQuery(ce, "?x");
+		assertEquals(2, cache.getStats().missCount());
+		converter.setAdaptiveFanOutThreshold(8);
+		cache.asQuery(ce, "?x");
+		assertEquals(1, cache.getStats().hitCount());
+
+		converter.setNominalTranslation(NominalTranslation.ADAPTIVE);
+		cache.asQuery(ce, "?x");
+		converter.setAdaptiveFilterInMaxSize(2);
+		cache.asQuery(ce, "?x");
+		assertEquals(4, cache.getStats().missCount());
+		converter.setAdaptiveFilterInMaxSize(10);
+		cache.asQuery(ce, "?x");
+		assertEquals(2, cache.getStats().hitCount());
+	}
+
+	@Test
+	public void testEviction() {
+		CachingOWLClassExpressionToSPARQLConverter cache = new CachingOWLClassExpressionToSPARQLConverter(
+				new OWLClassExpressionToSPARQLConverter(), 2);
+
+		cache.asQuery(clsA, "?x");
+		cache.asQuery(clsB, "?x");
+		cache.asQuery(ce, "?x");
+
+		assertEquals(2, cache.size());
+		assertEquals(1, cache.getStats().evictionCount());
+
+		// the least recently used entry has been evicted
+		cache.asQuery(ce, "?x");
+		cache.asQuery(clsB, "?x");
+		assertEquals(2, cache.getStats().hitCount());
+	}
+
+	@Test
+	public void testConcurrentReaders() throws Exception {
+		OWLClassExpressionToSPARQLConverter converter = new OWLClassExpressionToSPARQLConverter();
+		CachingOWLClassExpressionToSPARQLConverter cache = new CachingOWLClassExpressionToSPARQLConverter(converter);
+
+		List<OWLClassExpression> expressions = new ArrayList<>();
+		for (int i = 0; i < 20; i++) {
+			expressions.add(df.getOWLObjectSomeValuesFrom(propR, df.getOWLClass("C" + i, pm)));
+		}
+
+		ExecutorService executor = Executors.newFixedThreadPool(4);
+		try {
+			List<Future<?>> futures = new ArrayList<>();
+			for (int i = 0; i < 4; i++) {
+				futures.add(executor.submit(() -> {
+					for (int round = 0; round < 10; round++) {
+						for (OWLClassExpression expression : expressions) {
+							assertEquals(converter.convert(expression, "?x", false), cache.convert(expression, "?x", false));
+						}
+					}
+				}));
+			}
+			for (Future<?> future : futures) {
+				future.get(1, TimeUnit.MINUTES);
+			}
+		} finally {
+			executor.shutdownNow();
+		}
+
+		CacheStats stats = cache.getStats();
+		assertEquals(expressions.size(), cache.size());
+		assertEquals(4 * 10 * expressions.size(), stats.requestCount());
+		assertTrue(stats.hitCount() >= (4 * 10 - 4) * expressions.size());
+	}
+}
@@ -0,0 +1,150 @@
+/*
+ * #%L
+ * owl2sparql-core
+ * %%
+ * Copyright (C) 2015 AKSW
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package org.aksw.owl2sparql;
+
+import com.hp.hpl.jena.query.Query;
+import com.hp.hpl.jena.sparql.syntax.Element;
+import com.hp.hpl.jena.sparql.syntax.ElementGroup;
+import com.hp.hpl.jena.sparql.syntax.ElementSubQuery;
+import org.aksw.owl2sparql.selectivity.DatasetStatistics;
+import org.aksw.owl2sparql.selectivity.SelectivityEstimator;
+import org.aksw.owl2sparql.style.CardinalitySubqueryTranslation;
+import org.junit.Test;
+import org.semanticweb.owlapi.apibinding.OWLManager;
+import org.semanticweb.owlapi.model.*;
+import org.semanticweb.owlapi.util.DefaultPrefixManager;
+
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Compares the results of the cardinality sub-query translations on a local
+ * dataset.
+ *
+ * @author Lorenz Buehmann
+ *
+ */
+public class CardinalitySubqueryTranslationTest {
+
+	private static final LocalDataset DATASET = new LocalDataset(
+			"@prefix : <http://example.org/> .\n" +
+			":a a :A ; :r :b , :c .\n" +
+			":b a :B ; :s :c , :d , :e .\n" +
+			":c a :B , :A ; :s :a , :b .\n" +
+			":d a :A , :C ; :r :b ; :s :e .\n" +
+			":e a :C ; :r :f ; :s :a , :f .\n" +
+			":f a :C ; :s :a .\n" +
+			":g :s :d , :e , :f .\n");
+
+	private OWLDataFactory df = OWLManager.getOWLDataFactory();
+	private PrefixManager pm = new DefaultPrefixManager("http://example.org/");
+
+	private OWLClass clsA = df.getOWLClass("A", pm);
+	private OWLClass clsB = df.getOWLClass("B", pm);
+	private OWLClass clsC = df.getOWLClass("C", pm);
+	private OWLObjectProperty propR = df.getOWLObjectProperty("r", pm);
+	private OWLObjectProperty propS = df.getOWLObjectProperty("s", pm);
+
+	private Query convert(OWLClassExpression ce, CardinalitySubqueryTranslation translation, SelectivityEstimator estimator) {
+		OWLClassExpressionToSPARQLConverter converter = new OWLClassExpressionToSPARQLConverter();
+		converter.setCardinalitySubqueryTranslation(translation);
+		converter.setSelectivityEstimator(estimator);
+		return LocalDataset.assertRoundTrip(converter.asQuery(ce, "?x"));
+	}
+
+	/**
+	 * Asserts that the restricted sub-queries return the same instances, and
+	 * returns the query.
+	 */
+	private Query assertEquivalent(OWLClassExpression ce, SelectivityEstimator estimator) {
+		Query query = convert(ce, CardinalitySubqueryTranslation.OUTER_CANDIDATES, estimator);
+		DATASET.assertSameInstances(ce, convert(ce, CardinalitySubqueryTranslation.UNRESTRICTED, estimator), query);
+		return query;
+	}
+
+	private Query assertEquivalent(OWLClassExpression ce) {
+		return assertEquivalent(ce, null);
+	}
+
+	private List<Element> elements(Query query) {
+		return ((ElementGroup) query.getQueryPattern()).getElements();
+	}
+
+	@Test
+	public void testOuterCandidates() {
+		Query query = assertEquivalent(df.getOWLObjectSomeValuesFrom(propR, df.getOWLObjectMinCardinality(2, propS, clsC)));
+		// the restricted sub-query is evaluated first
+		Element subQuery = elements(query).get(0);
+		assertTrue(query.toString(), subQuery instanceof ElementSubQuery);
+		assertTrue(query.toString(), subQuery.toString().contains("SELECT DISTINCT"));
+
+		query = assertEquivalent(df.getOWLObjectIntersectionOf(
+				clsA, df.getOWLObjectSomeValuesFrom(propR, df.getOWLObjectMaxCardinality(4, propS, clsC))));
+		assertTrue(query.toString(), elements(query).get(0) instanceof ElementSubQuery);
+
+		assertEquivalent(df.getOWLObjectIntersectionOf(clsB, df.getOWLObjectExactCardinality(2, propS)));
+		assertEquivalent(df.getOWLObjectSomeValuesFrom(propR, df.getOWLObjectIntersectionOf(
+				clsB, df.getOWLObjectMinCardinality(2, propS, df.getOWLObjectMinCardinality(2, propS)))));
+		assertEquivalent(df.getOWLObjectIntersectionOf(
+				df.getOWLObjectComplementOf(clsA), df.getOWLObjectMinCardinality(2, propS, clsC)));
+	}
+
+	@Test
+	public void testInlineData() {
+		OWLClassExpression nominal = df.getOWLObjectOneOf(df.getOWLNamedIndividual("b", pm),
+														  df.getOWLNamedIndividual("g", pm));
+		Query query = assertEquivalent(df.getOWLObjectIntersectionOf(nominal, df.getOWLObjectMinCardinality(3, propS)));
+		String subQuery = elements(query).get(0).toString();
+		assertTrue(query.toString(), subQuery.contains("VALUES") && !subQuery.contains("DISTINCT"));
+
+		// the candidates of the successors are restricted by the nominal
+		query = assertEquivalent(df.getOWLObjectIntersectionOf(
+				nominal, df.getOWLObjectSomeValuesFrom(propS, df.getOWLObjectMinCardinality(2, propS, clsC))));
+		subQuery = elements(query).get(0).toString();
+		assertTrue(query.toString(), subQuery.contains("VALUES") && subQuery.contains("DISTINCT"));
+	}
+
+	@Test
+	public void testNoCandidates() {
+		// a top-level restriction is grouped by the outer query
+		Query query = assertEquivalent(df.getOWLObjectMinCardinality(2, propS, clsC));
+		assertFalse(query.toString(), query.toString().contains("DISTINCT"));
+
+		// the sub-query of a union branch is evaluated for each solution of the enclosing pattern anyway
+		OWLClassExpression ce = df.getOWLObjectSomeValuesFrom(
+				propR, df.getOWLObjectUnionOf(clsA, df.getOWLObjectMinCardinality(2, propS, clsC)));
+		assertEquals(convert(ce, CardinalitySubqueryTranslation.UNRESTRICTED, null), assertEquivalent(ce));
+	}
+
+	@Test
+	public void testSelectivity() {
+		// :s has more objects than :r has subjects, thus, the candidates don't shrink the aggregation
+		DatasetStatistics statistics = DatasetStatistics.compute(DATASET.getModel());
+		OWLClassExpression ce = df.getOWLObjectSomeValuesFrom(propS, df.getOWLObjectMinCardinality(2, propR));
+		assertEquals(convert(ce, CardinalitySubqueryTranslation.UNRESTRICTED, statistics), assertEquivalent(ce, statistics));
+
+		ce = df.getOWLObjectSomeValuesFrom(propR, df.getOWLObjectMinCardinality(2, propS));
+		Query query = assertEquivalent(ce, statistics);
+		assertTrue(query.toString(), elements(query).get(0).toString().contains("DISTINCT"));
+	}
+}
@@ -0,0 +1,126 @@
+/*
+ * #%L
+ * owl2sparql-core
+ * %%
+ * Copyright (C) 2015 AKSW
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package org.aksw.owl2sparql;
+
+import com.hp.hpl.jena.query.Query;
+import org.aksw.owl2sparql.style.MaxCardinalityTranslation;
+import org.aksw.owl2sparql.style.MinCardinalityTranslation;
+import org.junit.Test;
+import org.semanticweb.owlapi.apibinding.OWLManager;
+import org.semanticweb.owlapi.model.*;
+import org.semanticweb.owlapi.util.DefaultPrefixManager;
+
+import java.util.Arrays;
+import java.util.TreeSet;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+/**
+ * Compares the results of the cardinality restriction translations that
+ * don't count the successors with the ones of GROUP BY and HAVING on a local
+ * dataset.
+ *
+ * @author Lorenz Buehmann
+ *
+ */
+public class CardinalityTranslationTest {
+
+	private static final LocalDataset DATASET = new LocalDataset(
+			"@prefix : <http://example.org/> .\n" +
+			":i0 :s :i1 , :i2 .\n" +
+			":i1 a :C ; :r :a1 , :a2 ; :s :a1 , :a2 .\n" +
+			":i2 a :C ; :r :a1 ; :s :a3 .\n" +
+			":i3 :r :i0 ; :t 1 , 2 .\n" +
+			":a1 a :A .\n" +
+			":a2 a :A .\n" +
+			":a3 a :A .\n");
+
+	private OWLDataFactory df = OWLManager.getOWLDataFactory();
+	private PrefixManager pm = new DefaultPrefixManager("http://example.org/");
+
+	private OWLClass clsA = df.getOWLClass("A", pm);
+	private OWLClass clsC = df.getOWLClass("C", pm);
+	private OWLObjectProperty propR = df.getOWLObjectProperty("r", pm);
+	private OWLObjectProperty propS = df.getOWLObjectProperty("s", pm);
+	private OWLDataProperty dpT = df.getOWLDataProperty("t", pm);
+
+	private Query convert(OWLClassExpression ce, MinCardinalityTranslation minCardinalityTranslation,
+						  MaxCardinalityTranslation maxCardinalityTranslation) {
+		OWLClassExpressionToSPARQLConverter converter = new OWLClassExpressionToSPARQLConverter();
+		converter.setMinCardinalityTranslation(minCardinalityTranslation);
+		converter.setMaxCardinalityTranslation(maxCardinalityTranslation);
+		converter.setFilterNotExistsMaxCardinality(2);
+		return LocalDataset.assertRoundTrip(converter.asQuery(ce, "?x"));
+	}
+
+	/**
+	 * Asserts that the translation returns the expected instances, just as
+	 * GROUP BY and HAVING, and returns the query.
+	 */
+	private Query assertInstances(OWLClassExpression ce, MinCardinalityTranslation minCardinalityTranslation,
+								  MaxCardinalityTranslation maxCardinalityTranslation, String... expected) {
+		Query query = convert(ce, minCardinalityTranslation, maxCardinalityTranslation);
+		DATASET.assertSameInstances(ce, convert(ce, MinCardinalityTranslation.GROUP_BY_HAVING,
+												MaxCardinalityTranslation.GROUP_BY_HAVING), query);
+		assertEquals(query.toString(), new TreeSet<>(Arrays.asList(expected)), DATASET.localNames(query));
+		return query;
+	}
+
+	private Query assertInstances(OWLClassExpression ce, MinCardinalityTranslation translation, String... expected) {
+		return assertInstances(ce, translation, MaxCardinalityTranslation.GROUP_BY_HAVING, expected);
+	}
+
+	private Query assertInstances(OWLClassExpression ce, MaxCardinalityTranslation translation, String... expected) {
+		return assertInstances(ce, MinCardinalityTranslation.GROUP_BY_HAVING, translation, expected);
+	}
+
+	@Test
+	public void testDistinctSuccessors() {
+		// not counted, thus, the successors are joined
+		Query query = assertInstances(
+				df.getOWLObjectSomeValuesFrom(propR.getInverseProperty(), df.getOWLDataMinCardinality(2, dpT)),
+				MinCardinalityTranslation.DISTINCT_SUCCESSORS, "i0");
+		assertFalse(query.toString(), query.hasGroupBy() || query.toString().contains("GROUP BY"));
+
+		// the counted successors must not be multiplied by the successors of the nested restriction
+		assertInstances(
+				df.getOWLObjectMaxCardinality(2, propS, df.getOWLObjectMinCardinality(1, propS, clsA)),
+				MinCardinalityTranslation.DISTINCT_SUCCESSORS, "i0");
+		assertInstances(
+				df.getOWLObjectExactCardinality(1, propR.getInverseProperty(), df.getOWLDataMinCardinality(2, dpT)),
+				MinCardinalityTranslation.DISTINCT_SUCCESSORS, "i0");
+	}
+
+	@Test
+	public void testNoFurtherDistinctSuccessors() {
+		// not counted, thus, the further successors are filtered
+		Query query = assertInstances(
+				df.getOWLObjectIntersectionOf(clsC, df.getOWLObjectMaxCardinality(2, propR, clsA)),
+				MaxCardinalityTranslation.FILTER_NOT_EXISTS, "i1", "i2");
+		assertFalse(query.toString(), query.toString().contains("GROUP BY"));
+
+		// the counted successors must not be multiplied by the successors of the nested restriction
+		assertInstances(
+				df.getOWLObjectExactCardinality(2, propS,
+												df.getOWLObjectIntersectionOf(clsC, df.getOWLObjectMaxCardinality(2, propR, clsA))),
+				MaxCardinalityTranslation.FILTER_NOT_EXISTS, "i0");
+	}
+}
@@ -0,0 +1,128 @@
+/*
+ * #%L
+ * owl2sparql-core
+ * %%
+ * Copyright (C) 2015 AKSW
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package org.aksw.owl2sparql;
+
+import com.hp.hpl.jena.query.Query;
+import com.hp.hpl.jena.query.QueryFactory;
+import org.aksw.owl2sparql.style.AllQuantorTranslation;
+import org.junit.Test;
+import org.semanticweb.owlapi.apibinding.OWLManager;
+import org.semanticweb.owlapi.model.*;
+import org.semanticweb.owlapi.util.DefaultPrefixManager;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * @author Lorenz Buehmann
+ *
+ */
+public class IncrementalConversionTest {
+
+	private static final String NS = "http://example.org/";
+
+	private OWLClassExpressionToSPARQLConverter converter = new OWLClassExpressionToSPARQLConverter();
+
+	private OWLDataFactory df = OWLManager.getOWLDataFactory();
+	private PrefixManager pm = new DefaultPrefixManager(NS);
+
+	private OWLClass clsA = df.getOWLClass("A", pm);
+	private OWLClass clsB = df.getOWLClass("B", pm);
+	private OWLClass clsC = df.getOWLClass("C", pm);
+	private OWLClass clsD = df.getOWLClass("D", pm);
+
+	private OWLObjectProperty propR = df.getOWLObjectProperty("r", pm);
+	private OWLObjectProperty propS = df.getOWLObjectProperty("s", pm);
+
+	private OWLDataProperty dpT = df.getOWLDataProperty("t", pm);
+
+	private OWLIndividual indA = df.getOWLNamedIndividual("a", pm);
+	private OWLIndividual indB = df.getOWLNamedIndividual("b", pm);
+
+	private OWLClassExpression complexExpression() {
+		return df.getOWLObjectIntersectionOf(
+				clsA,
+				df.getOWLObjectSomeValuesFrom(propR, df.getOWLObjectIntersectionOf(
+						clsB, df.getOWLObjectComplementOf(df.getOWLObjectSomeValuesFrom(propS, clsC)))),
+				df.getOWLObjectAllValuesFrom(propS, df.getOWLObjectUnionOf(clsC, df.getOWLObjectComplementOf(clsB))),
+				df.getOWLObjectMinCardinality(2, propR, df.getOWLObjectIntersectionOf(clsB, clsC)),
+				df.getOWLObjectMaxCardinality(1, propS, clsA),
+				df.getOWLObjectSomeValuesFrom(propS, df.getOWLObjectOneOf(indA, indB)),
+				df.getOWLDataSomeValuesFrom(dpT, df.getBooleanOWLDatatype()));
+	}
+
+	private IncrementalConversion assertRefinement(IncrementalConversion parent, OWLClassExpression replaced,
+												   OWLClassExpression replacement) {
+		IncrementalConversion child = converter.refine(parent, replaced, replacement);
+
+		Query expected = converter.asQuery("?x", child.getClassExpression(), false);
+		assertEquals("Refinement of " + replaced + " to " + replacement, expected, child.getQuery());
+		assertEquals(child.getQuery(), QueryFactory.create(child.getQuery().serialize()));
+		return child;
+	}
+
+	@Test
+	public void testConversion() {
+		OWLClassExpression ce = complexExpression();
+		IncrementalConversion conversion = converter.convertIncrementally(ce, "?x");
+
+		assertEquals(converter.asQuery("?x", ce, false), conversion.getQuery());
+		assertEquals(0, conversion.getReusedFragmentCount());
+	}
+
+	@Test
+	public void testRefinementReusesFragments() {
+		IncrementalConversion parent = converter.convertIncrementally(complexExpression(), "?x");
+
+		IncrementalConversion child = assertRefinement(parent, clsA, df.getOWLObjectIntersectionOf(clsA, clsD));
+		assertTrue(child.getReusedFragmentCount() > 0);
+
+		// refinements of refinements reuse the fragments as well
+		IncrementalConversion grandChild = assertRefinement(child, clsD, df.getOWLObjectSomeValuesFrom(propR, clsD));
+		assertTrue(grandChild.getReusedFragmentCount() > 0);
+	}
+
+	@Test
+	public void testRefinementOfEachSubExpression() {
+		OWLClassExpression ce = complexExpression();
+		IncrementalConversion parent = converter.convertIncrementally(ce, "?x");
+
+		for (OWLClassExpression subExpression : ce.getNestedClassExpressions()) {
+			assertRefinement(parent, subExpression, clsD);
+			assertRefinement(parent, subExpression, df.getOWLObjectComplementOf(subExpression));
+			assertRefinement(parent, subExpression, df.getOWLObjectSomeValuesFrom(propR, subExpression));
+		}
+	}
+
+	@Test
+	public void testRefinementAfterChangedSettings() {
+		OWLClassExpression ce = complexExpression();
+		IncrementalConversion parent = converter.convertIncrementally(ce, "?x");
+
+		converter.setAllQuantorTranslation(AllQuantorTranslation.SUBSELECT_COUNT_EQUALS);
+		IncrementalConversion child = assertRefinement(parent, clsA, clsD);
+		assertEquals(0, child.getReusedFragmentCount());
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testReplacedExpressionNotContained() {
+		converter.refine(converter.convertIncrementally(clsA, "?x"), clsB, clsC);
+	}
+}
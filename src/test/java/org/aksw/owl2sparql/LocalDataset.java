@@ -0,0 +1,118 @@
+/*
+ * #%L
+ * owl2sparql-core
+ * %%
+ * Copyright (C) 2015 AKSW
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package org.aksw.owl2sparql;
+
+import com.hp.hpl.jena.query.Query;
+import com.hp.hpl.jena.query.QueryExecution;
+import com.hp.hpl.jena.query.QueryExecutionFactory;
+import com.hp.hpl.jena.query.QueryFactory;
+import com.hp.hpl.jena.query.ResultSet;
+import com.hp.hpl.jena.rdf.model.Model;
+import com.hp.hpl.jena.rdf.model.ModelFactory;
+import com.hp.hpl.jena.rdf.model.RDFNode;
+
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * A small dataset in memory on which the results of the queries of different
+ * translations are compared. The instances of a query are the values of its
+ * first projection variable.
+ *
+ * @author Lorenz Buehmann
+ *
+ */
+final class LocalDataset {
+
+	private final Model model;
+
+	/**
+	 * @param turtle the data in Turtle syntax
+	 */
+	LocalDataset(String turtle) {
+		model = ModelFactory.createDefaultModel();
+		model.read(new StringReader(turtle), null, "TURTLE");
+	}
+
+	Model getModel() {
+		return model;
+	}
+
+	/**
+	 * @return the instances of each solution of the query, including
+	 *         duplicates, sorted by their string representation
+	 */
+	List<RDFNode> solutions(Query query) {
+		List<RDFNode> instances = new ArrayList<>();
+		try (QueryExecution qe = QueryExecutionFactory.create(query, model)) {
+			ResultSet rs = qe.execSelect();
+			while(rs.hasNext()) {
+				instances.add(rs.next().get(query.getResultVars().get(0)));
+			}
+		}
+		instances.sort((n1, n2) -> n1.toString().compareTo(n2.toString()));
+		return instances;
+	}
+
+	/**
+	 * @return the instances of the query
+	 */
+	Set<RDFNode> instances(Query query) {
+		return new HashSet<>(solutions(query));
+	}
+
+	/**
+	 * @return the local names of the instances of the query, sorted
+	 */
+	Set<String> localNames(Query query) {
+		Set<String> localNames = new TreeSet<>();
+		for (RDFNode instance : solutions(query)) {
+			localNames.add(instance.asResource().getLocalName());
+		}
+		return localNames;
+	}
+
+	/**
+	 * Asserts that the query returns the same instances as the expected one.
+	 *
+	 * @param expression the translated expression or axiom, only used in the
+	 *            failure message
+	 */
+	void assertSameInstances(Object expression, Query expected, Query query) {
+		assertEquals("Instances of " + expression + " differ for " + query, instances(expected), instances(query));
+	}
+
+	/**
+	 * Asserts that the query tree is the same after a serialization round
+	 * trip.
+	 *
+	 * @return the query
+	 */
+	static Query assertRoundTrip(Query query) {
+		assertEquals(query, QueryFactory.create(query.serialize()));
+		return query;
+	}
+}
@@ -0,0 +1,136 @@
+/*
+ * #%L
+ * owl2sparql-core
+ * %%
+ * Copyright (C) 2015 AKSW
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package org.aksw.owl2sparql;
+
+import com.hp.hpl.jena.query.Query;
+import org.aksw.owl2sparql.style.NegationRendering;
+import org.junit.Test;
+import org.semanticweb.owlapi.apibinding.OWLManager;
+import org.semanticweb.owlapi.model.*;
+import org.semanticweb.owlapi.util.DefaultPrefixManager;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Compares the results of the negation renderings on a local dataset.
+ *
+ * @author Lorenz Buehmann
+ *
+ */
+public class NegationRenderingTest {
+
+	private static final LocalDataset DATASET = new LocalDataset(
+			"@prefix : <http://example.org/> .\n" +
+			":a a :A ; :r :b , :c .\n" +
+			":b a :B ; :s :c .\n" +
+			":c a :B , :A .\n" +
+			":d a :A ; :r :b .\n" +
+			":e a :B ; :r :f .\n" +
+			":f :s :a .\n" +
+			":g :r :b ; :s :h .\n");
+
+	private OWLDataFactory df = OWLManager.getOWLDataFactory();
+	private PrefixManager pm = new DefaultPrefixManager("http://example.org/");
+
+	private OWLClass clsA = df.getOWLClass("A", pm);
+	private OWLClass clsB = df.getOWLClass("B", pm);
+	private OWLObjectProperty propR = df.getOWLObjectProperty("r", pm);
+	private OWLObjectProperty propS = df.getOWLObjectProperty("s", pm);
+
+	private Query convert(OWLClassExpression ce, NegationRendering negationRendering) {
+		OWLClassExpressionToSPARQLConverter converter = new OWLClassExpressionToSPARQLConverter();
+		converter.setNegationRendering(negationRendering);
+		return LocalDataset.assertRoundTrip(converter.asQuery(ce, "?x"));
+	}
+
+	/**
+	 * Asserts that the rendering returns the same instances as FILTER NOT
+	 * EXISTS, and returns the query.
+	 */
+	private String assertEquivalent(OWLClassExpression ce, NegationRendering negationRendering) {
+		Query query = convert(ce, negationRendering);
+		DATASET.assertSameInstances(ce, convert(ce, NegationRendering.FILTER_NOT_EXISTS), query);
+		return query.toString();
+	}
+
+	@Test
+	public void testMinus() {
+		assertTrue(assertEquivalent(
+				df.getOWLObjectIntersectionOf(clsA, df.getOWLObjectComplementOf(df.getOWLObjectSomeValuesFrom(propR, clsB))),
+				NegationRendering.MINUS).contains("MINUS"));
+
+		// the top-level negation is bound by the generic triple pattern
+		assertTrue(assertEquivalent(df.getOWLObjectComplementOf(clsA), NegationRendering.MINUS).contains("MINUS"));
+
+		assertTrue(assertEquivalent(df.getOWLObjectSomeValuesFrom(propR, df.getOWLObjectComplementOf(clsA)),
+									NegationRendering.MINUS).contains("MINUS"));
+
+		// double negation of a universal restriction
+		String query = assertEquivalent(df.getOWLObjectAllValuesFrom(propR, clsB), NegationRendering.MINUS);
+		assertTrue(query, query.contains("MINUS") && !query.contains("NOT EXISTS"));
+	}
+
+	@Test
+	public void testMinusInUnion() {
+		// the union isn't joined to other patterns
+		String query = assertEquivalent(
+				df.getOWLObjectUnionOf(df.getOWLObjectComplementOf(clsA), clsB), NegationRendering.MINUS);
+		assertTrue(query, query.contains("MINUS"));
+
+		// the operands of a union that is joined to the preceding patterns are evaluated with their bindings
+		query = assertEquivalent(
+				df.getOWLObjectIntersectionOf(clsA, df.getOWLObjectUnionOf(
+						df.getOWLObjectComplementOf(clsA),
+						df.getOWLObjectHasValue(propR, df.getOWLNamedIndividual("f", pm)))),
+				NegationRendering.MINUS);
+		assertFalse(query, query.contains("MINUS"));
+		query = assertEquivalent(
+				df.getOWLObjectSomeValuesFrom(propS.getInverseProperty(),
+											  df.getOWLObjectUnionOf(clsB, df.getOWLObjectAllValuesFrom(propR, clsA))),
+				NegationRendering.MINUS);
+		assertFalse(query, query.contains("MINUS"));
+	}
+
+	@Test
+	public void testOptionalNotBound() {
+		String query = assertEquivalent(
+				df.getOWLObjectIntersectionOf(clsA, df.getOWLObjectComplementOf(df.getOWLObjectSomeValuesFrom(propR, clsB))),
+				NegationRendering.OPTIONAL_NOT_BOUND);
+		assertTrue(query, query.contains("OPTIONAL") && query.contains("bound"));
+
+		assertEquivalent(df.getOWLObjectAllValuesFrom(propR, df.getOWLObjectSomeValuesFrom(propS, clsA)),
+						 NegationRendering.OPTIONAL_NOT_BOUND);
+
+		// a negated class doesn't bind any other variable
+		query = assertEquivalent(df.getOWLObjectIntersectionOf(clsB, df.getOWLObjectComplementOf(clsA)),
+								 NegationRendering.OPTIONAL_NOT_BOUND);
+		assertFalse(query, query.contains("OPTIONAL"));
+	}
+
+	@Test
+	public void testCorrelatedNegation() {
+		// the successors excluded by FILTER NOT EXISTS are correlated by a filter only
+		for (NegationRendering negationRendering : NegationRendering.values()) {
+			String query = assertEquivalent(df.getOWLObjectMaxCardinality(1, propR, clsB), negationRendering);
+			assertTrue(query, query.contains("NOT EXISTS"));
+		}
+	}
+}
@@ -0,0 +1,129 @@
+/*
+ * #%L
+ * owl2sparql-core
+ * %%
+ * Copyright (C) 2015 AKSW
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package org.aksw.owl2sparql;
+
+import com.google.common.collect.Sets;
+import com.hp.hpl.jena.query.Query;
+import org.aksw.owl2sparql.style.NegationRendering;
+import org.junit.Test;
+import org.semanticweb.owlapi.apibinding.OWLManager;
+import org.semanticweb.owlapi.model.*;
+import org.semanticweb.owlapi.util.DefaultPrefixManager;
+
+import java.util.Arrays;
+import java.util.TreeSet;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Checks the instances of the axiom translations with negated patterns for
+ * each negation rendering on a local dataset.
+ *
+ * @author Lorenz Buehmann
+ *
+ */
+public class OWLAxiomNegationRenderingTest {
+
+	private static final LocalDataset DATASET = new LocalDataset(
+			"@prefix : <http://example.org/> .\n" +
+			":a a :A ; :r :b ; :s :b .\n" +
+			":b a :A , :B ; :r :c .\n" +
+			":c a :B ; :r :a ; :s :d .\n" +
+			":d a :A ; :r :e .\n" +
+			":e a :C ; :r :d ; :t 1 ; :u 1 .\n" +
+			":f :t 2 ; :u 3 .\n");
+
+	private OWLDataFactory df = OWLManager.getOWLDataFactory();
+	private PrefixManager pm = new DefaultPrefixManager("http://example.org/");
+
+	private OWLClass clsA = df.getOWLClass("A", pm);
+	private OWLClass clsB = df.getOWLClass("B", pm);
+	private OWLClass clsC = df.getOWLClass("C", pm);
+	private OWLObjectProperty propR = df.getOWLObjectProperty("r", pm);
+	private OWLObjectProperty propS = df.getOWLObjectProperty("s", pm);
+	private OWLDataProperty dpT = df.getOWLDataProperty("t", pm);
+	private OWLDataProperty dpU = df.getOWLDataProperty("u", pm);
+
+	private Query convert(OWLAxiom axiom, NegationRendering negationRendering) {
+		OWLClassExpressionToSPARQLConverter expressionConverter = new OWLClassExpressionToSPARQLConverter();
+		expressionConverter.setNegationRendering(negationRendering);
+		return new OWLAxiomToSPARQLConverter("?s", "?o", expressionConverter).asQuery(axiom);
+	}
+
+	/**
+	 * Asserts that each rendering returns the expected instances, and returns
+	 * the query of the given rendering.
+	 */
+	private String assertInstances(OWLAxiom axiom, NegationRendering rendering, String... expected) {
+		String query = null;
+		for (NegationRendering negationRendering : NegationRendering.values()) {
+			Query q = convert(axiom, negationRendering);
+			assertEquals(axiom + " with " + q, new TreeSet<>(Arrays.asList(expected)), DATASET.localNames(q));
+			if(negationRendering == rendering) {
+				query = q.toString();
+			}
+		}
+		return query;
+	}
+
+	@Test
+	public void testDisjointClasses() {
+		String query = assertInstances(df.getOWLDisjointClassesAxiom(clsA, clsB), NegationRendering.MINUS,
+									   "a", "c", "d");
+		assertTrue(query, query.contains("MINUS") && !query.contains("NOT EXISTS"));
+
+		// the successors of the negated existential restriction are only bound by OPTIONAL, whereas a negated
+		// class doesn't bind any other variable
+		query = assertInstances(df.getOWLDisjointClassesAxiom(clsA, df.getOWLObjectSomeValuesFrom(propR, clsB)),
+								NegationRendering.OPTIONAL_NOT_BOUND, "d");
+		assertTrue(query, query.contains("OPTIONAL") && query.contains("NOT EXISTS"));
+	}
+
+	@Test
+	public void testDisjointUnion() {
+		String query = assertInstances(df.getOWLDisjointUnionAxiom(clsA, Sets.newHashSet(clsB, clsC)),
+									   NegationRendering.MINUS, "b");
+		assertTrue(query, query.contains("MINUS") && !query.contains("NOT EXISTS"));
+	}
+
+	@Test
+	public void testDisjointProperties() {
+		String query = assertInstances(df.getOWLDisjointObjectPropertiesAxiom(propR, propS), NegationRendering.MINUS,
+									   "b", "c", "d", "e");
+		assertTrue(query, query.contains("MINUS") && !query.contains("NOT EXISTS"));
+
+		assertInstances(df.getOWLDisjointObjectPropertiesAxiom(propR.getInverseProperty(), propS),
+						NegationRendering.MINUS, "a", "b", "c", "d", "e");
+
+		// both variables are shared, thus, OPTIONAL can't be used
+		query = assertInstances(df.getOWLDisjointDataPropertiesAxiom(dpT, dpU), NegationRendering.OPTIONAL_NOT_BOUND,
+								"f");
+		assertFalse(query, query.contains("OPTIONAL"));
+	}
+
+	@Test
+	public void testAsymmetricProperty() {
+		String query = assertInstances(df.getOWLAsymmetricObjectPropertyAxiom(propR), NegationRendering.MINUS,
+									   "a", "b", "c");
+		assertTrue(query, query.contains("MINUS") && !query.contains("NOT EXISTS"));
+	}
+}
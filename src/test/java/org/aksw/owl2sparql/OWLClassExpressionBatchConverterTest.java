@@ -0,0 +1,119 @@
+/*
+ * #%L
+ * owl2sparql-core
+ * %%
+ * Copyright (C) 2015 AKSW
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package org.aksw.owl2sparql;
+
+import com.hp.hpl.jena.query.Query;
+import com.hp.hpl.jena.query.QueryFactory;
+import com.hp.hpl.jena.rdf.model.Model;
+import com.hp.hpl.jena.rdf.model.ModelFactory;
+import org.aksw.owl2sparql.OWLClassExpressionBatchConverter.BatchCountQuery;
+import org.junit.Test;
+import org.semanticweb.owlapi.apibinding.OWLManager;
+import org.semanticweb.owlapi.model.*;
+import org.semanticweb.owlapi.util.DefaultPrefixManager;
+
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * @author Lorenz Buehmann
+ *
+ */
+public class OWLClassExpressionBatchConverterTest {
+
+	private OWLDataFactory df = OWLManager.getOWLDataFactory();
+	private PrefixManager pm = new DefaultPrefixManager("http://example.org/");
+
+	private OWLClass clsA = df.getOWLClass("A", pm);
+	private OWLClass clsB = df.getOWLClass("B", pm);
+	private OWLObjectProperty propR = df.getOWLObjectProperty("r", pm);
+
+	@Test
+	public void testFusedQuery() {
+		OWLClassExpressionBatchConverter converter = new OWLClassExpressionBatchConverter();
+
+		List<BatchCountQuery> queries = converter.asCountQueries(
+				Arrays.asList(clsA, df.getOWLObjectMinCardinality(2, propR, clsB)), "?x");
+		assertEquals(1, queries.size());
+
+		Query target = QueryFactory.create(
+				"SELECT ?ce (COUNT(DISTINCT ?x) AS ?cnt) WHERE {" +
+				"  { BIND(0 AS ?ce) ?x a <http://example.org/A> }" +
+				"  UNION" +
+				"  { BIND(1 AS ?ce) { SELECT ?x WHERE { ?x <http://example.org/r> ?s0 . ?s0 a <http://example.org/B> }" +
+				"                     GROUP BY ?x HAVING(COUNT(?s0) >= 2) } }" +
+				"} GROUP BY ?ce");
+		assertEquals(target, queries.get(0).getQuery());
+	}
+
+	@Test
+	public void testSplit() {
+		List<OWLClassExpression> classExpressions = new ArrayList<>();
+		for (int i = 0; i < 10; i++) {
+			classExpressions.add(df.getOWLObjectSomeValuesFrom(propR, df.getOWLClass("C" + i, pm)));
+		}
+
+		OWLClassExpressionBatchConverter converter = new OWLClassExpressionBatchConverter();
+		converter.setMaxExpressionsPerQuery(4);
+
+		List<BatchCountQuery> queries = converter.asCountQueries(classExpressions, "?x");
+		assertEquals(3, queries.size());
+		assertEquals(Arrays.asList(0, 4, 8), Arrays.asList(queries.get(0).getOffset(), queries.get(1).getOffset(), queries.get(2).getOffset()));
+		assertEquals(classExpressions.subList(8, 10), queries.get(2).getClassExpressions());
+
+		// a length limit that is exceeded by every second class expression
+		converter.setMaxExpressionsPerQuery(100);
+		int branchLength = converter.asCountQueries(classExpressions.subList(0, 1), "?x").get(0).getQuery().getQueryPattern().toString().length();
+		converter.setMaxQueryLength(2 * branchLength - 10);
+		assertEquals(5, converter.asCountQueries(classExpressions, "?x").size());
+	}
+
+	@Test
+	public void testCounts() {
+		Model model = ModelFactory.createDefaultModel();
+		model.read(new StringReader(
+				"@prefix : <http://example.org/> .\n" +
+				":a a :A ; :r :b , :c .\n" +
+				":b a :B .\n" +
+				":c a :B .\n" +
+				":d a :A ; :r :b .\n"), null, "TURTLE");
+		OWLClassExpressionQueryEngine engine = new OWLClassExpressionQueryEngine(model);
+		engine.getBatchConverter().setMaxExpressionsPerQuery(2);
+
+		List<OWLClassExpression> classExpressions = Arrays.asList(
+				clsA,
+				clsB,
+				df.getOWLObjectIntersectionOf(clsA, clsB),
+				df.getOWLObjectSomeValuesFrom(propR, clsB),
+				df.getOWLObjectMinCardinality(2, propR, clsB),
+				df.getOWLObjectComplementOf(clsA));
+
+		Map<OWLClassExpression, Long> counts = engine.getInstanceCounts(classExpressions);
+		assertEquals(classExpressions, new ArrayList<>(counts.keySet()));
+		for (OWLClassExpression ce : classExpressions) {
+			assertEquals(ce.toString(), engine.getInstanceCount(ce), (long) counts.get(ce));
+		}
+	}
+}
@@ -0,0 +1,149 @@
+/*
+ * #%L
+ * owl2sparql-core
+ * %%
+ * Copyright (C) 2015 AKSW
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package org.aksw.owl2sparql;
+
+import com.hp.hpl.jena.query.DatasetFactory;
+import com.hp.hpl.jena.rdf.model.Model;
+import com.hp.hpl.jena.rdf.model.ModelFactory;
+import org.junit.Test;
+import org.semanticweb.owlapi.apibinding.OWLManager;
+import org.semanticweb.owlapi.model.*;
+import org.semanticweb.owlapi.util.DefaultPrefixManager;
+
+import java.io.StringReader;
+import java.util.Set;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * @author Lorenz Buehmann
+ *
+ */
+public class OWLClassExpressionQueryEngineTest {
+
+	private static final String DATA =
+			"@prefix : <http://example.org/> .\n" +
+			":a a :A ; :r :b , :c .\n" +
+			":b a :B .\n" +
+			":c a :B .\n" +
+			":d a :A ; :r :b .\n" +
+			":e a :B ; :r [ a :B ] .\n";
+
+	private OWLDataFactory df = OWLManager.getOWLDataFactory();
+	private PrefixManager pm = new DefaultPrefixManager("http://example.org/");
+
+	private OWLClass clsA = df.getOWLClass("A", pm);
+	private OWLClass clsB = df.getOWLClass("B", pm);
+	private OWLObjectProperty propR = df.getOWLObjectProperty("r", pm);
+
+	private OWLClassExpressionQueryEngine engine() {
+		Model model = ModelFactory.createDefaultModel();
+		model.read(new StringReader(DATA), null, "TURTLE");
+		return new OWLClassExpressionQueryEngine(model);
+	}
+
+	private Set<OWLNamedIndividual> individuals(String... names) {
+		return Stream.of(names).map(name -> df.getOWLNamedIndividual(name, pm)).collect(Collectors.toSet());
+	}
+
+	@Test
+	public void testInstances() {
+		OWLClassExpressionQueryEngine engine = engine();
+
+		try (Stream<OWLNamedIndividual> instances = engine.getInstances(df.getOWLObjectSomeValuesFrom(propR, clsB))) {
+			assertEquals(individuals("a", "d", "e"), instances.collect(Collectors.toSet()));
+		}
+
+		try (Stream<OWLNamedIndividual> instances = engine.getInstances(df.getOWLObjectMinCardinality(2, propR, clsB))) {
+			assertEquals(individuals("a"), instances.collect(Collectors.toSet()));
+		}
+
+		try (Stream<OWLNamedIndividual> instances = engine.getInstances(
+				df.getOWLObjectIntersectionOf(clsB, df.getOWLObjectComplementOf(df.getOWLObjectSomeValuesFrom(propR, df.getOWLThing()))))) {
+			assertEquals(individuals("b", "c"), instances.collect(Collectors.toSet()));
+		}
+
+		// a stream that is not consumed completely
+		try (Stream<OWLNamedIndividual> instances = engine.getInstances(clsB)) {
+			assertEquals(1, instances.limit(1).count());
+		}
+	}
+
+	@Test
+	public void testInstanceCount() {
+		OWLClassExpressionQueryEngine engine = engine();
+
+		assertEquals(2, engine.getInstanceCount(clsA));
+		// the blank node is counted as well
+		assertEquals(4, engine.getInstanceCount(clsB));
+		assertEquals(1, engine.getInstanceCount(df.getOWLObjectMinCardinality(2, propR, clsB)));
+		assertEquals(0, engine.getInstanceCount(df.getOWLObjectIntersectionOf(clsA, clsB)));
+	}
+
+	@Test
+	public void testInstanceCheck() {
+		OWLClassExpressionQueryEngine engine = engine();
+
+		OWLNamedIndividual a = df.getOWLNamedIndividual("a", pm);
+		OWLNamedIndividual d = df.getOWLNamedIndividual("d", pm);
+
+		assertTrue(engine.isInstance(a, clsA));
+		assertFalse(engine.isInstance(a, clsB));
+		assertTrue(engine.isInstance(a, df.getOWLObjectMinCardinality(2, propR, clsB)));
+		assertFalse(engine.isInstance(d, df.getOWLObjectMinCardinality(2, propR, clsB)));
+		assertTrue(engine.isInstance(d, df.getOWLObjectAllValuesFrom(propR, clsB)));
+
+		// an individual without successors has no group to be counted, just as for the instance retrieval
+		OWLClassExpression ce = df.getOWLObjectMaxCardinality(3, propR, clsB);
+		Set<OWLNamedIndividual> instances;
+		try (Stream<OWLNamedIndividual> stream = engine.getInstances(ce)) {
+			instances = stream.collect(Collectors.toSet());
+		}
+		assertEquals(individuals("a", "d", "e"), instances);
+		for (OWLNamedIndividual individual : individuals("a", "b", "c", "d", "e")) {
+			assertEquals(individual.toString(), instances.contains(individual), engine.isInstance(individual, ce));
+		}
+	}
+
+	@Test
+	public void testSplitNominals() {
+		Model model = ModelFactory.createDefaultModel();
+		model.read(new StringReader(DATA), null, "TURTLE");
+		OWLClassExpressionToSPARQLConverter converter = new OWLClassExpressionToSPARQLConverter();
+		converter.setMaxNominalSize(1);
+		OWLClassExpressionQueryEngine engine = new OWLClassExpressionQueryEngine(DatasetFactory.create(model), converter);
+
+		// a has both b and c as successors, i.e. it's returned by two of the queries
+		OWLClassExpression ce = df.getOWLObjectSomeValuesFrom(
+				propR, df.getOWLObjectOneOf(df.getOWLNamedIndividual("b", pm), df.getOWLNamedIndividual("c", pm),
+											df.getOWLNamedIndividual("e", pm)));
+		assertEquals(3, converter.asQueries(ce, "?x").size());
+		try (Stream<OWLNamedIndividual> instances = engine.getInstances(ce)) {
+			assertEquals(individuals("a", "d"), instances.collect(Collectors.toSet()));
+		}
+		assertEquals(2, engine.getInstanceCount(ce));
+		assertTrue(engine.isInstance(df.getOWLNamedIndividual("d", pm), ce));
+		assertFalse(engine.isInstance(df.getOWLNamedIndividual("e", pm), ce));
+	}
+}
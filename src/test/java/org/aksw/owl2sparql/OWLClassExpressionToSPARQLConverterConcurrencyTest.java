@@ -0,0 +1,143 @@
+/*
+ * #%L
+ * owl2sparql-core
+ * %%
+ * Copyright (C) 2015 AKSW
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package org.aksw.owl2sparql;
+
+import com.google.common.collect.Sets;
+import org.junit.Test;
+import org.semanticweb.owlapi.apibinding.OWLManager;
+import org.semanticweb.owlapi.model.*;
+import org.semanticweb.owlapi.util.DefaultPrefixManager;
+import org.semanticweb.owlapi.vocab.OWLFacet;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.*;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Checks that a single converter instance can be used by several threads at the same time.
+ *
+ * @author Lorenz Buehmann
+ *
+ */
+public class OWLClassExpressionToSPARQLConverterConcurrencyTest {
+
+	private static final int THREADS = 8;
+	private static final int ROUNDS = 50;
+
+	private OWLDataFactory df = OWLManager.getOWLDataFactory();
+	private PrefixManager pm = new DefaultPrefixManager("http://example.org/");
+
+	private OWLClass clsA = df.getOWLClass("A", pm);
+	private OWLClass clsB = df.getOWLClass("B", pm);
+	private OWLClass clsC = df.getOWLClass("C", pm);
+
+	private OWLObjectProperty propR = df.getOWLObjectProperty("r", pm);
+	private OWLObjectProperty propS = df.getOWLObjectProperty("s", pm);
+
+	private OWLDataProperty dpT = df.getOWLDataProperty("t", pm);
+
+	private OWLIndividual indA = df.getOWLNamedIndividual("a", pm);
+	private OWLIndividual indB = df.getOWLNamedIndividual("b", pm);
+
+	private List<OWLClassExpression> classExpressions() {
+		List<OWLClassExpression> expressions = new ArrayList<>();
+		expressions.add(clsA);
+		expressions.add(df.getOWLObjectIntersectionOf(clsA, df.getOWLObjectSomeValuesFrom(propR, clsB)));
+		expressions.add(df.getOWLObjectUnionOf(clsA, df.getOWLObjectComplementOf(clsB)));
+		expressions.add(df.getOWLObjectAllValuesFrom(propR, df.getOWLObjectIntersectionOf(clsA, clsC)));
+		expressions.add(df.getOWLObjectMinCardinality(2, propR, clsB));
+		expressions.add(df.getOWLObjectIntersectionOf(clsA, df.getOWLObjectExactCardinality(3, propS, clsB)));
+		expressions.add(df.getOWLObjectMaxCardinality(1, propR, clsA));
+		expressions.add(df.getOWLObjectSomeValuesFrom(propR, df.getOWLObjectOneOf(indA, indB)));
+		expressions.add(df.getOWLObjectIntersectionOf(clsA, df.getOWLObjectHasSelf(propR), df.getOWLObjectHasValue(propS, indA)));
+		expressions.add(df.getOWLObjectIntersectionOf(
+				df.getOWLObjectComplementOf(clsA),
+				df.getOWLObjectSomeValuesFrom(propR, df.getOWLObjectSomeValuesFrom(propS, df.getOWLObjectComplementOf(clsB)))));
+		expressions.add(df.getOWLDataSomeValuesFrom(dpT,
+				df.getOWLDatatypeRestriction(df.getIntegerOWLDatatype(),
+											 df.getOWLFacetRestriction(OWLFacet.MIN_INCLUSIVE, df.getOWLLiteral(3)),
+											 df.getOWLFacetRestriction(OWLFacet.MAX_EXCLUSIVE, df.getOWLLiteral(10)))));
+		expressions.add(df.getOWLDataAllValuesFrom(dpT, df.getOWLDataOneOf(df.getOWLLiteral(1), df.getOWLLiteral(2))));
+		expressions.add(df.getOWLDataHasValue(dpT, df.getOWLLiteral("x", df.getOWLDatatype("d", pm))));
+		expressions.add(df.getOWLObjectIntersectionOf(clsA, df.getOWLDataMinCardinality(2, dpT, df.getBooleanOWLDatatype())));
+		return expressions;
+	}
+
+	/**
+	 * Converts the expression in all the ways offered by the converter.
+	 */
+	private String convert(OWLClassExpressionToSPARQLConverter converter, OWLClassExpression ce) {
+		// only entities that occur in the expression can be replaced by variables
+		Set<OWLEntity> variableEntities = Sets.newHashSet(Sets.intersection(ce.getSignature(), Sets.newHashSet(propR, clsB)));
+		return converter.convert(ce, "?x", false)
+				+ converter.convert(ce, "?x", true)
+				+ converter.asQuery("?x", ce, variableEntities)
+				+ converter.asQuery("?x", ce, variableEntities, true)
+				+ converter.asGroupGraphPattern(ce, "?y", true);
+	}
+
+	@Test
+	public void testParallelConversionEqualsSequentialConversion() throws Exception {
+		OWLClassExpressionToSPARQLConverter converter = new OWLClassExpressionToSPARQLConverter();
+
+		List<OWLClassExpression> expressions = classExpressions();
+
+		List<String> expected = new ArrayList<>();
+		for (OWLClassExpression ce : expressions) {
+			expected.add(convert(converter, ce));
+		}
+
+		ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+		try {
+			CountDownLatch start = new CountDownLatch(1);
+			List<Future<List<String>>> futures = new ArrayList<>();
+			for (int i = 0; i < THREADS; i++) {
+				// every thread starts with a different expression
+				int offset = i;
+				futures.add(executor.submit(() -> {
+					start.await();
+					List<String> results = new ArrayList<>(Collections.nCopies(expressions.size(), (String) null));
+					for (int round = 0; round < ROUNDS; round++) {
+						for (int j = 0; j < expressions.size(); j++) {
+							int index = (j + offset) % expressions.size();
+							String result = convert(converter, expressions.get(index));
+							if(results.get(index) != null && !results.get(index).equals(result)) {
+								throw new IllegalStateException("Different conversions of " + expressions.get(index));
+							}
+							results.set(index, result);
+						}
+					}
+					return results;
+				}));
+			}
+			start.countDown();
+
+			for (Future<List<String>> future : futures) {
+				assertEquals(expected, future.get(5, TimeUnit.MINUTES));
+			}
+		} finally {
+			executor.shutdownNow();
+		}
+	}
+}
@@ -0,0 +1,482 @@
+/*
+ * #%L
+ * owl2sparql-core
+ * %%
+ * Copyright (C) 2015 AKSW
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package org.aksw.owl2sparql;
+
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Sets;
+import com.hp.hpl.jena.graph.Node;
+import com.hp.hpl.jena.graph.NodeFactory;
+import com.hp.hpl.jena.query.Query;
+import com.hp.hpl.jena.query.QueryFactory;
+import org.aksw.owl2sparql.selectivity.DatasetStatistics;
+import org.aksw.owl2sparql.style.AllQuantorTranslation;
+import org.aksw.owl2sparql.style.IndividualUniverse;
+import org.aksw.owl2sparql.style.MaxCardinalityTranslation;
+import org.aksw.owl2sparql.style.MinCardinalityTranslation;
+import org.aksw.owl2sparql.style.NominalTranslation;
+import org.aksw.owl2sparql.util.HierarchyClosure;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.semanticweb.owlapi.apibinding.OWLManager;
+import org.semanticweb.owlapi.dlsyntax.renderer.DLSyntaxObjectRenderer;
+import org.semanticweb.owlapi.io.ToStringRenderer;
+import org.semanticweb.owlapi.model.*;
+import org.semanticweb.owlapi.reasoner.structural.StructuralReasonerFactory;
+import org.semanticweb.owlapi.util.DefaultPrefixManager;
+import org.semanticweb.owlapi.vocab.OWLFacet;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * @author Lorenz Buehmann
+ *
+ */
+public class OWLClassExpressionToSPARQLConverterTest {
+
+	private static final String NS = "http://example.org/";
+
+	private OWLClassExpressionToSPARQLConverter converter = new OWLClassExpressionToSPARQLConverter();
+
+	private OWLDataFactory df = OWLManager.getOWLDataFactory();
+	private PrefixManager pm = new DefaultPrefixManager(NS);
+
+	private OWLClass clsA = df.getOWLClass("A", pm);
+	private OWLClass clsB = df.getOWLClass("B", pm);
+
+	private OWLObjectProperty propR = df.getOWLObjectProperty("r", pm);
+	private OWLObjectProperty propS = df.getOWLObjectProperty("s", pm);
+
+	private OWLDataProperty dpT = df.getOWLDataProperty("t", pm);
+
+	private OWLIndividual indA = df.getOWLNamedIndividual("a", pm);
+	private OWLIndividual indB = df.getOWLNamedIndividual("b", pm);
+
+	@BeforeClass
+	public static void setUpBeforeClass() throws Exception {
+		ToStringRenderer.getInstance().setRenderer(new DLSyntaxObjectRenderer());
+	}
+
+	private void assertConversion(OWLClassExpression ce, String targetQueryString) {
+		Query targetQuery = QueryFactory.create(targetQueryString);
+		Query query = converter.asQuery(ce, "?x");
+
+		assertTrue("Conversion of " + ce + " failed.\n" + query + " does not match " + targetQuery, query.equals(targetQuery));
+
+		// the query tree must be the same after a serialization round trip
+		assertEquals(query, QueryFactory.create(query.serialize()));
+	}
+
+	@Test
+	public void testClass() {
+		assertConversion(clsA, "SELECT ?x WHERE { ?x a <http://example.org/A> }");
+	}
+
+	@Test
+	public void testIntersectionWithNegation() {
+		assertConversion(
+				df.getOWLObjectIntersectionOf(clsA, df.getOWLObjectComplementOf(df.getOWLObjectSomeValuesFrom(propR, clsB))),
+				"SELECT ?x WHERE { ?x a <http://example.org/A> FILTER NOT EXISTS { ?x <http://example.org/r> ?s0 . ?s0 a <http://example.org/B> } }");
+	}
+
+	@Test
+	public void testUnion() {
+		assertConversion(
+				df.getOWLObjectUnionOf(clsA, df.getOWLObjectComplementOf(clsB)),
+				"SELECT DISTINCT ?x WHERE { { ?x a <http://example.org/A> } UNION { ?x ?p ?o FILTER NOT EXISTS { ?x a <http://example.org/B> } } }");
+	}
+
+	@Test
+	public void testCardinalityRestriction() {
+		assertConversion(
+				df.getOWLObjectMinCardinality(2, propR, clsB),
+				"SELECT ?x WHERE { ?x <http://example.org/r> ?s0 . ?s0 a <http://example.org/B> } GROUP BY ?x HAVING(COUNT(?s0) >= 2)");
+
+		assertConversion(
+				df.getOWLObjectIntersectionOf(clsA, df.getOWLObjectMinCardinality(2, propR, clsB)),
+				"SELECT ?x WHERE { ?x a <http://example.org/A> " +
+						"{SELECT ?x WHERE { ?x <http://example.org/r> ?s0 . ?s0 a <http://example.org/B> } GROUP BY ?x HAVING(COUNT(?s0) >= 2)} }");
+
+		assertConversion(
+				df.getOWLObjectMaxCardinality(1, propR, clsB),
+				"SELECT DISTINCT ?x WHERE { ?x <http://example.org/r> ?s0 . ?s0 a <http://example.org/B> " +
+						"FILTER NOT EXISTS { ?x <http://example.org/r> ?s1 . ?s1 a <http://example.org/B> FILTER(!sameTerm(?s0, ?s1)) } }");
+	}
+
+	@Test
+	public void testMinCardinalityAsDistinctSuccessors() {
+		converter.setMinCardinalityTranslation(MinCardinalityTranslation.DISTINCT_SUCCESSORS);
+
+		assertConversion(
+				df.getOWLObjectIntersectionOf(clsA, df.getOWLObjectMinCardinality(2, propR, clsB)),
+				"SELECT DISTINCT ?x WHERE { ?x a <http://example.org/A> . ?x <http://example.org/r> ?s0 . ?s0 a <http://example.org/B> . " +
+						"?x <http://example.org/r> ?s1 . ?s1 a <http://example.org/B> FILTER(!sameTerm(?s0, ?s1)) }");
+
+		assertConversion(
+				df.getOWLDataMinCardinality(2, dpT, df.getIntegerOWLDatatype()),
+				"SELECT DISTINCT ?x WHERE { ?x <http://example.org/t> ?s0 FILTER(datatype(?s0) = <http://www.w3.org/2001/XMLSchema#integer>) " +
+						"?x <http://example.org/t> ?s1 FILTER(datatype(?s1) = <http://www.w3.org/2001/XMLSchema#integer>) " +
+						"FILTER(!sameTerm(?s0, ?s1)) }");
+
+		// large cardinalities are still counted
+		assertConversion(
+				df.getOWLObjectMinCardinality(4, propR, clsB),
+				"SELECT ?x WHERE { ?x <http://example.org/r> ?s0 . ?s0 a <http://example.org/B> } GROUP BY ?x HAVING(COUNT(?s0) >= 4)");
+	}
+
+	@Test
+	public void testMaxCardinalityAsFilterNotExists() {
+		converter.setFilterNotExistsMaxCardinality(2);
+		assertConversion(
+				df.getOWLObjectMaxCardinality(2, propR, clsB),
+				"SELECT DISTINCT ?x WHERE { ?x <http://example.org/r> ?s0 . ?s0 a <http://example.org/B> " +
+						"FILTER NOT EXISTS { ?x <http://example.org/r> ?s1 . ?s1 a <http://example.org/B> . " +
+						"?x <http://example.org/r> ?s2 . ?s2 a <http://example.org/B> " +
+						"FILTER(!sameTerm(?s0, ?s1)) FILTER(!sameTerm(?s0, ?s2)) FILTER(!sameTerm(?s1, ?s2)) } }");
+
+		assertConversion(
+				df.getOWLDataMaxCardinality(1, dpT, df.getTopDatatype()),
+				"SELECT DISTINCT ?x WHERE { ?x <http://example.org/t> ?s0 " +
+						"FILTER NOT EXISTS { ?x <http://example.org/t> ?s1 FILTER(!sameTerm(?s0, ?s1)) } }");
+
+		converter.setMaxCardinalityTranslation(MaxCardinalityTranslation.GROUP_BY_HAVING);
+		assertConversion(
+				df.getOWLObjectMaxCardinality(1, propR, clsB),
+				"SELECT ?x WHERE { ?x <http://example.org/r> ?s0 . ?s0 a <http://example.org/B> } GROUP BY ?x HAVING(COUNT(?s0) <= 1)");
+	}
+
+	@Test
+	public void testDistinctSuccessorsMaxCardinality() {
+		converter.setMinCardinalityTranslation(MinCardinalityTranslation.DISTINCT_SUCCESSORS);
+
+		// by default, up to 3 successors are joined
+		assertConversion(
+				df.getOWLObjectMinCardinality(3, propR, clsB),
+				"SELECT DISTINCT ?x WHERE { ?x <http://example.org/r> ?s0 . ?s0 a <http://example.org/B> . " +
+						"?x <http://example.org/r> ?s1 . ?s1 a <http://example.org/B> . " +
+						"?x <http://example.org/r> ?s2 . ?s2 a <http://example.org/B> " +
+						"FILTER(!sameTerm(?s0, ?s1)) FILTER(!sameTerm(?s0, ?s2)) FILTER(!sameTerm(?s1, ?s2)) }");
+		assertConversion(
+				df.getOWLObjectMinCardinality(4, propR, clsB),
+				"SELECT ?x WHERE { ?x <http://example.org/r> ?s0 . ?s0 a <http://example.org/B> } GROUP BY ?x HAVING(COUNT(?s0) >= 4)");
+		assertConversion(
+				df.getOWLDataMinCardinality(3, dpT, df.getTopDatatype()),
+				"SELECT DISTINCT ?x WHERE { ?x <http://example.org/t> ?s0 . ?x <http://example.org/t> ?s1 . ?x <http://example.org/t> ?s2 " +
+						"FILTER(!sameTerm(?s0, ?s1)) FILTER(!sameTerm(?s0, ?s2)) FILTER(!sameTerm(?s1, ?s2)) }");
+		assertConversion(
+				df.getOWLDataMinCardinality(4, dpT, df.getTopDatatype()),
+				"SELECT ?x WHERE { {SELECT ?x WHERE { ?x <http://example.org/t> ?s0 } GROUP BY ?x HAVING(COUNT(?s0) >= 4)} }");
+
+		// the bound is independent of the one of maximum cardinalities
+		converter.setDistinctSuccessorsMaxCardinality(2);
+		converter.setFilterNotExistsMaxCardinality(3);
+		assertConversion(
+				df.getOWLObjectMinCardinality(3, propR, clsB),
+				"SELECT ?x WHERE { ?x <http://example.org/r> ?s0 . ?s0 a <http://example.org/B> } GROUP BY ?x HAVING(COUNT(?s0) >= 3)");
+		assertConversion(
+				df.getOWLDataMinCardinality(3, dpT, df.getTopDatatype()),
+				"SELECT ?x WHERE { {SELECT ?x WHERE { ?x <http://example.org/t> ?s0 } GROUP BY ?x HAVING(COUNT(?s0) >= 3)} }");
+	}
+
+	@Test
+	public void testFilterNotExistsMaxCardinality() {
+		// by default, only at most one successor is expressed by FILTER NOT EXISTS
+		assertConversion(
+				df.getOWLObjectMaxCardinality(2, propR, clsB),
+				"SELECT ?x WHERE { ?x <http://example.org/r> ?s0 . ?s0 a <http://example.org/B> } GROUP BY ?x HAVING(COUNT(?s0) <= 2)");
+		assertConversion(
+				df.getOWLDataMaxCardinality(2, dpT, df.getTopDatatype()),
+				"SELECT ?x WHERE { {SELECT ?x WHERE { ?x <http://example.org/t> ?s0 } GROUP BY ?x HAVING(COUNT(?s0) <= 2)} }");
+
+		converter.setFilterNotExistsMaxCardinality(3);
+		assertConversion(
+				df.getOWLObjectMaxCardinality(3, propR, clsB),
+				"SELECT DISTINCT ?x WHERE { ?x <http://example.org/r> ?s0 . ?s0 a <http://example.org/B> " +
+						"FILTER NOT EXISTS { ?x <http://example.org/r> ?s1 . ?s1 a <http://example.org/B> . " +
+						"?x <http://example.org/r> ?s2 . ?s2 a <http://example.org/B> . " +
+						"?x <http://example.org/r> ?s3 . ?s3 a <http://example.org/B> " +
+						"FILTER(!sameTerm(?s0, ?s1)) FILTER(!sameTerm(?s0, ?s2)) FILTER(!sameTerm(?s0, ?s3)) " +
+						"FILTER(!sameTerm(?s1, ?s2)) FILTER(!sameTerm(?s1, ?s3)) FILTER(!sameTerm(?s2, ?s3)) } }");
+		assertConversion(
+				df.getOWLObjectMaxCardinality(4, propR, clsB),
+				"SELECT ?x WHERE { ?x <http://example.org/r> ?s0 . ?s0 a <http://example.org/B> } GROUP BY ?x HAVING(COUNT(?s0) <= 4)");
+		assertConversion(
+				df.getOWLDataMaxCardinality(3, dpT, df.getTopDatatype()),
+				"SELECT DISTINCT ?x WHERE { ?x <http://example.org/t> ?s0 " +
+						"FILTER NOT EXISTS { ?x <http://example.org/t> ?s1 . ?x <http://example.org/t> ?s2 . ?x <http://example.org/t> ?s3 " +
+						"FILTER(!sameTerm(?s0, ?s1)) FILTER(!sameTerm(?s0, ?s2)) FILTER(!sameTerm(?s0, ?s3)) " +
+						"FILTER(!sameTerm(?s1, ?s2)) FILTER(!sameTerm(?s1, ?s3)) FILTER(!sameTerm(?s2, ?s3)) } }");
+		assertConversion(
+				df.getOWLDataMaxCardinality(4, dpT, df.getTopDatatype()),
+				"SELECT ?x WHERE { {SELECT ?x WHERE { ?x <http://example.org/t> ?s0 } GROUP BY ?x HAVING(COUNT(?s0) <= 4)} }");
+	}
+
+	@Test
+	public void testNominals() {
+		assertConversion(
+				df.getOWLObjectSomeValuesFrom(propS, df.getOWLObjectOneOf(indA, indB)),
+				"SELECT DISTINCT ?x WHERE { ?x <http://example.org/s> ?s0 VALUES ?s0 { <http://example.org/a> <http://example.org/b> } }");
+	}
+
+	@Test
+	public void testAdaptiveNominalTranslation() {
+		converter.setNominalTranslation(NominalTranslation.ADAPTIVE);
+
+		// small nominals below a restriction are filtered
+		assertConversion(
+				df.getOWLObjectSomeValuesFrom(propS, df.getOWLObjectOneOf(indA, indB)),
+				"SELECT DISTINCT ?x WHERE { ?x <http://example.org/s> ?s0 FILTER(?s0 IN (<http://example.org/a>, <http://example.org/b>)) }");
+
+		// the operands of a union don't bind the successor, thus, they are joined
+		assertConversion(
+				df.getOWLObjectSomeValuesFrom(propS, df.getOWLObjectUnionOf(df.getOWLObjectOneOf(indA, indB), clsB)),
+				"SELECT DISTINCT ?x WHERE { ?x <http://example.org/s> ?s0 { ?s0 a <http://example.org/B> } UNION { VALUES ?s0 { <http://example.org/a> <http://example.org/b> } } }");
+
+		// top-level nominals are joined
+		assertConversion(
+				df.getOWLObjectOneOf(indA, indB),
+				"SELECT ?x WHERE { VALUES ?x { <http://example.org/a> <http://example.org/b> } }");
+
+		// large nominals are joined
+		Set<OWLIndividual> individuals = new HashSet<>();
+		for (int i = 0; i < 20; i++) {
+			individuals.add(df.getOWLNamedIndividual("i" + i, pm));
+		}
+		Query query = converter.asQuery(df.getOWLObjectSomeValuesFrom(propS, df.getOWLObjectOneOf(individuals)), "?x");
+		assertTrue(query.toString(), query.toString().contains("VALUES"));
+
+		// unless the maximum size of a filtered nominal is raised
+		converter.setAdaptiveFilterInMaxSize(20);
+		query = converter.asQuery(df.getOWLObjectSomeValuesFrom(propS, df.getOWLObjectOneOf(individuals)), "?x");
+		assertFalse(query.toString(), query.toString().contains("VALUES"));
+		converter.setAdaptiveFilterInMaxSize(1);
+		assertConversion(
+				df.getOWLObjectSomeValuesFrom(propS, df.getOWLObjectOneOf(indA, indB)),
+				"SELECT DISTINCT ?x WHERE { ?x <http://example.org/s> ?s0 VALUES ?s0 { <http://example.org/a> <http://example.org/b> } }");
+	}
+
+	@Test
+	public void testConvertToOutputStream() {
+		OWLClassExpression ce = df.getOWLObjectSomeValuesFrom(propS, df.getOWLObjectOneOf(indA, indB));
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		converter.convert(ce, "?x", false, out);
+		assertEquals(converter.asQuery(ce, "?x"), QueryFactory.create(new String(out.toByteArray(), StandardCharsets.UTF_8)));
+	}
+
+	@Test
+	public void testDataRanges() {
+		assertConversion(
+				df.getOWLDataSomeValuesFrom(dpT,
+											df.getOWLDatatypeRestriction(
+													df.getIntegerOWLDatatype(),
+													df.getOWLFacetRestriction(OWLFacet.MIN_INCLUSIVE, df.getOWLLiteral(3)))),
+				"SELECT DISTINCT ?x WHERE { ?x <http://example.org/t> ?s0 FILTER(?s0 >= 3 && datatype(?s0) = <http://www.w3.org/2001/XMLSchema#integer>) }");
+
+		assertConversion(
+				df.getOWLDataSomeValuesFrom(dpT, df.getOWLDataComplementOf(df.getOWLDataOneOf(df.getOWLLiteral(1), df.getOWLLiteral(2)))),
+				"SELECT DISTINCT ?x WHERE { ?x <http://example.org/t> ?s0 FILTER(?s0 NOT IN (1, 2)) }");
+	}
+
+	@Test
+	public void testAdaptiveAllQuantorTranslation() {
+		// r has 50 successors per subject on average, s only one
+		Node r = NodeFactory.createURI(NS + "r");
+		Node s = NodeFactory.createURI(NS + "s");
+		converter.setSelectivityEstimator(new DatasetStatistics(
+				1100, 200, Collections.<Node, Long>emptyMap(),
+				ImmutableMap.of(r, 1000L, s, 100L), ImmutableMap.of(r, 20L, s, 100L), ImmutableMap.of(r, 100L, s, 100L)));
+		converter.setAllQuantorTranslation(AllQuantorTranslation.ADAPTIVE);
+
+		OWLClassExpression allR = df.getOWLObjectAllValuesFrom(propR, clsB);
+		OWLClassExpression allS = df.getOWLObjectAllValuesFrom(propS, clsB);
+		OWLClassExpression allInverseR = df.getOWLObjectAllValuesFrom(propR.getInverseProperty(), allR);
+		assertConversion(
+				df.getOWLObjectIntersectionOf(clsA, allR),
+				"SELECT DISTINCT ?x WHERE { ?x a <http://example.org/A> . ?x <http://example.org/r> ?s0 " +
+						"{ SELECT ?x (COUNT(?s1) AS ?cnt1) WHERE { ?x <http://example.org/r> ?s1 . ?s1 a <http://example.org/B> } GROUP BY ?x } " +
+						"{ SELECT ?x (COUNT(?s2) AS ?cnt2) WHERE { ?x <http://example.org/r> ?s2 } GROUP BY ?x } " +
+						"FILTER(?cnt1 = ?cnt2) }");
+		assertEquals(ImmutableMap.of(allR, AllQuantorTranslation.SUBSELECT_COUNT_EQUALS),
+					 converter.getConversionMetadata().getAllQuantorTranslations());
+
+		// the inverse of r has 10 successors per subject, i.e. nested count encodings need fresh variables
+		Query query = converter.asQuery(df.getOWLObjectIntersectionOf(clsA, allS, allInverseR), "?x");
+		assertTrue(query.toString(), query.toString().contains("?cnt2 = ?cnt3") && query.toString().contains("?cnt1 = ?cnt4"));
+		assertEquals(query, QueryFactory.create(query.serialize()));
+		assertEquals(ImmutableMap.of(allS, AllQuantorTranslation.DOUBLE_NEGATION,
+									 allInverseR, AllQuantorTranslation.SUBSELECT_COUNT_EQUALS,
+									 allR, AllQuantorTranslation.SUBSELECT_COUNT_EQUALS),
+					 converter.getConversionMetadata().getAllQuantorTranslations());
+
+		// 50 successors per subject don't exceed a higher threshold
+		converter.setAdaptiveFanOutThreshold(50);
+		converter.asQuery(allR, "?x");
+		assertEquals(ImmutableMap.of(allR, AllQuantorTranslation.DOUBLE_NEGATION),
+					 converter.getConversionMetadata().getAllQuantorTranslations());
+
+		// without statistics double negation is used
+		converter.setAdaptiveFanOutThreshold(8);
+		converter.setSelectivityEstimator(null);
+		converter.asQuery(allR, "?x");
+		assertEquals(ImmutableMap.of(allR, AllQuantorTranslation.DOUBLE_NEGATION),
+					 converter.getConversionMetadata().getAllQuantorTranslations());
+	}
+
+	@Test
+	public void testUniversalChainAsPropertyPath() throws OWLOntologyCreationException {
+		converter.setAllQuantorTranslation(AllQuantorTranslation.DOUBLE_NEGATION_PATH);
+
+		OWLClassExpression allS = df.getOWLObjectAllValuesFrom(propS, clsA);
+		OWLClassExpression chain = df.getOWLObjectAllValuesFrom(propR, df.getOWLObjectAllValuesFrom(propR.getInverseProperty(), allS));
+		assertConversion(
+				df.getOWLObjectIntersectionOf(clsB, chain),
+				"SELECT ?x WHERE { ?x a <http://example.org/B> " +
+						"FILTER NOT EXISTS { ?x <http://example.org/r>/^<http://example.org/r>/<http://example.org/s> ?s0 " +
+						"FILTER NOT EXISTS { ?s0 a <http://example.org/A> } } }");
+		assertEquals(ImmutableMap.of(chain, AllQuantorTranslation.DOUBLE_NEGATION_PATH),
+					 converter.getConversionMetadata().getAllQuantorTranslations());
+
+		// the chain ends at the intersection, a single restriction is a plain double negation
+		OWLClassExpression allR = df.getOWLObjectAllValuesFrom(propR, df.getOWLObjectIntersectionOf(clsB, allS));
+		assertConversion(
+				allR,
+				"SELECT DISTINCT ?x WHERE { ?x ?p ?o FILTER NOT EXISTS { ?x <http://example.org/r> ?s1 " +
+						"FILTER NOT EXISTS { ?s1 a <http://example.org/B> FILTER NOT EXISTS { ?s1 <http://example.org/s> ?s3 " +
+						"FILTER NOT EXISTS { ?s3 a <http://example.org/A> } } } } }");
+		assertEquals(ImmutableMap.of(allR, AllQuantorTranslation.DOUBLE_NEGATION, allS, AllQuantorTranslation.DOUBLE_NEGATION),
+					 converter.getConversionMetadata().getAllQuantorTranslations());
+
+		// sub-properties become alternatives of the path
+		OWLOntology ontology = OWLManager.createOWLOntologyManager().createOntology(Collections.<OWLAxiom>singleton(
+				df.getOWLSubObjectPropertyOfAxiom(propS, propR)));
+		converter.setUseReasoning(true);
+		converter.setHierarchyClosure(HierarchyClosure.compute(ontology));
+		assertConversion(
+				df.getOWLObjectAllValuesFrom(propS, df.getOWLObjectAllValuesFrom(propR, clsA)),
+				"SELECT DISTINCT ?x WHERE { ?x ?p ?o FILTER NOT EXISTS { " +
+						"?x <http://example.org/s>/(<http://example.org/r>|<http://example.org/s>) ?s0 " +
+						"FILTER NOT EXISTS { ?s0 a <http://example.org/A> } } }");
+	}
+
+	@Test
+	public void testDistinctElimination() throws OWLOntologyCreationException {
+		OWLClassExpression ce = df.getOWLObjectSomeValuesFrom(propR, clsB);
+		converter.asQuery(ce, "?x");
+		assertTrue(converter.getConversionMetadata().isDistinct());
+
+		// the r-successor of an individual is unique if r is functional
+		OWLOntology ontology = OWLManager.createOWLOntologyManager().createOntology(
+				Collections.<OWLAxiom>singleton(df.getOWLFunctionalObjectPropertyAxiom(propR)));
+		converter.setReasoner(new StructuralReasonerFactory().createNonBufferingReasoner(ontology));
+		assertConversion(ce, "SELECT ?x WHERE { ?x <http://example.org/r> ?s0 . ?s0 a <http://example.org/B> }");
+		assertFalse(converter.getConversionMetadata().isDistinct());
+		assertEquals("all variables are determined by the projection variables",
+					 converter.getConversionMetadata().getDistinctReason());
+
+		// but an individual can be the r-successor of several individuals
+		converter.asQuery(df.getOWLObjectSomeValuesFrom(propR.getInverseProperty(), clsB), "?x");
+		assertTrue(converter.getConversionMetadata().isDistinct());
+
+		converter.setUseDistinct(false);
+		converter.asQuery("?x", ce, false);
+		assertFalse(converter.getConversionMetadata().isDistinct());
+		assertEquals("DISTINCT is disabled", converter.getConversionMetadata().getDistinctReason());
+		assertFalse(converter.asQuery("?x", ce, Collections.singleton(propR), false).isDistinct());
+		assertEquals("DISTINCT is disabled", converter.getConversionMetadata().getDistinctReason());
+	}
+
+	@Test
+	public void testHierarchyExpansion() throws OWLOntologyCreationException {
+		OWLClass clsC = df.getOWLClass("C", pm);
+		OWLOntology ontology = OWLManager.createOWLOntologyManager().createOntology(Sets.newHashSet(
+				df.getOWLSubClassOfAxiom(clsC, clsA),
+				df.getOWLSubObjectPropertyOfAxiom(propS, propR)));
+		converter.setUseReasoning(true);
+		converter.setHierarchyClosure(HierarchyClosure.compute(ontology));
+
+		assertConversion(
+				df.getOWLObjectIntersectionOf(clsA, df.getOWLObjectSomeValuesFrom(propR, clsB)),
+				"SELECT DISTINCT ?x WHERE { ?x a ?cls0 VALUES ?cls0 { <http://example.org/A> <http://example.org/C> } " +
+						"?x ?p0 ?s0 VALUES ?p0 { <http://example.org/r> <http://example.org/s> } ?s0 a <http://example.org/B> }");
+
+		// a successor can match several sub-properties
+		assertConversion(
+				df.getOWLObjectMinCardinality(2, propR, clsB),
+				"SELECT ?x WHERE { ?x ?p0 ?s0 VALUES ?p0 { <http://example.org/r> <http://example.org/s> } ?s0 a <http://example.org/B> } " +
+						"GROUP BY ?x HAVING(COUNT(DISTINCT ?s0) >= 2)");
+	}
+
+	@Test
+	public void testIndividualUniverse() {
+		OWLClassExpression notA = df.getOWLObjectComplementOf(clsA);
+
+		converter.setIndividualUniverse(IndividualUniverse.TYPED_INDIVIDUALS);
+		assertConversion(notA, "SELECT DISTINCT ?x WHERE { ?x a ?cls0 FILTER NOT EXISTS { ?x a <http://example.org/A> } }");
+
+		converter.setIndividualUniverse(IndividualUniverse.namedGraph(IRI.create(NS + "individuals")));
+		assertConversion(notA,
+				"SELECT DISTINCT ?x WHERE { GRAPH <http://example.org/individuals> { ?x a ?cls0 } " +
+						"FILTER NOT EXISTS { ?x a <http://example.org/A> } }");
+
+		// the candidates are distinct, thus, DISTINCT is not needed
+		converter.setIndividualUniverse(IndividualUniverse.candidates(
+				Arrays.asList(indA.asOWLNamedIndividual(), indB.asOWLNamedIndividual())));
+		assertConversion(notA,
+				"SELECT ?x WHERE { VALUES ?x { <http://example.org/a> <http://example.org/b> } " +
+						"FILTER NOT EXISTS { ?x a <http://example.org/A> } }");
+	}
+
+	@Test
+	public void testNoUniverseForBoundVariables() {
+		// the successor is already bound by the triple pattern of the existential restriction
+		assertConversion(
+				df.getOWLObjectSomeValuesFrom(propR, df.getOWLObjectIntersectionOf(
+						df.getOWLObjectComplementOf(clsA), df.getOWLObjectComplementOf(clsB))),
+				"SELECT DISTINCT ?x WHERE { ?x <http://example.org/r> ?s0 " +
+						"FILTER NOT EXISTS { ?s0 a <http://example.org/A> } FILTER NOT EXISTS { ?s0 a <http://example.org/B> } }");
+	}
+
+	@Test
+	public void testConvertIsSerializationOfQuery() {
+		OWLClassExpression ce = df.getOWLObjectIntersectionOf(clsA, df.getOWLObjectSomeValuesFrom(propR, clsB));
+
+		String queryString = converter.convert(ce, "?x", false);
+
+		assertEquals(converter.asQuery(ce, "?x"), QueryFactory.create(queryString));
+	}
+
+	@Test
+	public void testCountQuery() {
+		Query targetQuery = QueryFactory.create(
+				"SELECT (COUNT(?x) AS ?cnt) WHERE { { SELECT ?x WHERE { ?x <http://example.org/r> ?s0 . ?s0 a <http://example.org/B> } " +
+				"GROUP BY ?x HAVING(COUNT(?s0) >= 2) } }");
+		Query query = converter.asQuery("?x", df.getOWLObjectMinCardinality(2, propR, clsB), true);
+
+		assertEquals(targetQuery, query);
+	}
+}
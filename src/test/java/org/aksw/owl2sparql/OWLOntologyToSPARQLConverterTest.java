@@ -0,0 +1,143 @@
+/*
+ * #%L
+ * owl2sparql-core
+ * %%
+ * Copyright (C) 2015 AKSW
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package org.aksw.owl2sparql;
+
+import com.google.common.collect.Sets;
+import com.hp.hpl.jena.query.Query;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.semanticweb.owlapi.apibinding.OWLManager;
+import org.semanticweb.owlapi.model.*;
+import org.semanticweb.owlapi.util.DefaultPrefixManager;
+
+import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.stream.Collectors;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * @author Lorenz Buehmann
+ *
+ */
+public class OWLOntologyToSPARQLConverterTest {
+
+	private static ExecutorService executor;
+
+	private OWLOntologyManager man = OWLManager.createOWLOntologyManager();
+	private OWLDataFactory df = man.getOWLDataFactory();
+	private PrefixManager pm = new DefaultPrefixManager("http://example.org/");
+
+	private OWLClass clsA = df.getOWLClass("A", pm);
+	private OWLClass clsB = df.getOWLClass("B", pm);
+	private OWLObjectProperty propR = df.getOWLObjectProperty("r", pm);
+	private OWLObjectProperty propS = df.getOWLObjectProperty("s", pm);
+	private OWLDataProperty dpT = df.getOWLDataProperty("t", pm);
+	private OWLNamedIndividual indA = df.getOWLNamedIndividual("a", pm);
+
+	@BeforeClass
+	public static void setUpBeforeClass() {
+		executor = Executors.newFixedThreadPool(4);
+	}
+
+	@AfterClass
+	public static void tearDownAfterClass() {
+		executor.shutdownNow();
+	}
+
+	private List<OWLAxiom> axioms() {
+		List<OWLAxiom> axioms = new ArrayList<>();
+		for (int i = 0; i < 50; i++) {
+			OWLClass cls = df.getOWLClass("C" + i, pm);
+			axioms.add(df.getOWLSubClassOfAxiom(cls, df.getOWLObjectSomeValuesFrom(propR, clsA)));
+			axioms.add(df.getOWLEquivalentClassesAxiom(cls, df.getOWLObjectIntersectionOf(clsB, df.getOWLObjectAllValuesFrom(propS, clsA))));
+		}
+		axioms.add(df.getOWLDisjointClassesAxiom(clsA, clsB));
+		axioms.add(df.getOWLObjectPropertyDomainAxiom(propR, clsA));
+		axioms.add(df.getOWLFunctionalObjectPropertyAxiom(propS));
+		axioms.add(df.getOWLSubPropertyChainOfAxiom(Arrays.asList(propR, propS), propR));
+		// not supported
+		axioms.add(df.getOWLClassAssertionAxiom(clsA, indA));
+		axioms.add(df.getOWLObjectPropertyAssertionAxiom(propR, indA, indA));
+		axioms.add(df.getOWLHasKeyAxiom(clsA, Collections.singleton(propR)));
+		axioms.add(df.getOWLDeclarationAxiom(clsA));
+		// a data property range that is not a datatype can't be converted
+		axioms.add(df.getOWLDataPropertyRangeAxiom(dpT, df.getOWLDataOneOf(df.getOWLLiteral(1))));
+		return axioms;
+	}
+
+	private List<Query> sequentialConversion(List<OWLAxiom> axioms) {
+		OWLAxiomToSPARQLConverter converter = new OWLAxiomToSPARQLConverter("?x", "?o");
+		List<Query> queries = new ArrayList<>();
+		for (OWLAxiom axiom : axioms) {
+			if(OWLAxiomToSPARQLConverter.isSupported(axiom.getAxiomType())
+					&& axiom.getAxiomType() != AxiomType.DATA_PROPERTY_RANGE) {
+				queries.add(converter.asQuery(axiom));
+			}
+		}
+		return queries;
+	}
+
+	@Test
+	public void testOrderedConversion() {
+		List<OWLAxiom> axioms = axioms();
+
+		OntologyConversion conversion = new OWLOntologyToSPARQLConverter(executor).convert(axioms.stream(), true);
+		List<AxiomQuery> result = conversion.queries().collect(Collectors.toList());
+
+		assertEquals(sequentialConversion(axioms), result.stream().map(AxiomQuery::getQuery).collect(Collectors.toList()));
+		assertEquals(104, conversion.getConvertedAxiomCount());
+		assertEquals(1, conversion.getFailedAxioms().size());
+	}
+
+	@Test
+	public void testUnorderedConversion() {
+		List<OWLAxiom> axioms = axioms();
+
+		OntologyConversion conversion = new OWLOntologyToSPARQLConverter(executor).convert(axioms.stream(), false);
+		Map<OWLAxiom, Query> result = conversion.queries().collect(Collectors.toMap(AxiomQuery::getAxiom, AxiomQuery::getQuery));
+
+		OWLAxiomToSPARQLConverter converter = new OWLAxiomToSPARQLConverter("?x", "?o");
+		assertEquals(104, result.size());
+		for (Map.Entry<OWLAxiom, Query> entry : result.entrySet()) {
+			assertEquals(converter.asQuery(entry.getKey()), entry.getValue());
+		}
+	}
+
+	@Test
+	public void testSkippedAxiomTypes() throws Exception {
+		OWLOntology ontology = man.createOntology(Sets.newHashSet(axioms()));
+
+		OntologyConversion conversion = new OWLOntologyToSPARQLConverter(executor).convert(ontology);
+
+		Map<AxiomType<?>, Integer> expected = new HashMap<>();
+		expected.put(AxiomType.CLASS_ASSERTION, 1);
+		expected.put(AxiomType.OBJECT_PROPERTY_ASSERTION, 1);
+		expected.put(AxiomType.HAS_KEY, 1);
+		// the ontology also contains the declarations of the entities used in the axioms
+		expected.put(AxiomType.DECLARATION, ontology.getAxiomCount(AxiomType.DECLARATION));
+		assertEquals(expected, conversion.getSkippedAxiomTypes());
+
+		assertEquals(104, conversion.queries().count());
+		assertEquals(104, conversion.getConvertedAxiomCount());
+	}
+}
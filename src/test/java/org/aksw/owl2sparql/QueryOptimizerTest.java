@@ -0,0 +1,217 @@
+/*
+ * #%L
+ * owl2sparql-core
+ * %%
+ * Copyright (C) 2015 AKSW
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package org.aksw.owl2sparql;
+
+import com.hp.hpl.jena.query.Query;
+import com.hp.hpl.jena.query.QueryFactory;
+import com.hp.hpl.jena.sparql.syntax.Element;
+import com.hp.hpl.jena.sparql.syntax.ElementFilter;
+import com.hp.hpl.jena.sparql.syntax.ElementGroup;
+import com.hp.hpl.jena.sparql.syntax.ElementPathBlock;
+import org.aksw.owl2sparql.QueryOptimizer.Rewrite;
+import org.aksw.owl2sparql.style.AllQuantorTranslation;
+import org.aksw.owl2sparql.style.MaxCardinalityTranslation;
+import org.aksw.owl2sparql.style.MinCardinalityTranslation;
+import org.aksw.owl2sparql.style.NegationRendering;
+import org.junit.Test;
+import org.semanticweb.owlapi.apibinding.OWLManager;
+import org.semanticweb.owlapi.model.*;
+import org.semanticweb.owlapi.util.DefaultPrefixManager;
+
+import java.util.Arrays;
+import java.util.EnumSet;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Checks the rewrites of the query optimizer and that the optimized queries
+ * return the same results on a local dataset.
+ *
+ * @author Lorenz Buehmann
+ *
+ */
+public class QueryOptimizerTest {
+
+	private static final LocalDataset DATASET = new LocalDataset(
+			"@prefix : <http://example.org/> .\n" +
+			":a a :A ; :r :b , :c .\n" +
+			":b a :B ; :s :c , :d .\n" +
+			":c a :B , :A ; :s :a , :b .\n" +
+			":d a :A ; :r :b .\n" +
+			":e a :B ; :r :f .\n" +
+			":f :s :a .\n");
+
+	private QueryOptimizer optimizer = new QueryOptimizer();
+
+	private OWLDataFactory df = OWLManager.getOWLDataFactory();
+	private PrefixManager pm = new DefaultPrefixManager("http://example.org/");
+
+	private OWLClass clsA = df.getOWLClass("A", pm);
+	private OWLClass clsB = df.getOWLClass("B", pm);
+	private OWLObjectProperty propR = df.getOWLObjectProperty("r", pm);
+	private OWLObjectProperty propS = df.getOWLObjectProperty("s", pm);
+
+	/**
+	 * Optimizes the query, checks that the optimized query returns the same
+	 * solutions including duplicates and survives a serialization round trip.
+	 */
+	private QueryOptimizer.Result optimize(Query query) {
+		QueryOptimizer.Result result = optimizer.optimize(query);
+		Query optimized = result.getQuery();
+		LocalDataset.assertRoundTrip(optimized);
+		assertEquals("Solutions differ for\n" + query + "\n" + optimized,
+					 DATASET.solutions(query), DATASET.solutions(optimized));
+		return result;
+	}
+
+	private QueryOptimizer.Result optimize(String query) {
+		return optimize(QueryFactory.create("PREFIX : <http://example.org/> " + query));
+	}
+
+	@Test
+	public void testNothingToOptimize() {
+		Query query = QueryFactory.create("SELECT ?x WHERE { ?x a <http://example.org/A> }");
+		QueryOptimizer.Result result = optimizer.optimize(query);
+		assertSame(query, result.getQuery());
+		assertTrue(result.getRewrites().isEmpty());
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testConstructQuery() {
+		optimizer.optimize(QueryFactory.create("CONSTRUCT WHERE { ?s ?p ?o }"));
+	}
+
+	@Test
+	public void testFlattenGroups() {
+		QueryOptimizer.Result result = optimize("SELECT ?x WHERE { { ?x a :A } { { ?x :r ?y } UNION { ?x :s ?y } } }");
+		assertEquals(EnumSet.of(Rewrite.FLATTEN_GROUPS), result.getRewrites());
+
+		// the filter of the nested group doesn't see ?y
+		result = optimize("SELECT ?x WHERE { ?x :r ?y { ?x a :A FILTER(?y != :b) } }");
+		assertTrue(result.getRewrites().isEmpty());
+	}
+
+	@Test
+	public void testFilterPlacement() {
+		QueryOptimizer.Result result = optimize(
+				"SELECT DISTINCT ?x WHERE { FILTER NOT EXISTS { ?x a :A } ?x :r ?y . ?y a :B }");
+		assertTrue(result.getRewrites().contains(Rewrite.FILTER_PLACEMENT));
+		List<Element> elements = ((ElementGroup) result.getQuery().getQueryPattern()).getElements();
+		assertTrue(elements.get(0) instanceof ElementPathBlock);
+		assertTrue(elements.get(elements.size() - 1) instanceof ElementFilter);
+	}
+
+	@Test
+	public void testRedundantTriplePatterns() {
+		// identical triple patterns don't change the number of solutions
+		QueryOptimizer.Result result = optimize("SELECT ?x WHERE { ?x :r ?y . ?x a :A . ?x :r ?y }");
+		assertEquals(EnumSet.of(Rewrite.REDUNDANT_TRIPLE_PATTERNS), result.getRewrites());
+		assertEquals(2, ((ElementPathBlock) ((ElementGroup) result.getQuery().getQueryPattern()).getElements().get(0)).getPattern().size());
+
+		// the generic triple pattern only changes the number of solutions
+		result = optimize("SELECT DISTINCT ?x WHERE { ?x ?p ?o . ?x :r ?y }");
+		assertEquals(EnumSet.of(Rewrite.REDUNDANT_TRIPLE_PATTERNS), result.getRewrites());
+		assertFalse(result.getQuery().toString(), result.getQuery().toString().contains("?p"));
+
+		result = optimize("SELECT ?x WHERE { ?x ?p ?o . ?x :r ?y }");
+		assertTrue(result.getRewrites().isEmpty());
+
+		// ?o is used by the filter
+		result = optimize("SELECT DISTINCT ?x WHERE { ?x ?p ?o . ?x :r ?y FILTER(?o != :b) }");
+		assertFalse(result.getRewrites().contains(Rewrite.REDUNDANT_TRIPLE_PATTERNS));
+	}
+
+	@Test
+	public void testInlineSubQueries() {
+		QueryOptimizer.Result result = optimize("SELECT ?x WHERE { ?x :r ?y { SELECT ?y WHERE { ?y :s ?z } } }");
+		assertTrue(result.getRewrites().contains(Rewrite.INLINE_SUBQUERIES));
+		assertFalse(result.getQuery().toString(), result.getQuery().toString().contains("SELECT  ?y"));
+
+		// ?y of the sub-query is a different variable than ?y of the outer query
+		result = optimize("SELECT ?x WHERE { ?x :r ?z { SELECT ?z WHERE { ?z :s ?y } } ?x :r ?y }");
+		assertTrue(result.getRewrites().isEmpty());
+	}
+
+	@Test
+	public void testGroupedSubQuery() {
+		QueryOptimizer.Result result = optimize(
+				"SELECT DISTINCT ?x WHERE { ?x :r ?y { SELECT ?y WHERE { ?y ?p ?o . ?y :s ?z . ?z a :B } GROUP BY ?y HAVING(COUNT(?z) >= 2) } }");
+		assertTrue(result.getQuery().toString(), result.getQuery().toString().contains("HAVING"));
+		// the generic pattern of the sub-query would change the counts
+		assertTrue(result.getQuery().toString(), result.getQuery().toString().contains("?p"));
+	}
+
+	@Test
+	public void testConverterIntegration() {
+		OWLClassExpressionToSPARQLConverter converter = new OWLClassExpressionToSPARQLConverter();
+		OWLClassExpression ce = df.getOWLObjectIntersectionOf(df.getOWLObjectComplementOf(clsA),
+															  df.getOWLObjectSomeValuesFrom(propR, clsB));
+		Query query = converter.asQuery(ce, "?x");
+		assertTrue(converter.getConversionMetadata().getRewrites().isEmpty());
+
+		converter.setQueryOptimizer(optimizer);
+		Query optimized = converter.asQuery(ce, "?x");
+		assertEquals(EnumSet.of(Rewrite.FILTER_PLACEMENT), converter.getConversionMetadata().getRewrites());
+		assertFalse(query.equals(optimized));
+		assertEquals(DATASET.solutions(query), DATASET.solutions(optimized));
+
+		// the metadata of an atomic class has no rewrites
+		converter.asQuery(clsA, "?x");
+		assertTrue(converter.getConversionMetadata().getRewrites().isEmpty());
+	}
+
+	@Test
+	public void testTranslationStyles() {
+		List<OWLClassExpression> ces = Arrays.asList(
+				df.getOWLObjectUnionOf(clsA, df.getOWLObjectSomeValuesFrom(propR, clsB)),
+				df.getOWLObjectIntersectionOf(df.getOWLObjectComplementOf(clsA), df.getOWLObjectSomeValuesFrom(propR, clsB)),
+				df.getOWLObjectAllValuesFrom(propS, clsB),
+				df.getOWLObjectComplementOf(clsB),
+				df.getOWLObjectSomeValuesFrom(propR, df.getOWLObjectMinCardinality(2, propS, clsB)),
+				df.getOWLObjectMinCardinality(2, propS),
+				df.getOWLObjectMaxCardinality(1, propS, clsA),
+				df.getOWLObjectSomeValuesFrom(propR, df.getOWLObjectOneOf(df.getOWLNamedIndividual("b", pm),
+																		   df.getOWLNamedIndividual("c", pm))),
+				df.getOWLObjectIntersectionOf(clsA, df.getOWLObjectSomeValuesFrom(
+						propR, df.getOWLObjectUnionOf(clsB, df.getOWLObjectComplementOf(clsA)))));
+
+		for (AllQuantorTranslation allQuantorTranslation : AllQuantorTranslation.values()) {
+			for (NegationRendering negationRendering : NegationRendering.values()) {
+				for (MinCardinalityTranslation minCardinalityTranslation : MinCardinalityTranslation.values()) {
+					for (MaxCardinalityTranslation maxCardinalityTranslation : MaxCardinalityTranslation.values()) {
+						OWLClassExpressionToSPARQLConverter converter = new OWLClassExpressionToSPARQLConverter();
+						converter.setAllQuantorTranslation(allQuantorTranslation);
+						converter.setNegationRendering(negationRendering);
+						converter.setMinCardinalityTranslation(minCardinalityTranslation);
+						converter.setMaxCardinalityTranslation(maxCardinalityTranslation);
+						for (OWLClassExpression ce : ces) {
+							optimize(converter.asQuery(ce, "?x"));
+							optimize(converter.asQuery("?x", ce, false));
+						}
+					}
+				}
+			}
+		}
+	}
+}
@@ -0,0 +1,153 @@
+/*
+ * #%L
+ * owl2sparql-core
+ * %%
+ * Copyright (C) 2015 AKSW
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package org.aksw.owl2sparql;
+
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Sets;
+import com.hp.hpl.jena.query.Query;
+import com.hp.hpl.jena.query.QueryFactory;
+import org.aksw.owl2sparql.style.NominalTranslation;
+import org.junit.Test;
+import org.semanticweb.owlapi.apibinding.OWLManager;
+import org.semanticweb.owlapi.model.*;
+import org.semanticweb.owlapi.util.DefaultPrefixManager;
+
+import java.util.Collections;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * @author Lorenz Buehmann
+ *
+ */
+public class QueryTemplateTest {
+
+	private static final String NS = "http://example.org/";
+
+	private OWLClassExpressionToSPARQLConverter converter = new OWLClassExpressionToSPARQLConverter();
+
+	private OWLDataFactory df = OWLManager.getOWLDataFactory();
+	private PrefixManager pm = new DefaultPrefixManager(NS);
+
+	private OWLClass clsA = df.getOWLClass("A", pm);
+	private OWLClass clsB = df.getOWLClass("B", pm);
+	private OWLClass clsC = df.getOWLClass("C", pm);
+	private OWLClass clsP = df.getOWLClass("P", pm);
+
+	private OWLObjectProperty propR = df.getOWLObjectProperty("r", pm);
+	private OWLObjectProperty propS = df.getOWLObjectProperty("s", pm);
+	private OWLObjectProperty propP = df.getOWLObjectProperty("p", pm);
+
+	private OWLNamedIndividual indA = df.getOWLNamedIndividual("a", pm);
+	private OWLNamedIndividual indB = df.getOWLNamedIndividual("b", pm);
+	private OWLNamedIndividual indP = df.getOWLNamedIndividual("i", pm);
+
+	private void assertInstantiation(QueryTemplate template, Query expected, OWLEntity placeholder, OWLEntity entity) {
+		Query query = template.instantiate(placeholder, entity);
+		assertEquals(expected, query);
+
+		// the query tree must be the same after a serialization round trip
+		assertEquals(query, QueryFactory.create(query.serialize()));
+	}
+
+	@Test
+	public void testClassPlaceholder() {
+		OWLClassExpression ce = df.getOWLObjectIntersectionOf(
+				clsA, df.getOWLObjectComplementOf(df.getOWLObjectSomeValuesFrom(propR, clsP)));
+		QueryTemplate template = converter.prepare(ce, "?x", Collections.singleton(clsP));
+
+		for (OWLClass cls : Sets.newHashSet(clsB, clsC)) {
+			OWLClassExpression concrete = df.getOWLObjectIntersectionOf(
+					clsA, df.getOWLObjectComplementOf(df.getOWLObjectSomeValuesFrom(propR, cls)));
+			assertInstantiation(template, converter.asQuery(concrete, "?x"), clsP, cls);
+		}
+	}
+
+	@Test
+	public void testPropertyPlaceholderInCardinalityRestriction() {
+		QueryTemplate template = converter.prepare(
+				df.getOWLObjectIntersectionOf(clsA, df.getOWLObjectMinCardinality(2, propP, clsB)), "?x",
+				Collections.singleton(propP));
+		assertInstantiation(template,
+							converter.asQuery(df.getOWLObjectIntersectionOf(clsA, df.getOWLObjectMinCardinality(2, propR, clsB)), "?x"),
+							propP, propR);
+
+		QueryTemplate countTemplate = converter.prepare(
+				df.getOWLObjectMinCardinality(2, propP, clsB), "?x", Collections.singleton(propP), true);
+		assertInstantiation(countTemplate,
+							converter.asQuery("?x", df.getOWLObjectMinCardinality(2, propS, clsB), true),
+							propP, propS);
+	}
+
+	@Test
+	public void testPlaceholderInNotExists() {
+		QueryTemplate template = converter.prepare(
+				df.getOWLObjectMaxCardinality(1, propP, clsP), "?x", Sets.newHashSet(propP, clsP));
+
+		Query query = template.instantiate(ImmutableMap.of(propP, propR, clsP, clsB));
+		assertEquals(converter.asQuery(df.getOWLObjectMaxCardinality(1, propR, clsB), "?x"), query);
+		assertEquals(query, QueryFactory.create(query.serialize()));
+
+		// the template itself is not modified
+		assertTrue(template.getQuery().serialize().contains(template.getVariable(clsP).toString()));
+	}
+
+	@Test
+	public void testIndividualPlaceholder() {
+		QueryTemplate template = converter.prepare(
+				df.getOWLObjectHasValue(propR, indP), "?x", Collections.singleton(indP));
+		assertInstantiation(template, converter.asQuery(df.getOWLObjectHasValue(propR, indA), "?x"), indP, indA);
+
+		// nominals with placeholders are translated as FILTER IN
+		OWLClassExpressionToSPARQLConverter filterInConverter = new OWLClassExpressionToSPARQLConverter();
+		filterInConverter.setNominalTranslation(NominalTranslation.FILTER_IN);
+		template = converter.prepare(
+				df.getOWLObjectSomeValuesFrom(propR, df.getOWLObjectOneOf(indP, indA)), "?x", Collections.singleton(indP));
+		assertInstantiation(template,
+							filterInConverter.asQuery(df.getOWLObjectSomeValuesFrom(propR, df.getOWLObjectOneOf(indB, indA)), "?x"),
+							indP, indB);
+	}
+
+	@Test
+	public void testIndividualPlaceholderInUnion() {
+		// the operand of the union doesn't bind the successor, thus, it can't be filtered
+		QueryTemplate template = converter.prepare(
+				df.getOWLObjectSomeValuesFrom(propR, df.getOWLObjectUnionOf(df.getOWLObjectOneOf(indP, indB), clsB)),
+				"?x", Collections.singleton(indP));
+		assertInstantiation(template,
+							QueryFactory.create("SELECT DISTINCT ?x WHERE { ?x <" + NS + "r> ?s0 "
+														+ "{ ?s0 a <" + NS + "B> } UNION "
+														+ "{ { BIND(<" + NS + "b> AS ?s0) } UNION { BIND(<" + NS + "a> AS ?s0) } } }"),
+							indP, indA);
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testUnboundPlaceholder() {
+		converter.prepare(df.getOWLObjectSomeValuesFrom(propP, clsP), "?x", Sets.newHashSet(propP, clsP))
+				.instantiate(clsP, clsA);
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testPlaceholderOfOtherType() {
+		converter.prepare(df.getOWLObjectSomeValuesFrom(propR, clsP), "?x", Collections.singleton(clsP))
+				.instantiate(clsP, propS);
+	}
+}
@@ -0,0 +1,118 @@
+/*
+ * #%L
+ * owl2sparql-core
+ * %%
+ * Copyright (C) 2015 AKSW
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package org.aksw.owl2sparql.selectivity;
+
+import com.hp.hpl.jena.rdf.model.Model;
+import com.hp.hpl.jena.rdf.model.ModelFactory;
+import org.aksw.owl2sparql.OWLClassExpressionQueryEngine;
+import org.junit.Test;
+import org.semanticweb.owlapi.apibinding.OWLManager;
+import org.semanticweb.owlapi.model.*;
+import org.semanticweb.owlapi.util.DefaultPrefixManager;
+
+import java.io.StringReader;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * @author Lorenz Buehmann
+ *
+ */
+public class ClassExpressionSizeEstimatorTest {
+
+	private static final String DATA =
+			"@prefix : <http://example.org/> .\n" +
+			":a a :A ; :r :b , :c ; :t 1 .\n" +
+			":b a :A , :B ; :r :c .\n" +
+			":c a :B ; :t 2 , 3 .\n" +
+			":d a :A ; :r :b ; :s :d .\n" +
+			":e a :C ; :r :a , :b , :c .\n" +
+			":f :t 4 .\n";
+
+	private OWLDataFactory df = OWLManager.getOWLDataFactory();
+	private PrefixManager pm = new DefaultPrefixManager("http://example.org/");
+
+	private OWLClass clsA = df.getOWLClass("A", pm);
+	private OWLClass clsB = df.getOWLClass("B", pm);
+	private OWLClass clsC = df.getOWLClass("C", pm);
+	private OWLObjectProperty propR = df.getOWLObjectProperty("r", pm);
+	private OWLObjectProperty propS = df.getOWLObjectProperty("s", pm);
+	private OWLDataProperty propT = df.getOWLDataProperty("t", pm);
+
+	private static Model model() {
+		Model model = ModelFactory.createDefaultModel();
+		model.read(new StringReader(DATA), null, "TURTLE");
+		return model;
+	}
+
+	@Test
+	public void testExactCounts() {
+		ClassExpressionSizeEstimator estimator = new ClassExpressionSizeEstimator(DatasetStatistics.compute(model()));
+
+		assertEquals(new CardinalityEstimate(3, 3, 3), estimator.estimate(clsA));
+		assertEquals(new CardinalityEstimate(6, 6, 6), estimator.estimate(df.getOWLThing()));
+		assertEquals(new CardinalityEstimate(3, 3, 3), estimator.estimate(df.getOWLObjectComplementOf(clsA)));
+		assertEquals(new CardinalityEstimate(4, 4, 4), estimator.estimate(df.getOWLObjectSomeValuesFrom(propR, df.getOWLThing())));
+
+		// empty classes and restrictions with empty fillers can be pruned
+		assertTrue(estimator.estimate(df.getOWLClass("D", pm)).isEmpty());
+		assertTrue(estimator.estimate(df.getOWLObjectIntersectionOf(clsA, df.getOWLClass("D", pm))).isEmpty());
+		assertTrue(estimator.estimate(df.getOWLObjectSomeValuesFrom(propS, df.getOWLClass("D", pm))).isEmpty());
+		assertTrue(estimator.estimate(df.getOWLObjectMinCardinality(2, propS, df.getOWLThing())).isEmpty());
+	}
+
+	@Test
+	public void testBounds() {
+		Model model = model();
+		ClassExpressionSizeEstimator estimator = new ClassExpressionSizeEstimator(DatasetStatistics.compute(model));
+		OWLClassExpressionQueryEngine engine = new OWLClassExpressionQueryEngine(model);
+
+		List<OWLClassExpression> classExpressions = Arrays.asList(
+				df.getOWLObjectIntersectionOf(clsA, clsB),
+				df.getOWLObjectUnionOf(clsA, clsC),
+				df.getOWLObjectUnionOf(clsA, df.getOWLObjectComplementOf(clsB)),
+				df.getOWLObjectSomeValuesFrom(propR, clsB),
+				df.getOWLObjectSomeValuesFrom(df.getOWLObjectInverseOf(propR), clsA),
+				df.getOWLObjectAllValuesFrom(propR, clsB),
+				df.getOWLObjectHasValue(propR, df.getOWLNamedIndividual("c", pm)),
+				df.getOWLObjectMinCardinality(2, propR, clsB),
+				df.getOWLObjectMaxCardinality(1, propR, clsB),
+				df.getOWLObjectMaxCardinality(0, propR, clsB),
+				df.getOWLObjectExactCardinality(1, propR, clsB),
+				df.getOWLObjectExactCardinality(0, propR, clsB),
+				df.getOWLObjectIntersectionOf(clsA, df.getOWLObjectSomeValuesFrom(propR, df.getOWLObjectComplementOf(clsA))),
+				df.getOWLObjectOneOf(df.getOWLNamedIndividual("a", pm), df.getOWLNamedIndividual("x", pm)),
+				df.getOWLDataSomeValuesFrom(propT, df.getIntegerOWLDatatype()),
+				df.getOWLDataMinCardinality(2, propT, df.getTopDatatype()),
+				df.getOWLDataMaxCardinality(1, propT, df.getTopDatatype()),
+				df.getOWLDataExactCardinality(0, propT, df.getTopDatatype()),
+				df.getOWLDataHasValue(propT, df.getOWLLiteral(2))
+		);
+		for (OWLClassExpression ce : classExpressions) {
+			CardinalityEstimate estimate = estimator.estimate(ce);
+			long count = engine.getInstanceCount(ce);
+			assertTrue(ce + ": " + count + " not in " + estimate,
+					   estimate.getLowerBound() <= count && count <= estimate.getUpperBound());
+		}
+	}
+}
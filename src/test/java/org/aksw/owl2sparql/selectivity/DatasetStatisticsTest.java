@@ -0,0 +1,135 @@
+/*
+ * #%L
+ * owl2sparql-core
+ * %%
+ * Copyright (C) 2015 AKSW
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package org.aksw.owl2sparql.selectivity;
+
+import com.hp.hpl.jena.graph.Node;
+import com.hp.hpl.jena.graph.NodeFactory;
+import com.hp.hpl.jena.query.Query;
+import com.hp.hpl.jena.query.QueryFactory;
+import com.hp.hpl.jena.rdf.model.Model;
+import com.hp.hpl.jena.rdf.model.ModelFactory;
+import org.aksw.owl2sparql.OWLClassExpressionToSPARQLConverter;
+import org.junit.Test;
+import org.semanticweb.owlapi.apibinding.OWLManager;
+import org.semanticweb.owlapi.model.*;
+import org.semanticweb.owlapi.util.DefaultPrefixManager;
+
+import java.io.StringReader;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * @author Lorenz Buehmann
+ *
+ */
+public class DatasetStatisticsTest {
+
+	private static final String NS = "http://example.org/";
+
+	private static final String DATA =
+			"@prefix : <http://example.org/> .\n" +
+			":a a :A ; :r :b , :c .\n" +
+			":b a :A , :B .\n" +
+			":c a :A .\n" +
+			":d a :A ; :r :b .\n";
+
+	private static final String VOID =
+			"@prefix void: <http://rdfs.org/ns/void#> .\n" +
+			"@prefix : <http://example.org/> .\n" +
+			":ds a void:Dataset ; void:triples 1000 ; void:entities 100 ;\n" +
+			"  void:classPartition [ void:class :A ; void:entities 80 ] , [ void:class :B ; void:entities 5 ] ;\n" +
+			"  void:propertyPartition [ void:property :r ; void:triples 300 ] .\n";
+
+	private OWLDataFactory df = OWLManager.getOWLDataFactory();
+	private PrefixManager pm = new DefaultPrefixManager(NS);
+
+	private OWLClass clsA = df.getOWLClass("A", pm);
+	private OWLClass clsB = df.getOWLClass("B", pm);
+	private OWLObjectProperty propR = df.getOWLObjectProperty("r", pm);
+
+	private static Model model(String data) {
+		Model model = ModelFactory.createDefaultModel();
+		model.read(new StringReader(data), null, "TURTLE");
+		return model;
+	}
+
+	private static Node uri(String localName) {
+		return NodeFactory.createURI(NS + localName);
+	}
+
+	@Test
+	public void testCompute() {
+		DatasetStatistics statistics = DatasetStatistics.compute(model(DATA));
+
+		assertEquals(8, statistics.getTripleCount());
+		assertEquals(4, statistics.getIndividualCount());
+		assertEquals(4, statistics.getInstanceCount(uri("A")));
+		assertEquals(1, statistics.getInstanceCount(uri("B")));
+		assertEquals(0, statistics.getInstanceCount(uri("C")));
+		assertEquals(3, statistics.getTripleCount(uri("r")));
+	}
+
+	@Test
+	public void testFromVoID() {
+		DatasetStatistics statistics = DatasetStatistics.fromVoID(model(VOID));
+
+		assertEquals(1000, statistics.getTripleCount());
+		assertEquals(100, statistics.getIndividualCount());
+		assertEquals(80, statistics.getInstanceCount(uri("A")));
+		assertEquals(5, statistics.getInstanceCount(uri("B")));
+		assertEquals(300, statistics.getTripleCount(uri("r")));
+	}
+
+	@Test
+	public void testVoIDSnapshot() {
+		DatasetStatistics statistics = DatasetStatistics.compute(model(DATA));
+		DatasetStatistics snapshot = DatasetStatistics.fromVoID(statistics.toVoID());
+
+		assertEquals(statistics.getTripleCount(), snapshot.getTripleCount());
+		assertEquals(statistics.getIndividualCount(), snapshot.getIndividualCount());
+		assertEquals(statistics.getInstanceCount(uri("A")), snapshot.getInstanceCount(uri("A")));
+		assertEquals(statistics.getTripleCount(uri("r")), snapshot.getTripleCount(uri("r")));
+		assertEquals(2, snapshot.getSubjectCount(uri("r")));
+		assertEquals(2, snapshot.getObjectCount(uri("r")));
+	}
+
+	@Test
+	public void testOrdering() {
+		OWLClassExpressionToSPARQLConverter converter = new OWLClassExpressionToSPARQLConverter();
+		converter.setSelectivityEstimator(DatasetStatistics.fromVoID(model(VOID)));
+
+		// the intersection operands are ordered by the estimated number of instances, B is rarer than A
+		assertEquals(
+				QueryFactory.create("SELECT ?x WHERE { ?x a <http://example.org/B> . ?x a <http://example.org/A> }"),
+				converter.asQuery(df.getOWLObjectIntersectionOf(clsA, clsB), "?x"));
+
+		// the type pattern of the filler is more selective than the property pattern
+		Query query = converter.asQuery(df.getOWLObjectSomeValuesFrom(propR, clsB), "?x");
+		assertEquals(
+				QueryFactory.create("SELECT DISTINCT ?x WHERE { ?s0 a <http://example.org/B> . ?x <http://example.org/r> ?s0 }"),
+				query);
+
+		// without an estimator the order of the class expression is kept
+		converter.setSelectivityEstimator(null);
+		assertEquals(
+				QueryFactory.create("SELECT DISTINCT ?x WHERE { ?x <http://example.org/r> ?s0 . ?s0 a <http://example.org/B> }"),
+				converter.asQuery(df.getOWLObjectSomeValuesFrom(propR, clsB), "?x"));
+	}
+}
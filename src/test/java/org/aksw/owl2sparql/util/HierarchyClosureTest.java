@@ -0,0 +1,92 @@
+/*
+ * #%L
+ * owl2sparql-core
+ * %%
+ * Copyright (C) 2015 AKSW
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package org.aksw.owl2sparql.util;
+
+import com.google.common.collect.Sets;
+import org.junit.Before;
+import org.junit.Test;
+import org.semanticweb.owlapi.apibinding.OWLManager;
+import org.semanticweb.owlapi.model.*;
+import org.semanticweb.owlapi.util.DefaultPrefixManager;
+
+import java.util.Collections;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * @author Lorenz Buehmann
+ *
+ */
+public class HierarchyClosureTest {
+
+	private static final String NS = "http://example.org/";
+
+	private OWLDataFactory df = OWLManager.getOWLDataFactory();
+	private PrefixManager pm = new DefaultPrefixManager(NS);
+
+	private OWLClass clsA = df.getOWLClass("A", pm);
+	private OWLClass clsB = df.getOWLClass("B", pm);
+	private OWLClass clsC = df.getOWLClass("C", pm);
+	private OWLClass clsD = df.getOWLClass("D", pm);
+
+	private OWLObjectProperty propR = df.getOWLObjectProperty("r", pm);
+	private OWLObjectProperty propS = df.getOWLObjectProperty("s", pm);
+	private OWLObjectProperty propT = df.getOWLObjectProperty("t", pm);
+
+	private OWLDataProperty dpU = df.getOWLDataProperty("u", pm);
+	private OWLDataProperty dpV = df.getOWLDataProperty("v", pm);
+
+	private HierarchyClosure closure;
+
+	@Before
+	public void setUp() throws Exception {
+		// C \sqsubseteq B \sqsubseteq A, D \equiv B, s \sqsubseteq r, t^- \sqsubseteq r, v \sqsubseteq u
+		OWLOntology ontology = OWLManager.createOWLOntologyManager().createOntology(Sets.newHashSet(
+				df.getOWLSubClassOfAxiom(clsB, clsA),
+				df.getOWLSubClassOfAxiom(clsC, clsB),
+				df.getOWLEquivalentClassesAxiom(clsD, clsB),
+				df.getOWLSubClassOfAxiom(df.getOWLNothing(), clsC),
+				df.getOWLSubObjectPropertyOfAxiom(propS, propR),
+				df.getOWLSubObjectPropertyOfAxiom(propT.getInverseProperty(), propR),
+				df.getOWLSubDataPropertyOfAxiom(dpV, dpU)));
+		closure = HierarchyClosure.compute(ontology);
+	}
+
+	@Test
+	public void testClasses() {
+		assertEquals(Sets.newHashSet(clsA, clsB, clsC, clsD), closure.getSubEntities(clsA));
+		assertEquals(Sets.newHashSet(clsB, clsC, clsD), closure.getSubEntities(clsB));
+		assertEquals(Collections.singleton(clsC), closure.getSubEntities(clsC));
+	}
+
+	@Test
+	public void testProperties() {
+		// inverse sub-properties are not kept
+		assertEquals(Sets.newHashSet(propR, propS), closure.getSubEntities(propR));
+		assertEquals(Collections.singleton(propT), closure.getSubEntities(propT));
+		assertEquals(Sets.newHashSet(dpU, dpV), closure.getSubEntities(dpU));
+	}
+
+	@Test
+	public void testUnknownEntity() {
+		OWLClass cls = df.getOWLClass("Unknown", pm);
+		assertEquals(Collections.singleton(cls), closure.getSubEntities(cls));
+	}
+}
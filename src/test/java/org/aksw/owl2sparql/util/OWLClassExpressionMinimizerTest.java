@@ -0,0 +1,145 @@
+/*
+ * #%L
+ * owl2sparql-core
+ * %%
+ * Copyright (C) 2015 AKSW
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package org.aksw.owl2sparql.util;
+
+import com.google.common.collect.Sets;
+import org.aksw.owl2sparql.OWLClassExpressionToSPARQLConverter;
+import org.junit.Before;
+import org.junit.Test;
+import org.semanticweb.owlapi.apibinding.OWLManager;
+import org.semanticweb.owlapi.model.*;
+import org.semanticweb.owlapi.reasoner.OWLReasoner;
+import org.semanticweb.owlapi.reasoner.structural.StructuralReasonerFactory;
+import org.semanticweb.owlapi.util.DefaultPrefixManager;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * @author Lorenz Buehmann
+ *
+ */
+public class OWLClassExpressionMinimizerTest {
+
+	private static final String NS = "http://example.org/";
+
+	private OWLDataFactory df = OWLManager.getOWLDataFactory();
+	private PrefixManager pm = new DefaultPrefixManager(NS);
+
+	private OWLClass clsA = df.getOWLClass("A", pm);
+	private OWLClass clsB = df.getOWLClass("B", pm);
+	private OWLClass clsC = df.getOWLClass("C", pm);
+	private OWLClass clsD = df.getOWLClass("D", pm);
+
+	private OWLObjectProperty propR = df.getOWLObjectProperty("r", pm);
+
+	private OWLReasoner reasoner;
+
+	@Before
+	public void setUp() throws Exception {
+		// A \sqsubseteq B \sqsubseteq C
+		OWLOntology ontology = OWLManager.createOWLOntologyManager().createOntology(Sets.newHashSet(
+				df.getOWLSubClassOfAxiom(clsA, clsB),
+				df.getOWLSubClassOfAxiom(clsB, clsC)));
+		reasoner = new StructuralReasonerFactory().createNonBufferingReasoner(ontology);
+	}
+
+	@Test
+	public void testWithoutReasoner() {
+		OWLClassExpressionMinimizer minimizer = new OWLClassExpressionMinimizer(df);
+
+		OWLClassExpression ce = df.getOWLObjectIntersectionOf(clsA, clsC);
+		assertEquals(ce, minimizer.minimize(ce));
+		assertEquals(clsA, minimizer.minimize(df.getOWLObjectIntersectionOf(clsA, df.getOWLThing())));
+	}
+
+	@Test
+	public void testIntersection() {
+		OWLClassExpressionMinimizer minimizer = new OWLClassExpressionMinimizer(df, reasoner);
+
+		assertEquals(clsA, minimizer.minimize(df.getOWLObjectIntersectionOf(clsA, clsB, clsC)));
+		assertEquals(df.getOWLObjectIntersectionOf(clsA, clsD),
+					 minimizer.minimize(df.getOWLObjectIntersectionOf(clsA, clsC, clsD)));
+
+		// nested expressions are minimized as well
+		assertEquals(df.getOWLObjectSomeValuesFrom(propR, clsA),
+					 minimizer.minimize(df.getOWLObjectSomeValuesFrom(propR, df.getOWLObjectIntersectionOf(clsA, clsC))));
+	}
+
+	@Test
+	public void testUnion() {
+		OWLClassExpressionMinimizer minimizer = new OWLClassExpressionMinimizer(df, reasoner);
+
+		assertEquals(clsC, minimizer.minimize(df.getOWLObjectUnionOf(clsA, clsB, clsC)));
+		assertEquals(df.getOWLObjectUnionOf(clsB, clsD),
+					 minimizer.minimize(df.getOWLObjectUnionOf(clsA, clsB, clsD)));
+	}
+
+	@Test
+	public void testStructuralSharing() {
+		OWLClassExpressionMinimizer minimizer = new OWLClassExpressionMinimizer(df);
+
+		OWLClassExpression filler = df.getOWLObjectIntersectionOf(clsB, df.getOWLObjectComplementOf(clsC));
+		OWLClassExpression ce = df.getOWLObjectIntersectionOf(clsA, df.getOWLObjectSomeValuesFrom(propR, filler));
+		assertSame(ce, minimizer.minimize(ce));
+
+		// only the rewritten parts are new objects
+		OWLClassExpression minimized = minimizer.minimize(df.getOWLObjectUnionOf(
+				df.getOWLObjectIntersectionOf(clsA, df.getOWLThing()), df.getOWLObjectAllValuesFrom(propR, filler)));
+		assertEquals(df.getOWLObjectUnionOf(clsA, df.getOWLObjectAllValuesFrom(propR, filler)), minimized);
+		for (OWLClassExpression operand : ((OWLObjectUnionOf) minimized).getOperands()) {
+			if(operand instanceof OWLObjectAllValuesFrom) {
+				assertSame(filler, ((OWLObjectAllValuesFrom) operand).getFiller());
+			}
+		}
+	}
+
+	@Test
+	public void testSubsumptionCache() {
+		OWLClassExpressionMinimizer minimizer = new OWLClassExpressionMinimizer(df, reasoner);
+		OWLClassExpression ce = df.getOWLObjectIntersectionOf(clsA, clsD);
+
+		minimizer.minimize(ce);
+		long misses = minimizer.getSubsumptionCacheStats().missCount();
+		assertTrue(misses > 0);
+
+		minimizer.minimize(ce);
+		assertEquals(misses, minimizer.getSubsumptionCacheStats().missCount());
+		assertTrue(minimizer.getSubsumptionCacheStats().hitCount() > 0);
+
+		minimizer.invalidateSubsumptionCache();
+		minimizer.minimize(ce);
+		assertEquals(2 * misses, minimizer.getSubsumptionCacheStats().missCount());
+	}
+
+	@Test
+	public void testConverterWithReasoner() {
+		OWLClassExpressionToSPARQLConverter converter = new OWLClassExpressionToSPARQLConverter();
+		OWLClassExpression ce = df.getOWLObjectIntersectionOf(clsA, clsC);
+
+		assertTrue(converter.convert(ce, "?x", false).contains(clsC.toStringID()));
+
+		converter.setReasoner(reasoner);
+		assertFalse(converter.convert(ce, "?x", false).contains(clsC.toStringID()));
+		assertEquals(converter.asQuery(clsA, "?x"), converter.asQuery(ce, "?x"));
+	}
+}
@@ -0,0 +1,95 @@
+/*
+ * #%L
+ * owl2sparql-core
+ * %%
+ * Copyright (C) 2015 AKSW
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package org.aksw.owl2sparql.util;
+
+import org.junit.Test;
+import org.semanticweb.owlapi.apibinding.OWLManager;
+import org.semanticweb.owlapi.model.*;
+import org.semanticweb.owlapi.util.DefaultPrefixManager;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+/**
+ * @author Lorenz Buehmann
+ *
+ */
+public class OWLClassExpressionNormalizerTest {
+
+	private static final String NS = "http://example.org/";
+
+	private OWLDataFactory df = OWLManager.getOWLDataFactory();
+	private PrefixManager pm = new DefaultPrefixManager(NS);
+
+	private OWLClass clsA = df.getOWLClass("A", pm);
+	private OWLClass clsB = df.getOWLClass("B", pm);
+	private OWLClass clsC = df.getOWLClass("C", pm);
+
+	private OWLObjectProperty propR = df.getOWLObjectProperty("r", pm);
+
+	private OWLClassExpressionNormalizer normalizer = new OWLClassExpressionNormalizer(df);
+
+	@Test
+	public void testFlattening() {
+		assertEquals(df.getOWLObjectIntersectionOf(clsA, clsB, clsC),
+					 normalizer.normalize(df.getOWLObjectIntersectionOf(clsA, df.getOWLObjectIntersectionOf(clsB, clsC))));
+		assertEquals(df.getOWLObjectUnionOf(clsA, clsB, clsC),
+					 normalizer.normalize(df.getOWLObjectUnionOf(df.getOWLObjectUnionOf(clsA, clsB), clsC)));
+		// duplicates show up only after flattening
+		assertEquals(df.getOWLObjectIntersectionOf(clsA, clsB),
+					 normalizer.normalize(df.getOWLObjectIntersectionOf(clsA, df.getOWLObjectIntersectionOf(clsA, clsB))));
+	}
+
+	@Test
+	public void testTopAndBottom() {
+		assertEquals(clsA, normalizer.normalize(df.getOWLObjectIntersectionOf(clsA, df.getOWLThing())));
+		assertEquals(df.getOWLNothing(), normalizer.normalize(df.getOWLObjectIntersectionOf(clsA, df.getOWLNothing())));
+		assertEquals(df.getOWLThing(), normalizer.normalize(df.getOWLObjectUnionOf(clsA, df.getOWLThing())));
+		assertEquals(clsA, normalizer.normalize(df.getOWLObjectUnionOf(clsA, df.getOWLNothing())));
+		assertEquals(df.getOWLNothing(),
+					 normalizer.normalize(df.getOWLObjectSomeValuesFrom(propR, df.getOWLObjectIntersectionOf(clsA, df.getOWLNothing()))));
+		assertEquals(df.getOWLThing(), normalizer.normalize(df.getOWLObjectMinCardinality(0, propR, clsA)));
+	}
+
+	@Test
+	public void testComplementaryOperands() {
+		assertEquals(df.getOWLNothing(),
+					 normalizer.normalize(df.getOWLObjectIntersectionOf(clsA, clsB, df.getOWLObjectComplementOf(clsA))));
+		assertEquals(df.getOWLThing(),
+					 normalizer.normalize(df.getOWLObjectUnionOf(clsA, df.getOWLObjectComplementOf(clsA))));
+		assertEquals(clsA, normalizer.normalize(df.getOWLObjectComplementOf(df.getOWLObjectComplementOf(clsA))));
+	}
+
+	@Test
+	public void testNegationNormalForm() {
+		OWLClassExpressionNormalizer nnf = new OWLClassExpressionNormalizer(df, true);
+
+		assertEquals(df.getOWLObjectUnionOf(df.getOWLObjectComplementOf(clsA), df.getOWLObjectComplementOf(clsB)),
+					 nnf.normalize(df.getOWLObjectComplementOf(df.getOWLObjectIntersectionOf(clsA, clsB))));
+		assertEquals(df.getOWLObjectAllValuesFrom(propR, df.getOWLObjectComplementOf(clsA)),
+					 nnf.normalize(df.getOWLObjectComplementOf(df.getOWLObjectSomeValuesFrom(propR, clsA))));
+		assertEquals(df.getOWLObjectMaxCardinality(1, propR, clsA),
+					 nnf.normalize(df.getOWLObjectComplementOf(df.getOWLObjectMinCardinality(2, propR, clsA))));
+
+		// without NNF the negation is kept
+		OWLClassExpression ce = df.getOWLObjectComplementOf(df.getOWLObjectIntersectionOf(clsA, clsB));
+		assertSame(ce, normalizer.normalize(ce));
+	}
+}
@@ -0,0 +1,94 @@
+/*
+ * #%L
+ * owl2sparql-core
+ * %%
+ * Copyright (C) 2015 AKSW
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package org.aksw.owl2sparql.util;
+
+import org.junit.Test;
+import org.semanticweb.owlapi.apibinding.OWLManager;
+import org.semanticweb.owlapi.model.*;
+import org.semanticweb.owlapi.util.DefaultPrefixManager;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * @author Lorenz Buehmann
+ *
+ */
+public class OWLObjectOneOfSplitterTest {
+
+	private static final String NS = "http://example.org/";
+
+	private OWLDataFactory df = OWLManager.getOWLDataFactory();
+	private PrefixManager pm = new DefaultPrefixManager(NS);
+
+	private OWLClass clsA = df.getOWLClass("A", pm);
+
+	private OWLObjectProperty propR = df.getOWLObjectProperty("r", pm);
+
+	private OWLIndividual indA = df.getOWLNamedIndividual("a", pm);
+	private OWLIndividual indB = df.getOWLNamedIndividual("b", pm);
+	private OWLIndividual indC = df.getOWLNamedIndividual("c", pm);
+
+	private OWLObjectOneOfSplitter splitter = new OWLObjectOneOfSplitter(df, 2);
+
+	@Test
+	public void testSplit() {
+		OWLClassExpression ce = df.getOWLObjectIntersectionOf(
+				clsA, df.getOWLObjectSomeValuesFrom(propR, df.getOWLObjectOneOf(indA, indB, indC)));
+		assertEquals(new HashSet<>(Arrays.asList(
+							 df.getOWLObjectIntersectionOf(clsA, df.getOWLObjectSomeValuesFrom(propR, df.getOWLObjectOneOf(indA, indB))),
+							 df.getOWLObjectIntersectionOf(clsA, df.getOWLObjectSomeValuesFrom(propR, df.getOWLObjectOneOf(indC))))),
+					 new HashSet<>(splitter.split(ce)));
+
+		// small nominals are kept
+		OWLClassExpression small = df.getOWLObjectSomeValuesFrom(propR, df.getOWLObjectOneOf(indA, indB));
+		assertEquals(Collections.singletonList(small), splitter.split(small));
+	}
+
+	@Test
+	public void testSeveralNominals() {
+		OWLClassExpression ce = df.getOWLObjectUnionOf(
+				df.getOWLObjectOneOf(indA, indB, indC),
+				df.getOWLObjectSomeValuesFrom(propR, df.getOWLObjectOneOf(indA, indB, indC, df.getOWLNamedIndividual("d", pm))));
+		// both nominals are split into two chunks, all combinations are returned
+		assertEquals(4, splitter.split(ce).size());
+	}
+
+	@Test
+	public void testNonDistributivePositions() {
+		OWLObjectOneOf nominal = df.getOWLObjectOneOf(indA, indB, indC);
+
+		OWLClassExpression ce = df.getOWLObjectComplementOf(nominal);
+		assertEquals(Collections.singletonList(ce), splitter.split(ce));
+
+		ce = df.getOWLObjectAllValuesFrom(propR, nominal);
+		assertEquals(Collections.singletonList(ce), splitter.split(ce));
+
+		ce = df.getOWLObjectMinCardinality(2, propR, nominal);
+		assertEquals(Collections.singletonList(ce), splitter.split(ce));
+
+		// the nominal occurs in a distributive position, but also below a negation
+		ce = df.getOWLObjectIntersectionOf(nominal, df.getOWLObjectComplementOf(df.getOWLObjectSomeValuesFrom(propR, nominal)));
+		assertEquals(Collections.singletonList(ce), splitter.split(ce));
+	}
+}